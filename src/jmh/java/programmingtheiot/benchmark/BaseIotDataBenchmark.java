@@ -0,0 +1,74 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+package programmingtheiot.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.data.ActuatorData;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SystemPerformanceData;
+
+/**
+ * Measures construction cost of the {@link programmingtheiot.data.BaseIotData}
+ * subclasses, which includes capturing the creation time stamp.
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BaseIotDataBenchmark
+{
+	// benchmark methods
+	
+	@Benchmark
+	public ActuatorData newActuatorData()
+	{
+		return new ActuatorData();
+	}
+	
+	@Benchmark
+	public SensorData newSensorData()
+	{
+		return new SensorData(ConfigConst.TEMP_SENSOR_TYPE);
+	}
+	
+	@Benchmark
+	public SystemPerformanceData newSystemPerformanceData()
+	{
+		return new SystemPerformanceData();
+	}
+	
+	@Benchmark
+	public SensorData newPopulatedSensorData()
+	{
+		SensorData data = new SensorData(ConfigConst.TEMP_SENSOR_TYPE);
+		
+		data.setLocationID(ConfigConst.CONSTRAINED_DEVICE);
+		data.setValue(21.3f);
+		
+		return data;
+	}
+
+}
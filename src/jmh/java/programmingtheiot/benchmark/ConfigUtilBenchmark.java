@@ -0,0 +1,76 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+package programmingtheiot.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+
+/**
+ * Measures {@link ConfigUtil} getter throughput with several threads
+ * reading at once, since the getters are synchronized on the shared
+ * singleton.
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class ConfigUtilBenchmark
+{
+	// private var's
+	
+	private ConfigUtil configUtil = ConfigUtil.getInstance();
+	
+	
+	// benchmark methods
+	
+	@Benchmark
+	public String getProperty()
+	{
+		return this.configUtil.getProperty(ConfigConst.MQTT_GATEWAY_SERVICE, ConfigConst.HOST_KEY);
+	}
+	
+	@Benchmark
+	public int getInteger()
+	{
+		return this.configUtil.getInteger(ConfigConst.MQTT_GATEWAY_SERVICE, ConfigConst.PORT_KEY);
+	}
+	
+	@Benchmark
+	public boolean getBoolean()
+	{
+		return this.configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_MQTT_CLIENT_KEY);
+	}
+	
+	@Benchmark
+	public float getFloat()
+	{
+		return this.configUtil.getFloat(
+			ConfigConst.GATEWAY_DEVICE, ConfigConst.POLL_CYCLES_KEY, ConfigConst.DEFAULT_POLL_CYCLES);
+	}
+
+}
@@ -0,0 +1,170 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+package programmingtheiot.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.data.ActuatorData;
+import programmingtheiot.data.DataUtil;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SystemPerformanceData;
+import programmingtheiot.data.SystemStateData;
+
+/**
+ * Measures JSON encode, decode and round-trip cost in {@link DataUtil}
+ * for each data type exchanged between the CDA and GDA.
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataUtilBenchmark
+{
+	// private var's
+	
+	private DataUtil dataUtil = null;
+	
+	private ActuatorData          actuatorData  = null;
+	private SensorData            sensorData    = null;
+	private SystemPerformanceData sysPerfData   = null;
+	private SystemStateData       sysStateData  = null;
+	
+	private String actuatorJson  = null;
+	private String sensorJson    = null;
+	private String sysPerfJson   = null;
+	private String sysStateJson  = null;
+	
+	
+	// setup methods
+	
+	@Setup
+	public void setUp()
+	{
+		this.dataUtil = DataUtil.getInstance();
+		
+		this.actuatorData = new ActuatorData();
+		this.actuatorData.setName("HVAC Actuator");
+		this.actuatorData.setTypeID(ConfigConst.HVAC_ACTUATOR_TYPE);
+		this.actuatorData.setCommand(ConfigConst.ON_COMMAND);
+		this.actuatorData.setValue(22.5f);
+		
+		this.sensorData = new SensorData(ConfigConst.TEMP_SENSOR_TYPE);
+		this.sensorData.setName("Temp Sensor");
+		this.sensorData.setValue(21.3f);
+		
+		this.sysPerfData = new SystemPerformanceData();
+		this.sysPerfData.setCpuUtilization(12.5f);
+		this.sysPerfData.setDiskUtilization(40.0f);
+		this.sysPerfData.setMemoryUtilization(33.3f);
+		
+		this.sysStateData = new SystemStateData();
+		this.sysStateData.setCommand(ConfigConst.GET_SYSTEM_STATE_COMMAND);
+		this.sysStateData.addSensorData(this.sensorData);
+		this.sysStateData.addSystemPerformanceData(this.sysPerfData);
+		
+		this.actuatorJson = this.dataUtil.actuatorDataToJson(this.actuatorData);
+		this.sensorJson   = this.dataUtil.sensorDataToJson(this.sensorData);
+		this.sysPerfJson  = this.dataUtil.systemPerformanceDataToJson(this.sysPerfData);
+		this.sysStateJson = this.dataUtil.systemStateDataToJson(this.sysStateData);
+	}
+	
+	
+	// benchmark methods
+	
+	@Benchmark
+	public String actuatorDataToJson()
+	{
+		return this.dataUtil.actuatorDataToJson(this.actuatorData);
+	}
+	
+	@Benchmark
+	public ActuatorData jsonToActuatorData()
+	{
+		return this.dataUtil.jsonToActuatorData(this.actuatorJson);
+	}
+	
+	@Benchmark
+	public ActuatorData actuatorDataRoundTrip()
+	{
+		return this.dataUtil.jsonToActuatorData(this.dataUtil.actuatorDataToJson(this.actuatorData));
+	}
+	
+	@Benchmark
+	public String sensorDataToJson()
+	{
+		return this.dataUtil.sensorDataToJson(this.sensorData);
+	}
+	
+	@Benchmark
+	public SensorData jsonToSensorData()
+	{
+		return this.dataUtil.jsonToSensorData(this.sensorJson);
+	}
+	
+	@Benchmark
+	public SensorData sensorDataRoundTrip()
+	{
+		return this.dataUtil.jsonToSensorData(this.dataUtil.sensorDataToJson(this.sensorData));
+	}
+	
+	@Benchmark
+	public String systemPerformanceDataToJson()
+	{
+		return this.dataUtil.systemPerformanceDataToJson(this.sysPerfData);
+	}
+	
+	@Benchmark
+	public SystemPerformanceData jsonToSystemPerformanceData()
+	{
+		return this.dataUtil.jsonToSystemPerformanceData(this.sysPerfJson);
+	}
+	
+	@Benchmark
+	public SystemPerformanceData systemPerformanceDataRoundTrip()
+	{
+		return this.dataUtil.jsonToSystemPerformanceData(
+			this.dataUtil.systemPerformanceDataToJson(this.sysPerfData));
+	}
+	
+	@Benchmark
+	public String systemStateDataToJson()
+	{
+		return this.dataUtil.systemStateDataToJson(this.sysStateData);
+	}
+	
+	@Benchmark
+	public SystemStateData jsonToSystemStateData()
+	{
+		return this.dataUtil.jsonToSystemStateData(this.sysStateJson);
+	}
+	
+	@Benchmark
+	public SystemStateData systemStateDataRoundTrip()
+	{
+		return this.dataUtil.jsonToSystemStateData(this.dataUtil.systemStateDataToJson(this.sysStateData));
+	}
+
+}
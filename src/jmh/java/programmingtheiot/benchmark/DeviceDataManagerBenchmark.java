@@ -0,0 +1,108 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+package programmingtheiot.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.ActuatorData;
+import programmingtheiot.data.DataUtil;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SystemPerformanceData;
+import programmingtheiot.gda.app.DeviceDataManager;
+
+/**
+ * Measures {@link DeviceDataManager} message dispatch with all
+ * connections disabled, so only in-process handling is timed.
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeviceDataManagerBenchmark
+{
+	// private var's
+	
+	private DeviceDataManager devDataMgr = null;
+	
+	private ActuatorData          actuatorData = null;
+	private SensorData            sensorData   = null;
+	private SystemPerformanceData sysPerfData  = null;
+	private String                sensorJson   = null;
+	
+	
+	// setup methods
+	
+	@Setup
+	public void setUp()
+	{
+		this.devDataMgr = new DeviceDataManager(false, false, false, false, false);
+		
+		this.actuatorData = new ActuatorData();
+		this.actuatorData.setTypeID(ConfigConst.HVAC_ACTUATOR_TYPE);
+		this.actuatorData.setAsResponse();
+		
+		this.sensorData = new SensorData(ConfigConst.TEMP_SENSOR_TYPE);
+		this.sensorData.setValue(21.3f);
+		
+		this.sysPerfData = new SystemPerformanceData();
+		this.sysPerfData.setCpuUtilization(12.5f);
+		
+		this.sensorJson = DataUtil.getInstance().sensorDataToJson(this.sensorData);
+	}
+	
+	
+	// benchmark methods
+	
+	@Benchmark
+	public boolean handleActuatorCommandResponse()
+	{
+		return this.devDataMgr.handleActuatorCommandResponse(
+			ResourceNameEnum.CDA_ACTUATOR_RESPONSE_RESOURCE, this.actuatorData);
+	}
+	
+	@Benchmark
+	public boolean handleSensorMessage()
+	{
+		return this.devDataMgr.handleSensorMessage(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, this.sensorData);
+	}
+	
+	@Benchmark
+	public boolean handleSystemPerformanceMessage()
+	{
+		return this.devDataMgr.handleSystemPerformanceMessage(
+			ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE, this.sysPerfData);
+	}
+	
+	@Benchmark
+	public boolean decodeAndHandleSensorMessage()
+	{
+		SensorData data = DataUtil.getInstance().jsonToSensorData(this.sensorJson);
+		
+		return this.devDataMgr.handleSensorMessage(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, data);
+	}
+
+}
@@ -0,0 +1,67 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+package programmingtheiot.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import programmingtheiot.common.ResourceNameEnum;
+
+/**
+ * Measures topic-to-enum lookup and resource name chain construction
+ * in {@link ResourceNameEnum}, both of which run on every inbound message.
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceNameEnumBenchmark
+{
+	// private var's
+	
+	private String knownName   = ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE.getResourceName();
+	private String unknownName = "PIOT/Unknown/Resource";
+	
+	
+	// benchmark methods
+	
+	@Benchmark
+	public ResourceNameEnum getEnumFromValueHit()
+	{
+		return ResourceNameEnum.getEnumFromValue(this.knownName);
+	}
+	
+	@Benchmark
+	public ResourceNameEnum getEnumFromValueMiss()
+	{
+		return ResourceNameEnum.getEnumFromValue(this.unknownName);
+	}
+	
+	@Benchmark
+	public List<String> getResourceNameChain()
+	{
+		return ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE.getResourceNameChain();
+	}
+
+}
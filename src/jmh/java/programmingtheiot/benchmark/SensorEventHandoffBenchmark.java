@@ -0,0 +1,154 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+package programmingtheiot.benchmark;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.gda.connection.SensorDataRingBuffer;
+
+/**
+ * Compares handing sensor events from one producer thread to one
+ * consumer thread via an {@link ArrayBlockingQueue} of new
+ * {@link SensorData} instances (the allocating, lock-based path)
+ * with a {@link SensorDataRingBuffer} of pre-allocated slots, for
+ * each ring wait strategy. Run with -prof gc to compare allocation.
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(1)
+@Fork(1)
+public class SensorEventHandoffBenchmark
+{
+	// static
+	
+	private static final ResourceNameEnum RESOURCE = ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE;
+	private static final int CAPACITY = 1024;
+	
+	
+	// benchmark methods
+	
+	@Benchmark
+	public void queueHandoff(QueueState state) throws InterruptedException
+	{
+		SensorData data = new SensorData();
+		data.copyFrom(state.template);
+		
+		state.queue.put(data);
+	}
+	
+	@Benchmark
+	public long ringHandoff(RingState state)
+	{
+		return state.ring.publishEvent(RESOURCE, state.template);
+	}
+	
+	
+	// inner classes
+	
+	@State(Scope.Benchmark)
+	public static class QueueState
+	{
+		private ArrayBlockingQueue<SensorData> queue = null;
+		private SensorData template = null;
+		private Thread consumer = null;
+		
+		private volatile float sum = 0.0f;
+		
+		@Setup(Level.Trial)
+		public void setUp()
+		{
+			this.queue = new ArrayBlockingQueue<>(CAPACITY);
+			this.template = createTemplate();
+			
+			this.consumer = new Thread(() -> {
+				try {
+					while (true) {
+						this.sum += this.queue.take().getValue();
+					}
+				} catch (InterruptedException e) {
+					// stopped
+				}
+			}, "QueueConsumer");
+			
+			this.consumer.setDaemon(true);
+			this.consumer.start();
+		}
+		
+		@TearDown(Level.Trial)
+		public void tearDown() throws InterruptedException
+		{
+			this.consumer.interrupt();
+			this.consumer.join();
+		}
+	}
+	
+	@State(Scope.Benchmark)
+	public static class RingState
+	{
+		@Param({"BUSY_SPIN", "YIELD", "BLOCK"})
+		public String waitStrategy;
+		
+		private SensorDataRingBuffer ring = null;
+		private SensorData template = null;
+		
+		private volatile float sum = 0.0f;
+		
+		@Setup(Level.Trial)
+		public void setUp()
+		{
+			this.ring = new SensorDataRingBuffer(CAPACITY, SensorDataRingBuffer.WaitStrategy.valueOf(this.waitStrategy));
+			this.template = createTemplate();
+			
+			this.ring.addHandler("consumer", (resource, data, sequence, endOfBatch) -> this.sum += data.getValue());
+			this.ring.startRing();
+		}
+		
+		@TearDown(Level.Trial)
+		public void tearDown()
+		{
+			this.ring.stopRing();
+		}
+	}
+	
+	
+	// private methods
+	
+	private static SensorData createTemplate()
+	{
+		SensorData data = new SensorData(ConfigConst.TEMP_SENSOR_TYPE);
+		data.setValue(21.3f);
+		
+		return data;
+	}
+
+}
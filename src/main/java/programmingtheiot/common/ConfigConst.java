@@ -31,6 +31,8 @@ public class ConfigConst
 	public static final String DEFAULT_MQTT_SECURE_PROTOCOL = "ssl";
 	public static final int    DEFAULT_MQTT_PORT        = 1883;
 	public static final int    DEFAULT_MQTT_SECURE_PORT = 8883;
+	public static final int    DEFAULT_SMTP_PORT        = 25;
+	public static final int    DEFAULT_SMTP_SECURE_PORT = 587;
 	public static final int    DEFAULT_KEEP_ALIVE       = 60;
 	public static final int    DEFAULT_POLL_CYCLES      = 60;
 	public static final int    DEFAULT_TTL              = 60;
@@ -77,6 +79,7 @@ public class ConfigConst
 	public static final String STATE_DATA_PROP  = "stateData";
 	public static final String VALUE_PROP       = "value";
 	public static final String IS_RESPONSE_PROP = "isResponse";
+	public static final String REQUEST_ID_PROP  = "requestID";
 
 	public static final String CPU_UTIL_PROP    = "cpuUtil";
 	public static final String DISK_UTIL_PROP   = "diskUtil";
@@ -270,6 +273,206 @@ public class ConfigConst
 	public static final String KEEP_ALIVE_KEY       = "keepAlive";
 	public static final String DEFAULT_QOS_KEY      = "defaultQos";
 	public static final String ENABLE_CON_MSGS_KEY  = "enableConfirmedMsgs";
+
+	public static final String ENABLE_ADAPTIVE_POLLING_KEY   = "enableAdaptivePolling";
+	public static final String MIN_POLL_CYCLES_KEY           = "minPollCycleSecs";
+	public static final String POLL_BACKOFF_FACTOR_KEY       = "pollBackoffFactor";
+	public static final String CPU_DELTA_THRESHOLD_KEY       = "cpuDeltaThreshold";
+	public static final String MEM_DELTA_THRESHOLD_KEY       = "memDeltaThreshold";
+	public static final String ENABLE_CHANGE_ONLY_REPORT_KEY = "enableChangeOnlyReporting";
+	public static final String REPORT_DEADBAND_KEY           = "reportDeadband";
+
+	public static final int   DEFAULT_MIN_POLL_CYCLES     = 1;
+	public static final float DEFAULT_POLL_BACKOFF_FACTOR = 2.0f;
+	public static final float DEFAULT_CPU_DELTA_THRESHOLD = 10.0f;
+	public static final float DEFAULT_MEM_DELTA_THRESHOLD = 10.0f;
+	public static final float DEFAULT_REPORT_DEADBAND     = 1.0f;
+
+	public static final String TOPIC_ALIAS_MAX_KEY   = "topicAliasMax";
+	public static final String RECEIVE_MAX_KEY       = "receiveMax";
+	public static final String SHARED_SUB_GROUP_KEY  = "sharedSubGroup";
+	public static final String MSG_EXPIRY_SECS_KEY   = "msgExpirySecs";
+	public static final String SESSION_EXPIRY_SECS_KEY = "sessionExpirySecs";
+
+	public static final String SHARED_SUB_PREFIX        = "$share/";
+	public static final int    DEFAULT_TOPIC_ALIAS_MAX  = 16;
+	public static final int    DEFAULT_RECEIVE_MAX      = 64;
+	public static final int    DEFAULT_MSG_EXPIRY_SECS  = 0;
+	public static final int    DEFAULT_SESSION_EXPIRY_SECS = 0;
+
+	public static final String USE_MQTTV5_CLIENT_KEY         = "useMqttv5Client";
+	public static final String ENABLE_PARTITIONING_KEY       = "enablePartitioning";
+	public static final String INSTANCE_ID_KEY               = "instanceID";
+	public static final String PARTITION_COUNT_KEY           = "partitionCount";
+	public static final String CLUSTER_HEARTBEAT_MILLIS_KEY  = "clusterHeartbeatMillis";
+	public static final String CLUSTER_MEMBER_TIMEOUT_MILLIS_KEY = "clusterMemberTimeoutMillis";
+
+	public static final String CLUSTER_MEMBER_TOPIC_BASE     = PRODUCT_NAME + "/" + GATEWAY_DEVICE + "/Cluster/Member/";
+	public static final int    DEFAULT_PARTITION_COUNT       = 64;
+	public static final int    DEFAULT_CLUSTER_HEARTBEAT_MILLIS = 1000;
+	public static final int    DEFAULT_CLUSTER_MEMBER_TIMEOUT_MILLIS = 3000;
+
+	public static final String ENABLE_BATCHING_KEY        = "enableBatching";
+	public static final String BATCH_MAX_ITEMS_KEY        = "batchMaxItems";
+	public static final String BATCH_MAX_DELAY_MILLIS_KEY = "batchMaxDelayMillis";
+	public static final String MAX_MESSAGE_SIZE_KEY       = "maxMessageSize";
+	public static final String COMPRESSION_KEY            = "compression";
+
+	public static final String COMPRESSION_NONE           = "none";
+	public static final String COMPRESSION_GZIP           = "gzip";
+	public static final String COMPRESSION_DEFLATE        = "deflate";
+	public static final int    DEFAULT_BATCH_MAX_ITEMS    = 50;
+	public static final int    DEFAULT_BATCH_MAX_DELAY_MILLIS = 5000;
+	public static final int    DEFAULT_MAX_MESSAGE_SIZE   = 131072;
+
+	public static final String ENABLE_CHANGE_FILTER_KEY   = "enableChangeFilter";
+	public static final String ABS_DEADBAND_KEY           = "absDeadband";
+	public static final String REL_DEADBAND_KEY           = "relDeadband";
+	public static final String MAX_SILENCE_MILLIS_KEY     = "maxSilenceMillis";
+
+	public static final float  DEFAULT_ABS_DEADBAND       = 0.0f;
+	public static final float  DEFAULT_REL_DEADBAND       = 0.0f;
+	public static final int    DEFAULT_MAX_SILENCE_MILLIS = 300000;
+
+	public static final String ENABLE_EGRESS_SCHEDULER_KEY = "enableEgressScheduler";
+	public static final String EGRESS_WEIGHTS_KEY          = "egressWeights";
+	public static final String EGRESS_QUEUE_SIZE_KEY       = "egressQueueSize";
+	public static final String EGRESS_BURST_KEY            = "egressBurst";
+	public static final String MQTT_EGRESS_RATE_KEY        = "mqttEgressRate";
+	public static final String CLOUD_EGRESS_RATE_KEY       = "cloudEgressRate";
+	public static final String SMTP_EGRESS_RATE_KEY        = "smtpEgressRate";
+
+	public static final String DEFAULT_EGRESS_WEIGHTS      = "8,4,2,1";
+	public static final int    DEFAULT_EGRESS_QUEUE_SIZE   = 1000;
+	public static final int    DEFAULT_EGRESS_BURST        = 10;
+	public static final float  DEFAULT_EGRESS_RATE         = 0.0f;
+
+	public static final String MAX_MSGS_PER_MINUTE_KEY     = "maxMessagesPerMinute";
+	public static final String DIGEST_WINDOW_MILLIS_KEY    = "digestWindowMillis";
+	public static final String DIGEST_MAX_SAMPLES_KEY      = "digestMaxSamples";
+	public static final String SMTP_TIMEOUT_MILLIS_KEY     = "timeoutMillis";
+
+	public static final int    DEFAULT_MAX_MSGS_PER_MINUTE = 10;
+	public static final int    DEFAULT_DIGEST_WINDOW_MILLIS = 60000;
+	public static final int    DEFAULT_DIGEST_MAX_SAMPLES  = 5;
+	public static final int    DEFAULT_SMTP_TIMEOUT_MILLIS = 10000;
+	public static final String DEFAULT_ALERT_ADDRESS       = "gda@localhost";
+
+	public static final String ENABLE_DEVICE_REGISTRY_KEY   = "enableDeviceRegistry";
+	public static final String REGISTRY_QUEUE_SIZE_KEY      = "registryQueueSize";
+	public static final String REGISTRY_BATCH_SIZE_KEY      = "registryBatchSize";
+	public static final String REGISTRY_SNAPSHOT_FILE_KEY   = "registrySnapshotFile";
+	public static final String REGISTRY_SNAPSHOT_MILLIS_KEY = "registrySnapshotMillis";
+
+	public static final int    DEFAULT_REGISTRY_QUEUE_SIZE  = 10000;
+	public static final int    DEFAULT_REGISTRY_BATCH_SIZE  = 500;
+	public static final String DEFAULT_REGISTRY_SNAPSHOT_FILE = "/tmp/gda-data/device-registry.dat";
+	public static final int    DEFAULT_REGISTRY_SNAPSHOT_MILLIS = 60000;
+
+	public static final String ENABLE_GEO_INDEX_KEY         = "enableGeoIndex";
+	public static final String GEO_PRECISION_KEY            = "geoPrecision";
+	public static final String GEO_WINDOW_MILLIS_KEY        = "geoWindowMillis";
+	public static final String GEO_CELL_CAPACITY_KEY        = "geoCellCapacity";
+
+	public static final int    DEFAULT_GEO_PRECISION        = 6;
+	public static final int    DEFAULT_GEO_WINDOW_MILLIS    = 300000;
+	public static final int    DEFAULT_GEO_CELL_CAPACITY    = 256;
+
+	public static final String ENABLE_LAST_VALUE_CACHE_KEY  = "enableLastValueCache";
+	public static final String LAST_VALUE_TTL_MILLIS_KEY    = "lastValueTtlMillis";
+
+	public static final int    DEFAULT_LAST_VALUE_TTL_MILLIS = 600000;
+
+	public static final String ENABLE_STATE_SNAPSHOT_KEY    = "enableStateSnapshot";
+	public static final String STATE_SNAPSHOT_CAPACITY_KEY  = "stateSnapshotCapacity";
+
+	public static final int    DEFAULT_STATE_SNAPSHOT_CAPACITY = 32;
+
+	public static final String ENABLE_LAZY_CONNECTORS_KEY   = "enableLazyConnectors";
+	public static final String CONNECT_TIMEOUT_MILLIS_KEY   = "connectTimeoutMillis";
+
+	public static final int    DEFAULT_CONNECT_TIMEOUT_MILLIS = 10000;
+
+	public static final String ENABLE_CERT_WATCHER_KEY      = "enableCertWatcher";
+	public static final String TLS_SESSION_CACHE_SIZE_KEY   = "tlsSessionCacheSize";
+	public static final String TLS_SESSION_TIMEOUT_SECS_KEY = "tlsSessionTimeoutSecs";
+	
+	public static final int    DEFAULT_TLS_SESSION_CACHE_SIZE   = 64;
+	public static final int    DEFAULT_TLS_SESSION_TIMEOUT_SECS = 86400;
+	
+	public static final String ENABLE_RECONNECT_CONTROL_KEY = "enableReconnectControl";
+	public static final String RECONNECT_BASE_MILLIS_KEY    = "reconnectBaseMillis";
+	public static final String RECONNECT_MAX_MILLIS_KEY     = "reconnectMaxMillis";
+	public static final String MAX_CONNECTS_PER_HOST_KEY    = "maxConnectsPerHost";
+	
+	public static final int    DEFAULT_RECONNECT_BASE_MILLIS = 1000;
+	public static final int    DEFAULT_RECONNECT_MAX_MILLIS  = 60000;
+	public static final int    DEFAULT_MAX_CONNECTS_PER_HOST = 2;
+	
+	public static final String ENABLE_SESSION_STORE_KEY        = "enableSessionStore";
+	public static final String SESSION_STORE_DIR_KEY           = "sessionStoreDir";
+	public static final String SESSION_STORE_COMPACT_BYTES_KEY = "sessionStoreCompactBytes";
+	
+	public static final String DEFAULT_SESSION_STORE_DIR           = "/tmp/gda-mqtt-session";
+	public static final int    DEFAULT_SESSION_STORE_COMPACT_BYTES = 4 * 1024 * 1024;
+	
+	public static final String MAX_INFLIGHT_WAIT_MILLIS_KEY     = "maxInflightWaitMillis";
+	public static final int    DEFAULT_MAX_INFLIGHT_WAIT_MILLIS = 1000;
+	
+	public static final String ENABLE_QOS_POLICY_KEY      = "enableQosPolicy";
+	public static final String QOS_POLICY_KEY             = "qosPolicy";
+	public static final String QOS_LATENCY_SLO_MILLIS_KEY = "qosLatencySloMillis";
+	public static final String QOS_SATURATION_PCT_KEY     = "qosSaturationPct";
+	
+	public static final int    DEFAULT_QOS_LATENCY_SLO_MILLIS = 500;
+	public static final int    DEFAULT_QOS_SATURATION_PCT     = 80;
+	
+	public static final String ENABLE_ROLLUPS_KEY = "enableRollups";
+	
+	public static final String ENABLE_RETENTION_KEY           = "enableRetention";
+	public static final String RETENTION_DEFAULT_KEY          = "retentionDefault";
+	public static final String RETENTION_POLICY_KEY           = "retentionPolicy";
+	public static final String MAX_RAW_SAMPLES_KEY            = "maxRawSamples";
+	public static final String COMPACTION_INTERVAL_MILLIS_KEY = "compactionIntervalMillis";
+	public static final String COMPACTION_BATCH_SIZE_KEY      = "compactionBatchSize";
+	
+	public static final String DEFAULT_RETENTION_POLICY           = "24h/30d/0/0";
+	public static final int    DEFAULT_MAX_RAW_SAMPLES            = 0;
+	public static final int    DEFAULT_COMPACTION_INTERVAL_MILLIS = 60000;
+	public static final int    DEFAULT_COMPACTION_BATCH_SIZE      = 256;
+	
+	public static final String ENABLE_CHANGE_FEED_KEY     = "enableChangeFeed";
+	public static final String CHANGE_FEED_CAPACITY_KEY   = "changeFeedCapacity";
+	public static final String CHANGE_FEED_BATCH_SIZE_KEY = "changeFeedBatchSize";
+	
+	public static final int    DEFAULT_CHANGE_FEED_CAPACITY   = 4096;
+	public static final int    DEFAULT_CHANGE_FEED_BATCH_SIZE = 64;
+	
+	public static final String ENABLE_DATA_DISPATCHER_KEY   = "enableDataDispatcher";
+	public static final String DISPATCH_MAILBOX_SIZE_KEY    = "dispatchMailboxSize";
+	public static final String DISPATCH_OVERFLOW_POLICY_KEY = "dispatchOverflowPolicy";
+	public static final String DISPATCH_BLOCK_MILLIS_KEY    = "dispatchBlockMillis";
+	
+	public static final int    DEFAULT_DISPATCH_MAILBOX_SIZE = 1024;
+	public static final int    DEFAULT_DISPATCH_BLOCK_MILLIS = 100;
+	
+	public static final String ENABLE_SENSOR_RING_KEY        = "enableSensorRing";
+	public static final String SENSOR_RING_SIZE_KEY          = "sensorRingSize";
+	public static final String SENSOR_RING_WAIT_STRATEGY_KEY = "sensorRingWaitStrategy";
+	
+	public static final int    DEFAULT_SENSOR_RING_SIZE = 1024;
+	
+	public static final String ENABLE_COMMAND_TRACKING_KEY   = "enableCommandTracking";
+	public static final String COMMAND_TIMEOUT_MILLIS_KEY    = "commandTimeoutMillis";
+	public static final String COMMAND_WHEEL_TICK_MILLIS_KEY = "commandWheelTickMillis";
+	public static final String COMMAND_WHEEL_SIZE_KEY        = "commandWheelSize";
+	public static final String MAX_OUTSTANDING_COMMANDS_KEY  = "maxOutstandingCommands";
+	
+	public static final long   DEFAULT_REQUEST_ID               = 0L;
+	public static final int    DEFAULT_COMMAND_TIMEOUT_MILLIS    = 10000;
+	public static final int    DEFAULT_COMMAND_WHEEL_TICK_MILLIS = 100;
+	public static final int    DEFAULT_COMMAND_WHEEL_SIZE        = 512;
+	public static final int    DEFAULT_MAX_OUTSTANDING_COMMANDS  = 65536;
 	
 	public static final String IMAGE_PREPROCESS_PATH_KEY = "imgPreprocessPath";
 	
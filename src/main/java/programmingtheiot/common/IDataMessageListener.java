@@ -8,7 +8,10 @@
 
 package programmingtheiot.common;
 
+import java.nio.ByteBuffer;
+
 import programmingtheiot.data.ActuatorData;
+import programmingtheiot.data.DataUtil;
 import programmingtheiot.data.SensorData;
 import programmingtheiot.data.SystemPerformanceData;
 
@@ -49,6 +52,26 @@ public interface IDataMessageListener
 	 */
 	public boolean handleIncomingMessage(ResourceNameEnum resourceName, String msg);
 	
+	/**
+	 * Callback signature for raw (undecoded) data message passing using the
+	 * given parameters. The buffer wraps the transport payload as received;
+	 * implementations that only need a subset of the bytes, or that parse
+	 * directly via {@link programmingtheiot.data.DataUtil}, avoid copying the
+	 * payload into a String.
+	 * <p>
+	 * The default implementation decodes the payload as UTF-8 and delegates
+	 * to {@link #handleIncomingMessage(ResourceNameEnum, String)}.
+	 * 
+	 * @param resourceName The enum representing the String resource name.
+	 * @param data The payload bytes from a connection using either MQTT or CoAP.
+	 * The buffer's position should not be modified.
+	 * @return True on success; false otherwise.
+	 */
+	public default boolean handleIncomingMessage(ResourceNameEnum resourceName, ByteBuffer data)
+	{
+		return handleIncomingMessage(resourceName, DataUtil.decodeToString(data));
+	}
+	
 	/**
 	 * Callback signature for data message passing using the given parameters.
 	 * 
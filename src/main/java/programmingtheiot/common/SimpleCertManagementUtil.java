@@ -9,26 +9,54 @@
 package programmingtheiot.common;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManagerFactory;
 
 /**
  * A simple utility class that permits the loading, and in-memory
  * storage, of a given certificate that adheres to X.509 format.
+ * <p>
+ * Each loaded {@link SSLContext} is cached by certificate path and
+ * socket type, and validated against the file's content hash, so
+ * repeated connects don't re-parse the certificate. The returned
+ * {@link SSLSocketFactory} delegates to the current context, which
+ * means a rotated certificate (detected on the next load, or by the
+ * optional file watcher) is swapped in for new connections without
+ * callers having to re-fetch the factory. Reusing the same context
+ * also lets the JSSE client session cache resume TLS sessions
+ * (session IDs on TLS 1.2, session tickets on TLS 1.3) on reconnect.
  * 
  */
 public class SimpleCertManagementUtil
@@ -40,9 +68,10 @@ public class SimpleCertManagementUtil
 	
 	private static final SimpleCertManagementUtil _Instance = new SimpleCertManagementUtil();
 	
-	// other options include SSL and TLSv1.3
-	public static final String DEFAULT_SECURE_SOCKET_TYPE = "TLSv1.2";
+	// a TLSv1.3 context also negotiates TLSv1.2 with servers that don't support 1.3
+	public static final String DEFAULT_SECURE_SOCKET_TYPE = "TLSv1.3";
 	public static final String DEFAULT_CERTIFICATE_TYPE = "X.509";
+	public static final String CONTENT_HASH_ALGORITHM = "SHA-256";
 	
 	/**
 	 * Returns the Singleton instance of {@link SimpleCertManagementUtil}.
@@ -57,6 +86,19 @@ public class SimpleCertManagementUtil
 	
 	// private var's
 	
+	private Map<String, CachedContext> contextCache = new ConcurrentHashMap<>();
+	private Map<Path, Set<String>> watchedDirs = new ConcurrentHashMap<>();
+	
+	private AtomicLong cacheHitCount = new AtomicLong(0L);
+	private AtomicLong reloadCount   = new AtomicLong(0L);
+	
+	private int sessionCacheSize   = ConfigConst.DEFAULT_TLS_SESSION_CACHE_SIZE;
+	private int sessionTimeoutSecs = ConfigConst.DEFAULT_TLS_SESSION_TIMEOUT_SECS;
+	
+	private boolean      enableCertWatcher = false;
+	private WatchService watchService = null;
+	private Thread       watcherThread = null;
+	
 	
 	// constructors
 	
@@ -67,6 +109,17 @@ public class SimpleCertManagementUtil
 	private SimpleCertManagementUtil()
 	{
 		super();
+		
+		ConfigUtil configUtil = ConfigUtil.getInstance();
+		
+		this.enableCertWatcher =
+			configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_CERT_WATCHER_KEY);
+		this.sessionCacheSize =
+			configUtil.getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.TLS_SESSION_CACHE_SIZE_KEY, ConfigConst.DEFAULT_TLS_SESSION_CACHE_SIZE);
+		this.sessionTimeoutSecs =
+			configUtil.getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.TLS_SESSION_TIMEOUT_SECS_KEY, ConfigConst.DEFAULT_TLS_SESSION_TIMEOUT_SECS);
 	}
 	
 	
@@ -96,6 +149,123 @@ public class SimpleCertManagementUtil
 		return loadCertificate(fileName, DEFAULT_CERTIFICATE_TYPE, DEFAULT_SECURE_SOCKET_TYPE);
 	}
 	
+	/**
+	 * Removes all cached SSL contexts. Factories previously handed out
+	 * keep working with the context they last held.
+	 * 
+	 */
+	public void clearCache()
+	{
+		this.contextCache.clear();
+	}
+	
+	/**
+	 * Returns the number of certificate loads served from the cache.
+	 * 
+	 * @return long
+	 */
+	public long getCacheHitCount()
+	{
+		return this.cacheHitCount.get();
+	}
+	
+	/**
+	 * Returns the number of times a cached context was rebuilt
+	 * because its certificate file changed.
+	 * 
+	 * @return long
+	 */
+	public long getReloadCount()
+	{
+		return this.reloadCount.get();
+	}
+	
+	/**
+	 * Re-reads the given certificate file and, if its content hash
+	 * changed, swaps a new context into every cached socket factory
+	 * that uses it.
+	 * 
+	 * @param fileName The certificate file name to refresh.
+	 * @return boolean True if at least one context was reloaded.
+	 */
+	public boolean refreshCertificate(String fileName)
+	{
+		String  path     = toCanonicalPath(fileName);
+		boolean reloaded = false;
+		
+		if (path != null) {
+			for (CachedContext cachedContext : this.contextCache.values()) {
+				if (cachedContext.path.equals(path)) {
+					reloaded |= refreshCachedContext(cachedContext, true);
+				}
+			}
+		}
+		
+		return reloaded;
+	}
+	
+	/**
+	 * Starts a daemon thread that watches the directories of all
+	 * cached certificate files, and refreshes a file's contexts when
+	 * it is created or modified. Certificates loaded after this call
+	 * are watched as well.
+	 * 
+	 * @return boolean True if the watcher is running.
+	 */
+	public synchronized boolean startCertWatcher()
+	{
+		if (this.watcherThread != null) {
+			return true;
+		}
+		
+		try {
+			this.watchService = FileSystems.getDefault().newWatchService();
+		} catch (IOException e) {
+			_Logger.log(Level.WARNING, "Failed to create certificate file watcher.", e);
+			
+			return false;
+		}
+		
+		for (CachedContext cachedContext : this.contextCache.values()) {
+			watchFile(cachedContext.path);
+		}
+		
+		this.watcherThread = new Thread(this::runCertWatcher, "CertWatcher");
+		this.watcherThread.setDaemon(true);
+		this.watcherThread.start();
+		
+		_Logger.info("Certificate file watcher started.");
+		
+		return true;
+	}
+	
+	/**
+	 * Stops the certificate file watcher, if running.
+	 * 
+	 * @return boolean True if the watcher was running and is now stopped.
+	 */
+	public synchronized boolean stopCertWatcher()
+	{
+		if (this.watcherThread == null) {
+			return false;
+		}
+		
+		try {
+			this.watchService.close();
+		} catch (IOException e) {
+			_Logger.log(Level.WARNING, "Failed to close certificate file watcher.", e);
+		}
+		
+		this.watcherThread.interrupt();
+		this.watcherThread = null;
+		this.watchService  = null;
+		this.watchedDirs.clear();
+		
+		_Logger.info("Certificate file watcher stopped.");
+		
+		return true;
+	}
+	
 	
 	// private methods
 	
@@ -147,7 +317,67 @@ public class SimpleCertManagementUtil
 				"Socket type is null or empty. Using default: " + socksType);
 		}
 		
-		// load server cert first
+		String path = toCanonicalPath(serverCrtFileName);
+		String key  = path + "|" + certType + "|" + socksType;
+		
+		CachedContext cachedContext = this.contextCache.get(key);
+		
+		if (cachedContext != null) {
+			if (refreshCachedContext(cachedContext, false)) {
+				_Logger.info("Certificate changed on disk. Reloaded: " + serverCrtFileName);
+			} else {
+				this.cacheHitCount.incrementAndGet();
+			}
+			
+			return cachedContext.socketFactory;
+		}
+		
+		synchronized (this.contextCache) {
+			cachedContext = this.contextCache.get(key);
+			
+			if (cachedContext == null) {
+				byte[] certBytes = readCertificate(path);
+				SSLContext sslContext = createContext(path, certBytes, certType, socksType);
+				
+				if (sslContext == null) {
+					return null;
+				}
+				
+				cachedContext = new CachedContext(path, certType, socksType);
+				cachedContext.update(sslContext, certBytes, new File(path));
+				
+				this.contextCache.put(key, cachedContext);
+				
+				if (this.enableCertWatcher) {
+					startCertWatcher();
+				}
+				
+				if (this.watchService != null) {
+					watchFile(path);
+				}
+			}
+		}
+		
+		return cachedContext.socketFactory;
+	}
+	
+	/**
+	 * Builds and initializes a new {@link SSLContext} trusting the
+	 * certificate(s) contained in 'certBytes'.
+	 * 
+	 * @param fileName The certificate file name (used for logging and entry names).
+	 * @param certBytes The raw certificate file contents.
+	 * @param certType The certificate type to load (e.g. "X.509").
+	 * @param socksType The socket type to initialize (e.g. "TLSv1.3").
+	 * @return SSLContext The initialized context, or null on failure.
+	 */
+	private SSLContext createContext(
+		String fileName, byte[] certBytes, String certType, String socksType)
+	{
+		if (certBytes == null) {
+			return null;
+		}
+		
 		SSLContext sslContext = null;
 		
 		try {
@@ -162,7 +392,7 @@ public class SimpleCertManagementUtil
 			_Logger.info(
 				"Configuring " + socksType + " using " + certType);
 			
-			KeyStore keyStore = importCertificate(serverCrtFileName, certType);
+			KeyStore keyStore = importCertificate(fileName, certBytes, certType);
 			
 			TrustManagerFactory trustManagerFactory =
 				TrustManagerFactory.getInstance(
@@ -172,27 +402,178 @@ public class SimpleCertManagementUtil
 			sslContext.init(
 				null, trustManagerFactory.getTrustManagers(), new SecureRandom());
 			
+			// sessions (and TLS 1.3 tickets) are cached per context, so
+			// reconnects through the same context can skip a full handshake
+			SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+			
+			if (sessionContext != null) {
+				sessionContext.setSessionCacheSize(this.sessionCacheSize);
+				sessionContext.setSessionTimeout(this.sessionTimeoutSecs);
+			}
+			
 			_Logger.info(
 				certType + " certificate load and " + socksType +
-				" socket init successful from file: " + serverCrtFileName);
+				" socket init successful from file: " + fileName);
 				
-			return sslContext.getSocketFactory();
+			return sslContext;
 		} catch (Exception e) {
 			_Logger.log(
 				Level.SEVERE,
 				"Failed to initialize and load " + certType +
-				" certificate(s) from file: " + serverCrtFileName,
+				" certificate(s) from file: " + fileName,
 				e);
 		}
 		
 		return null;
 	}
 	
+	/**
+	 * Checks if the certificate file behind 'cachedContext' changed, and
+	 * if so, rebuilds the context and swaps it into the socket factory.
+	 * <p>
+	 * The file's size and modification time are checked first; the
+	 * content hash is only computed when one of them differs, or when
+	 * 'force' is true.
+	 * 
+	 * @param cachedContext The cached context to check.
+	 * @param force If true, always compare the content hash.
+	 * @return boolean True if the context was reloaded.
+	 */
+	private boolean refreshCachedContext(CachedContext cachedContext, boolean force)
+	{
+		File file = new File(cachedContext.path);
+		
+		if (! force && file.lastModified() == cachedContext.lastModified && file.length() == cachedContext.fileSize) {
+			return false;
+		}
+		
+		synchronized (cachedContext) {
+			byte[] certBytes = readCertificate(cachedContext.path);
+			
+			if (certBytes == null) {
+				_Logger.warning("Certificate file unreadable. Keeping current context: " + cachedContext.path);
+				
+				return false;
+			}
+			
+			byte[] contentHash = hash(certBytes);
+			
+			if (Arrays.equals(contentHash, cachedContext.contentHash)) {
+				cachedContext.lastModified = file.lastModified();
+				cachedContext.fileSize     = file.length();
+				
+				return false;
+			}
+			
+			SSLContext sslContext =
+				createContext(cachedContext.path, certBytes, cachedContext.certType, cachedContext.socksType);
+			
+			if (sslContext == null) {
+				_Logger.warning("Rotated certificate is invalid. Keeping current context: " + cachedContext.path);
+				
+				return false;
+			}
+			
+			cachedContext.update(sslContext, certBytes, file);
+			this.reloadCount.incrementAndGet();
+			
+			return true;
+		}
+	}
+	
+	/**
+	 * Reads the full contents of the given certificate file.
+	 * 
+	 * @param fileName The certificate file name.
+	 * @return byte[] The file contents, or null on failure.
+	 */
+	private byte[] readCertificate(String fileName)
+	{
+		try {
+			return Files.readAllBytes(new File(fileName).toPath());
+		} catch (IOException e) {
+			_Logger.log(Level.WARNING, "Failed to read certificate file: " + fileName, e);
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Runs on the watcher thread, refreshing any watched certificate
+	 * file that is created or modified.
+	 * 
+	 */
+	private void runCertWatcher()
+	{
+		WatchService service = this.watchService;
+		
+		while (! Thread.currentThread().isInterrupted()) {
+			WatchKey watchKey = null;
+			
+			try {
+				watchKey = service.take();
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+				break;
+			}
+			
+			Path        dir       = (Path) watchKey.watchable();
+			Set<String> fileNames = this.watchedDirs.get(dir);
+			
+			for (WatchEvent<?> event : watchKey.pollEvents()) {
+				if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+					continue;
+				}
+				
+				Path changedFile = dir.resolve((Path) event.context());
+				
+				if (fileNames != null && fileNames.contains(changedFile.getFileName().toString())) {
+					if (refreshCertificate(changedFile.toString())) {
+						_Logger.info("Rotated certificate loaded: " + changedFile);
+					}
+				}
+			}
+			
+			watchKey.reset();
+		}
+	}
+	
+	/**
+	 * Registers the directory of 'path' with the watch service, if
+	 * not already registered.
+	 * 
+	 * @param path The canonical certificate file path.
+	 */
+	private void watchFile(String path)
+	{
+		Path filePath = new File(path).toPath();
+		Path dir      = filePath.getParent();
+		
+		if (dir == null || this.watchService == null) {
+			return;
+		}
+		
+		Set<String> fileNames = this.watchedDirs.computeIfAbsent(dir, d -> {
+			try {
+				d.register(
+					this.watchService,
+					StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+			} catch (IOException e) {
+				_Logger.log(Level.WARNING, "Failed to watch certificate directory: " + d, e);
+			}
+			
+			return ConcurrentHashMap.newKeySet();
+		});
+		
+		fileNames.add(filePath.getFileName().toString());
+	}
+	
 	/**
 	 * Attempts to import the given certificate file and store as a uniquely
 	 * named keystore reference (based on the filename and available bytes.
 	 * 
 	 * @param fileName The file name of the certificate to process.
+	 * @param certBytes The raw contents of the certificate file.
 	 * @param certType The certificate type to load (e.g. X.509).
 	 * @return KeyStore A reference to the {@link KeyStore} containing
 	 * the certificate.
@@ -202,14 +583,14 @@ public class SimpleCertManagementUtil
 	 * @throws IOException If an IO exception occurs, or if the file is
 	 * available, but has 0 bytes to read.
 	 */
-	private KeyStore importCertificate(String fileName, String certType)
+	private KeyStore importCertificate(String fileName, byte[] certBytes, String certType)
 		throws KeyStoreException, NoSuchAlgorithmException, CertificateException, IOException
 	{
-	    FileInputStream     fis = null;
+	    InputStream         fis = null;
 	    KeyStore            ks  = null;
 	    
 	    try {
-	    	fis = new FileInputStream(fileName);
+	    	fis = new ByteArrayInputStream(certBytes);
 	    	ks  = KeyStore.getInstance(KeyStore.getDefaultType());
 	    	
 	    	BufferedInputStream bis = new BufferedInputStream(fis);
@@ -251,7 +632,7 @@ public class SimpleCertManagementUtil
 	    		} catch (Exception e) {
 	    			_Logger.log(
 	    				Level.WARNING,
-	    				"Failed to close FileInputStream: " + fileName,
+	    				"Failed to close InputStream: " + fileName,
 	    				e);
 	    		} finally {
 	    			fis = null;
@@ -285,5 +666,143 @@ public class SimpleCertManagementUtil
 		
 		return false;
 	}
+	
+	/**
+	 * Returns the content hash of the given bytes.
+	 * 
+	 * @param data The bytes to hash.
+	 * @return byte[] The hash, or an empty array if the algorithm is unavailable.
+	 */
+	private static byte[] hash(byte[] data)
+	{
+		try {
+			return MessageDigest.getInstance(CONTENT_HASH_ALGORITHM).digest(data);
+		} catch (NoSuchAlgorithmException e) {
+			return new byte[0];
+		}
+	}
+	
+	/**
+	 * Returns the canonical path of 'fileName', falling back to the
+	 * absolute path if it can't be resolved.
+	 * 
+	 * @param fileName The file name.
+	 * @return String The path, or null if 'fileName' is null.
+	 */
+	private static String toCanonicalPath(String fileName)
+	{
+		if (fileName == null) {
+			return null;
+		}
+		
+		File file = new File(fileName);
+		
+		try {
+			return file.getCanonicalPath();
+		} catch (IOException e) {
+			return file.getAbsolutePath();
+		}
+	}
+	
+	
+	// inner classes
+	
+	/**
+	 * A cached context for a single certificate file and socket type.
+	 * 
+	 */
+	private static class CachedContext
+	{
+		private final String path;
+		private final String certType;
+		private final String socksType;
+		private final ReloadableSocketFactory socketFactory = new ReloadableSocketFactory();
+		
+		private volatile byte[] contentHash = null;
+		private volatile long   lastModified = 0L;
+		private volatile long   fileSize = 0L;
+		
+		CachedContext(String path, String certType, String socksType)
+		{
+			this.path      = path;
+			this.certType  = certType;
+			this.socksType = socksType;
+		}
+		
+		void update(SSLContext sslContext, byte[] certBytes, File file)
+		{
+			this.contentHash  = hash(certBytes);
+			this.lastModified = file.lastModified();
+			this.fileSize     = file.length();
+			
+			this.socketFactory.delegate = sslContext.getSocketFactory();
+		}
+	}
+	
+	/**
+	 * An {@link SSLSocketFactory} that delegates to the current socket
+	 * factory of a cached context. The delegate is replaced atomically
+	 * when the certificate rotates; sockets already created are not
+	 * affected.
+	 * 
+	 */
+	private static class ReloadableSocketFactory extends SSLSocketFactory
+	{
+		private volatile SSLSocketFactory delegate = null;
+		
+		@Override
+		public String[] getDefaultCipherSuites()
+		{
+			return this.delegate.getDefaultCipherSuites();
+		}
+		
+		@Override
+		public String[] getSupportedCipherSuites()
+		{
+			return this.delegate.getSupportedCipherSuites();
+		}
+		
+		@Override
+		public Socket createSocket() throws IOException
+		{
+			return this.delegate.createSocket();
+		}
+		
+		@Override
+		public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException
+		{
+			return this.delegate.createSocket(s, host, port, autoClose);
+		}
+		
+		@Override
+		public Socket createSocket(Socket s, InputStream consumed, boolean autoClose) throws IOException
+		{
+			return this.delegate.createSocket(s, consumed, autoClose);
+		}
+		
+		@Override
+		public Socket createSocket(String host, int port) throws IOException
+		{
+			return this.delegate.createSocket(host, port);
+		}
+		
+		@Override
+		public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException
+		{
+			return this.delegate.createSocket(host, port, localHost, localPort);
+		}
+		
+		@Override
+		public Socket createSocket(InetAddress host, int port) throws IOException
+		{
+			return this.delegate.createSocket(host, port);
+		}
+		
+		@Override
+		public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException
+		{
+			return this.delegate.createSocket(address, port, localAddress, localPort);
+		}
+	}
 
 }
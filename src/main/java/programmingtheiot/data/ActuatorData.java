@@ -26,7 +26,10 @@ public class ActuatorData extends BaseIotData implements Serializable
 	
 	// private var's
 	
-    
+	private int     command    = ConfigConst.DEFAULT_COMMAND;
+	private float   value      = ConfigConst.DEFAULT_VAL;
+	private boolean isResponse = false;
+	private long    requestID  = ConfigConst.DEFAULT_REQUEST_ID;
     
 	// constructors
 	
@@ -44,29 +47,56 @@ public class ActuatorData extends BaseIotData implements Serializable
 	
 	public int getCommand()
 	{
-		return 0;
+		return this.command;
+	}
+	
+	/**
+	 * Returns the ID that correlates a command with its response.
+	 * 
+	 * @return long The request ID, or {@link ConfigConst#DEFAULT_REQUEST_ID} if not set.
+	 */
+	public long getRequestID()
+	{
+		return this.requestID;
 	}
 	
 	public float getValue()
 	{
-		return 0.0f;
+		return this.value;
 	}
 	
 	public boolean isResponseFlagEnabled()
 	{
-		return false;
+		return this.isResponse;
 	}
 	
 	public void setAsResponse()
 	{
+		updateTimeStamp();
+		this.isResponse = true;
 	}
 	
 	public void setCommand(int command)
 	{
+		updateTimeStamp();
+		this.command = command;
+	}
+	
+	/**
+	 * Sets the ID that correlates a command with its response. The CDA
+	 * echoes it back in the response.
+	 * 
+	 * @param requestID The request ID.
+	 */
+	public void setRequestID(long requestID)
+	{
+		this.requestID = requestID;
 	}
 	
 	public void setValue(float val)
 	{
+		updateTimeStamp();
+		this.value = val;
 	}
 	
 	/**
@@ -82,6 +112,7 @@ public class ActuatorData extends BaseIotData implements Serializable
 		sb.append(',');
 		sb.append(ConfigConst.COMMAND_PROP).append('=').append(this.getCommand()).append(',');
 		sb.append(ConfigConst.IS_RESPONSE_PROP).append('=').append(this.isResponseFlagEnabled()).append(',');
+		sb.append(ConfigConst.REQUEST_ID_PROP).append('=').append(this.getRequestID()).append(',');
 		sb.append(ConfigConst.VALUE_PROP).append('=').append(this.getValue());
 		
 		return sb.toString();
@@ -95,6 +126,17 @@ public class ActuatorData extends BaseIotData implements Serializable
 	 */
 	protected void handleUpdateData(BaseIotData data)
 	{
+		if (data instanceof ActuatorData) {
+			ActuatorData aData = (ActuatorData) data;
+			
+			this.setCommand(aData.getCommand());
+			this.setValue(aData.getValue());
+			this.setRequestID(aData.getRequestID());
+			
+			if (aData.isResponseFlagEnabled()) {
+				this.isResponse = true;
+			}
+		}
 	}
 	
 }
@@ -326,6 +326,27 @@ public abstract class BaseIotData implements Serializable
 	
 	// protected methods
 	
+	/**
+	 * Copies all base properties of 'data' - including its timestamp - into
+	 * this instance as-is. Unlike {@see #updateData(BaseIotData)}, nothing is
+	 * regenerated, so a pre-allocated instance can be refilled without
+	 * allocating. Sub-classes use this to implement their own copy methods.
+	 * 
+	 * @param data The BaseIotData instance to copy from.
+	 */
+	protected final void copyBaseData(BaseIotData data)
+	{
+		this.name            = data.name;
+		this.timeStamp       = data.timeStamp;
+		this.timeStampMillis = data.timeStampMillis;
+		this.statusCode      = data.statusCode;
+		this.typeID          = data.typeID;
+		this.locationID      = data.locationID;
+		this.latitude        = data.latitude;
+		this.longitude       = data.longitude;
+		this.elevation       = data.elevation;
+	}
+	
 	/**
 	 * Template method to handle data update for the sub-class.
 	 * 
@@ -6,6 +6,12 @@
 
 package programmingtheiot.data;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.logging.Logger;
 
 import com.google.gson.Gson;
@@ -69,6 +75,15 @@ public class DataUtil
 		return null;
 	}
 	
+	public String systemStateDataToJson(SystemStateData sysStateData)
+	{
+		if (sysStateData != null) {
+			String jsonData = this.gson.toJson(sysStateData);
+			return jsonData;
+		}
+		return null;
+	}
+	
 	public ActuatorData jsonToActuatorData(String jsonData)
 	{
 		if (jsonData != null && jsonData.trim().length() > 0) {
@@ -95,4 +110,141 @@ public class DataUtil
 		}
 		return null;
 	}
+	
+	public SystemStateData jsonToSystemStateData(String jsonData)
+	{
+		if (jsonData != null && jsonData.trim().length() > 0) {
+			SystemStateData data = this.gson.fromJson(jsonData, SystemStateData.class);
+			return data;
+		}
+		return null;
+	}
+	
+	public ActuatorData jsonToActuatorData(ByteBuffer jsonData)
+	{
+		return fromJson(jsonData, ActuatorData.class);
+	}
+	
+	public SensorData jsonToSensorData(ByteBuffer jsonData)
+	{
+		return fromJson(jsonData, SensorData.class);
+	}
+	
+	public SystemPerformanceData jsonToSystemPerformanceData(ByteBuffer jsonData)
+	{
+		return fromJson(jsonData, SystemPerformanceData.class);
+	}
+	
+	public SystemStateData jsonToSystemStateData(ByteBuffer jsonData)
+	{
+		return fromJson(jsonData, SystemStateData.class);
+	}
+	
+	/**
+	 * Decodes the remaining bytes of the given buffer as UTF-8 text.
+	 * The buffer's position is left unchanged.
+	 * 
+	 * @param data The buffer to decode.
+	 * @return String The decoded text, or null if data is null.
+	 */
+	public static String decodeToString(ByteBuffer data)
+	{
+		if (data != null) {
+			return StandardCharsets.UTF_8.decode(data.duplicate()).toString();
+		}
+		return null;
+	}
+	
+	// private methods
+	
+	/**
+	 * Parses UTF-8 JSON straight from the remaining bytes of the buffer,
+	 * streaming them through the JSON reader rather than first copying
+	 * the whole payload into a String. The buffer's position is left
+	 * unchanged.
+	 * <p>
+	 * Returns null for a null or blank buffer, or when the first
+	 * non-whitespace byte cannot start a JSON object.
+	 * 
+	 * @param jsonData The buffer holding the UTF-8 encoded JSON.
+	 * @param type The target class.
+	 * @return T The decoded instance, or null.
+	 */
+	private <T> T fromJson(ByteBuffer jsonData, Class<T> type)
+	{
+		if (jsonData == null) {
+			return null;
+		}
+		
+		ByteBuffer buf = jsonData.duplicate();
+		
+		while (buf.hasRemaining() && Character.isWhitespace(buf.get(buf.position()))) {
+			buf.position(buf.position() + 1);
+		}
+		
+		if (! buf.hasRemaining()) {
+			return null;
+		}
+		
+		if (buf.get(buf.position()) != '{') {
+			_Logger.fine("Payload is not a JSON object. Ignoring " + buf.remaining() + " bytes.");
+			
+			return null;
+		}
+		
+		if (buf.hasArray()) {
+			// heap buffers (e.g. from ByteBuffer.wrap()) can be read in place
+			InputStream in = new ByteArrayInputStream(
+				buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+			
+			return this.gson.fromJson(new InputStreamReader(in, StandardCharsets.UTF_8), type);
+		}
+		
+		Reader reader = new InputStreamReader(new ByteBufferInputStream(buf), StandardCharsets.UTF_8);
+		
+		return this.gson.fromJson(reader, type);
+	}
+	
+	
+	// inner classes
+	
+	/**
+	 * Minimal InputStream view over a ByteBuffer, used for direct
+	 * buffers that have no accessible backing array.
+	 * 
+	 */
+	private static class ByteBufferInputStream extends InputStream
+	{
+		private final ByteBuffer buf;
+		
+		ByteBufferInputStream(ByteBuffer buf)
+		{
+			this.buf = buf;
+		}
+		
+		@Override
+		public int read()
+		{
+			return this.buf.hasRemaining() ? (this.buf.get() & 0xFF) : -1;
+		}
+		
+		@Override
+		public int read(byte[] bytes, int off, int len)
+		{
+			if (! this.buf.hasRemaining()) {
+				return -1;
+			}
+			
+			int count = Math.min(len, this.buf.remaining());
+			this.buf.get(bytes, off, count);
+			
+			return count;
+		}
+		
+		@Override
+		public int available()
+		{
+			return this.buf.remaining();
+		}
+	}
 }
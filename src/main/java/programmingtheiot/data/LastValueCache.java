@@ -0,0 +1,430 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.data;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.common.ResourceNameEnum;
+
+/**
+ * Holds the most recent {@link BaseIotData} received for every
+ * resource / location ID / type ID combination.
+ * <p>
+ * Updates replace an immutable entry in a concurrent map, so reads
+ * never lock. An entry older than the TTL is treated as absent by all
+ * reads, and expired entries are removed as new data arrives. The JSON
+ * form of each entry is created on first request and then reused, so
+ * repeated queries for an unchanged value don't re-serialize it.
+ * 
+ */
+public class LastValueCache
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(LastValueCache.class.getName());
+	
+	
+	// private var's
+	
+	private final Map<ResourceNameEnum, ConcurrentHashMap<DataKey, Entry>> resourceMap =
+		new EnumMap<>(ResourceNameEnum.class);
+	
+	private long ttlMillis = ConfigConst.DEFAULT_LAST_VALUE_TTL_MILLIS;
+	
+	private volatile long lastEvictMillis = 0L;
+	
+	private final AtomicLong updateCount  = new AtomicLong();
+	private final AtomicLong hitCount     = new AtomicLong();
+	private final AtomicLong missCount    = new AtomicLong();
+	private final AtomicLong evictedCount = new AtomicLong();
+	
+	
+	// constructors
+	
+	/**
+	 * Default. Reads the TTL from the {@link ConfigConst#GATEWAY_DEVICE} section.
+	 * 
+	 */
+	public LastValueCache()
+	{
+		this(
+			ConfigUtil.getInstance().getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.LAST_VALUE_TTL_MILLIS_KEY, ConfigConst.DEFAULT_LAST_VALUE_TTL_MILLIS));
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param ttlMillis The time after which an entry that hasn't been updated is stale.
+	 */
+	public LastValueCache(long ttlMillis)
+	{
+		super();
+		
+		if (ttlMillis > 0L) {
+			this.ttlMillis = ttlMillis;
+		}
+		
+		// populated up front so the outer map is read-only afterwards
+		for (ResourceNameEnum resource : ResourceNameEnum.values()) {
+			this.resourceMap.put(resource, new ConcurrentHashMap<>());
+		}
+		
+		_Logger.info("Last value cache created. TTL: " + this.ttlMillis + " ms");
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Stores the given data as the latest value for its resource,
+	 * location ID and type ID.
+	 * 
+	 * @param resource The resource the data arrived on.
+	 * @param data The data.
+	 * @return boolean True if stored; false if either parameter is null.
+	 */
+	public boolean update(ResourceNameEnum resource, BaseIotData data)
+	{
+		return update(resource, data, System.currentTimeMillis());
+	}
+	
+	/**
+	 * Stores the given data as the latest value for its resource,
+	 * location ID and type ID.
+	 * 
+	 * @param resource The resource the data arrived on.
+	 * @param data The data.
+	 * @param timeMillis The receive time.
+	 * @return boolean True if stored; false if either parameter is null.
+	 */
+	public boolean update(ResourceNameEnum resource, BaseIotData data, long timeMillis)
+	{
+		if (resource == null || data == null) {
+			return false;
+		}
+		
+		this.resourceMap.get(resource).put(new DataKey(data.getLocationID(), data.getTypeID()), new Entry(data, timeMillis));
+		this.updateCount.incrementAndGet();
+		
+		if (timeMillis - this.lastEvictMillis > this.ttlMillis) {
+			this.lastEvictMillis = timeMillis;
+			
+			evictExpired(timeMillis);
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Returns the latest data for the given resource, location ID and type ID.
+	 * 
+	 * @param resource The resource.
+	 * @param locationID The device location ID.
+	 * @param typeID The data type ID.
+	 * @return BaseIotData The data, or null if there is none or it's stale.
+	 */
+	public BaseIotData getLatest(ResourceNameEnum resource, String locationID, int typeID)
+	{
+		Entry entry = getEntry(resource, locationID, typeID);
+		
+		return (entry != null ? entry.data : null);
+	}
+	
+	/**
+	 * Returns the JSON form of the latest data for the given resource,
+	 * location ID and type ID.
+	 * 
+	 * @param resource The resource.
+	 * @param locationID The device location ID.
+	 * @param typeID The data type ID.
+	 * @return String The JSON, or null if there is no data or it's stale.
+	 */
+	public String getLatestJson(ResourceNameEnum resource, String locationID, int typeID)
+	{
+		Entry entry = getEntry(resource, locationID, typeID);
+		
+		return (entry != null ? entry.getJson() : null);
+	}
+	
+	/**
+	 * Returns the latest data of every type for the given resource,
+	 * optionally restricted to one location ID.
+	 * 
+	 * @param resource The resource.
+	 * @param locationID The device location ID, or null for all devices.
+	 * @return List<BaseIotData> The current (non-stale) data.
+	 */
+	public List<BaseIotData> getLatest(ResourceNameEnum resource, String locationID)
+	{
+		List<BaseIotData> dataList = new ArrayList<>();
+		
+		for (Entry entry : getEntries(resource, locationID)) {
+			dataList.add(entry.data);
+		}
+		
+		return dataList;
+	}
+	
+	/**
+	 * Returns the latest data of every type for the given resource,
+	 * optionally restricted to one location ID, as a JSON array.
+	 * 
+	 * @param resource The resource.
+	 * @param locationID The device location ID, or null for all devices.
+	 * @return String The JSON array, or null if there is no current data.
+	 */
+	public String getLatestJson(ResourceNameEnum resource, String locationID)
+	{
+		List<Entry> entries = getEntries(resource, locationID);
+		
+		if (entries.isEmpty()) {
+			return null;
+		}
+		
+		StringBuilder jsonData = new StringBuilder("[");
+		
+		for (int i = 0; i < entries.size(); i++) {
+			if (i > 0) {
+				jsonData.append(',');
+			}
+			
+			jsonData.append(entries.get(i).getJson());
+		}
+		
+		return jsonData.append(']').toString();
+	}
+	
+	/**
+	 * Removes all entries older than the TTL. Called periodically as data
+	 * is updated.
+	 * 
+	 * @param nowMillis The current time.
+	 * @return int The number of entries removed.
+	 */
+	public int evictExpired(long nowMillis)
+	{
+		long cutoff = nowMillis - this.ttlMillis;
+		int removed = 0;
+		
+		for (ConcurrentHashMap<DataKey, Entry> entries : this.resourceMap.values()) {
+			for (Map.Entry<DataKey, Entry> mapEntry : entries.entrySet()) {
+				if (mapEntry.getValue().timeMillis < cutoff && entries.remove(mapEntry.getKey(), mapEntry.getValue())) {
+					removed++;
+				}
+			}
+		}
+		
+		if (removed > 0) {
+			this.evictedCount.addAndGet(removed);
+			
+			_Logger.fine("Evicted " + removed + " stale last value entries.");
+		}
+		
+		return removed;
+	}
+	
+	public long getEvictedCount()
+	{
+		return this.evictedCount.get();
+	}
+	
+	public long getHitCount()
+	{
+		return this.hitCount.get();
+	}
+	
+	public long getMissCount()
+	{
+		return this.missCount.get();
+	}
+	
+	public long getTtlMillis()
+	{
+		return this.ttlMillis;
+	}
+	
+	public long getUpdateCount()
+	{
+		return this.updateCount.get();
+	}
+	
+	/**
+	 * Returns the number of entries, including stale entries not yet evicted.
+	 * 
+	 * @return int
+	 */
+	public int size()
+	{
+		int size = 0;
+		
+		for (ConcurrentHashMap<DataKey, Entry> entries : this.resourceMap.values()) {
+			size += entries.size();
+		}
+		
+		return size;
+	}
+	
+	
+	// private methods
+	
+	private Entry getEntry(ResourceNameEnum resource, String locationID, int typeID)
+	{
+		Entry entry = null;
+		
+		if (resource != null && locationID != null) {
+			entry = this.resourceMap.get(resource).get(new DataKey(locationID, typeID));
+		}
+		
+		if (entry == null || isStale(entry, System.currentTimeMillis())) {
+			this.missCount.incrementAndGet();
+			
+			return null;
+		}
+		
+		this.hitCount.incrementAndGet();
+		
+		return entry;
+	}
+	
+	private List<Entry> getEntries(ResourceNameEnum resource, String locationID)
+	{
+		List<Entry> entryList = new ArrayList<>();
+		
+		if (resource == null) {
+			return entryList;
+		}
+		
+		long nowMillis = System.currentTimeMillis();
+		
+		for (Map.Entry<DataKey, Entry> mapEntry : this.resourceMap.get(resource).entrySet()) {
+			if ((locationID == null || locationID.equals(mapEntry.getKey().locationID)) &&
+				! isStale(mapEntry.getValue(), nowMillis)) {
+				entryList.add(mapEntry.getValue());
+			}
+		}
+		
+		if (entryList.isEmpty()) {
+			this.missCount.incrementAndGet();
+		} else {
+			this.hitCount.incrementAndGet();
+		}
+		
+		return entryList;
+	}
+	
+	private boolean isStale(Entry entry, long nowMillis)
+	{
+		return (nowMillis - entry.timeMillis > this.ttlMillis);
+	}
+	
+	
+	// inner classes
+	
+	/**
+	 * Location ID and type ID pair identifying one value within a resource.
+	 * 
+	 */
+	private static final class DataKey
+	{
+		private final String locationID;
+		private final int    typeID;
+		private final int    hash;
+		
+		DataKey(String locationID, int typeID)
+		{
+			this.locationID = locationID;
+			this.typeID     = typeID;
+			this.hash       = 31 * locationID.hashCode() + typeID;
+		}
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj) {
+				return true;
+			}
+			
+			if (! (obj instanceof DataKey)) {
+				return false;
+			}
+			
+			DataKey key = (DataKey) obj;
+			
+			return (this.typeID == key.typeID && this.locationID.equals(key.locationID));
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return this.hash;
+		}
+	}
+	
+	/**
+	 * An immutable cached value, with its JSON form created on first use.
+	 * 
+	 */
+	private static final class Entry
+	{
+		private final BaseIotData data;
+		private final long        timeMillis;
+		
+		// benign race: concurrent readers may both serialize, with identical results
+		private volatile String json = null;
+		
+		Entry(BaseIotData data, long timeMillis)
+		{
+			this.data       = data;
+			this.timeMillis = timeMillis;
+		}
+		
+		String getJson()
+		{
+			String jsonData = this.json;
+			
+			if (jsonData == null) {
+				jsonData = toJson(this.data);
+				this.json = jsonData;
+			}
+			
+			return jsonData;
+		}
+		
+		private static String toJson(BaseIotData data)
+		{
+			DataUtil dataUtil = DataUtil.getInstance();
+			
+			if (data instanceof SensorData) {
+				return dataUtil.sensorDataToJson((SensorData) data);
+			} else if (data instanceof ActuatorData) {
+				return dataUtil.actuatorDataToJson((ActuatorData) data);
+			} else if (data instanceof SystemPerformanceData) {
+				return dataUtil.systemPerformanceDataToJson((SystemPerformanceData) data);
+			} else if (data instanceof SystemStateData) {
+				return dataUtil.systemStateDataToJson((SystemStateData) data);
+			}
+			
+			return null;
+		}
+	}
+
+}
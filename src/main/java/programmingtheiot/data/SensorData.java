@@ -26,6 +26,7 @@ public class SensorData extends BaseIotData implements Serializable
 	
 	// private var's
 	
+	private float value = ConfigConst.DEFAULT_VAL;
     
 	// constructors
 	
@@ -37,18 +38,38 @@ public class SensorData extends BaseIotData implements Serializable
 	public SensorData(int sensorType)
 	{
 		super();
+		
+		super.setTypeID(sensorType);
 	}
 	
 	
 	// public methods
 	
+	/**
+	 * Copies all properties of 'data', including its timestamp, into this
+	 * instance without allocating. Used to refill pre-allocated instances,
+	 * e.g. the slots of {@link programmingtheiot.gda.connection.SensorDataRingBuffer}.
+	 * 
+	 * @param data The SensorData instance to copy from. Ignored if null.
+	 */
+	public void copyFrom(SensorData data)
+	{
+		if (data != null) {
+			copyBaseData(data);
+			
+			this.value = data.value;
+		}
+	}
+	
 	public float getValue()
 	{
-		return 0.0f;
+		return this.value;
 	}
 	
 	public void setValue(float val)
 	{
+		updateTimeStamp();
+		this.value = val;
 	}
 	
 	/**
@@ -75,6 +96,11 @@ public class SensorData extends BaseIotData implements Serializable
 	 */
 	protected void handleUpdateData(BaseIotData data)
 	{
+		if (data instanceof SensorData) {
+			SensorData sData = (SensorData) data;
+			
+			this.setValue(sData.getValue());
+		}
 	}
 	
 }
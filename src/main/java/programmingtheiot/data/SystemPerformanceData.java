@@ -26,12 +26,18 @@ public class SystemPerformanceData extends BaseIotData implements Serializable
 	
 	// private var's
 	
+	private float cpuUtil  = ConfigConst.DEFAULT_VAL;
+	private float diskUtil = ConfigConst.DEFAULT_VAL;
+	private float memUtil  = ConfigConst.DEFAULT_VAL;
     
 	// constructors
 	
 	public SystemPerformanceData()
 	{
 		super();
+		
+		super.setName(ConfigConst.SYS_PERF_DATA);
+		super.setTypeID(ConfigConst.SYSTEM_PERF_TYPE);
 	}
 	
 	
@@ -39,29 +45,35 @@ public class SystemPerformanceData extends BaseIotData implements Serializable
 	
 	public float getCpuUtilization()
 	{
-		return 0.0f;
+		return this.cpuUtil;
 	}
 	
 	public float getDiskUtilization()
 	{
-		return 0.0f;
+		return this.diskUtil;
 	}
 	
 	public float getMemoryUtilization()
 	{
-		return 0.0f;
+		return this.memUtil;
 	}
 	
 	public void setCpuUtilization(float val)
 	{
+		updateTimeStamp();
+		this.cpuUtil = val;
 	}
 	
 	public void setDiskUtilization(float val)
 	{
+		updateTimeStamp();
+		this.diskUtil = val;
 	}
 	
 	public void setMemoryUtilization(float val)
 	{
+		updateTimeStamp();
+		this.memUtil = val;
 	}
 	
 	/**
@@ -90,6 +102,13 @@ public class SystemPerformanceData extends BaseIotData implements Serializable
 	 */
 	protected void handleUpdateData(BaseIotData data)
 	{
+		if (data instanceof SystemPerformanceData) {
+			SystemPerformanceData sData = (SystemPerformanceData) data;
+			
+			this.setCpuUtilization(sData.getCpuUtilization());
+			this.setDiskUtilization(sData.getDiskUtilization());
+			this.setMemoryUtilization(sData.getMemoryUtilization());
+		}
 	}
 	
 }
@@ -32,13 +32,18 @@ public class SystemStateData extends BaseIotData implements Serializable
 	
 	// private var's
 	
-    
+	private int command = ConfigConst.DEFAULT_COMMAND;
+	
+	private List<SensorData> sensorDataList = new ArrayList<>();
+	private List<SystemPerformanceData> systemPerfDataList = new ArrayList<>();
     
 	// constructors
 	
 	public SystemStateData()
 	{
 		super();
+		
+		super.setName(ConfigConst.SYS_STATE_DATA);
 	}
 	
 	
@@ -46,31 +51,43 @@ public class SystemStateData extends BaseIotData implements Serializable
 	
 	public boolean addSensorData(SensorData data)
 	{
+		if (data != null) {
+			updateTimeStamp();
+			return this.sensorDataList.add(data);
+		}
+		
 		return false;
 	}
 	
 	public boolean addSystemPerformanceData(SystemPerformanceData data)
 	{
+		if (data != null) {
+			updateTimeStamp();
+			return this.systemPerfDataList.add(data);
+		}
+		
 		return false;
 	}
 	
 	public int getCommand()
 	{
-		return 0;
+		return this.command;
 	}
 	
 	public List<SensorData> getSensorDataList()
 	{
-		return null;
+		return this.sensorDataList;
 	}
 	
 	public List<SystemPerformanceData> getSystemPerformanceDataList()
 	{
-		return null;
+		return this.systemPerfDataList;
 	}
 	
 	public void setCommand(int actionCmd)
 	{
+		updateTimeStamp();
+		this.command = actionCmd;
 	}
 	
 	/**
@@ -99,6 +116,15 @@ public class SystemStateData extends BaseIotData implements Serializable
 	 */
 	protected void handleUpdateData(BaseIotData data)
 	{
+		if (data instanceof SystemStateData) {
+			SystemStateData sData = (SystemStateData) data;
+			
+			this.setCommand(sData.getCommand());
+			
+			// copies, so later additions to either instance don't affect the other
+			this.sensorDataList = new ArrayList<>(sData.getSensorDataList());
+			this.systemPerfDataList = new ArrayList<>(sData.getSystemPerformanceDataList());
+		}
 	}
 	
 }
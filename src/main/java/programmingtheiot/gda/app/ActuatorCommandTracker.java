@@ -0,0 +1,535 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.data.ActuatorData;
+
+/**
+ * Correlates actuator commands with their responses by request ID,
+ * and fails commands that aren't answered in time.
+ * <p>
+ * Outstanding commands are kept in a map by request ID and on a
+ * hashed timing wheel: a ring of buckets, one per tick, each holding
+ * a doubly linked list of the commands due in that slot (plus a
+ * round count for timeouts longer than one revolution). Registering,
+ * completing and expiring a command are all O(1), regardless of how
+ * many are outstanding. A single ticker thread advances the wheel.
+ * <p>
+ * Round-trip latency is recorded in a log2 histogram of microseconds,
+ * from which percentiles are estimated.
+ * 
+ */
+public class ActuatorCommandTracker
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(ActuatorCommandTracker.class.getName());
+	
+	private static final int LATENCY_BUCKETS = 40;
+	
+	
+	// private var's
+	
+	private long tickMillis      = ConfigConst.DEFAULT_COMMAND_WHEEL_TICK_MILLIS;
+	private long timeoutMillis   = ConfigConst.DEFAULT_COMMAND_TIMEOUT_MILLIS;
+	private int  maxOutstanding  = ConfigConst.DEFAULT_MAX_OUTSTANDING_COMMANDS;
+	
+	private final PendingCommand[] wheel;
+	private final int mask;
+	
+	private long currentTick = 0L;
+	private long startNanos  = System.nanoTime();
+	
+	private final AtomicLong nextRequestID = new AtomicLong(ConfigConst.DEFAULT_REQUEST_ID);
+	
+	private Map<Long, PendingCommand> pendingCommands = new ConcurrentHashMap<>();
+	
+	private ScheduledExecutorService schedExecSvc = null;
+	
+	private final AtomicLong sentCount      = new AtomicLong(0L);
+	private final AtomicLong completedCount = new AtomicLong(0L);
+	private final AtomicLong timedOutCount  = new AtomicLong(0L);
+	private final AtomicLong rejectedCount  = new AtomicLong(0L);
+	private final AtomicLong latencySumMicros = new AtomicLong(0L);
+	private final AtomicLong latencyMaxMicros = new AtomicLong(0L);
+	
+	private final AtomicLongArray latencyHistogram = new AtomicLongArray(LATENCY_BUCKETS);
+	
+	
+	// constructors
+	
+	/**
+	 * Default. Reads the timeout, wheel tick and size, and outstanding
+	 * command limit from the gateway configuration.
+	 * 
+	 */
+	public ActuatorCommandTracker()
+	{
+		this(
+			ConfigUtil.getInstance().getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.COMMAND_TIMEOUT_MILLIS_KEY, ConfigConst.DEFAULT_COMMAND_TIMEOUT_MILLIS),
+			ConfigUtil.getInstance().getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.COMMAND_WHEEL_TICK_MILLIS_KEY, ConfigConst.DEFAULT_COMMAND_WHEEL_TICK_MILLIS),
+			ConfigUtil.getInstance().getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.COMMAND_WHEEL_SIZE_KEY, ConfigConst.DEFAULT_COMMAND_WHEEL_SIZE),
+			ConfigUtil.getInstance().getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.MAX_OUTSTANDING_COMMANDS_KEY, ConfigConst.DEFAULT_MAX_OUTSTANDING_COMMANDS));
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param timeoutMillis The default time to wait for a response.
+	 * @param tickMillis The wheel tick, i.e. the timeout resolution.
+	 * @param wheelSize The number of wheel buckets, rounded up to a power of two.
+	 * @param maxOutstanding The maximum number of commands awaiting a response.
+	 */
+	public ActuatorCommandTracker(long timeoutMillis, long tickMillis, int wheelSize, int maxOutstanding)
+	{
+		super();
+		
+		if (timeoutMillis > 0L) {
+			this.timeoutMillis = timeoutMillis;
+		}
+		
+		if (tickMillis > 0L) {
+			this.tickMillis = tickMillis;
+		}
+		
+		if (maxOutstanding > 0) {
+			this.maxOutstanding = maxOutstanding;
+		}
+		
+		int size = Integer.highestOneBit(Math.max(2, wheelSize) - 1) << 1;
+		
+		if (size <= 0) {
+			size = ConfigConst.DEFAULT_COMMAND_WHEEL_SIZE;
+		}
+		
+		this.wheel = new PendingCommand[size];
+		this.mask = size - 1;
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Cancels an outstanding command, e.g. because it couldn't be sent.
+	 * 
+	 * @param requestID The command's request ID.
+	 * @param cause The reason, passed to the command's future.
+	 * @return boolean True if the command was outstanding.
+	 */
+	public boolean cancel(long requestID, Throwable cause)
+	{
+		PendingCommand command = this.pendingCommands.remove(requestID);
+		
+		if (command == null) {
+			return false;
+		}
+		
+		synchronized (this) {
+			unlink(command);
+		}
+		
+		command.future.completeExceptionally(cause);
+		
+		return true;
+	}
+	
+	/**
+	 * Completes the outstanding command with the response's request ID.
+	 * 
+	 * @param response The actuator response.
+	 * @return boolean True if the response matched an outstanding command.
+	 */
+	public boolean complete(ActuatorData response)
+	{
+		if (response == null || response.getRequestID() == ConfigConst.DEFAULT_REQUEST_ID) {
+			return false;
+		}
+		
+		PendingCommand command = this.pendingCommands.remove(response.getRequestID());
+		
+		if (command == null) {
+			// late (already timed out), duplicate or not ours
+			_Logger.fine("No outstanding command for response: " + response.getRequestID());
+			
+			return false;
+		}
+		
+		synchronized (this) {
+			unlink(command);
+		}
+		
+		recordLatency(System.nanoTime() - command.sentNanos);
+		this.completedCount.incrementAndGet();
+		
+		command.future.complete(response);
+		
+		return true;
+	}
+	
+	/**
+	 * Advances the wheel to the given time, failing every command whose
+	 * timeout has passed with a {@link TimeoutException}. Called by the
+	 * ticker thread.
+	 * 
+	 * @param nowNanos The current {@link System#nanoTime()}.
+	 * @return int The number of commands that timed out.
+	 */
+	public int expireTimeouts(long nowNanos)
+	{
+		long targetTick = (nowNanos - this.startNanos) / TimeUnit.MILLISECONDS.toNanos(this.tickMillis);
+		List<PendingCommand> expired = null;
+		
+		synchronized (this) {
+			// catch up on any ticks missed while the ticker was delayed
+			while (this.currentTick < targetTick) {
+				++this.currentTick;
+				
+				PendingCommand command = this.wheel[(int) (this.currentTick & this.mask)];
+				
+				while (command != null) {
+					PendingCommand next = command.next;
+					
+					if (command.rounds > 0L) {
+						--command.rounds;
+					} else {
+						unlink(command);
+						
+						if (this.pendingCommands.remove(command.requestID, command)) {
+							if (expired == null) {
+								expired = new ArrayList<>();
+							}
+							
+							expired.add(command);
+						}
+					}
+					
+					command = next;
+				}
+			}
+		}
+		
+		if (expired == null) {
+			return 0;
+		}
+		
+		for (PendingCommand command : expired) {
+			this.timedOutCount.incrementAndGet();
+			
+			command.future.completeExceptionally(
+				new TimeoutException("No response to command " + command.requestID + " in " + command.timeoutMillis + " ms"));
+		}
+		
+		_Logger.fine("Actuator commands timed out: " + expired.size());
+		
+		return expired.size();
+	}
+	
+	/**
+	 * Assigns the command a request ID and tracks it using the default timeout.
+	 * 
+	 * @param command The command about to be sent.
+	 * @return CompletableFuture Completed with the response, or exceptionally on timeout.
+	 */
+	public CompletableFuture<ActuatorData> register(ActuatorData command)
+	{
+		return register(command, this.timeoutMillis);
+	}
+	
+	/**
+	 * Assigns the command a request ID and tracks it. The caller sends
+	 * the command after this returns.
+	 * 
+	 * @param command The command about to be sent.
+	 * @param timeoutMillis The time to wait for a response.
+	 * @return CompletableFuture Completed with the response, or exceptionally on
+	 * timeout or if too many commands are outstanding.
+	 */
+	public CompletableFuture<ActuatorData> register(ActuatorData command, long timeoutMillis)
+	{
+		CompletableFuture<ActuatorData> future = new CompletableFuture<>();
+		
+		if (command == null) {
+			future.completeExceptionally(new IllegalArgumentException("Command is null"));
+			
+			return future;
+		}
+		
+		if (this.pendingCommands.size() >= this.maxOutstanding) {
+			this.rejectedCount.incrementAndGet();
+			future.completeExceptionally(
+				new RejectedExecutionException("Too many outstanding commands: " + this.maxOutstanding));
+			
+			return future;
+		}
+		
+		long timeout = (timeoutMillis > 0L ? timeoutMillis : this.timeoutMillis);
+		long ticks = Math.max(1L, (timeout + this.tickMillis - 1L) / this.tickMillis);
+		long requestID = this.nextRequestID.incrementAndGet();
+		
+		PendingCommand pending = new PendingCommand(requestID, timeout, future);
+		
+		command.setRequestID(requestID);
+		this.pendingCommands.put(requestID, pending);
+		
+		synchronized (this) {
+			pending.rounds = (ticks - 1L) / this.wheel.length;
+			pending.bucket = (int) ((this.currentTick + ticks) & this.mask);
+			
+			link(pending);
+		}
+		
+		this.sentCount.incrementAndGet();
+		
+		return future;
+	}
+	
+	/**
+	 * Starts the ticker that advances the wheel once per tick.
+	 * 
+	 * @return boolean
+	 */
+	public synchronized boolean startTracker()
+	{
+		if (this.schedExecSvc != null) {
+			_Logger.warning("Actuator command tracker already started.");
+			
+			return false;
+		}
+		
+		this.schedExecSvc = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "ActuatorCommandTracker");
+			thread.setDaemon(true);
+			
+			return thread;
+		});
+		
+		this.schedExecSvc.scheduleAtFixedRate(
+			() -> expireTimeouts(System.nanoTime()), this.tickMillis, this.tickMillis, TimeUnit.MILLISECONDS);
+		
+		_Logger.info(
+			"Actuator command tracker started. Timeout: " + this.timeoutMillis + " ms, tick: " + this.tickMillis +
+			" ms, wheel size: " + this.wheel.length);
+		
+		return true;
+	}
+	
+	/**
+	 * Stops the ticker and cancels all outstanding commands.
+	 * 
+	 * @return boolean
+	 */
+	public boolean stopTracker()
+	{
+		synchronized (this) {
+			if (this.schedExecSvc == null) {
+				_Logger.warning("Actuator command tracker already stopped.");
+				
+				return false;
+			}
+			
+			this.schedExecSvc.shutdownNow();
+			this.schedExecSvc = null;
+		}
+		
+		for (PendingCommand command : new ArrayList<>(this.pendingCommands.values())) {
+			cancel(command.requestID, new IllegalStateException("Actuator command tracker stopped"));
+		}
+		
+		_Logger.info("Actuator command tracker stopped.");
+		
+		return true;
+	}
+	
+	public long getCompletedCount()
+	{
+		return this.completedCount.get();
+	}
+	
+	/**
+	 * Returns the mean command round-trip latency.
+	 * 
+	 * @return double The latency in milliseconds, or 0 if none completed.
+	 */
+	public double getLatencyAvgMillis()
+	{
+		long count = this.completedCount.get();
+		
+		return (count > 0L ? this.latencySumMicros.get() / (count * 1000.0d) : 0.0d);
+	}
+	
+	/**
+	 * Returns the longest command round-trip latency.
+	 * 
+	 * @return double The latency in milliseconds.
+	 */
+	public double getLatencyMaxMillis()
+	{
+		return this.latencyMaxMicros.get() / 1000.0d;
+	}
+	
+	/**
+	 * Estimates the given percentile of command round-trip latency, as
+	 * the upper bound of the histogram bucket it falls in (i.e. within
+	 * a factor of two).
+	 * 
+	 * @param percentile The percentile, from 0 to 100.
+	 * @return double The latency in milliseconds, or 0 if none completed.
+	 */
+	public double getLatencyPercentileMillis(double percentile)
+	{
+		long total = 0L;
+		
+		for (int i = 0; i < LATENCY_BUCKETS; i++) {
+			total += this.latencyHistogram.get(i);
+		}
+		
+		if (total == 0L) {
+			return 0.0d;
+		}
+		
+		long rank = (long) Math.ceil(Math.max(0.0d, Math.min(100.0d, percentile)) / 100.0d * total);
+		long seen = 0L;
+		
+		for (int i = 0; i < LATENCY_BUCKETS; i++) {
+			seen += this.latencyHistogram.get(i);
+			
+			if (seen >= Math.max(1L, rank)) {
+				return Math.min((1L << i), this.latencyMaxMicros.get()) / 1000.0d;
+			}
+		}
+		
+		return getLatencyMaxMillis();
+	}
+	
+	public int getOutstandingCount()
+	{
+		return this.pendingCommands.size();
+	}
+	
+	public long getRejectedCount()
+	{
+		return this.rejectedCount.get();
+	}
+	
+	public long getSentCount()
+	{
+		return this.sentCount.get();
+	}
+	
+	public long getTimedOutCount()
+	{
+		return this.timedOutCount.get();
+	}
+	
+	
+	// private methods
+	
+	// callers hold this instance's lock
+	private void link(PendingCommand command)
+	{
+		PendingCommand head = this.wheel[command.bucket];
+		
+		command.prev = null;
+		command.next = head;
+		
+		if (head != null) {
+			head.prev = command;
+		}
+		
+		this.wheel[command.bucket] = command;
+		command.linked = true;
+	}
+	
+	// callers hold this instance's lock
+	private void unlink(PendingCommand command)
+	{
+		if (! command.linked) {
+			return;
+		}
+		
+		if (command.prev != null) {
+			command.prev.next = command.next;
+		} else {
+			this.wheel[command.bucket] = command.next;
+		}
+		
+		if (command.next != null) {
+			command.next.prev = command.prev;
+		}
+		
+		command.prev = null;
+		command.next = null;
+		command.linked = false;
+	}
+	
+	private void recordLatency(long latencyNanos)
+	{
+		long micros = Math.max(1L, TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+		
+		// bucket i holds latencies in (2^(i-1), 2^i] microseconds
+		int bucket = Math.min(LATENCY_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros - 1L));
+		
+		this.latencyHistogram.incrementAndGet(bucket);
+		this.latencySumMicros.addAndGet(micros);
+		this.latencyMaxMicros.accumulateAndGet(micros, Math::max);
+	}
+	
+	
+	// inner classes
+	
+	/**
+	 * An outstanding command; also a node in its wheel bucket's list,
+	 * guarded by the tracker.
+	 */
+	private static class PendingCommand
+	{
+		private final long requestID;
+		private final long timeoutMillis;
+		private final long sentNanos = System.nanoTime();
+		private final CompletableFuture<ActuatorData> future;
+		
+		private int     bucket = 0;
+		private long    rounds = 0L;
+		private boolean linked = false;
+		
+		private PendingCommand prev = null;
+		private PendingCommand next = null;
+		
+		PendingCommand(long requestID, long timeoutMillis, CompletableFuture<ActuatorData> future)
+		{
+			this.requestID = requestID;
+			this.timeoutMillis = timeoutMillis;
+			this.future = future;
+		}
+	}
+}
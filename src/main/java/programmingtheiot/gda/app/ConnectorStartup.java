@@ -0,0 +1,321 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.app;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a set of named startup tasks (usually connector connects)
+ * concurrently, honoring the dependencies between them.
+ * <p>
+ * A task starts as soon as all the tasks it depends on have succeeded,
+ * so independent connectors connect in parallel and the total startup
+ * time is that of the slowest dependency chain rather than the sum of
+ * all connects. Each task is bounded by a timeout; a task that fails or
+ * times out causes its dependents to be skipped, but doesn't hold up
+ * unrelated tasks.
+ * 
+ */
+public class ConnectorStartup
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(ConnectorStartup.class.getName());
+	
+	/**
+	 * The outcome of a startup task.
+	 * 
+	 */
+	public enum TaskState
+	{
+		PENDING, SUCCEEDED, FAILED, TIMED_OUT, SKIPPED
+	}
+	
+	
+	// private var's
+	
+	private final Map<String, Task> tasks = new LinkedHashMap<>();
+	
+	private long defaultTimeoutMillis = 0L;
+	private long totalMillis = 0L;
+	
+	
+	// constructors
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param defaultTimeoutMillis The timeout for tasks added without one.
+	 */
+	public ConnectorStartup(long defaultTimeoutMillis)
+	{
+		super();
+		
+		this.defaultTimeoutMillis = (defaultTimeoutMillis > 0L ? defaultTimeoutMillis : Long.MAX_VALUE);
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Adds a task using the default timeout.
+	 * 
+	 * @param name The unique task name.
+	 * @param task The task; returns true on success.
+	 * @param dependsOn The names of previously added tasks that must succeed first.
+	 * @return boolean True if added; false if the name is in use or a dependency is unknown.
+	 */
+	public boolean addTask(String name, BooleanSupplier task, String ... dependsOn)
+	{
+		return addTask(name, task, this.defaultTimeoutMillis, dependsOn);
+	}
+	
+	/**
+	 * Adds a task. Dependencies must be added first, which also rules out cycles.
+	 * 
+	 * @param name The unique task name.
+	 * @param task The task; returns true on success.
+	 * @param timeoutMillis The time after which the task is considered to have failed.
+	 * @param dependsOn The names of previously added tasks that must succeed first.
+	 * @return boolean True if added; false if the name is in use or a dependency is unknown.
+	 */
+	public synchronized boolean addTask(String name, BooleanSupplier task, long timeoutMillis, String ... dependsOn)
+	{
+		if (name == null || task == null || this.tasks.containsKey(name)) {
+			_Logger.warning("Invalid or duplicate startup task: " + name);
+			
+			return false;
+		}
+		
+		List<Task> deps = new ArrayList<>();
+		
+		for (String depName : dependsOn) {
+			Task dep = this.tasks.get(depName);
+			
+			if (dep == null) {
+				_Logger.warning("Startup task " + name + " depends on unknown task: " + depName);
+				
+				return false;
+			}
+			
+			deps.add(dep);
+		}
+		
+		this.tasks.put(name, new Task(name, task, (timeoutMillis > 0L ? timeoutMillis : this.defaultTimeoutMillis), deps));
+		
+		return true;
+	}
+	
+	/**
+	 * Returns the time the named task took, or 0 if it didn't run.
+	 * 
+	 * @param name The task name.
+	 * @return long
+	 */
+	public synchronized long getElapsedMillis(String name)
+	{
+		Task task = this.tasks.get(name);
+		
+		return (task != null ? task.elapsedMillis : 0L);
+	}
+	
+	/**
+	 * Returns the names of the tasks that didn't succeed.
+	 * 
+	 * @return List<String>
+	 */
+	public synchronized List<String> getFailedTasks()
+	{
+		List<String> failed = new ArrayList<>();
+		
+		for (Task task : this.tasks.values()) {
+			if (task.state != TaskState.SUCCEEDED) {
+				failed.add(task.name + " (" + task.state + ")");
+			}
+		}
+		
+		return failed;
+	}
+	
+	/**
+	 * Returns the outcome of the named task.
+	 * 
+	 * @param name The task name.
+	 * @return TaskState The state, or null if there is no such task.
+	 */
+	public synchronized TaskState getTaskState(String name)
+	{
+		Task task = this.tasks.get(name);
+		
+		return (task != null ? task.state : null);
+	}
+	
+	/**
+	 * Returns the wall-clock time of the last call to {@link #runTasks()}.
+	 * 
+	 * @return long
+	 */
+	public synchronized long getTotalMillis()
+	{
+		return this.totalMillis;
+	}
+	
+	/**
+	 * Runs all tasks and waits for them to finish (or time out).
+	 * 
+	 * @return boolean True if every task succeeded; false otherwise.
+	 */
+	public synchronized boolean runTasks()
+	{
+		if (this.tasks.isEmpty()) {
+			return true;
+		}
+		
+		long startMillis = System.currentTimeMillis();
+		
+		ExecutorService execSvc = Executors.newFixedThreadPool(this.tasks.size(), runnable -> {
+			Thread thread = new Thread(runnable, "ConnectorStartup");
+			thread.setDaemon(true);
+			
+			return thread;
+		});
+		
+		try {
+			List<CompletableFuture<Boolean>> futures = new ArrayList<>(this.tasks.size());
+			
+			// tasks were added after their dependencies, so their futures already exist
+			for (Task task : this.tasks.values()) {
+				task.state = TaskState.PENDING;
+				
+				CompletableFuture<?>[] depFutures = new CompletableFuture<?>[task.deps.size()];
+				
+				for (int i = 0; i < depFutures.length; i++) {
+					depFutures[i] = task.deps.get(i).future;
+				}
+				
+				task.future = CompletableFuture.allOf(depFutures).thenCompose(ignored -> startTask(task, execSvc));
+				
+				futures.add(task.future);
+			}
+			
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+		} finally {
+			// timed out tasks may still be running; they're left to finish on their own
+			execSvc.shutdown();
+		}
+		
+		this.totalMillis = System.currentTimeMillis() - startMillis;
+		
+		boolean success = true;
+		
+		for (Task task : this.tasks.values()) {
+			_Logger.info("Startup task " + task.name + ": " + task.state + " in " + task.elapsedMillis + " ms");
+			
+			success &= (task.state == TaskState.SUCCEEDED);
+		}
+		
+		_Logger.info("Startup tasks completed in " + this.totalMillis + " ms. All succeeded: " + success);
+		
+		return success;
+	}
+	
+	
+	// private methods
+	
+	private CompletableFuture<Boolean> startTask(Task task, ExecutorService execSvc)
+	{
+		for (Task dep : task.deps) {
+			if (dep.state != TaskState.SUCCEEDED) {
+				task.state = TaskState.SKIPPED;
+				
+				_Logger.warning("Skipping startup task " + task.name + ". Dependency not ready: " + dep.name);
+				
+				return CompletableFuture.completedFuture(false);
+			}
+		}
+		
+		long startMillis = System.currentTimeMillis();
+		
+		CompletableFuture<Boolean> future = CompletableFuture.supplyAsync(() -> runTask(task), execSvc);
+		
+		if (task.timeoutMillis < Long.MAX_VALUE) {
+			future = future.completeOnTimeout(null, task.timeoutMillis, TimeUnit.MILLISECONDS);
+		}
+		
+		return future.thenApply(result -> {
+			task.elapsedMillis = System.currentTimeMillis() - startMillis;
+			
+			if (result == null) {
+				task.state = TaskState.TIMED_OUT;
+				
+				_Logger.warning("Startup task " + task.name + " timed out after " + task.timeoutMillis + " ms");
+				
+				return false;
+			}
+			
+			task.state = (result ? TaskState.SUCCEEDED : TaskState.FAILED);
+			
+			return result;
+		});
+	}
+	
+	private Boolean runTask(Task task)
+	{
+		try {
+			return task.task.getAsBoolean();
+		} catch (Exception e) {
+			_Logger.log(Level.WARNING, "Startup task " + task.name + " failed.", e);
+			
+			return false;
+		}
+	}
+	
+	
+	// inner classes
+	
+	/**
+	 * A named task, its dependencies and its outcome.
+	 * 
+	 */
+	private static class Task
+	{
+		private final String          name;
+		private final BooleanSupplier task;
+		private final long            timeoutMillis;
+		private final List<Task>      deps;
+		
+		private volatile TaskState state = TaskState.PENDING;
+		private volatile long      elapsedMillis = 0L;
+		
+		private CompletableFuture<Boolean> future = null;
+		
+		Task(String name, BooleanSupplier task, long timeoutMillis, List<Task> deps)
+		{
+			this.name          = name;
+			this.task          = task;
+			this.timeoutMillis = timeoutMillis;
+			this.deps          = deps;
+		}
+	}
+
+}
@@ -11,6 +11,15 @@
 
 package programmingtheiot.gda.app;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,22 +30,37 @@ import programmingtheiot.common.IDataMessageListener;
 import programmingtheiot.common.ResourceNameEnum;
 
 import programmingtheiot.data.ActuatorData;
+import programmingtheiot.data.BaseIotData;
 import programmingtheiot.data.DataUtil;
+import programmingtheiot.data.LastValueCache;
 import programmingtheiot.data.SensorData;
 import programmingtheiot.data.SystemPerformanceData;
+import programmingtheiot.data.SystemStateData;
 
+import programmingtheiot.gda.connection.AlertDigestEngine;
 import programmingtheiot.gda.connection.CloudClientConnector;
 import programmingtheiot.gda.connection.CoapServerGateway;
+import programmingtheiot.gda.connection.DataMessageDispatcher;
+import programmingtheiot.gda.connection.EgressPriority;
+import programmingtheiot.gda.connection.EgressScheduler;
+import programmingtheiot.gda.connection.ICloudClient;
 import programmingtheiot.gda.connection.IPersistenceClient;
 import programmingtheiot.gda.connection.IPubSubClient;
 import programmingtheiot.gda.connection.IRequestResponseClient;
+import programmingtheiot.gda.connection.ISensorEventHandler;
+import programmingtheiot.gda.connection.LazyCloudClient;
 import programmingtheiot.gda.connection.MqttClientConnector;
+import programmingtheiot.gda.connection.Mqttv5ClientConnector;
+import programmingtheiot.gda.connection.OverflowPolicy;
+import programmingtheiot.gda.connection.PrioritizedCloudClient;
+import programmingtheiot.gda.connection.PrioritizedPubSubClient;
 import programmingtheiot.gda.connection.RedisPersistenceAdapter;
+import programmingtheiot.gda.connection.SensorDataRingBuffer;
 import programmingtheiot.gda.connection.SmtpClientConnector;
 
 /**
  * Shell representation of class for student implementation.
- *
+ * 
  */
 public class DeviceDataManager implements IDataMessageListener
 {
@@ -45,6 +69,18 @@ public class DeviceDataManager implements IDataMessageListener
 	private static final Logger _Logger =
 		Logger.getLogger(DeviceDataManager.class.getName());
 	
+	private static final String PARTITION_TASK   = "partition";
+	private static final String REGISTRY_TASK    = "registry";
+	private static final String PERSISTENCE_TASK = "persistence";
+	private static final String CLOUD_TASK       = "cloud";
+	private static final String MQTT_TASK        = "mqtt";
+	
+	private static final long ALERT_SEND_TIMEOUT_MILLIS = 30000L;
+	
+	public static final String DISPATCH_SUBSCRIBER_NAME         = "DeviceDataManager";
+	public static final String DISPATCH_CONTROL_SUBSCRIBER_NAME = "DeviceDataManager-control";
+	public static final String SENSOR_RING_HANDLER_NAME         = "DeviceDataManager";
+	
 	// private var's
 	
 	private boolean enableMqttClient = true;
@@ -53,12 +89,31 @@ public class DeviceDataManager implements IDataMessageListener
 	private boolean enableSmtpClient = false;
 	private boolean enablePersistenceClient = false;
 	
+	private boolean useMqttv5Client = false;
+	private boolean enablePartitioning = false;
+	
 	private IActuatorDataListener actuatorDataListener = null;
 	private IPubSubClient mqttClient = null;
-	private IPubSubClient cloudClient = null;
+	private ICloudClient cloudClient = null;
 	private IPersistenceClient persistenceClient = null;
-	private IRequestResponseClient smtpClient = null;
+	private SmtpClientConnector smtpClient = null;
+	private AlertDigestEngine alertDigestEngine = null;
+	private EgressScheduler egressScheduler = null;
+	private DataMessageDispatcher dataMsgDispatcher = null;
+	private SensorDataRingBuffer sensorRing = null;
+	private ActuatorCommandTracker commandTracker = null;
 	private CoapServerGateway coapServer = null;
+	private PartitionCoordinator partitionCoordinator = null;
+	
+	private boolean enableLazyConnectors = true;
+	private long connectTimeoutMillis = ConfigConst.DEFAULT_CONNECT_TIMEOUT_MILLIS;
+	private long startMillis = 0L;
+	private long startupMillis = 0L;
+	private final AtomicLong firstMessageMillis = new AtomicLong();
+	private DeviceRegistry deviceRegistry = null;
+	private GeoSpatialIndex geoIndex = null;
+	private LastValueCache lastValueCache = null;
+	private SystemStateSnapshotBuilder stateSnapshotBuilder = null;
 	
 	// constructors
 	
@@ -66,6 +121,19 @@ public class DeviceDataManager implements IDataMessageListener
 	{
 		super();
 		
+		ConfigUtil configUtil = ConfigUtil.getInstance();
+		
+		this.enableMqttClient =
+			configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_MQTT_CLIENT_KEY);
+		this.enableCoapServer =
+			configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_COAP_SERVER_KEY);
+		this.enableCloudClient =
+			configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_CLOUD_CLIENT_KEY);
+		this.enableSmtpClient =
+			configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_SMTP_CLIENT_KEY);
+		this.enablePersistenceClient =
+			configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_PERSISTENCE_CLIENT_KEY);
+		
 		initConnections();
 	}
 	
@@ -78,6 +146,12 @@ public class DeviceDataManager implements IDataMessageListener
 	{
 		super();
 		
+		this.enableMqttClient = enableMqttClient;
+		this.enableCoapServer = enableCoapClient;
+		this.enableCloudClient = enableCloudClient;
+		this.enableSmtpClient = enableSmtpClient;
+		this.enablePersistenceClient = enablePersistenceClient;
+		
 		initConnections();
 	}
 	
@@ -87,48 +161,444 @@ public class DeviceDataManager implements IDataMessageListener
 	@Override
 	public boolean handleActuatorCommandResponse(ResourceNameEnum resourceName, ActuatorData data)
 	{
-		return false;
+		if (data == null || ! isOwned(data.getLocationID())) {
+			return false;
+		}
+		
+		_Logger.fine("Handling actuator response: " + data.getName());
+		
+		if (this.commandTracker != null && data.isResponseFlagEnabled()) {
+			// completes the sender's future if this answers a tracked command
+			this.commandTracker.complete(data);
+		}
+		
+		updateDeviceState(resourceName, data);
+		
+		if (this.persistenceClient != null) {
+			this.persistenceClient.storeData(resourceName.getResourceName(), 0, data);
+		}
+		
+		if (data.hasError() && this.alertDigestEngine != null) {
+			// folded into a periodic digest rather than one email per error
+			this.alertDigestEngine.addAlert(resourceName, data.getLocationID(), data.toString());
+		}
+		
+		return true;
 	}
-
+	
 	@Override
 	public boolean handleActuatorCommandRequest(ResourceNameEnum resourceName, ActuatorData data)
 	{
-		return false;
+		if (resourceName == null || data == null || this.mqttClient == null) {
+			return false;
+		}
+		
+		_Logger.fine("Handling actuator command request: " + data.getName());
+		
+		// queued ahead of any telemetry when the egress scheduler is enabled
+		return this.mqttClient.publishMessage(
+			resourceName, DataUtil.getInstance().actuatorDataToJson(data), ConfigConst.DEFAULT_QOS);
 	}
-
+	
 	@Override
 	public boolean handleIncomingMessage(ResourceNameEnum resourceName, String msg)
 	{
+		if (resourceName == ResourceNameEnum.CDA_REGISTRATION_REQUEST_RESOURCE) {
+			return handleRegistrationRequest(DataUtil.getInstance().jsonToSensorData(msg));
+		}
+		
+		if (resourceName == ResourceNameEnum.GDA_MGMT_STATUS_CMD_RESOURCE) {
+			return publishSystemState();
+		}
+		
 		return false;
 	}
-
+	
+	@Override
+	public boolean handleIncomingMessage(ResourceNameEnum resourceName, ByteBuffer data)
+	{
+		if (resourceName == ResourceNameEnum.CDA_REGISTRATION_REQUEST_RESOURCE) {
+			return handleRegistrationRequest(DataUtil.getInstance().jsonToSensorData(data));
+		}
+		
+		if (resourceName == ResourceNameEnum.GDA_MGMT_STATUS_CMD_RESOURCE) {
+			// the request payload isn't needed to answer
+			return publishSystemState();
+		}
+		
+		return IDataMessageListener.super.handleIncomingMessage(resourceName, data);
+	}
+	
 	@Override
 	public boolean handleSensorMessage(ResourceNameEnum resourceName, SensorData data)
 	{
-		return false;
+		if (data == null || ! isOwned(data.getLocationID())) {
+			return false;
+		}
+		
+		_Logger.fine("Handling sensor message: " + data.getName());
+		
+		if (this.sensorRing != null && this.sensorRing.isRunning()) {
+			// the ring has a single producer; callers may be on any connector thread
+			synchronized (this.sensorRing) {
+				// never blocks the caller; a full ring drops and counts the message
+				return this.sensorRing.tryPublishEvent(resourceName, data);
+			}
+		}
+		
+		processSensorMessage(resourceName, data);
+		
+		return true;
 	}
-
+	
 	@Override
 	public boolean handleSystemPerformanceMessage(ResourceNameEnum resourceName, SystemPerformanceData data)
 	{
-		return false;
+		if (data == null || ! isOwned(data.getLocationID())) {
+			return false;
+		}
+		
+		_Logger.fine("Handling system performance message: " + data.getName());
+		
+		updateDeviceState(resourceName, data);
+		
+		if (this.stateSnapshotBuilder != null) {
+			this.stateSnapshotBuilder.addSystemPerformanceData(resourceName, data);
+		}
+		
+		if (this.persistenceClient != null) {
+			this.persistenceClient.storeData(resourceName.getResourceName(), 0, data);
+		}
+		
+		if (this.cloudClient != null) {
+			this.cloudClient.sendEdgeDataToCloud(resourceName, data);
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Returns the device registry, or null if it's disabled.
+	 * 
+	 * @return DeviceRegistry
+	 */
+	public DeviceRegistry getDeviceRegistry()
+	{
+		return this.deviceRegistry;
+	}
+	
+	/**
+	 * Returns the geo-spatial index of recent sensor readings, or null if it's disabled.
+	 * 
+	 * @return GeoSpatialIndex
+	 */
+	public GeoSpatialIndex getGeoSpatialIndex()
+	{
+		return this.geoIndex;
+	}
+	
+	/**
+	 * Returns the cache of the latest data per device and type, or null if it's disabled.
+	 * 
+	 * @return LastValueCache
+	 */
+	public LastValueCache getLastValueCache()
+	{
+		return this.lastValueCache;
+	}
+	
+	/**
+	 * Returns a snapshot of the current system state, built from the most
+	 * recent data received per resource.
+	 * 
+	 * @return SystemStateData The snapshot, or null if snapshots are disabled.
+	 */
+	public SystemStateData getSystemState()
+	{
+		return (this.stateSnapshotBuilder != null ? this.stateSnapshotBuilder.buildSnapshot(ConfigConst.DEFAULT_COMMAND) : null);
+	}
+	
+	/**
+	 * Returns the time from the start of {@link #startManager()} until the
+	 * first CDA message was handled.
+	 * 
+	 * @return long The time in millis, or -1 if no message has been handled yet.
+	 */
+	public long getTimeToFirstMessageMillis()
+	{
+		long firstMillis = this.firstMessageMillis.get();
+		
+		return (firstMillis > 0L ? firstMillis - this.startMillis : -1L);
+	}
+	
+	/**
+	 * Returns how long the last {@link #startManager()} call took to bring up
+	 * the enabled connectors.
+	 * 
+	 * @return long The time in millis.
+	 */
+	public long getStartupMillis()
+	{
+		return this.startupMillis;
+	}
+	
+	/**
+	 * Returns the tracker correlating actuator commands with responses.
+	 * 
+	 * @return ActuatorCommandTracker The tracker, or null if disabled.
+	 */
+	public ActuatorCommandTracker getActuatorCommandTracker()
+	{
+		return this.commandTracker;
+	}
+	
+	/**
+	 * Returns the dispatcher that fans inbound connector messages out to
+	 * this manager and any other subscribers (e.g. analytics).
+	 * 
+	 * @return DataMessageDispatcher The dispatcher, or null if disabled.
+	 */
+	public DataMessageDispatcher getDataMessageDispatcher()
+	{
+		return this.dataMsgDispatcher;
+	}
+	
+	/**
+	 * Returns the ring sensor messages are handed off through, or null if disabled.
+	 * 
+	 * @return SensorDataRingBuffer
+	 */
+	public SensorDataRingBuffer getSensorRing()
+	{
+		return this.sensorRing;
+	}
+	
+	/**
+	 * Returns the partition coordinator, or null if partitioning is disabled.
+	 * 
+	 * @return PartitionCoordinator
+	 */
+	public PartitionCoordinator getPartitionCoordinator()
+	{
+		return this.partitionCoordinator;
+	}
+	
+	/**
+	 * Checks if data from the given location ID is processed by this
+	 * instance. Always true when partitioning is disabled.
+	 * 
+	 * @param locationID The device location ID.
+	 * @return boolean
+	 */
+	public boolean isOwned(String locationID)
+	{
+		return (this.partitionCoordinator == null || this.partitionCoordinator.isOwned(locationID));
+	}
+	
+	/**
+	 * Sends an actuator command to the CDA and returns a future that
+	 * completes with the CDA's response, matched by request ID. The
+	 * future completes exceptionally if the command can't be sent, or
+	 * no response arrives before the configured timeout.
+	 * 
+	 * @param resourceName The command resource.
+	 * @param data The command; its request ID is assigned here.
+	 * @return CompletableFuture The response future.
+	 */
+	public CompletableFuture<ActuatorData> sendActuatorCommand(ResourceNameEnum resourceName, ActuatorData data)
+	{
+		if (this.commandTracker == null || this.mqttClient == null) {
+			CompletableFuture<ActuatorData> future = new CompletableFuture<>();
+			future.completeExceptionally(new IllegalStateException("Actuator command tracking or MQTT client disabled."));
+			
+			return future;
+		}
+		
+		CompletableFuture<ActuatorData> future = this.commandTracker.register(data);
+		
+		if (! future.isDone()) {
+			publishActuatorCommand(resourceName, data).thenAccept(isSent -> {
+				if (! isSent) {
+					this.commandTracker.cancel(
+						data.getRequestID(),
+						new IllegalStateException("Failed to publish actuator command: " + data.getName()));
+				}
+			});
+		}
+		
+		return future;
 	}
 	
 	public void setActuatorDataListener(String name, IActuatorDataListener listener)
 	{
+		if (listener != null) {
+			this.actuatorDataListener = listener;
+		}
 	}
 	
 	public void startManager()
 	{
+		this.startMillis = System.currentTimeMillis();
+		this.firstMessageMillis.set(0L);
+		
+		if (this.egressScheduler != null) {
+			this.egressScheduler.startScheduler();
+		}
+		
+		if (this.dataMsgDispatcher != null) {
+			this.dataMsgDispatcher.startDispatcher();
+		}
+		
+		if (this.sensorRing != null) {
+			this.sensorRing.startRing();
+		}
+		
+		if (this.commandTracker != null) {
+			this.commandTracker.startTracker();
+		}
+		
+		if (this.alertDigestEngine != null) {
+			this.alertDigestEngine.startEngine();
+		}
+		
+		// independent connectors connect concurrently; MQTT waits for the
+		// partition coordinator and registry so ownership and known devices
+		// are in place before data arrives
+		ConnectorStartup startup = new ConnectorStartup(this.connectTimeoutMillis);
+		List<String> mqttDeps = new ArrayList<>(2);
+		
+		if (this.partitionCoordinator != null) {
+			startup.addTask(PARTITION_TASK, this.partitionCoordinator::startCoordinator);
+			mqttDeps.add(PARTITION_TASK);
+		}
+		
+		if (this.deviceRegistry != null) {
+			// reloads the last snapshot, so known devices needn't re-register
+			startup.addTask(REGISTRY_TASK, this.deviceRegistry::startRegistry);
+			mqttDeps.add(REGISTRY_TASK);
+		}
+		
+		if (this.persistenceClient != null) {
+			startup.addTask(PERSISTENCE_TASK, this.persistenceClient::connectClient);
+		}
+		
+		if (this.cloudClient != null) {
+			startup.addTask(CLOUD_TASK, this.cloudClient::connectClient);
+		}
+		
+		if (this.mqttClient != null) {
+			startup.addTask(MQTT_TASK, this::connectMqttClient, mqttDeps.toArray(new String[0]));
+		}
+		
+		if (! startup.runTasks()) {
+			_Logger.warning("Not all connectors started: " + startup.getFailedTasks());
+		}
+		
+		this.startupMillis = startup.getTotalMillis();
+		
+		_Logger.info("Device data manager started in " + this.startupMillis + " ms");
 	}
 	
 	public void stopManager()
 	{
+		if (this.mqttClient != null) {
+			this.mqttClient.unsubscribeFromTopic(ResourceNameEnum.CDA_ACTUATOR_RESPONSE_RESOURCE);
+			this.mqttClient.unsubscribeFromTopic(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE);
+			this.mqttClient.unsubscribeFromTopic(ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE);
+			
+			if (this.deviceRegistry != null) {
+				this.mqttClient.unsubscribeFromTopic(ResourceNameEnum.CDA_REGISTRATION_REQUEST_RESOURCE);
+			}
+			
+			if (this.stateSnapshotBuilder != null) {
+				this.mqttClient.unsubscribeFromTopic(ResourceNameEnum.GDA_MGMT_STATUS_CMD_RESOURCE);
+			}
+			
+			if (! this.mqttClient.disconnectClient()) {
+				_Logger.warning("Failed to disconnect MQTT client from broker.");
+			}
+		}
+		
+		if (this.dataMsgDispatcher != null) {
+			// delivers anything already received before the outbound clients go away
+			this.dataMsgDispatcher.stopDispatcher();
+		}
+		
+		if (this.sensorRing != null) {
+			// handles anything already published before the outbound clients go away
+			this.sensorRing.stopRing();
+		}
+		
+		if (this.commandTracker != null) {
+			// fails any commands still awaiting a response
+			this.commandTracker.stopTracker();
+		}
+		
+		if (this.cloudClient != null) {
+			// flushes any pending batches before disconnecting
+			this.cloudClient.disconnectClient();
+		}
+		
+		if (this.persistenceClient != null) {
+			this.persistenceClient.disconnectClient();
+		}
+		
+		if (this.deviceRegistry != null) {
+			// applies queued registrations and writes a final snapshot
+			this.deviceRegistry.stopRegistry();
+		}
+		
+		if (this.partitionCoordinator != null) {
+			this.partitionCoordinator.stopCoordinator();
+		}
+		
+		if (this.alertDigestEngine != null) {
+			// sends any pending digests, so stop before the scheduler
+			this.alertDigestEngine.stopEngine();
+		}
+		
+		if (this.egressScheduler != null) {
+			this.egressScheduler.stopScheduler();
+		}
+		
+		synchronized (this) {
+			if (this.smtpClient != null) {
+				this.smtpClient.disconnectClient();
+			}
+		}
 	}
-
+	
 	
 	// private methods
 	
+	/**
+	 * Connects the MQTT client and subscribes to the CDA topics.
+	 * 
+	 * @return boolean True if connected; false otherwise.
+	 */
+	private boolean connectMqttClient()
+	{
+		if (! this.mqttClient.connectClient()) {
+			_Logger.warning("Failed to connect MQTT client to broker.");
+			
+			return false;
+		}
+		
+		this.mqttClient.subscribeToTopic(ResourceNameEnum.CDA_ACTUATOR_RESPONSE_RESOURCE, ConfigConst.DEFAULT_QOS);
+		this.mqttClient.subscribeToTopic(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, ConfigConst.DEFAULT_QOS);
+		this.mqttClient.subscribeToTopic(ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE, ConfigConst.DEFAULT_QOS);
+		
+		if (this.deviceRegistry != null) {
+			this.mqttClient.subscribeToTopic(ResourceNameEnum.CDA_REGISTRATION_REQUEST_RESOURCE, ConfigConst.DEFAULT_QOS);
+		}
+		
+		if (this.stateSnapshotBuilder != null) {
+			this.mqttClient.subscribeToTopic(ResourceNameEnum.GDA_MGMT_STATUS_CMD_RESOURCE, ConfigConst.DEFAULT_QOS);
+		}
+		
+		return true;
+	}
+	
 	/**
 	 * Initializes the enabled connections. This will NOT start them, but only create the
 	 * instances that will be used in the {@link #startManager() and #stopManager()) methods.
@@ -136,6 +606,325 @@ public class DeviceDataManager implements IDataMessageListener
 	 */
 	private void initConnections()
 	{
+		ConfigUtil configUtil = ConfigUtil.getInstance();
+		
+		this.useMqttv5Client =
+			configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.USE_MQTTV5_CLIENT_KEY);
+		this.enablePartitioning =
+			configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_PARTITIONING_KEY);
+		this.enableLazyConnectors =
+			configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_LAZY_CONNECTORS_KEY);
+		this.connectTimeoutMillis =
+			configUtil.getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.CONNECT_TIMEOUT_MILLIS_KEY, ConfigConst.DEFAULT_CONNECT_TIMEOUT_MILLIS);
+		
+		if (configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_DEVICE_REGISTRY_KEY)) {
+			this.deviceRegistry = new DeviceRegistry();
+		}
+		
+		if (configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_GEO_INDEX_KEY)) {
+			this.geoIndex = new GeoSpatialIndex();
+		}
+		
+		if (configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_LAST_VALUE_CACHE_KEY)) {
+			this.lastValueCache = new LastValueCache();
+		}
+		
+		if (configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_STATE_SNAPSHOT_KEY)) {
+			this.stateSnapshotBuilder = new SystemStateSnapshotBuilder();
+		}
+		
+		if (this.enablePartitioning) {
+			// cluster membership relies on MQTT v5 retained heartbeats and will messages
+			this.partitionCoordinator = new PartitionCoordinator();
+		}
+		
+		IDataMessageListener inboundListener = this;
+		
+		if (configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_DATA_DISPATCHER_KEY)) {
+			this.dataMsgDispatcher = new DataMessageDispatcher();
+			
+			// commands, responses and registrations are rare and must not be dropped (a lost
+			// response times out its tracked command), so they get their own unbounded mailbox
+			this.dataMsgDispatcher.subscribe(
+				DISPATCH_CONTROL_SUBSCRIBER_NAME, this, OverflowPolicy.GROW, 0,
+				ResourceNameEnum.CDA_ACTUATOR_RESPONSE_RESOURCE,
+				ResourceNameEnum.CDA_ACTUATOR_CMD_RESOURCE,
+				ResourceNameEnum.CDA_REGISTRATION_REQUEST_RESOURCE,
+				ResourceNameEnum.GDA_MGMT_STATUS_CMD_RESOURCE);
+			
+			// telemetry uses the configured mailbox size and overflow policy
+			this.dataMsgDispatcher.subscribe(
+				DISPATCH_SUBSCRIBER_NAME, this,
+				ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE,
+				ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE);
+			
+			inboundListener = this.dataMsgDispatcher;
+		}
+		
+		if (configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_SENSOR_RING_KEY)) {
+			this.sensorRing = new SensorDataRingBuffer();
+			this.sensorRing.addHandler(SENSOR_RING_HANDLER_NAME, new SensorRingHandler());
+		}
+		
+		if (configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_COMMAND_TRACKING_KEY)) {
+			this.commandTracker = new ActuatorCommandTracker();
+		}
+		
+		if (this.enableMqttClient) {
+			if (this.useMqttv5Client || this.enablePartitioning) {
+				Mqttv5ClientConnector mqttv5Client = new Mqttv5ClientConnector();
+				
+				if (this.partitionCoordinator != null) {
+					// drop non-owned data before it's even decoded
+					mqttv5Client.setLocationFilter(this.partitionCoordinator::isOwned);
+				}
+				
+				this.mqttClient = mqttv5Client;
+			} else {
+				this.mqttClient = new MqttClientConnector();
+			}
+			
+			this.mqttClient.setDataMessageListener(inboundListener);
+		}
+		
+		if (this.enableCloudClient) {
+			if (this.enableLazyConnectors) {
+				// created and connected when the first data is forwarded
+				this.cloudClient = new LazyCloudClient(CloudClientConnector::new);
+			} else {
+				this.cloudClient = new CloudClientConnector();
+			}
+			
+			this.cloudClient.setDataMessageListener(inboundListener);
+		}
+		
+		if (this.enableSmtpClient) {
+			if (! this.enableLazyConnectors) {
+				// otherwise created when the first alert digest is sent
+				this.smtpClient = new SmtpClientConnector();
+			}
+			
+			this.alertDigestEngine = new AlertDigestEngine(ConfigConst.SMTP_GATEWAY_SERVICE, this::sendAlert);
+		}
+		
+		if (this.enablePersistenceClient) {
+			this.persistenceClient = new RedisPersistenceAdapter();
+		}
+		
+		if (configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_EGRESS_SCHEDULER_KEY)) {
+			// wrap the outbound clients so commands are never stuck behind bulk data
+			this.egressScheduler = new EgressScheduler();
+			
+			if (this.mqttClient != null) {
+				this.mqttClient =
+					new PrioritizedPubSubClient(this.mqttClient, this.egressScheduler, EgressScheduler.MQTT_CHANNEL);
+			}
+			
+			if (this.cloudClient != null) {
+				this.cloudClient =
+					new PrioritizedCloudClient(this.cloudClient, this.egressScheduler, EgressScheduler.CLOUD_CHANNEL);
+			}
+		}
+	}
+	
+	/**
+	 * Queues a CDA registration request. Any BaseIotData JSON carries the
+	 * location ID and position fields the registry needs.
+	 * 
+	 * @param data The decoded registration request.
+	 * @return boolean True if queued; false otherwise.
+	 */
+	private boolean handleRegistrationRequest(SensorData data)
+	{
+		if (this.deviceRegistry == null || data == null || ! isOwned(data.getLocationID())) {
+			return false;
+		}
+		
+		return this.deviceRegistry.submitRegistration(data);
+	}
+	
+	/**
+	 * Updates the device state and forwards the sensor data to the
+	 * geo-spatial index, state snapshot, persistence and cloud clients.
+	 * 
+	 * @param resourceName The resource the data arrived on.
+	 * @param data The received data.
+	 */
+	private void processSensorMessage(ResourceNameEnum resourceName, SensorData data)
+	{
+		updateDeviceState(resourceName, data);
+		
+		if (this.geoIndex != null) {
+			this.geoIndex.addSensorData(data, System.currentTimeMillis());
+		}
+		
+		if (this.stateSnapshotBuilder != null) {
+			this.stateSnapshotBuilder.addSensorData(resourceName, data);
+		}
+		
+		if (this.persistenceClient != null) {
+			this.persistenceClient.storeData(resourceName.getResourceName(), 0, data);
+		}
+		
+		if (this.cloudClient != null) {
+			this.cloudClient.sendEdgeDataToCloud(resourceName, data);
+		}
+	}
+	
+	/**
+	 * Publishes the current system state snapshot as a management status message.
+	 * 
+	 * @return boolean True if published; false otherwise.
+	 */
+	private boolean publishSystemState()
+	{
+		if (this.stateSnapshotBuilder == null || this.mqttClient == null) {
+			return false;
+		}
+		
+		return this.mqttClient.publishMessage(
+			ResourceNameEnum.GDA_MGMT_STATUS_MSG_RESOURCE, this.stateSnapshotBuilder.buildSnapshotJson(), ConfigConst.DEFAULT_QOS);
+	}
+	
+	/**
+	 * Updates the device registry's last-seen time and observed resources,
+	 * and the last value cache, for the device that sent the given data.
+	 * 
+	 * @param resourceName The resource the data arrived on.
+	 * @param data The received data.
+	 */
+	private void updateDeviceState(ResourceNameEnum resourceName, BaseIotData data)
+	{
+		long nowMillis = System.currentTimeMillis();
+		
+		if (this.firstMessageMillis.get() == 0L && this.firstMessageMillis.compareAndSet(0L, nowMillis)) {
+			_Logger.info("Time to first message: " + (nowMillis - this.startMillis) + " ms");
+		}
+		
+		if (this.deviceRegistry != null) {
+			this.deviceRegistry.touchDevice(data.getLocationID(), resourceName, nowMillis);
+		}
+		
+		if (this.lastValueCache != null) {
+			this.lastValueCache.update(resourceName, data, nowMillis);
+		}
 	}
 	
+	/**
+	 * Returns the SMTP client, creating it on first use.
+	 * 
+	 * @return SmtpClientConnector
+	 */
+	private synchronized SmtpClientConnector getSmtpClient()
+	{
+		if (this.smtpClient == null) {
+			this.smtpClient = new SmtpClientConnector();
+		}
+		
+		return this.smtpClient;
+	}
+	
+	/**
+	 * Publishes an actuator command. When the egress scheduler is enabled
+	 * the publish is queued, and the returned future completes once the
+	 * scheduler has actually sent (or failed to send) it.
+	 * 
+	 * @param resourceName The command resource.
+	 * @param data The command.
+	 * @return CompletableFuture The publish result.
+	 */
+	private CompletableFuture<Boolean> publishActuatorCommand(ResourceNameEnum resourceName, ActuatorData data)
+	{
+		if (this.mqttClient instanceof PrioritizedPubSubClient) {
+			return ((PrioritizedPubSubClient) this.mqttClient).publishMessageAsync(
+				resourceName, DataUtil.getInstance().actuatorDataToJson(data), ConfigConst.DEFAULT_QOS);
+		}
+		
+		return CompletableFuture.completedFuture(handleActuatorCommandRequest(resourceName, data));
+	}
+	
+	/**
+	 * Sends an alert digest over SMTP, queued on the egress scheduler's
+	 * SMTP channel if it's enabled. Either way this waits for the send
+	 * to finish, so the digest engine only drops a digest's alerts once
+	 * it was actually sent; it calls this from its own thread. A queued
+	 * send that hasn't started within the timeout is abandoned, and its
+	 * alerts are carried over to the next digest.
+	 * 
+	 * @param resourceName The resource the alert relates to.
+	 * @param msg The alert digest message.
+	 * @return boolean
+	 */
+	private boolean sendAlert(ResourceNameEnum resourceName, String msg)
+	{
+		if (this.egressScheduler != null) {
+			AtomicBoolean isAbandoned = new AtomicBoolean(false);
+			
+			CompletableFuture<Boolean> result =
+				this.egressScheduler.schedule(
+					EgressScheduler.SMTP_CHANNEL,
+					EgressPriority.ALERT,
+					() -> ! isAbandoned.get() && getSmtpClient().sendMessage(resourceName, msg, 0));
+			
+			try {
+				return result.get(ALERT_SEND_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				isAbandoned.set(true);
+				
+				_Logger.warning("Alert digest send timed out on the egress scheduler: " + resourceName);
+				
+				return false;
+			} catch (InterruptedException e) {
+				isAbandoned.set(true);
+				Thread.currentThread().interrupt();
+				
+				return false;
+			} catch (ExecutionException e) {
+				// not expected; the scheduler's futures complete normally
+				return false;
+			}
+		}
+		
+		return getSmtpClient().sendMessage(resourceName, msg, 0);
+	}
+	
+	
+	// inner classes
+	
+	/**
+	 * Consumes the sensor ring on its handler thread. Events are copied
+	 * out of their slots, which the ring reuses, and processed together
+	 * once the end of each batch is reached.
+	 */
+	private class SensorRingHandler implements ISensorEventHandler
+	{
+		private final List<ResourceNameEnum> resources = new ArrayList<>();
+		private final List<SensorData> batch = new ArrayList<>();
+		
+		@Override
+		public void onEvent(ResourceNameEnum resource, SensorData data, long sequence, boolean endOfBatch)
+		{
+			SensorData copy = new SensorData();
+			copy.copyFrom(data);
+			
+			this.resources.add(resource);
+			this.batch.add(copy);
+			
+			if (endOfBatch) {
+				for (int i = 0; i < this.batch.size(); i++) {
+					try {
+						processSensorMessage(this.resources.get(i), this.batch.get(i));
+					} catch (Exception e) {
+						// one bad message mustn't cost the rest of the batch
+						_Logger.log(Level.WARNING, "Failed to process sensor message: " + this.batch.get(i).getName(), e);
+					}
+				}
+				
+				this.resources.clear();
+				this.batch.clear();
+			}
+		}
+	}
+
 }
@@ -0,0 +1,824 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.BaseIotData;
+
+/**
+ * In-memory registry of the CDA's known to this gateway.
+ * <p>
+ * Device metadata is held in parallel primitive arrays indexed by a
+ * slot number, with a concurrent map from location ID to slot, so a
+ * lookup is a single hash probe and the registry holds no per-device
+ * objects beyond the location ID itself. Registration requests are
+ * queued and applied in batches (one write lock per batch), so a
+ * registration storm at site power-up doesn't contend with the ingest
+ * path, which only updates last-seen times and observed resources.
+ * <p>
+ * The registry is periodically written to a snapshot file and reloaded
+ * on start, so devices don't need to re-register after a restart.
+ * 
+ */
+public class DeviceRegistry
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(DeviceRegistry.class.getName());
+	
+	private static final int SNAPSHOT_MAGIC   = 0x50445652; // "PDVR"
+	private static final int SNAPSHOT_VERSION = 1;
+	private static final int INITIAL_CAPACITY = 256;
+	private static final long PROCESS_INTERVAL_MILLIS = 100L;
+	
+	private static final ResourceNameEnum[] RESOURCES = ResourceNameEnum.values();
+	
+	
+	// private var's
+	
+	private final ConcurrentHashMap<String, Integer> slotIndex = new ConcurrentHashMap<>();
+	private final ReentrantReadWriteLock slotLock = new ReentrantReadWriteLock();
+	
+	// serializes snapshot writes, which share one temporary file
+	private final Object snapshotLock = new Object();
+	
+	// guarded by slotLock; arrays are only replaced (grown) under the write lock
+	private String[]        locationIDs      = new String[INITIAL_CAPACITY];
+	private float[]         latitudes        = new float[INITIAL_CAPACITY];
+	private float[]         longitudes       = new float[INITIAL_CAPACITY];
+	private float[]         elevations       = new float[INITIAL_CAPACITY];
+	private long[]          registeredMillis = new long[INITIAL_CAPACITY];
+	private AtomicLongArray lastSeenMillis   = new AtomicLongArray(INITIAL_CAPACITY);
+	private AtomicLongArray resourceMasks    = new AtomicLongArray(INITIAL_CAPACITY);
+	private int             deviceCount      = 0;
+	
+	private ArrayBlockingQueue<BaseIotData> pendingQueue = null;
+	private ScheduledExecutorService schedExecSvc = null;
+	
+	private int    batchSize      = ConfigConst.DEFAULT_REGISTRY_BATCH_SIZE;
+	private Path   snapshotPath   = null;
+	private long   snapshotMillis = ConfigConst.DEFAULT_REGISTRY_SNAPSHOT_MILLIS;
+	
+	private volatile boolean isDirty   = false;
+	private volatile boolean isStarted = false;
+	
+	private final AtomicLong registrationCount = new AtomicLong();
+	private final AtomicLong rejectedCount     = new AtomicLong();
+	private final AtomicLong batchCount        = new AtomicLong();
+	
+	
+	// constructors
+	
+	/**
+	 * Default. Reads the queue size, batch size and snapshot settings
+	 * from the {@link ConfigConst#GATEWAY_DEVICE} section.
+	 * 
+	 */
+	public DeviceRegistry()
+	{
+		this(
+			ConfigUtil.getInstance().getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.REGISTRY_QUEUE_SIZE_KEY, ConfigConst.DEFAULT_REGISTRY_QUEUE_SIZE),
+			ConfigUtil.getInstance().getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.REGISTRY_BATCH_SIZE_KEY, ConfigConst.DEFAULT_REGISTRY_BATCH_SIZE),
+			ConfigUtil.getInstance().getProperty(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.REGISTRY_SNAPSHOT_FILE_KEY, ConfigConst.DEFAULT_REGISTRY_SNAPSHOT_FILE),
+			ConfigUtil.getInstance().getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.REGISTRY_SNAPSHOT_MILLIS_KEY, ConfigConst.DEFAULT_REGISTRY_SNAPSHOT_MILLIS));
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param queueSize The maximum number of registrations waiting to be applied.
+	 * @param batchSize The maximum number of registrations applied per write lock.
+	 * @param snapshotFile The snapshot file path; null or empty disables snapshots.
+	 * @param snapshotMillis The interval between snapshots while the registry is running.
+	 */
+	public DeviceRegistry(int queueSize, int batchSize, String snapshotFile, long snapshotMillis)
+	{
+		super();
+		
+		if (queueSize <= 0) {
+			queueSize = ConfigConst.DEFAULT_REGISTRY_QUEUE_SIZE;
+		}
+		
+		if (batchSize > 0) {
+			this.batchSize = batchSize;
+		}
+		
+		if (snapshotMillis > 0L) {
+			this.snapshotMillis = snapshotMillis;
+		}
+		
+		if (snapshotFile != null && ! snapshotFile.isBlank()) {
+			this.snapshotPath = Paths.get(snapshotFile.trim());
+		}
+		
+		this.pendingQueue = new ArrayBlockingQueue<>(queueSize);
+		
+		_Logger.info(
+			"Device registry created. Queue size: " + queueSize + ", batch size: " + this.batchSize +
+			", snapshot: " + (this.snapshotPath != null ? this.snapshotPath : "disabled"));
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Queues a registration request. The request is applied by the next
+	 * call to {@link #processPendingRegistrations()}, which runs
+	 * periodically while the registry is started.
+	 * 
+	 * @param data The registration data; the location ID identifies the device.
+	 * @return boolean True if queued; false if invalid or the queue is full.
+	 */
+	public boolean submitRegistration(BaseIotData data)
+	{
+		if (! isValid(data)) {
+			return false;
+		}
+		
+		if (! this.pendingQueue.offer(data)) {
+			this.rejectedCount.incrementAndGet();
+			
+			_Logger.fine("Registration queue full. Rejecting: " + data.getLocationID());
+			
+			return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Applies all queued registrations, in batches of up to the configured
+	 * batch size per write lock.
+	 * 
+	 * @return int The number of registrations applied.
+	 */
+	public int processPendingRegistrations()
+	{
+		List<BaseIotData> batch = new ArrayList<>(this.batchSize);
+		int total = 0;
+		
+		while (this.pendingQueue.drainTo(batch, this.batchSize) > 0) {
+			this.slotLock.writeLock().lock();
+			
+			try {
+				for (BaseIotData data : batch) {
+					applyRegistration(data);
+				}
+			} finally {
+				this.slotLock.writeLock().unlock();
+			}
+			
+			total += batch.size();
+			batch.clear();
+			
+			this.batchCount.incrementAndGet();
+		}
+		
+		if (total > 0) {
+			this.isDirty = true;
+			
+			_Logger.fine("Applied " + total + " device registrations. Registered devices: " + getDeviceCount());
+		}
+		
+		return total;
+	}
+	
+	/**
+	 * Registers (or re-registers) a device immediately, bypassing the queue.
+	 * 
+	 * @param data The registration data; the location ID identifies the device.
+	 * @return boolean True on success; false if the data is invalid.
+	 */
+	public boolean registerDevice(BaseIotData data)
+	{
+		if (! isValid(data)) {
+			return false;
+		}
+		
+		this.slotLock.writeLock().lock();
+		
+		try {
+			applyRegistration(data);
+		} finally {
+			this.slotLock.writeLock().unlock();
+		}
+		
+		this.isDirty = true;
+		
+		return true;
+	}
+	
+	/**
+	 * Records that data for the given resource was just received from a
+	 * registered device. Unregistered devices are ignored. This never takes
+	 * the write lock, so it's safe to call on every inbound message.
+	 * 
+	 * @param locationID The device location ID.
+	 * @param resource The resource the data arrived on (may be null).
+	 * @param timeMillis The receive time.
+	 * @return boolean True if the device is registered; false otherwise.
+	 */
+	public boolean touchDevice(String locationID, ResourceNameEnum resource, long timeMillis)
+	{
+		Integer slot = (locationID != null ? this.slotIndex.get(locationID) : null);
+		
+		if (slot == null) {
+			return false;
+		}
+		
+		this.slotLock.readLock().lock();
+		
+		try {
+			this.lastSeenMillis.accumulateAndGet(slot, timeMillis, Math::max);
+			
+			if (resource != null) {
+				long bit = 1L << resource.ordinal();
+				
+				if ((this.resourceMasks.get(slot) & bit) == 0L) {
+					this.resourceMasks.getAndAccumulate(slot, bit, (cur, b) -> cur | b);
+				}
+			}
+		} finally {
+			this.slotLock.readLock().unlock();
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Returns a copy of the metadata for the given device.
+	 * 
+	 * @param locationID The device location ID.
+	 * @return DeviceRecord The device metadata, or null if not registered.
+	 */
+	public DeviceRecord getDevice(String locationID)
+	{
+		Integer slot = (locationID != null ? this.slotIndex.get(locationID) : null);
+		
+		if (slot == null) {
+			return null;
+		}
+		
+		this.slotLock.readLock().lock();
+		
+		try {
+			return createRecord(slot);
+		} finally {
+			this.slotLock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Returns a copy of the metadata for all registered devices.
+	 * 
+	 * @return List<DeviceRecord>
+	 */
+	public List<DeviceRecord> getDevices()
+	{
+		this.slotLock.readLock().lock();
+		
+		try {
+			List<DeviceRecord> records = new ArrayList<>(this.deviceCount);
+			
+			for (int slot = 0; slot < this.deviceCount; slot++) {
+				records.add(createRecord(slot));
+			}
+			
+			return records;
+		} finally {
+			this.slotLock.readLock().unlock();
+		}
+	}
+	
+	public long getBatchCount()
+	{
+		return this.batchCount.get();
+	}
+	
+	public int getDeviceCount()
+	{
+		return this.slotIndex.size();
+	}
+	
+	public int getPendingCount()
+	{
+		return this.pendingQueue.size();
+	}
+	
+	public long getRegistrationCount()
+	{
+		return this.registrationCount.get();
+	}
+	
+	public long getRejectedCount()
+	{
+		return this.rejectedCount.get();
+	}
+	
+	/**
+	 * Returns true if the given device is registered.
+	 * 
+	 * @param locationID The device location ID.
+	 * @return boolean
+	 */
+	public boolean isRegistered(String locationID)
+	{
+		return (locationID != null && this.slotIndex.containsKey(locationID));
+	}
+	
+	/**
+	 * Returns true if the registry is running.
+	 * 
+	 * @return boolean
+	 */
+	public boolean isStarted()
+	{
+		return this.isStarted;
+	}
+	
+	/**
+	 * Writes all registered devices to the snapshot file. The file is
+	 * written to a temporary file first and then moved into place, so a
+	 * crash mid-write never leaves a truncated snapshot. Concurrent calls
+	 * are serialized.
+	 * 
+	 * @return boolean True on success; false if snapshots are disabled or the write failed.
+	 */
+	public boolean saveSnapshot()
+	{
+		if (this.snapshotPath == null) {
+			return false;
+		}
+		
+		synchronized (this.snapshotLock) {
+			return writeSnapshot();
+		}
+	}
+	
+	/**
+	 * Loads devices from the snapshot file, merging them into the registry.
+	 * The whole file is read before anything is merged, so a truncated or
+	 * corrupt snapshot leaves the registry unchanged.
+	 * 
+	 * @return int The number of devices loaded; 0 if there is no snapshot.
+	 */
+	public int loadSnapshot()
+	{
+		if (this.snapshotPath == null || ! Files.isRegularFile(this.snapshotPath)) {
+			return 0;
+		}
+		
+		int count = 0;
+		String[] ids = null;
+		float[]  lats = null;
+		float[]  lons = null;
+		float[]  elevs = null;
+		long[]   registered = null;
+		long[]   lastSeen = null;
+		long[]   masks = null;
+		
+		try (DataInputStream in =
+			new DataInputStream(new BufferedInputStream(Files.newInputStream(this.snapshotPath)))) {
+			if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+				_Logger.warning("Ignoring unrecognized device registry snapshot: " + this.snapshotPath);
+				
+				return 0;
+			}
+			
+			count = in.readInt();
+			
+			if (count < 0) {
+				_Logger.warning("Ignoring corrupt device registry snapshot: " + this.snapshotPath);
+				
+				return 0;
+			}
+			
+			ids        = new String[count];
+			lats       = new float[count];
+			lons       = new float[count];
+			elevs      = new float[count];
+			registered = new long[count];
+			lastSeen   = new long[count];
+			masks      = new long[count];
+			
+			for (int i = 0; i < count; i++) {
+				ids[i]        = in.readUTF();
+				lats[i]       = in.readFloat();
+				lons[i]       = in.readFloat();
+				elevs[i]      = in.readFloat();
+				registered[i] = in.readLong();
+				lastSeen[i]   = in.readLong();
+				
+				long mask = 0L;
+				int resourceCount = in.readShort();
+				
+				for (int j = 0; j < resourceCount; j++) {
+					String name = in.readUTF();
+					
+					try {
+						mask |= 1L << ResourceNameEnum.valueOf(name).ordinal();
+					} catch (IllegalArgumentException e) {
+						_Logger.fine("Ignoring unknown resource in snapshot: " + name);
+					}
+				}
+				
+				masks[i] = mask;
+			}
+		} catch (IOException e) {
+			_Logger.log(Level.WARNING, "Failed to load device registry snapshot: " + this.snapshotPath, e);
+			
+			return 0;
+		}
+		
+		this.slotLock.writeLock().lock();
+		
+		try {
+			for (int i = 0; i < count; i++) {
+				int slot = getOrCreateSlot(ids[i]);
+				
+				this.latitudes[slot]        = lats[i];
+				this.longitudes[slot]       = lons[i];
+				this.elevations[slot]       = elevs[i];
+				this.registeredMillis[slot] = registered[i];
+				this.lastSeenMillis.set(slot, lastSeen[i]);
+				this.resourceMasks.set(slot, masks[i]);
+			}
+		} finally {
+			this.slotLock.writeLock().unlock();
+		}
+		
+		_Logger.info("Loaded device registry snapshot. Devices: " + count);
+		
+		return count;
+	}
+	
+	/**
+	 * Loads the snapshot (if any) and starts periodic batch processing
+	 * and snapshotting.
+	 * 
+	 * @return boolean True on success; false otherwise.
+	 */
+	public synchronized boolean startRegistry()
+	{
+		if (this.isStarted) {
+			_Logger.warning("Device registry already started.");
+			
+			return true;
+		}
+		
+		loadSnapshot();
+		
+		this.schedExecSvc = Executors.newSingleThreadScheduledExecutor();
+		this.schedExecSvc.scheduleWithFixedDelay(
+			this::handleProcessing, PROCESS_INTERVAL_MILLIS, PROCESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+		
+		if (this.snapshotPath != null) {
+			this.schedExecSvc.scheduleWithFixedDelay(
+				this::handleSnapshot, this.snapshotMillis, this.snapshotMillis, TimeUnit.MILLISECONDS);
+		}
+		
+		this.isStarted = true;
+		
+		_Logger.info("Device registry started. Registered devices: " + getDeviceCount());
+		
+		return true;
+	}
+	
+	/**
+	 * Stops periodic processing, applies any queued registrations and
+	 * writes a final snapshot. If a scheduled snapshot is still being
+	 * written, the final one waits for it.
+	 * 
+	 * @return boolean True on success; false otherwise.
+	 */
+	public synchronized boolean stopRegistry()
+	{
+		if (! this.isStarted) {
+			return true;
+		}
+		
+		this.isStarted = false;
+		
+		this.schedExecSvc.shutdown();
+		
+		try {
+			if (! this.schedExecSvc.awaitTermination(PROCESS_INTERVAL_MILLIS * 10, TimeUnit.MILLISECONDS)) {
+				_Logger.warning("Device registry tasks still running at stop.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		this.schedExecSvc = null;
+		
+		processPendingRegistrations();
+		
+		boolean success = (this.snapshotPath == null || saveSnapshot());
+		
+		_Logger.info(
+			"Device registry stopped. Registered devices: " + getDeviceCount() +
+			", registrations: " + getRegistrationCount() + ", rejected: " + getRejectedCount());
+		
+		return success;
+	}
+	
+	
+	// private methods
+	
+	/**
+	 * Writes the snapshot. Must be called with the snapshot lock held.
+	 * 
+	 * @return boolean True on success; false if the write failed.
+	 */
+	private boolean writeSnapshot()
+	{
+		List<DeviceRecord> records = getDevices();
+		
+		// cleared before writing, so changes made during the write trigger another snapshot
+		this.isDirty = false;
+		
+		try {
+			Path parent = this.snapshotPath.toAbsolutePath().getParent();
+			
+			if (parent != null) {
+				Files.createDirectories(parent);
+			}
+			
+			Path tmpPath = this.snapshotPath.resolveSibling(this.snapshotPath.getFileName() + ".tmp");
+			
+			try (DataOutputStream out =
+				new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpPath)))) {
+				out.writeInt(SNAPSHOT_MAGIC);
+				out.writeInt(SNAPSHOT_VERSION);
+				out.writeInt(records.size());
+				
+				for (DeviceRecord record : records) {
+					out.writeUTF(record.getLocationID());
+					out.writeFloat(record.getLatitude());
+					out.writeFloat(record.getLongitude());
+					out.writeFloat(record.getElevation());
+					out.writeLong(record.getRegisteredMillis());
+					out.writeLong(record.getLastSeenMillis());
+					
+					// resources are stored by name so the file survives enum reordering
+					List<ResourceNameEnum> resources = record.getResources();
+					out.writeShort(resources.size());
+					
+					for (ResourceNameEnum resource : resources) {
+						out.writeUTF(resource.name());
+					}
+				}
+			}
+			
+			Files.move(tmpPath, this.snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			
+			_Logger.fine("Saved device registry snapshot. Devices: " + records.size());
+			
+			return true;
+		} catch (IOException e) {
+			this.isDirty = true;
+			
+			_Logger.log(Level.WARNING, "Failed to save device registry snapshot: " + this.snapshotPath, e);
+			
+			return false;
+		}
+	}
+	
+	/**
+	 * Stores the registration data. Must be called with the write lock held.
+	 * 
+	 * @param data The registration data.
+	 */
+	private void applyRegistration(BaseIotData data)
+	{
+		int  slot = getOrCreateSlot(data.getLocationID());
+		long now  = System.currentTimeMillis();
+		
+		this.latitudes[slot]        = data.getLatitude();
+		this.longitudes[slot]       = data.getLongitude();
+		this.elevations[slot]       = data.getElevation();
+		this.registeredMillis[slot] = now;
+		this.lastSeenMillis.accumulateAndGet(slot, now, Math::max);
+		
+		this.registrationCount.incrementAndGet();
+	}
+	
+	/**
+	 * Returns the slot for the given location ID, allocating (and growing
+	 * the arrays if needed) for a new device. Must be called with the
+	 * write lock held.
+	 * 
+	 * @param locationID The device location ID.
+	 * @return int The slot.
+	 */
+	private int getOrCreateSlot(String locationID)
+	{
+		Integer slot = this.slotIndex.get(locationID);
+		
+		if (slot != null) {
+			return slot;
+		}
+		
+		if (this.deviceCount == this.locationIDs.length) {
+			int capacity = this.locationIDs.length * 2;
+			
+			this.locationIDs      = Arrays.copyOf(this.locationIDs, capacity);
+			this.latitudes        = Arrays.copyOf(this.latitudes, capacity);
+			this.longitudes       = Arrays.copyOf(this.longitudes, capacity);
+			this.elevations       = Arrays.copyOf(this.elevations, capacity);
+			this.registeredMillis = Arrays.copyOf(this.registeredMillis, capacity);
+			this.lastSeenMillis   = growArray(this.lastSeenMillis, capacity);
+			this.resourceMasks    = growArray(this.resourceMasks, capacity);
+		}
+		
+		int newSlot = this.deviceCount++;
+		
+		this.locationIDs[newSlot] = locationID;
+		
+		// readers that find the slot still take the read lock, so they wait for this batch
+		this.slotIndex.put(locationID, newSlot);
+		
+		return newSlot;
+	}
+	
+	/**
+	 * Creates a record for the given slot. Must be called with either lock held.
+	 * 
+	 * @param slot The slot.
+	 * @return DeviceRecord
+	 */
+	private DeviceRecord createRecord(int slot)
+	{
+		long mask = this.resourceMasks.get(slot);
+		List<ResourceNameEnum> resources = new ArrayList<>(Long.bitCount(mask));
+		
+		for (ResourceNameEnum resource : RESOURCES) {
+			if ((mask & (1L << resource.ordinal())) != 0L) {
+				resources.add(resource);
+			}
+		}
+		
+		return new DeviceRecord(
+			this.locationIDs[slot],
+			this.latitudes[slot], this.longitudes[slot], this.elevations[slot],
+			this.registeredMillis[slot], this.lastSeenMillis.get(slot),
+			Collections.unmodifiableList(resources));
+	}
+	
+	private AtomicLongArray growArray(AtomicLongArray array, int capacity)
+	{
+		AtomicLongArray newArray = new AtomicLongArray(capacity);
+		
+		for (int i = 0; i < array.length(); i++) {
+			newArray.set(i, array.get(i));
+		}
+		
+		return newArray;
+	}
+	
+	private boolean isValid(BaseIotData data)
+	{
+		if (data == null || data.getLocationID() == null ||
+			data.getLocationID().isBlank() || ConfigConst.NOT_SET.equals(data.getLocationID())) {
+			_Logger.fine("Ignoring registration without a location ID.");
+			
+			return false;
+		}
+		
+		return true;
+	}
+	
+	private void handleProcessing()
+	{
+		try {
+			processPendingRegistrations();
+		} catch (Exception e) {
+			// don't let a single failure cancel the scheduled task
+			_Logger.log(Level.WARNING, "Failed to process device registrations.", e);
+		}
+	}
+	
+	private void handleSnapshot()
+	{
+		if (this.isDirty) {
+			saveSnapshot();
+		}
+	}
+	
+	
+	// inner classes
+	
+	/**
+	 * Immutable copy of a registered device's metadata.
+	 * 
+	 */
+	public static class DeviceRecord
+	{
+		private final String locationID;
+		private final float  latitude;
+		private final float  longitude;
+		private final float  elevation;
+		private final long   registeredMillis;
+		private final long   lastSeenMillis;
+		private final List<ResourceNameEnum> resources;
+		
+		DeviceRecord(
+			String locationID, float latitude, float longitude, float elevation,
+			long registeredMillis, long lastSeenMillis, List<ResourceNameEnum> resources)
+		{
+			this.locationID       = locationID;
+			this.latitude         = latitude;
+			this.longitude        = longitude;
+			this.elevation        = elevation;
+			this.registeredMillis = registeredMillis;
+			this.lastSeenMillis   = lastSeenMillis;
+			this.resources        = resources;
+		}
+		
+		public String getLocationID()
+		{
+			return this.locationID;
+		}
+		
+		public float getLatitude()
+		{
+			return this.latitude;
+		}
+		
+		public float getLongitude()
+		{
+			return this.longitude;
+		}
+		
+		public float getElevation()
+		{
+			return this.elevation;
+		}
+		
+		public long getRegisteredMillis()
+		{
+			return this.registeredMillis;
+		}
+		
+		public long getLastSeenMillis()
+		{
+			return this.lastSeenMillis;
+		}
+		
+		/**
+		 * Returns the resources this device has sent data on.
+		 * 
+		 * @return List<ResourceNameEnum>
+		 */
+		public List<ResourceNameEnum> getResources()
+		{
+			return this.resources;
+		}
+		
+		public boolean supportsResource(ResourceNameEnum resource)
+		{
+			return this.resources.contains(resource);
+		}
+	}
+
+}
@@ -27,6 +27,7 @@ public class GatewayDeviceApp
 	
 	private String configFile = ConfigConst.DEFAULT_CONFIG_FILE_NAME;
 	private SystemPerformanceManager sysPerfMgr = null;
+	private DeviceDataManager dataMgr = null;
 	
 	// constructors
 	
@@ -39,8 +40,6 @@ public class GatewayDeviceApp
 		super();
 		
 		_Logger.info("Initializing GDA...");
-		
-		this.sysPerfMgr = new SystemPerformanceManager();
 	}
 	
 	/**
@@ -54,8 +53,6 @@ public class GatewayDeviceApp
 		
 		_Logger.info("Initializing GDA...");
 		
-		this.sysPerfMgr = new SystemPerformanceManager();
-		
 		Map<String, String> argMap = parseArgs(args);
 		if (argMap.containsKey(ConfigConst.CONFIG_FILE_KEY)) {
 			System.setProperty(ConfigConst.CONFIG_FILE_KEY, argMap.get(ConfigConst.CONFIG_FILE_KEY));
@@ -133,6 +130,20 @@ public class GatewayDeviceApp
 		_Logger.info("Starting GDA...");
 		
 		try {
+			// created here rather than in the constructor, after any config file override is in place
+			if (this.dataMgr == null) {
+				this.dataMgr = new DeviceDataManager();
+			}
+			
+			if (this.sysPerfMgr == null) {
+				this.sysPerfMgr = new SystemPerformanceManager();
+				
+				// GDA telemetry goes through the same path as CDA data (persistence, cloud, state)
+				this.sysPerfMgr.setDataMessageListener(this.dataMgr);
+			}
+			
+			this.dataMgr.startManager();
+			
 			if (this.sysPerfMgr.startManager()) {
 				_Logger.info("GDA started successfully.");
 			} else {
@@ -157,11 +168,15 @@ public class GatewayDeviceApp
 		_Logger.info("Stopping GDA...");
 		
 		try {
-			if (this.sysPerfMgr.stopManager()) {
+			if (this.sysPerfMgr == null || this.sysPerfMgr.stopManager()) {
 				_Logger.log(Level.INFO, "GDA stopped successfully with exit code {0}.", code);
 			} else {
 				_Logger.warning("Failed to stop system performance manager!");
 			}
+			
+			if (this.dataMgr != null) {
+				this.dataMgr.stopManager();
+			}
 		} catch (Exception e) {
 			_Logger.log(Level.SEVERE, "Failed to cleanly stop GDA. Exiting.", e);
 		}
@@ -0,0 +1,757 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.app;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.data.SensorData;
+
+/**
+ * Geohash grid index over recent {@link SensorData} readings.
+ * <p>
+ * Each reading is placed in the geohash cell (at the configured
+ * precision) containing its latitude / longitude. Cells are kept in a
+ * sorted map keyed by the cell's geohash bits, so every shorter geohash
+ * prefix - i.e. every larger region - is a contiguous key range. Within
+ * a cell, readings are held per type ID in a bounded ring buffer, and
+ * cells with nothing newer than the retention window are purged.
+ * Queries take a 'since' time, so callers choose how recent the
+ * returned readings must be.
+ * <p>
+ * Readings still at the default position ({@link ConfigConst#DEFAULT_LAT},
+ * {@link ConfigConst#DEFAULT_LON}) are treated as having no position.
+ * <p>
+ * Bounding box queries probe just the cells overlapping the box (or
+ * scan the cells if the box covers too many of them); radius queries
+ * probe the enclosing box and then filter by great-circle distance.
+ * Regional aggregates are computed from the cells under a geohash prefix.
+ * 
+ */
+public class GeoSpatialIndex
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(GeoSpatialIndex.class.getName());
+	
+	private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+	private static final int    MAX_PRECISION = 12;
+	private static final int    MAX_PROBE_CELLS = 4096;
+	private static final double EARTH_RADIUS_METERS = 6371008.8;
+	private static final double METERS_PER_DEGREE = Math.PI * EARTH_RADIUS_METERS / 180.0;
+	
+	
+	// private var's
+	
+	private final ConcurrentSkipListMap<Long, Cell> cells = new ConcurrentSkipListMap<>();
+	
+	private int  precision      = ConfigConst.DEFAULT_GEO_PRECISION;
+	private int  keyBits        = 0;
+	private int  latBits        = 0;
+	private int  lonBits        = 0;
+	private long windowMillis   = ConfigConst.DEFAULT_GEO_WINDOW_MILLIS;
+	private int  cellCapacity   = ConfigConst.DEFAULT_GEO_CELL_CAPACITY;
+	
+	private final AtomicLong lastPurgeMillis = new AtomicLong();
+	private final AtomicLong indexedCount = new AtomicLong();
+	private final AtomicLong skippedCount = new AtomicLong();
+	
+	
+	// constructors
+	
+	/**
+	 * Default. Reads the precision, retention window and cell capacity
+	 * from the {@link ConfigConst#GATEWAY_DEVICE} section.
+	 * 
+	 */
+	public GeoSpatialIndex()
+	{
+		this(
+			ConfigUtil.getInstance().getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.GEO_PRECISION_KEY, ConfigConst.DEFAULT_GEO_PRECISION),
+			ConfigUtil.getInstance().getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.GEO_WINDOW_MILLIS_KEY, ConfigConst.DEFAULT_GEO_WINDOW_MILLIS),
+			ConfigUtil.getInstance().getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.GEO_CELL_CAPACITY_KEY, ConfigConst.DEFAULT_GEO_CELL_CAPACITY));
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param precision The geohash length (1 - 12) of the index cells; 6 is roughly 1.2 x 0.6 km.
+	 * @param windowMillis How long readings are retained.
+	 * @param cellCapacity The maximum readings retained per cell and type ID.
+	 */
+	public GeoSpatialIndex(int precision, long windowMillis, int cellCapacity)
+	{
+		super();
+		
+		if (precision > 0 && precision <= MAX_PRECISION) {
+			this.precision = precision;
+		}
+		
+		if (windowMillis > 0L) {
+			this.windowMillis = windowMillis;
+		}
+		
+		if (cellCapacity > 0) {
+			this.cellCapacity = cellCapacity;
+		}
+		
+		// geohash interleaves bits starting with longitude
+		this.keyBits = this.precision * 5;
+		this.lonBits = (this.keyBits + 1) / 2;
+		this.latBits = this.keyBits / 2;
+		
+		_Logger.info(
+			"Geo-spatial index created. Precision: " + this.precision + ", window: " + this.windowMillis +
+			" ms, cell capacity: " + this.cellCapacity);
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Returns the geohash of the given position.
+	 * 
+	 * @param latitude The latitude in degrees.
+	 * @param longitude The longitude in degrees.
+	 * @param precision The geohash length (1 - 12).
+	 * @return String
+	 */
+	public static String toGeohash(float latitude, float longitude, int precision)
+	{
+		precision = Math.max(1, Math.min(precision, MAX_PRECISION));
+		
+		int bits = precision * 5;
+		long key = interleave(
+			toIndex(longitude, -180.0, 360.0, (bits + 1) / 2), toIndex(latitude, -90.0, 180.0, bits / 2), bits);
+		
+		return keyToGeohash(key, bits);
+	}
+	
+	/**
+	 * Adds a reading to the index. Readings without a valid position,
+	 * including those left at the default position, are skipped.
+	 * 
+	 * @param data The sensor reading.
+	 * @param timeMillis The receive time of the reading.
+	 * @return boolean True if indexed; false otherwise.
+	 */
+	public boolean addSensorData(SensorData data, long timeMillis)
+	{
+		if (data == null || ! isValidPosition(data.getLatitude(), data.getLongitude())) {
+			this.skippedCount.incrementAndGet();
+			
+			return false;
+		}
+		
+		long key = cellKey(data.getLatitude(), data.getLongitude());
+		
+		Cell cell = this.cells.computeIfAbsent(key, k -> new Cell(timeMillis));
+		
+		// retired by a concurrent purge, which may not have removed it yet
+		while (! cell.add(data, timeMillis, this.cellCapacity)) {
+			this.cells.remove(key, cell);
+			cell = this.cells.computeIfAbsent(key, k -> new Cell(timeMillis));
+		}
+		
+		this.indexedCount.incrementAndGet();
+		
+		long lastPurge = this.lastPurgeMillis.get();
+		
+		// only the thread that wins the update runs the purge
+		if (timeMillis - lastPurge > this.windowMillis && this.lastPurgeMillis.compareAndSet(lastPurge, timeMillis)) {
+			purgeExpired(timeMillis);
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Returns the retained readings of the given type inside the bounding box.
+	 * A box with minLon > maxLon crosses the antimeridian.
+	 * 
+	 * @param typeID The sensor type ID.
+	 * @param minLat The southern edge.
+	 * @param minLon The western edge.
+	 * @param maxLat The northern edge.
+	 * @param maxLon The eastern edge.
+	 * @param sinceMillis Only readings received at or after this time are returned.
+	 * @return List<GeoReading>
+	 */
+	public List<GeoReading> findInBoundingBox(
+		int typeID, float minLat, float minLon, float maxLat, float maxLon, long sinceMillis)
+	{
+		List<GeoReading> readings = new ArrayList<>();
+		
+		if (minLon > maxLon) {
+			collectInBox(typeID, minLat, minLon, maxLat, 180.0f, sinceMillis, readings);
+			collectInBox(typeID, minLat, -180.0f, maxLat, maxLon, sinceMillis, readings);
+		} else {
+			collectInBox(typeID, minLat, minLon, maxLat, maxLon, sinceMillis, readings);
+		}
+		
+		return readings;
+	}
+	
+	/**
+	 * Returns the retained readings of the given type within the given
+	 * great-circle distance of a position.
+	 * 
+	 * @param typeID The sensor type ID.
+	 * @param latitude The center latitude.
+	 * @param longitude The center longitude.
+	 * @param radiusMeters The radius in meters.
+	 * @param sinceMillis Only readings received at or after this time are returned.
+	 * @return List<GeoReading>
+	 */
+	public List<GeoReading> findWithinRadius(
+		int typeID, float latitude, float longitude, double radiusMeters, long sinceMillis)
+	{
+		double dLat = radiusMeters / METERS_PER_DEGREE;
+		double cosLat = Math.cos(Math.toRadians(latitude));
+		double dLon = (cosLat > 1.0e-6 ? dLat / cosLat : 180.0);
+		
+		float minLat = (float) Math.max(-90.0, latitude - dLat);
+		float maxLat = (float) Math.min(90.0, latitude + dLat);
+		
+		List<GeoReading> candidates;
+		
+		if (dLon >= 180.0 || maxLat >= 90.0f || minLat <= -90.0f) {
+			candidates = findInBoundingBox(typeID, minLat, -180.0f, maxLat, 180.0f, sinceMillis);
+		} else {
+			candidates = findInBoundingBox(
+				typeID, minLat, wrapLongitude(longitude - dLon), maxLat, wrapLongitude(longitude + dLon), sinceMillis);
+		}
+		
+		List<GeoReading> readings = new ArrayList<>(candidates.size());
+		
+		for (GeoReading reading : candidates) {
+			if (distanceMeters(latitude, longitude, reading.getLatitude(), reading.getLongitude()) <= radiusMeters) {
+				readings.add(reading);
+			}
+		}
+		
+		return readings;
+	}
+	
+	/**
+	 * Returns the aggregate of the retained readings of the given type in
+	 * the region identified by the geohash. The geohash may be any length
+	 * up to the index precision; shorter geohashes cover larger regions.
+	 * 
+	 * @param geohash The region's geohash.
+	 * @param typeID The sensor type ID.
+	 * @param sinceMillis Only readings received at or after this time are included.
+	 * @return RegionAggregate The aggregate, or null if the geohash is invalid.
+	 */
+	public RegionAggregate getRegionAggregate(String geohash, int typeID, long sinceMillis)
+	{
+		Long prefix = geohashToKey(geohash);
+		
+		if (prefix == null || geohash.length() > this.precision) {
+			_Logger.fine("Invalid region geohash for index precision " + this.precision + ": " + geohash);
+			
+			return null;
+		}
+		
+		int shift = this.keyBits - geohash.length() * 5;
+		long fromKey = prefix << shift;
+		long toKey = (prefix + 1) << shift;
+		
+		RegionAggregate aggregate = new RegionAggregate(geohash.toLowerCase(), typeID);
+		
+		for (Cell cell : this.cells.subMap(fromKey, true, toKey, false).values()) {
+			cell.aggregate(typeID, sinceMillis, aggregate);
+		}
+		
+		return aggregate;
+	}
+	
+	/**
+	 * Returns the aggregates of the retained readings of the given type,
+	 * grouped by region at the given geohash length.
+	 * 
+	 * @param regionPrecision The geohash length of the regions (up to the index precision).
+	 * @param typeID The sensor type ID.
+	 * @param sinceMillis Only readings received at or after this time are included.
+	 * @return List<RegionAggregate> The non-empty regions.
+	 */
+	public List<RegionAggregate> getRegionAggregates(int regionPrecision, int typeID, long sinceMillis)
+	{
+		regionPrecision = Math.max(1, Math.min(regionPrecision, this.precision));
+		
+		int shift = this.keyBits - regionPrecision * 5;
+		
+		List<RegionAggregate> aggregates = new ArrayList<>();
+		RegionAggregate aggregate = null;
+		long curPrefix = -1L;
+		
+		// keys are sorted, so cells in the same region are adjacent
+		for (Map.Entry<Long, Cell> entry : this.cells.entrySet()) {
+			long prefix = entry.getKey() >>> shift;
+			
+			if (aggregate == null || prefix != curPrefix) {
+				if (aggregate != null && aggregate.getCount() > 0) {
+					aggregates.add(aggregate);
+				}
+				
+				curPrefix = prefix;
+				aggregate = new RegionAggregate(keyToGeohash(prefix, regionPrecision * 5), typeID);
+			}
+			
+			entry.getValue().aggregate(typeID, sinceMillis, aggregate);
+		}
+		
+		if (aggregate != null && aggregate.getCount() > 0) {
+			aggregates.add(aggregate);
+		}
+		
+		return aggregates;
+	}
+	
+	public int getCellCount()
+	{
+		return this.cells.size();
+	}
+	
+	public long getIndexedCount()
+	{
+		return this.indexedCount.get();
+	}
+	
+	public int getPrecision()
+	{
+		return this.precision;
+	}
+	
+	public long getSkippedCount()
+	{
+		return this.skippedCount.get();
+	}
+	
+	/**
+	 * Removes cells with no readings newer than the retention window.
+	 * Called periodically as readings are added.
+	 * 
+	 * @param nowMillis The current time.
+	 * @return int The number of cells removed.
+	 */
+	public int purgeExpired(long nowMillis)
+	{
+		long cutoff = nowMillis - this.windowMillis;
+		int removed = 0;
+		
+		for (Long key : this.cells.keySet()) {
+			Cell cell = this.cells.computeIfPresent(key, (k, c) -> (c.retire(cutoff) ? null : c));
+			
+			if (cell == null) {
+				removed++;
+			}
+		}
+		
+		if (removed > 0) {
+			_Logger.fine("Purged " + removed + " expired geo index cells. Remaining: " + this.cells.size());
+		}
+		
+		return removed;
+	}
+	
+	
+	// private methods
+	
+	private void collectInBox(
+		int typeID, float minLat, float minLon, float maxLat, float maxLon, long sinceMillis, List<GeoReading> readings)
+	{
+		long minLatIdx = toIndex(minLat, -90.0, 180.0, this.latBits);
+		long maxLatIdx = toIndex(maxLat, -90.0, 180.0, this.latBits);
+		long minLonIdx = toIndex(minLon, -180.0, 360.0, this.lonBits);
+		long maxLonIdx = toIndex(maxLon, -180.0, 360.0, this.lonBits);
+		
+		long probeCount = (maxLatIdx - minLatIdx + 1) * (maxLonIdx - minLonIdx + 1);
+		
+		if (probeCount <= MAX_PROBE_CELLS && probeCount <= this.cells.size()) {
+			for (long latIdx = minLatIdx; latIdx <= maxLatIdx; latIdx++) {
+				for (long lonIdx = minLonIdx; lonIdx <= maxLonIdx; lonIdx++) {
+					Cell cell = this.cells.get(interleave(lonIdx, latIdx, this.keyBits));
+					
+					if (cell != null) {
+						cell.collect(typeID, minLat, minLon, maxLat, maxLon, sinceMillis, readings);
+					}
+				}
+			}
+		} else {
+			// cheaper to visit every live cell than to probe mostly empty ones
+			for (Cell cell : this.cells.values()) {
+				cell.collect(typeID, minLat, minLon, maxLat, maxLon, sinceMillis, readings);
+			}
+		}
+	}
+	
+	private long cellKey(float latitude, float longitude)
+	{
+		return interleave(
+			toIndex(longitude, -180.0, 360.0, this.lonBits), toIndex(latitude, -90.0, 180.0, this.latBits), this.keyBits);
+	}
+	
+	private static long toIndex(double value, double min, double range, int bits)
+	{
+		long cells = 1L << bits;
+		long index = (long) Math.floor((value - min) / range * cells);
+		
+		return Math.max(0L, Math.min(index, cells - 1));
+	}
+	
+	private static long interleave(long lonIdx, long latIdx, int bits)
+	{
+		long key = 0L;
+		int lonBit = (bits + 1) / 2 - 1;
+		int latBit = bits / 2 - 1;
+		
+		for (int i = 0; i < bits; i++) {
+			if ((i & 1) == 0) {
+				key = (key << 1) | ((lonIdx >>> lonBit--) & 1L);
+			} else {
+				key = (key << 1) | ((latIdx >>> latBit--) & 1L);
+			}
+		}
+		
+		return key;
+	}
+	
+	private static String keyToGeohash(long key, int bits)
+	{
+		char[] chars = new char[bits / 5];
+		
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = BASE32.charAt((int) ((key >>> (bits - (i + 1) * 5)) & 0x1F));
+		}
+		
+		return new String(chars);
+	}
+	
+	private static Long geohashToKey(String geohash)
+	{
+		if (geohash == null || geohash.isEmpty() || geohash.length() > MAX_PRECISION) {
+			return null;
+		}
+		
+		long key = 0L;
+		
+		for (int i = 0; i < geohash.length(); i++) {
+			int val = BASE32.indexOf(Character.toLowerCase(geohash.charAt(i)));
+			
+			if (val < 0) {
+				return null;
+			}
+			
+			key = (key << 5) | val;
+		}
+		
+		return key;
+	}
+	
+	private static boolean isValidPosition(float latitude, float longitude)
+	{
+		if (latitude == ConfigConst.DEFAULT_LAT && longitude == ConfigConst.DEFAULT_LON) {
+			return false;
+		}
+		
+		return (latitude >= -90.0f && latitude <= 90.0f && longitude >= -180.0f && longitude <= 180.0f);
+	}
+	
+	private static float wrapLongitude(double longitude)
+	{
+		if (longitude > 180.0) {
+			longitude -= 360.0;
+		} else if (longitude < -180.0) {
+			longitude += 360.0;
+		}
+		
+		return (float) longitude;
+	}
+	
+	private static double distanceMeters(double lat1, double lon1, double lat2, double lon2)
+	{
+		double dLat = Math.toRadians(lat2 - lat1);
+		double dLon = Math.toRadians(lon2 - lon1);
+		double a =
+			Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+			Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+		
+		return 2.0 * EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+	}
+	
+	
+	// inner classes
+	
+	/**
+	 * The readings in one geohash cell, grouped by type ID.
+	 * 
+	 */
+	private static class Cell
+	{
+		private final Map<Integer, Series> seriesMap = new HashMap<>(4);
+		
+		private volatile long lastUpdateMillis = 0L;
+		private boolean isRetired = false;
+		
+		Cell(long createdMillis)
+		{
+			// so a purge can't retire the cell before its first reading is added
+			this.lastUpdateMillis = createdMillis;
+		}
+		
+		/**
+		 * Adds a reading, unless the cell was retired by a purge.
+		 */
+		synchronized boolean add(SensorData data, long timeMillis, int capacity)
+		{
+			if (this.isRetired) {
+				return false;
+			}
+			
+			Series series = this.seriesMap.computeIfAbsent(data.getTypeID(), t -> new Series(capacity));
+			series.add(data, timeMillis);
+			
+			this.lastUpdateMillis = Math.max(this.lastUpdateMillis, timeMillis);
+			
+			return true;
+		}
+		
+		/**
+		 * Retires the cell if it has nothing newer than the cutoff. Once
+		 * retired it accepts no more readings, so none can be lost in a
+		 * cell that has already been dropped from the index.
+		 */
+		synchronized boolean retire(long cutoffMillis)
+		{
+			if (this.lastUpdateMillis < cutoffMillis) {
+				this.isRetired = true;
+			}
+			
+			return this.isRetired;
+		}
+		
+		synchronized void collect(
+			int typeID, float minLat, float minLon, float maxLat, float maxLon, long sinceMillis, List<GeoReading> readings)
+		{
+			Series series = this.seriesMap.get(typeID);
+			
+			if (series != null) {
+				series.collect(typeID, minLat, minLon, maxLat, maxLon, sinceMillis, readings);
+			}
+		}
+		
+		synchronized void aggregate(int typeID, long sinceMillis, RegionAggregate aggregate)
+		{
+			Series series = this.seriesMap.get(typeID);
+			
+			if (series != null) {
+				series.aggregate(sinceMillis, aggregate);
+			}
+		}
+	}
+	
+	/**
+	 * Ring buffer of the most recent readings of one type in a cell.
+	 * 
+	 */
+	private static class Series
+	{
+		private final long[]   times;
+		private final float[]  latitudes;
+		private final float[]  longitudes;
+		private final float[]  values;
+		private final String[] locationIDs;
+		
+		private int next  = 0;
+		private int count = 0;
+		
+		Series(int capacity)
+		{
+			this.times       = new long[capacity];
+			this.latitudes   = new float[capacity];
+			this.longitudes  = new float[capacity];
+			this.values      = new float[capacity];
+			this.locationIDs = new String[capacity];
+		}
+		
+		void add(SensorData data, long timeMillis)
+		{
+			this.times[this.next]       = timeMillis;
+			this.latitudes[this.next]   = data.getLatitude();
+			this.longitudes[this.next]  = data.getLongitude();
+			this.values[this.next]      = data.getValue();
+			this.locationIDs[this.next] = data.getLocationID();
+			
+			this.next = (this.next + 1) % this.times.length;
+			this.count = Math.min(this.count + 1, this.times.length);
+		}
+		
+		void collect(
+			int typeID, float minLat, float minLon, float maxLat, float maxLon, long sinceMillis, List<GeoReading> readings)
+		{
+			for (int i = 0; i < this.count; i++) {
+				if (this.times[i] >= sinceMillis &&
+					this.latitudes[i] >= minLat && this.latitudes[i] <= maxLat &&
+					this.longitudes[i] >= minLon && this.longitudes[i] <= maxLon) {
+					readings.add(new GeoReading(
+						this.locationIDs[i], typeID, this.latitudes[i], this.longitudes[i], this.values[i], this.times[i]));
+				}
+			}
+		}
+		
+		void aggregate(long sinceMillis, RegionAggregate aggregate)
+		{
+			for (int i = 0; i < this.count; i++) {
+				if (this.times[i] >= sinceMillis) {
+					aggregate.add(this.values[i]);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Immutable copy of an indexed reading.
+	 * 
+	 */
+	public static class GeoReading
+	{
+		private final String locationID;
+		private final int    typeID;
+		private final float  latitude;
+		private final float  longitude;
+		private final float  value;
+		private final long   timeMillis;
+		
+		GeoReading(String locationID, int typeID, float latitude, float longitude, float value, long timeMillis)
+		{
+			this.locationID = locationID;
+			this.typeID     = typeID;
+			this.latitude   = latitude;
+			this.longitude  = longitude;
+			this.value      = value;
+			this.timeMillis = timeMillis;
+		}
+		
+		public String getLocationID()
+		{
+			return this.locationID;
+		}
+		
+		public int getTypeID()
+		{
+			return this.typeID;
+		}
+		
+		public float getLatitude()
+		{
+			return this.latitude;
+		}
+		
+		public float getLongitude()
+		{
+			return this.longitude;
+		}
+		
+		public float getValue()
+		{
+			return this.value;
+		}
+		
+		public long getTimeMillis()
+		{
+			return this.timeMillis;
+		}
+	}
+	
+	/**
+	 * Count, min, max and mean of the readings of one type in a region.
+	 * 
+	 */
+	public static class RegionAggregate
+	{
+		private final String geohash;
+		private final int    typeID;
+		
+		private int    count = 0;
+		private double sum   = 0.0;
+		private float  min   = Float.NaN;
+		private float  max   = Float.NaN;
+		
+		RegionAggregate(String geohash, int typeID)
+		{
+			this.geohash = geohash;
+			this.typeID  = typeID;
+		}
+		
+		void add(float value)
+		{
+			if (this.count == 0) {
+				this.min = value;
+				this.max = value;
+			} else {
+				this.min = Math.min(this.min, value);
+				this.max = Math.max(this.max, value);
+			}
+			
+			this.count++;
+			this.sum += value;
+		}
+		
+		public String getGeohash()
+		{
+			return this.geohash;
+		}
+		
+		public int getTypeID()
+		{
+			return this.typeID;
+		}
+		
+		public int getCount()
+		{
+			return this.count;
+		}
+		
+		public float getMin()
+		{
+			return this.min;
+		}
+		
+		public float getMax()
+		{
+			return this.max;
+		}
+		
+		/**
+		 * Returns the mean value, or NaN if the region has no readings.
+		 * 
+		 * @return float
+		 */
+		public float getMean()
+		{
+			return (this.count > 0 ? (float) (this.sum / this.count) : Float.NaN);
+		}
+	}
+
+}
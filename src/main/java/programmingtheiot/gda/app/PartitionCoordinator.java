@@ -0,0 +1,308 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.app;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.gda.connection.Mqttv5ClientConnector;
+
+/**
+ * Coordinates device partition ownership across multiple GDA instances
+ * sharing the same MQTT broker.
+ * <p>
+ * Each instance publishes a retained heartbeat to
+ * {@link ConfigConst#CLUSTER_MEMBER_TOPIC_BASE}{instanceID} and subscribes
+ * to the heartbeats of all other instances. An instance that stops (or
+ * whose connection drops, via its will message) clears its retained
+ * heartbeat, and one that stops sending heartbeats is expired after the
+ * member timeout; either way the remaining instances rebalance its
+ * partitions within a few heartbeat intervals.
+ * 
+ */
+public class PartitionCoordinator
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(PartitionCoordinator.class.getName());
+	
+	private static final byte[] EMPTY_PAYLOAD = new byte[0];
+	
+	
+	// private var's
+	
+	private PartitionTable           partitionTable = null;
+	private Mqttv5ClientConnector    mqttClient = null;
+	private ScheduledExecutorService schedExecSvc = null;
+	
+	private String  memberTopic = null;
+	private long    heartbeatMillis = ConfigConst.DEFAULT_CLUSTER_HEARTBEAT_MILLIS;
+	private int     qos = 1;
+	
+	private volatile boolean isStarted = false;
+	
+	
+	// constructors
+	
+	/**
+	 * Default. Reads the instance ID, partition count and timing from the
+	 * {@link ConfigConst#GATEWAY_DEVICE} section, and uses the MQTT settings
+	 * from the {@link ConfigConst#MQTT_GATEWAY_SERVICE} section.
+	 * 
+	 */
+	public PartitionCoordinator()
+	{
+		this(
+			getConfiguredInstanceID(),
+			ConfigUtil.getInstance().getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.PARTITION_COUNT_KEY, ConfigConst.DEFAULT_PARTITION_COUNT),
+			ConfigUtil.getInstance().getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.CLUSTER_HEARTBEAT_MILLIS_KEY, ConfigConst.DEFAULT_CLUSTER_HEARTBEAT_MILLIS),
+			ConfigUtil.getInstance().getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.CLUSTER_MEMBER_TIMEOUT_MILLIS_KEY, ConfigConst.DEFAULT_CLUSTER_MEMBER_TIMEOUT_MILLIS),
+			new Mqttv5ClientConnector());
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param instanceID The unique ID of this GDA instance.
+	 * @param partitionCount The total number of partitions (must be the same for all instances).
+	 * @param heartbeatMillis The interval between heartbeats.
+	 * @param memberTimeoutMillis The time after which a silent member is removed.
+	 * @param mqttClient The (unconnected) client to use for cluster traffic.
+	 */
+	public PartitionCoordinator(
+		String instanceID, int partitionCount, long heartbeatMillis, long memberTimeoutMillis, Mqttv5ClientConnector mqttClient)
+	{
+		super();
+		
+		if (heartbeatMillis > 0L) {
+			this.heartbeatMillis = heartbeatMillis;
+		}
+		
+		if (memberTimeoutMillis <= this.heartbeatMillis) {
+			memberTimeoutMillis = this.heartbeatMillis * 3;
+		}
+		
+		this.partitionTable = new PartitionTable(instanceID, partitionCount, memberTimeoutMillis);
+		this.mqttClient     = mqttClient;
+		this.memberTopic    = ConfigConst.CLUSTER_MEMBER_TOPIC_BASE + instanceID;
+		
+		_Logger.info(
+			"Partition coordinator created. Instance: " + instanceID + ", partitions: " + partitionCount +
+			", heartbeat: " + this.heartbeatMillis + " ms, member timeout: " + memberTimeoutMillis + " ms");
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Returns the ID of this instance.
+	 * 
+	 * @return String
+	 */
+	public String getInstanceID()
+	{
+		return this.partitionTable.getInstanceID();
+	}
+	
+	/**
+	 * Returns the partitions currently owned by this instance.
+	 * 
+	 * @return List<Integer>
+	 */
+	public List<Integer> getOwnedPartitions()
+	{
+		return this.partitionTable.getOwnedPartitions();
+	}
+	
+	/**
+	 * Returns the underlying partition table.
+	 * 
+	 * @return PartitionTable
+	 */
+	public PartitionTable getPartitionTable()
+	{
+		return this.partitionTable;
+	}
+	
+	/**
+	 * Checks if data from the given location ID should be processed by
+	 * this instance. Safe to call from any thread without blocking.
+	 * 
+	 * @param locationID The device location ID.
+	 * @return boolean True if owned locally; false otherwise.
+	 */
+	public boolean isOwned(String locationID)
+	{
+		return this.partitionTable.isOwned(locationID);
+	}
+	
+	/**
+	 * Returns true if the coordinator is running.
+	 * 
+	 * @return boolean
+	 */
+	public boolean isStarted()
+	{
+		return this.isStarted;
+	}
+	
+	/**
+	 * Connects to the broker, registers this instance and starts the
+	 * heartbeat. Until other members are discovered this instance owns
+	 * all partitions.
+	 * 
+	 * @return boolean True on success; false otherwise.
+	 */
+	public synchronized boolean startCoordinator()
+	{
+		if (this.isStarted) {
+			_Logger.warning("Partition coordinator already started.");
+			
+			return true;
+		}
+		
+		// the broker clears our retained heartbeat if the connection drops
+		this.mqttClient.setWillMessage(this.memberTopic, EMPTY_PAYLOAD, this.qos, true);
+		
+		if (! this.mqttClient.connectClient()) {
+			_Logger.warning("Failed to connect partition coordinator to broker.");
+			
+			return false;
+		}
+		
+		if (! this.mqttClient.subscribeToTopic(
+			ConfigConst.CLUSTER_MEMBER_TOPIC_BASE + "+", this.qos, this::handleMemberMessage)) {
+			this.mqttClient.disconnectClient();
+			
+			return false;
+		}
+		
+		this.schedExecSvc = Executors.newSingleThreadScheduledExecutor();
+		this.schedExecSvc.scheduleAtFixedRate(
+			this::handleHeartbeat, 0L, this.heartbeatMillis, TimeUnit.MILLISECONDS);
+		
+		this.isStarted = true;
+		
+		_Logger.info("Partition coordinator started: " + getInstanceID());
+		
+		return true;
+	}
+	
+	/**
+	 * Stops the heartbeat, clears this instance's retained heartbeat so
+	 * the remaining members take over immediately, and disconnects.
+	 * 
+	 * @return boolean True on success; false otherwise.
+	 */
+	public synchronized boolean stopCoordinator()
+	{
+		if (! this.isStarted) {
+			return true;
+		}
+		
+		this.isStarted = false;
+		
+		this.schedExecSvc.shutdownNow();
+		this.schedExecSvc = null;
+		
+		this.mqttClient.publishMessage(this.memberTopic, EMPTY_PAYLOAD, this.qos, true);
+		
+		boolean success = this.mqttClient.disconnectClient();
+		
+		_Logger.info("Partition coordinator stopped: " + getInstanceID());
+		
+		return success;
+	}
+	
+	
+	// private methods
+	
+	/**
+	 * Returns the configured instance ID, falling back to the
+	 * device location ID if not set.
+	 * 
+	 * @return String
+	 */
+	private static String getConfiguredInstanceID()
+	{
+		ConfigUtil configUtil = ConfigUtil.getInstance();
+		
+		String instanceID = configUtil.getProperty(ConfigConst.GATEWAY_DEVICE, ConfigConst.INSTANCE_ID_KEY);
+		
+		if (instanceID == null || instanceID.isBlank()) {
+			instanceID = configUtil.getProperty(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.DEVICE_LOCATION_ID_KEY, ConfigConst.NOT_SET);
+		}
+		
+		return instanceID.trim();
+	}
+	
+	/**
+	 * Publishes this instance's heartbeat and expires silent members.
+	 * 
+	 */
+	private void handleHeartbeat()
+	{
+		try {
+			List<Integer> owned = this.partitionTable.getOwnedPartitions();
+			
+			StringBuilder payload = new StringBuilder("partitions=");
+			
+			for (int i = 0; i < owned.size(); i++) {
+				if (i > 0) {
+					payload.append(',');
+				}
+				
+				payload.append(owned.get(i));
+			}
+			
+			this.mqttClient.publishMessage(
+				this.memberTopic, payload.toString().getBytes(StandardCharsets.UTF_8), this.qos, true);
+			
+			this.partitionTable.expireMembers(System.currentTimeMillis());
+		} catch (Exception e) {
+			// don't let a single failure cancel the scheduled heartbeat
+			_Logger.log(Level.WARNING, "Failed to process cluster heartbeat.", e);
+		}
+	}
+	
+	/**
+	 * Processes a heartbeat (or heartbeat removal) from any cluster member.
+	 * 
+	 * @param topic The member topic.
+	 * @param payload The heartbeat payload; empty if the member left.
+	 */
+	private void handleMemberMessage(String topic, byte[] payload)
+	{
+		String memberID = topic.substring(topic.lastIndexOf('/') + 1);
+		
+		if (payload == null || payload.length == 0) {
+			_Logger.info("Cluster member left: " + memberID);
+			
+			this.partitionTable.removeMember(memberID);
+		} else {
+			this.partitionTable.updateMember(memberID, System.currentTimeMillis());
+		}
+	}
+
+}
@@ -0,0 +1,301 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+/**
+ * Tracks the live GDA instances in a cluster and the device partitions
+ * owned by the local instance.
+ * <p>
+ * Devices are mapped to partitions by hashing their location ID. Each
+ * partition is assigned to a live member using rendezvous (highest random
+ * weight) hashing, so every instance computes the same assignment from the
+ * same membership view without a central coordinator, and a member leaving
+ * only moves the partitions it owned.
+ * <p>
+ * Ownership lookups ({@link #isOwned(String)}) read an immutable snapshot
+ * and never block; membership updates are synchronized.
+ * 
+ */
+public class PartitionTable
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(PartitionTable.class.getName());
+	
+	/**
+	 * Returns the partition for the given location ID.
+	 * 
+	 * @param locationID The device location ID.
+	 * @param partitionCount The total number of partitions.
+	 * @return int The partition index, from 0 to partitionCount - 1.
+	 */
+	public static int getPartition(String locationID, int partitionCount)
+	{
+		int hash = (locationID != null ? locationID.hashCode() : 0);
+		
+		// spread the bits so similar IDs (e.g. 'device001', 'device002') don't cluster
+		hash ^= (hash >>> 16);
+		hash *= 0x85ebca6b;
+		hash ^= (hash >>> 13);
+		
+		return Math.floorMod(hash, partitionCount);
+	}
+	
+	
+	// private var's
+	
+	private String instanceID = null;
+	private int    partitionCount = 0;
+	private long   memberTimeoutMillis = 0L;
+	
+	// member ID -> last heartbeat time (local clock)
+	private Map<String, Long> members = new TreeMap<>();
+	
+	private volatile boolean[] ownedPartitions = null;
+	
+	
+	// constructors
+	
+	/**
+	 * Constructor. The local instance is always a member.
+	 * 
+	 * @param instanceID The unique ID of the local instance.
+	 * @param partitionCount The total number of partitions (must be > 0).
+	 * @param memberTimeoutMillis The time after which a member without a
+	 * heartbeat is considered gone.
+	 */
+	public PartitionTable(String instanceID, int partitionCount, long memberTimeoutMillis)
+	{
+		super();
+		
+		if (instanceID == null || partitionCount <= 0) {
+			throw new IllegalArgumentException("Instance ID must be non-null and partition count must be > 0.");
+		}
+		
+		this.instanceID = instanceID;
+		this.partitionCount = partitionCount;
+		this.memberTimeoutMillis = memberTimeoutMillis;
+		
+		this.members.put(instanceID, Long.MAX_VALUE);
+		this.ownedPartitions = computeOwnership();
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Removes all members whose last heartbeat is older than the member timeout.
+	 * 
+	 * @param nowMillis The current time in milliseconds.
+	 * @return boolean True if the ownership assignment changed; false otherwise.
+	 */
+	public synchronized boolean expireMembers(long nowMillis)
+	{
+		boolean changed = this.members.entrySet().removeIf(
+			entry -> nowMillis - entry.getValue() > this.memberTimeoutMillis);
+		
+		return (changed && rebalance());
+	}
+	
+	/**
+	 * Returns the ID of the local instance.
+	 * 
+	 * @return String
+	 */
+	public String getInstanceID()
+	{
+		return this.instanceID;
+	}
+	
+	/**
+	 * Returns the IDs of all currently known members, including the local instance.
+	 * 
+	 * @return List<String> The sorted member IDs.
+	 */
+	public synchronized List<String> getMembers()
+	{
+		return new ArrayList<>(this.members.keySet());
+	}
+	
+	/**
+	 * Returns the partitions currently owned by the local instance.
+	 * 
+	 * @return List<Integer> The owned partition indexes in ascending order.
+	 */
+	public List<Integer> getOwnedPartitions()
+	{
+		boolean[] owned = this.ownedPartitions;
+		List<Integer> partitions = new ArrayList<>();
+		
+		for (int i = 0; i < owned.length; i++) {
+			if (owned[i]) {
+				partitions.add(i);
+			}
+		}
+		
+		return Collections.unmodifiableList(partitions);
+	}
+	
+	/**
+	 * Returns the total number of partitions.
+	 * 
+	 * @return int
+	 */
+	public int getPartitionCount()
+	{
+		return this.partitionCount;
+	}
+	
+	/**
+	 * Checks if the device with the given location ID belongs to a
+	 * partition owned by the local instance.
+	 * 
+	 * @param locationID The device location ID.
+	 * @return boolean True if owned locally; false otherwise.
+	 */
+	public boolean isOwned(String locationID)
+	{
+		return isPartitionOwned(getPartition(locationID, this.partitionCount));
+	}
+	
+	/**
+	 * Checks if the given partition is owned by the local instance.
+	 * 
+	 * @param partition The partition index.
+	 * @return boolean True if owned locally; false otherwise.
+	 */
+	public boolean isPartitionOwned(int partition)
+	{
+		boolean[] owned = this.ownedPartitions;
+		
+		return (partition >= 0 && partition < owned.length && owned[partition]);
+	}
+	
+	/**
+	 * Removes the given member immediately (e.g. when its retained
+	 * heartbeat is cleared by a will message or orderly shutdown).
+	 * The local instance can't be removed.
+	 * 
+	 * @param memberID The member ID.
+	 * @return boolean True if the ownership assignment changed; false otherwise.
+	 */
+	public synchronized boolean removeMember(String memberID)
+	{
+		if (memberID == null || memberID.equals(this.instanceID)) {
+			return false;
+		}
+		
+		return (this.members.remove(memberID) != null && rebalance());
+	}
+	
+	/**
+	 * Records a heartbeat for the given member, adding it if it's new.
+	 * 
+	 * @param memberID The member ID.
+	 * @param nowMillis The local time the heartbeat was received.
+	 * @return boolean True if the ownership assignment changed; false otherwise.
+	 */
+	public synchronized boolean updateMember(String memberID, long nowMillis)
+	{
+		if (memberID == null || memberID.equals(this.instanceID)) {
+			return false;
+		}
+		
+		boolean isNew = (this.members.put(memberID, nowMillis) == null);
+		
+		return (isNew && rebalance());
+	}
+	
+	
+	// private methods
+	
+	/**
+	 * Computes partition ownership for the local instance using
+	 * rendezvous hashing over the current members.
+	 * 
+	 * @return boolean[] The ownership flags, indexed by partition.
+	 */
+	private boolean[] computeOwnership()
+	{
+		boolean[] owned = new boolean[this.partitionCount];
+		
+		for (int partition = 0; partition < this.partitionCount; partition++) {
+			String owner = null;
+			long   maxWeight = Long.MIN_VALUE;
+			
+			for (String memberID : this.members.keySet()) {
+				long weight = computeWeight(memberID, partition);
+				
+				// members are sorted, so ties resolve the same way on every instance
+				if (weight > maxWeight) {
+					maxWeight = weight;
+					owner = memberID;
+				}
+			}
+			
+			owned[partition] = this.instanceID.equals(owner);
+		}
+		
+		return owned;
+	}
+	
+	/**
+	 * Returns the rendezvous weight of the given member for the given partition.
+	 * 
+	 * @param memberID The member ID.
+	 * @param partition The partition index.
+	 * @return long The weight.
+	 */
+	private long computeWeight(String memberID, int partition)
+	{
+		long hash = memberID.hashCode() * 0x9E3779B97F4A7C15L + partition;
+		
+		// 64 bit mix (splitmix64 finalizer)
+		hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+		hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+		
+		return hash ^ (hash >>> 31);
+	}
+	
+	/**
+	 * Recomputes ownership and swaps in the new snapshot.
+	 * 
+	 * @return boolean True if local ownership changed; false otherwise.
+	 */
+	private boolean rebalance()
+	{
+		boolean[] owned = computeOwnership();
+		boolean[] prevOwned = this.ownedPartitions;
+		
+		this.ownedPartitions = owned;
+		
+		boolean changed = ! Arrays.equals(owned, prevOwned);
+		
+		if (changed) {
+			_Logger.info(
+				"Partitions rebalanced. Members: " + this.members.keySet() + ", owned: " + getOwnedPartitions().size() +
+				" of " + this.partitionCount);
+		}
+		
+		return changed;
+	}
+
+}
@@ -0,0 +1,289 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.app;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.BaseIotData;
+import programmingtheiot.data.DataUtil;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SystemPerformanceData;
+import programmingtheiot.data.SystemStateData;
+
+/**
+ * Builds {@link SystemStateData} snapshots from data fed in by the
+ * ingest path.
+ * <p>
+ * Each resource keeps only its most recent readings, in a bounded ring
+ * buffer, plus a running count. Building a snapshot copies the ring
+ * buffers into a new SystemStateData instance, so the cost depends on
+ * the number of resources (and the fixed ring capacity), not on how much
+ * data has been received, and the snapshot is unaffected by later
+ * updates. The JSON form of the most recent snapshot is reused until
+ * new data arrives, so status requests can be answered at high rates.
+ * 
+ */
+public class SystemStateSnapshotBuilder
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(SystemStateSnapshotBuilder.class.getName());
+	
+	
+	// private var's
+	
+	private final Map<ResourceNameEnum, ResourceSummary> summaries = new EnumMap<>(ResourceNameEnum.class);
+	private final AtomicLong version = new AtomicLong();
+	
+	private int    capacity   = ConfigConst.DEFAULT_STATE_SNAPSHOT_CAPACITY;
+	private String locationID = ConfigConst.NOT_SET;
+	
+	private volatile CachedSnapshot cachedSnapshot = null;
+	
+	
+	// constructors
+	
+	/**
+	 * Default. Reads the ring capacity and the gateway's location ID
+	 * from the {@link ConfigConst#GATEWAY_DEVICE} section.
+	 * 
+	 */
+	public SystemStateSnapshotBuilder()
+	{
+		this(
+			ConfigUtil.getInstance().getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.STATE_SNAPSHOT_CAPACITY_KEY, ConfigConst.DEFAULT_STATE_SNAPSHOT_CAPACITY),
+			ConfigUtil.getInstance().getProperty(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.DEVICE_LOCATION_ID_KEY, ConfigConst.NOT_SET));
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param capacity The number of recent readings retained per resource.
+	 * @param locationID The location ID reported in each snapshot.
+	 */
+	public SystemStateSnapshotBuilder(int capacity, String locationID)
+	{
+		super();
+		
+		if (capacity > 0) {
+			this.capacity = capacity;
+		}
+		
+		if (locationID != null && ! locationID.isBlank()) {
+			this.locationID = locationID;
+		}
+		
+		// populated up front so the outer map is read-only afterwards
+		for (ResourceNameEnum resource : ResourceNameEnum.values()) {
+			this.summaries.put(resource, new ResourceSummary(this.capacity));
+		}
+		
+		_Logger.info("System state snapshot builder created. Capacity per resource: " + this.capacity);
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Records a sensor reading.
+	 * 
+	 * @param resource The resource the data arrived on.
+	 * @param data The sensor data.
+	 * @return boolean True if recorded; false if either parameter is null.
+	 */
+	public boolean addSensorData(ResourceNameEnum resource, SensorData data)
+	{
+		return addData(resource, data);
+	}
+	
+	/**
+	 * Records a system performance reading.
+	 * 
+	 * @param resource The resource the data arrived on.
+	 * @param data The system performance data.
+	 * @return boolean True if recorded; false if either parameter is null.
+	 */
+	public boolean addSystemPerformanceData(ResourceNameEnum resource, SystemPerformanceData data)
+	{
+		return addData(resource, data);
+	}
+	
+	/**
+	 * Creates a new snapshot holding the retained readings of every resource.
+	 * The caller owns the returned instance.
+	 * 
+	 * @param command The command to set in the snapshot.
+	 * @return SystemStateData
+	 */
+	public SystemStateData buildSnapshot(int command)
+	{
+		SystemStateData stateData = new SystemStateData();
+		stateData.setLocationID(this.locationID);
+		stateData.setCommand(command);
+		
+		for (ResourceSummary summary : this.summaries.values()) {
+			summary.copyTo(stateData);
+		}
+		
+		return stateData;
+	}
+	
+	/**
+	 * Returns the JSON form of a snapshot built with the default command.
+	 * The JSON is reused until new data is recorded.
+	 * 
+	 * @return String
+	 */
+	public String buildSnapshotJson()
+	{
+		CachedSnapshot cached = this.cachedSnapshot;
+		long curVersion = this.version.get();
+		
+		if (cached == null || cached.version != curVersion) {
+			String jsonData = DataUtil.getInstance().systemStateDataToJson(buildSnapshot(ConfigConst.DEFAULT_COMMAND));
+			
+			cached = new CachedSnapshot(curVersion, jsonData);
+			this.cachedSnapshot = cached;
+		}
+		
+		return cached.json;
+	}
+	
+	/**
+	 * Returns the number of readings recorded for the given resource
+	 * (not just those retained).
+	 * 
+	 * @param resource The resource.
+	 * @return long
+	 */
+	public long getReadingCount(ResourceNameEnum resource)
+	{
+		return (resource != null ? this.summaries.get(resource).getTotalCount() : 0L);
+	}
+	
+	/**
+	 * Returns the time the given resource last received data.
+	 * 
+	 * @param resource The resource.
+	 * @return long The time in millis, or 0 if it never has.
+	 */
+	public long getLastUpdateMillis(ResourceNameEnum resource)
+	{
+		return (resource != null ? this.summaries.get(resource).getLastUpdateMillis() : 0L);
+	}
+	
+	public int getCapacity()
+	{
+		return this.capacity;
+	}
+	
+	
+	// private methods
+	
+	private boolean addData(ResourceNameEnum resource, BaseIotData data)
+	{
+		if (resource == null || data == null) {
+			return false;
+		}
+		
+		this.summaries.get(resource).add(data, System.currentTimeMillis());
+		this.version.incrementAndGet();
+		
+		return true;
+	}
+	
+	
+	// inner classes
+	
+	/**
+	 * The most recent readings for one resource, and how many were received.
+	 * 
+	 */
+	private static class ResourceSummary
+	{
+		private final BaseIotData[] ring;
+		
+		private int  next = 0;
+		private int  size = 0;
+		private long totalCount = 0L;
+		private long lastUpdateMillis = 0L;
+		
+		ResourceSummary(int capacity)
+		{
+			this.ring = new BaseIotData[capacity];
+		}
+		
+		synchronized void add(BaseIotData data, long timeMillis)
+		{
+			this.ring[this.next] = data;
+			this.next = (this.next + 1) % this.ring.length;
+			this.size = Math.min(this.size + 1, this.ring.length);
+			this.totalCount++;
+			this.lastUpdateMillis = timeMillis;
+		}
+		
+		synchronized long getTotalCount()
+		{
+			return this.totalCount;
+		}
+		
+		synchronized long getLastUpdateMillis()
+		{
+			return this.lastUpdateMillis;
+		}
+		
+		/**
+		 * Adds the retained readings, oldest first, to the given snapshot.
+		 * 
+		 */
+		synchronized void copyTo(SystemStateData stateData)
+		{
+			int start = (this.next - this.size + this.ring.length) % this.ring.length;
+			
+			for (int i = 0; i < this.size; i++) {
+				BaseIotData data = this.ring[(start + i) % this.ring.length];
+				
+				if (data instanceof SensorData) {
+					stateData.addSensorData((SensorData) data);
+				} else if (data instanceof SystemPerformanceData) {
+					stateData.addSystemPerformanceData((SystemPerformanceData) data);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * A snapshot's JSON and the data version it was built from.
+	 * 
+	 */
+	private static class CachedSnapshot
+	{
+		private final long   version;
+		private final String json;
+		
+		CachedSnapshot(long version, String json)
+		{
+			this.version = version;
+			this.json    = json;
+		}
+	}
+
+}
@@ -0,0 +1,352 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.connection;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.common.ResourceNameEnum;
+
+/**
+ * Groups alerts by resource and device over a time window, and sends
+ * one digest message per resource when the window closes instead of
+ * one message per alert.
+ * <p>
+ * Each digest lists, per device, the alert count, the first and last
+ * alert times and the most recent sample messages. If a digest can't
+ * be sent (e.g. the SMTP per-minute cap was reached), its groups are
+ * kept and merged into the next window.
+ * 
+ */
+public class AlertDigestEngine
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(AlertDigestEngine.class.getName());
+	
+	
+	// private var's
+	
+	private long windowMillis = ConfigConst.DEFAULT_DIGEST_WINDOW_MILLIS;
+	private int  maxSamples   = ConfigConst.DEFAULT_DIGEST_MAX_SAMPLES;
+	
+	private BiPredicate<ResourceNameEnum, String> sender = null;
+	private ScheduledExecutorService schedExecSvc = null;
+	
+	private Map<ResourceNameEnum, Map<String, AlertGroup>> pendingGroups = new EnumMap<>(ResourceNameEnum.class);
+	
+	private long alertCount  = 0L;
+	private long digestCount = 0L;
+	
+	
+	// constructors
+	
+	/**
+	 * Constructor. Reads the window and sample count from the given
+	 * configuration section.
+	 * 
+	 * @param configSectionName The name of the configuration section.
+	 * @param sender Sends a digest for a resource; returns true only once it was sent.
+	 */
+	public AlertDigestEngine(String configSectionName, BiPredicate<ResourceNameEnum, String> sender)
+	{
+		this(
+			ConfigUtil.getInstance().getInteger(
+				configSectionName, ConfigConst.DIGEST_WINDOW_MILLIS_KEY, ConfigConst.DEFAULT_DIGEST_WINDOW_MILLIS),
+			ConfigUtil.getInstance().getInteger(
+				configSectionName, ConfigConst.DIGEST_MAX_SAMPLES_KEY, ConfigConst.DEFAULT_DIGEST_MAX_SAMPLES),
+			sender);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param windowMillis The digest window length.
+	 * @param maxSamples The number of recent messages kept per device.
+	 * @param sender Sends a digest for a resource; returns true only once it was sent.
+	 */
+	public AlertDigestEngine(long windowMillis, int maxSamples, BiPredicate<ResourceNameEnum, String> sender)
+	{
+		super();
+		
+		if (windowMillis > 0L) {
+			this.windowMillis = windowMillis;
+		}
+		
+		if (maxSamples >= 0) {
+			this.maxSamples = maxSamples;
+		}
+		
+		this.sender = sender;
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Records an alert for inclusion in the next digest.
+	 * 
+	 * @param resource The resource the alert relates to.
+	 * @param deviceID The device (location) ID that raised the alert.
+	 * @param message The alert message.
+	 * @return boolean True if the alert was recorded.
+	 */
+	public boolean addAlert(ResourceNameEnum resource, String deviceID, String message)
+	{
+		if (resource == null || message == null) {
+			return false;
+		}
+		
+		String id = (deviceID != null ? deviceID : ConfigConst.NOT_SET);
+		long now = System.currentTimeMillis();
+		
+		synchronized (this) {
+			AlertGroup group =
+				this.pendingGroups.computeIfAbsent(resource, r -> new TreeMap<>()).computeIfAbsent(id, d -> new AlertGroup());
+			
+			group.add(message, now, this.maxSamples);
+			++this.alertCount;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Sends one digest per resource with pending alerts.
+	 * 
+	 * @return int The number of digests sent.
+	 */
+	public int flushDigests()
+	{
+		Map<ResourceNameEnum, Map<String, AlertGroup>> groups = null;
+		
+		synchronized (this) {
+			if (this.pendingGroups.isEmpty()) {
+				return 0;
+			}
+			
+			groups = this.pendingGroups;
+			this.pendingGroups = new EnumMap<>(ResourceNameEnum.class);
+		}
+		
+		int sent = 0;
+		
+		for (Map.Entry<ResourceNameEnum, Map<String, AlertGroup>> entry : groups.entrySet()) {
+			ResourceNameEnum resource = entry.getKey();
+			boolean isSent = false;
+			
+			try {
+				isSent = (this.sender != null && this.sender.test(resource, createDigest(resource, entry.getValue())));
+			} catch (Exception e) {
+				_Logger.log(Level.WARNING, "Failed to send alert digest for resource: " + resource, e);
+			}
+			
+			if (isSent) {
+				++sent;
+			} else {
+				_Logger.warning("Alert digest not sent. Carrying alerts over to next window: " + resource);
+				
+				restoreGroups(resource, entry.getValue());
+			}
+		}
+		
+		synchronized (this) {
+			this.digestCount += sent;
+		}
+		
+		return sent;
+	}
+	
+	public synchronized boolean startEngine()
+	{
+		if (this.schedExecSvc != null) {
+			_Logger.warning("Alert digest engine already started.");
+			
+			return false;
+		}
+		
+		this.schedExecSvc = Executors.newSingleThreadScheduledExecutor();
+		this.schedExecSvc.scheduleAtFixedRate(
+			this::flushDigests, this.windowMillis, this.windowMillis, TimeUnit.MILLISECONDS);
+		
+		_Logger.info("Alert digest engine started. Window: " + this.windowMillis + " ms");
+		
+		return true;
+	}
+	
+	/**
+	 * Stops the scheduled flush and sends any pending digests.
+	 * 
+	 * @return boolean
+	 */
+	public boolean stopEngine()
+	{
+		ScheduledExecutorService execSvc = null;
+		
+		synchronized (this) {
+			if (this.schedExecSvc == null) {
+				_Logger.warning("Alert digest engine already stopped.");
+				
+				return false;
+			}
+			
+			execSvc = this.schedExecSvc;
+			this.schedExecSvc = null;
+		}
+		
+		execSvc.shutdown();
+		
+		try {
+			execSvc.awaitTermination(this.windowMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		flushDigests();
+		
+		_Logger.info("Alert digest engine stopped.");
+		
+		return true;
+	}
+	
+	public synchronized long getAlertCount()
+	{
+		return this.alertCount;
+	}
+	
+	public synchronized long getDigestCount()
+	{
+		return this.digestCount;
+	}
+	
+	/**
+	 * Returns the number of (resource, device) groups waiting for the next digest.
+	 * 
+	 * @return int
+	 */
+	public synchronized int getPendingGroupCount()
+	{
+		int count = 0;
+		
+		for (Map<String, AlertGroup> deviceGroups : this.pendingGroups.values()) {
+			count += deviceGroups.size();
+		}
+		
+		return count;
+	}
+	
+	
+	// private methods
+	
+	private String createDigest(ResourceNameEnum resource, Map<String, AlertGroup> deviceGroups)
+	{
+		long total = 0L;
+		
+		for (AlertGroup group : deviceGroups.values()) {
+			total += group.count;
+		}
+		
+		StringBuilder sb = new StringBuilder();
+		
+		sb.append("Alert digest for ").append(resource.getResourceName()).append(": ");
+		sb.append(total).append(" alert(s) from ").append(deviceGroups.size()).append(" device(s)\n");
+		
+		for (Map.Entry<String, AlertGroup> entry : deviceGroups.entrySet()) {
+			AlertGroup group = entry.getValue();
+			
+			sb.append('\n');
+			sb.append("Device ").append(entry.getKey()).append(": ").append(group.count).append(" alert(s), ");
+			sb.append("first ").append(Instant.ofEpochMilli(group.firstMillis)).append(", ");
+			sb.append("last ").append(Instant.ofEpochMilli(group.lastMillis)).append('\n');
+			
+			for (String sample : group.samples) {
+				sb.append("  - ").append(sample).append('\n');
+			}
+		}
+		
+		return sb.toString();
+	}
+	
+	private synchronized void restoreGroups(ResourceNameEnum resource, Map<String, AlertGroup> deviceGroups)
+	{
+		Map<String, AlertGroup> current = this.pendingGroups.computeIfAbsent(resource, r -> new TreeMap<>());
+		
+		for (Map.Entry<String, AlertGroup> entry : deviceGroups.entrySet()) {
+			AlertGroup newer = current.get(entry.getKey());
+			AlertGroup older = entry.getValue();
+			
+			if (newer != null) {
+				older.merge(newer, this.maxSamples);
+			}
+			
+			current.put(entry.getKey(), older);
+		}
+	}
+	
+	
+	// inner classes
+	
+	/**
+	 * Alert summary for one (resource, device) pair.
+	 */
+	private static class AlertGroup
+	{
+		private long count = 0L;
+		private long firstMillis = 0L;
+		private long lastMillis = 0L;
+		private ArrayDeque<String> samples = new ArrayDeque<>();
+		
+		void add(String message, long nowMillis, int maxSamples)
+		{
+			if (this.count == 0L) {
+				this.firstMillis = nowMillis;
+			}
+			
+			++this.count;
+			this.lastMillis = nowMillis;
+			
+			if (maxSamples > 0) {
+				if (this.samples.size() >= maxSamples) {
+					this.samples.pollFirst();
+				}
+				
+				this.samples.addLast(message);
+			}
+		}
+		
+		void merge(AlertGroup newer, int maxSamples)
+		{
+			this.count += newer.count;
+			this.lastMillis = Math.max(this.lastMillis, newer.lastMillis);
+			
+			for (String sample : newer.samples) {
+				if (this.samples.size() >= maxSamples) {
+					this.samples.pollFirst();
+				}
+				
+				this.samples.addLast(sample);
+			}
+		}
+	}
+}
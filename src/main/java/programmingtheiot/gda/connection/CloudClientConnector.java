@@ -11,6 +11,9 @@
 
 package programmingtheiot.gda.connection;
 
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,11 +21,26 @@ import programmingtheiot.common.ConfigConst;
 import programmingtheiot.common.ConfigUtil;
 import programmingtheiot.common.IDataMessageListener;
 import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.DataUtil;
 import programmingtheiot.data.SensorData;
 import programmingtheiot.data.SystemPerformanceData;
 
 /**
- * Shell representation of class for student implementation.
+ * Cloud client that publishes edge data to the MQTT broker configured
+ * in the {@link ConfigConst#CLOUD_GATEWAY_SERVICE} section.
+ * <p>
+ * When batching is enabled, edge data is collected per resource by a
+ * {@link CloudDataBatcher} and published as a single compressed JSON
+ * array once a batch fills up or its oldest entry reaches the maximum
+ * delay. This reduces the number of billed and rate-limited messages.
+ * Compressed batches are published to the resource topic with the
+ * content encoding appended (e.g. '{resource}/gzip'), so consumers
+ * can tell them apart from plain JSON.
+ * <p>
+ * When the change filter is enabled, an {@link EdgeChangeFilter} drops
+ * values that stayed within the configured deadband of the last
+ * forwarded value, except for the periodic max-silence heartbeat.
+ * Dropped values aren't an error, so the send methods return true.
  *
  */
 public class CloudClientConnector implements ICloudClient
@@ -34,6 +52,14 @@ public class CloudClientConnector implements ICloudClient
 	
 	// private var's
 	
+	private MqttClientConnector mqttClient = null;
+	private CloudDataBatcher    batcher = null;
+	private EdgeChangeFilter    changeFilter = null;
+	private ScheduledExecutorService schedExecSvc = null;
+	
+	private String  topicPrefix = "";
+	private int     qosLevel = ConfigConst.DEFAULT_QOS;
+	
 	
 	// constructors
 	
@@ -42,9 +68,21 @@ public class CloudClientConnector implements ICloudClient
 	 * 
 	 */
 	public CloudClientConnector()
+	{
+		this(ConfigConst.CLOUD_GATEWAY_SERVICE);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param configSectionName The name of the configuration section to use for
+	 * the cloud MQTT connection and batching parameters.
+	 */
+	public CloudClientConnector(String configSectionName)
 	{
 		super();
 		
+		initClientParameters(configSectionName);
 	}
 	
 	
@@ -53,47 +91,241 @@ public class CloudClientConnector implements ICloudClient
 	@Override
 	public boolean connectClient()
 	{
-		return false;
+		if (! this.mqttClient.connectClient()) {
+			return false;
+		}
+		
+		if (this.batcher != null && this.schedExecSvc == null) {
+			// each batch is flushed the max delay after its first item
+			this.schedExecSvc = Executors.newSingleThreadScheduledExecutor();
+			this.batcher.setFlushScheduler(this.schedExecSvc);
+		}
+		
+		return true;
 	}
 
 	@Override
 	public boolean disconnectClient()
 	{
-		return false;
+		if (this.schedExecSvc != null) {
+			this.batcher.setFlushScheduler(null);
+			this.schedExecSvc.shutdownNow();
+			this.schedExecSvc = null;
+		}
+		
+		if (this.batcher != null) {
+			// don't leave partially filled batches behind
+			this.batcher.flushAll();
+			
+			_Logger.info(
+				"Cloud batching stats: batches=" + this.batcher.getBatchCount() +
+				", items=" + this.batcher.getItemCount() +
+				", dropped=" + this.batcher.getDroppedCount() +
+				", avgFill=" + this.batcher.getAverageBatchFill() +
+				", compressionRatio=" + this.batcher.getCompressionRatio());
+		}
+		
+		return this.mqttClient.disconnectClient();
+	}
+	
+	/**
+	 * Returns the batcher used for edge data, or null if batching is disabled.
+	 * 
+	 * @return CloudDataBatcher
+	 */
+	public CloudDataBatcher getDataBatcher()
+	{
+		return this.batcher;
+	}
+
+	/**
+	 * Returns the change filter for edge data, or null if it's disabled.
+	 * 
+	 * @return EdgeChangeFilter
+	 */
+	public EdgeChangeFilter getChangeFilter()
+	{
+		return this.changeFilter;
 	}
 
 	@Override
 	public boolean setDataMessageListener(IDataMessageListener listener)
 	{
-		return false;
+		return this.mqttClient.setDataMessageListener(listener);
 	}
 
 	@Override
 	public boolean sendEdgeDataToCloud(ResourceNameEnum resource, SensorData data)
 	{
-		return false;
+		if (resource == null || data == null) {
+			return false;
+		}
+		
+		if (this.changeFilter == null) {
+			return sendJsonToCloud(resource, DataUtil.getInstance().sensorDataToJson(data));
+		}
+		
+		String locationID = data.getLocationID();
+		long   nowMillis  = System.currentTimeMillis();
+		
+		if (Float.isNaN(this.changeFilter.check(locationID, data.getTypeID(), data.getValue(), nowMillis))) {
+			// within the deadband; nothing new to send
+			return true;
+		}
+		
+		// only a value that was actually sent becomes the stream's new baseline
+		if (! sendJsonToCloud(resource, DataUtil.getInstance().sensorDataToJson(data))) {
+			return false;
+		}
+		
+		this.changeFilter.commit(locationID, data.getTypeID(), data.getValue(), nowMillis);
+		
+		return true;
 	}
 
 	@Override
 	public boolean sendEdgeDataToCloud(ResourceNameEnum resource, SystemPerformanceData data)
 	{
-		return false;
+		if (resource == null || data == null) {
+			return false;
+		}
+		
+		if (this.changeFilter == null) {
+			return sendJsonToCloud(resource, DataUtil.getInstance().systemPerformanceDataToJson(data));
+		}
+		
+		long nowMillis = System.currentTimeMillis();
+		
+		boolean cpuChanged  = isChanged(data, ConfigConst.CPU_UTIL_TYPE, data.getCpuUtilization(), nowMillis);
+		boolean diskChanged = isChanged(data, ConfigConst.DISK_UTIL_TYPE, data.getDiskUtilization(), nowMillis);
+		boolean memChanged  = isChanged(data, ConfigConst.MEM_UTIL_TYPE, data.getMemoryUtilization(), nowMillis);
+		
+		if (! cpuChanged && ! diskChanged && ! memChanged) {
+			// within the deadband; nothing new to send
+			return true;
+		}
+		
+		// only the streams that were actually sent get a new baseline
+		if (! sendJsonToCloud(resource, DataUtil.getInstance().systemPerformanceDataToJson(data))) {
+			return false;
+		}
+		
+		String locationID = data.getLocationID();
+		
+		if (cpuChanged) {
+			this.changeFilter.commit(locationID, ConfigConst.CPU_UTIL_TYPE, data.getCpuUtilization(), nowMillis);
+		}
+		
+		if (diskChanged) {
+			this.changeFilter.commit(locationID, ConfigConst.DISK_UTIL_TYPE, data.getDiskUtilization(), nowMillis);
+		}
+		
+		if (memChanged) {
+			this.changeFilter.commit(locationID, ConfigConst.MEM_UTIL_TYPE, data.getMemoryUtilization(), nowMillis);
+		}
+		
+		return true;
 	}
 
 	@Override
 	public boolean subscribeToCloudEvents(ResourceNameEnum resource)
 	{
-		return false;
+		return this.mqttClient.subscribeToTopic(resource, this.qosLevel);
 	}
 
 	@Override
 	public boolean unsubscribeFromCloudEvents(ResourceNameEnum resource)
 	{
-		return false;
+		return this.mqttClient.unsubscribeFromTopic(resource);
 	}
 	
 	
 	// private methods
 	
+	private String createTopicName(ResourceNameEnum resource)
+	{
+		return this.topicPrefix + resource.getResourceName();
+	}
+	
+	/**
+	 * Checks one CPU, disk or memory utilization stream against the change
+	 * filter, without recording the value.
+	 * 
+	 * @param data The system performance data.
+	 * @param typeID The utilization type ID.
+	 * @param value The utilization value.
+	 * @param nowMillis The sample time in milliseconds.
+	 * @return boolean True if the stream should be forwarded.
+	 */
+	private boolean isChanged(SystemPerformanceData data, int typeID, float value, long nowMillis)
+	{
+		return ! Float.isNaN(this.changeFilter.check(data.getLocationID(), typeID, value, nowMillis));
+	}
+	
+	private String createBatchTopicName(ResourceNameEnum resource)
+	{
+		String encoding = this.batcher.getContentEncoding();
+		
+		return (encoding != null ? createTopicName(resource) + "/" + encoding : createTopicName(resource));
+	}
+	
+	private void initClientParameters(String configSectionName)
+	{
+		ConfigUtil configUtil = ConfigUtil.getInstance();
+		
+		this.mqttClient = new MqttClientConnector(configSectionName);
+		
+		this.qosLevel =
+			configUtil.getInteger(configSectionName, ConfigConst.DEFAULT_QOS_KEY, ConfigConst.DEFAULT_QOS);
+		
+		String baseTopic = configUtil.getProperty(configSectionName, ConfigConst.BASE_TOPIC_KEY, "").trim();
+		
+		if (baseTopic.length() > 0) {
+			this.topicPrefix = (baseTopic.endsWith("/") ? baseTopic : baseTopic + "/");
+		}
+		
+		if (configUtil.getBoolean(configSectionName, ConfigConst.ENABLE_BATCHING_KEY)) {
+			this.batcher =
+				new CloudDataBatcher(
+					configUtil.getInteger(
+						configSectionName, ConfigConst.BATCH_MAX_ITEMS_KEY, ConfigConst.DEFAULT_BATCH_MAX_ITEMS),
+					configUtil.getInteger(
+						configSectionName, ConfigConst.BATCH_MAX_DELAY_MILLIS_KEY, ConfigConst.DEFAULT_BATCH_MAX_DELAY_MILLIS),
+					configUtil.getInteger(
+						configSectionName, ConfigConst.MAX_MESSAGE_SIZE_KEY, ConfigConst.DEFAULT_MAX_MESSAGE_SIZE),
+					configUtil.getProperty(
+						configSectionName, ConfigConst.COMPRESSION_KEY, ConfigConst.COMPRESSION_GZIP),
+					(resource, payload) -> this.mqttClient.publishMessage(createBatchTopicName(resource), payload, this.qosLevel));
+			
+			_Logger.info("Cloud edge data batching enabled.");
+		}
+		
+		if (configUtil.getBoolean(configSectionName, ConfigConst.ENABLE_CHANGE_FILTER_KEY)) {
+			this.changeFilter =
+				new EdgeChangeFilter(
+					configUtil.getFloat(
+						configSectionName, ConfigConst.ABS_DEADBAND_KEY, ConfigConst.DEFAULT_ABS_DEADBAND),
+					configUtil.getFloat(
+						configSectionName, ConfigConst.REL_DEADBAND_KEY, ConfigConst.DEFAULT_REL_DEADBAND),
+					configUtil.getInteger(
+						configSectionName, ConfigConst.MAX_SILENCE_MILLIS_KEY, ConfigConst.DEFAULT_MAX_SILENCE_MILLIS));
+			
+			_Logger.info("Cloud edge data change filter enabled.");
+		}
+	}
+	
+	private boolean sendJsonToCloud(ResourceNameEnum resource, String jsonData)
+	{
+		if (this.batcher != null) {
+			return this.batcher.addData(resource, jsonData);
+		}
+		
+		if (jsonData == null) {
+			return false;
+		}
+		
+		return this.mqttClient.publishMessage(
+			createTopicName(resource), jsonData.getBytes(StandardCharsets.UTF_8), this.qosLevel);
+	}
 	
 }
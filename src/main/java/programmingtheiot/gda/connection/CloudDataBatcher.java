@@ -0,0 +1,552 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.connection;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.function.BiPredicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ResourceNameEnum;
+
+/**
+ * Collects JSON encoded edge data into one batch per resource and
+ * hands each batch to a publisher as a single (optionally compressed)
+ * JSON array payload.
+ * <p>
+ * Items are compressed as they're added, so the maximum message size
+ * applies to the encoded payload. A batch is flushed when it reaches
+ * the maximum item count, when the next item might push the encoded
+ * payload past the maximum message size (assuming, conservatively,
+ * that the item doesn't compress at all), or when its oldest item has
+ * waited for the maximum delay. The delay is timed from each batch's
+ * first item if a scheduler is set (see {@link #setFlushScheduler(ScheduledExecutorService)}),
+ * or checked by calling {@link #flushExpired(long)}.
+ * <p>
+ * Consumers can't tell compressed from plain JSON by looking at the
+ * payload, so publishers should mark it using {@link #getContentEncoding()}.
+ * 
+ */
+public class CloudDataBatcher
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(CloudDataBatcher.class.getName());
+	
+	// upper bound on compressor framing: sync flush markers, the final
+	// block and the gzip trailer (the gzip header is written up front)
+	private static final int COMPRESSED_FRAME_BYTES = 64;
+	
+	
+	// private var's
+	
+	private int    maxItems       = ConfigConst.DEFAULT_BATCH_MAX_ITEMS;
+	private long   maxDelayMillis = ConfigConst.DEFAULT_BATCH_MAX_DELAY_MILLIS;
+	private int    maxMessageSize = ConfigConst.DEFAULT_MAX_MESSAGE_SIZE;
+	private String compression    = ConfigConst.COMPRESSION_GZIP;
+	
+	private BiPredicate<ResourceNameEnum, byte[]> publisher = null;
+	
+	private volatile ScheduledExecutorService flushScheduler = null;
+	
+	private Map<ResourceNameEnum, Batch> batches = new EnumMap<>(ResourceNameEnum.class);
+	
+	private AtomicLong  batchCount      = new AtomicLong(0L);
+	private AtomicLong  itemCount       = new AtomicLong(0L);
+	private AtomicLong  droppedCount    = new AtomicLong(0L);
+	private AtomicLong  rawBytes        = new AtomicLong(0L);
+	private AtomicLong  compressedBytes = new AtomicLong(0L);
+	private DoubleAdder fillTotal       = new DoubleAdder();
+	
+	
+	// constructors
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param maxItems The maximum number of items per batch.
+	 * @param maxDelayMillis The longest time an item may wait before its batch is flushed.
+	 * @param maxMessageSize The maximum encoded (i.e. compressed, if enabled) payload size in bytes.
+	 * @param compression One of {@link ConfigConst#COMPRESSION_GZIP},
+	 * {@link ConfigConst#COMPRESSION_DEFLATE} or {@link ConfigConst#COMPRESSION_NONE}.
+	 * @param publisher Called with each flushed batch; returns true if it was sent.
+	 */
+	public CloudDataBatcher(
+		int maxItems, long maxDelayMillis, int maxMessageSize, String compression,
+		BiPredicate<ResourceNameEnum, byte[]> publisher)
+	{
+		super();
+		
+		if (maxItems > 0) {
+			this.maxItems = maxItems;
+		}
+		
+		if (maxDelayMillis > 0L) {
+			this.maxDelayMillis = maxDelayMillis;
+		}
+		
+		if (maxMessageSize > 2) {
+			this.maxMessageSize = maxMessageSize;
+		}
+		
+		if (compression != null) {
+			String name = compression.trim().toLowerCase();
+			
+			if (name.equals(ConfigConst.COMPRESSION_GZIP) ||
+				name.equals(ConfigConst.COMPRESSION_DEFLATE) ||
+				name.equals(ConfigConst.COMPRESSION_NONE))
+			{
+				this.compression = name;
+			} else {
+				_Logger.warning("Unsupported compression '" + compression + "'. Using: " + this.compression);
+			}
+		}
+		
+		this.publisher = publisher;
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Adds the JSON item to the batch for the given resource, flushing
+	 * the batch first or afterwards if a size limit is reached.
+	 * 
+	 * @param resource The resource the item belongs to.
+	 * @param jsonData The JSON encoded item.
+	 * @return boolean True if the item was accepted.
+	 */
+	public boolean addData(ResourceNameEnum resource, String jsonData)
+	{
+		if (resource == null || jsonData == null || jsonData.isEmpty()) {
+			return false;
+		}
+		
+		byte[] item = jsonData.getBytes(StandardCharsets.UTF_8);
+		
+		// 2 bytes for the enclosing brackets
+		if (item.length + 2 > this.maxMessageSize && ! fitsAlone(item)) {
+			_Logger.warning(
+				"Item exceeds max message size of " + this.maxMessageSize + " bytes. Dropping: " + resource);
+			
+			this.droppedCount.incrementAndGet();
+			
+			return false;
+		}
+		
+		Batch batch = getBatch(resource);
+		Batch.Payload full = null;
+		Batch.Payload last = null;
+		long generation = -1L;
+		
+		synchronized (batch) {
+			try {
+				if (batch.wouldOverflow(item.length, this.maxMessageSize)) {
+					full = batch.drain();
+				}
+				
+				if (batch.add(item, System.currentTimeMillis())) {
+					generation = batch.generation;
+				}
+				
+				if (batch.count >= this.maxItems) {
+					last = batch.drain();
+				}
+			} catch (IOException e) {
+				_Logger.log(Level.WARNING, "Failed to encode batch for resource: " + resource, e);
+				
+				this.droppedCount.addAndGet(batch.count + 1);
+				batch.reset();
+				
+				return false;
+			}
+		}
+		
+		if (full != null) {
+			publishBatch(resource, full);
+		}
+		
+		if (last != null) {
+			publishBatch(resource, last);
+		} else if (generation >= 0L) {
+			scheduleFlush(resource, batch, generation);
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Flushes every batch whose oldest item is older than the maximum delay.
+	 * 
+	 * @param nowMillis The current time in milliseconds.
+	 * @return int The number of batches flushed.
+	 */
+	public int flushExpired(long nowMillis)
+	{
+		return flush(nowMillis - this.maxDelayMillis);
+	}
+	
+	/**
+	 * Flushes every non-empty batch regardless of age.
+	 * 
+	 * @return int The number of batches flushed.
+	 */
+	public int flushAll()
+	{
+		return flush(Long.MAX_VALUE);
+	}
+	
+	public long getBatchCount()
+	{
+		return this.batchCount.get();
+	}
+	
+	public long getItemCount()
+	{
+		return this.itemCount.get();
+	}
+	
+	public long getDroppedCount()
+	{
+		return this.droppedCount.get();
+	}
+	
+	public long getMaxDelayMillis()
+	{
+		return this.maxDelayMillis;
+	}
+	
+	/**
+	 * Returns the content encoding of published payloads.
+	 * 
+	 * @return String {@link ConfigConst#COMPRESSION_GZIP} or {@link ConfigConst#COMPRESSION_DEFLATE},
+	 * or null if payloads are plain JSON.
+	 */
+	public String getContentEncoding()
+	{
+		return (this.compression.equals(ConfigConst.COMPRESSION_NONE) ? null : this.compression);
+	}
+	
+	/**
+	 * Sets the scheduler used to flush each batch once its first item has
+	 * waited for the maximum delay. Batches started while no scheduler is
+	 * set are only flushed by size, {@link #flushExpired(long)} or
+	 * {@link #flushAll()}.
+	 * 
+	 * @param scheduler The scheduler, or null to stop scheduling flushes.
+	 */
+	public void setFlushScheduler(ScheduledExecutorService scheduler)
+	{
+		this.flushScheduler = scheduler;
+	}
+	
+	/**
+	 * Returns the average fill of flushed batches, where a full batch is
+	 * 1.0. Fill is the larger of the item count and encoded payload size
+	 * relative to their limits.
+	 * 
+	 * @return double
+	 */
+	public double getAverageBatchFill()
+	{
+		long count = this.batchCount.get();
+		
+		return (count > 0 ? this.fillTotal.sum() / count : 0.0d);
+	}
+	
+	/**
+	 * Returns the ratio of uncompressed to compressed bytes across all
+	 * flushed batches. A value above 1.0 means compression saved space.
+	 * 
+	 * @return double
+	 */
+	public double getCompressionRatio()
+	{
+		long compressed = this.compressedBytes.get();
+		
+		return (compressed > 0 ? (double) this.rawBytes.get() / compressed : 0.0d);
+	}
+	
+	
+	// private methods
+	
+	private int flush(long cutoffMillis)
+	{
+		int flushed = 0;
+		
+		for (ResourceNameEnum resource : ResourceNameEnum.values()) {
+			Batch batch = null;
+			
+			synchronized (this.batches) {
+				batch = this.batches.get(resource);
+			}
+			
+			if (batch == null) {
+				continue;
+			}
+			
+			if (flushBatch(resource, batch, cutoffMillis, -1L)) {
+				++flushed;
+			}
+		}
+		
+		return flushed;
+	}
+	
+	/**
+	 * Flushes the given batch if it's non-empty, its first item is no
+	 * newer than the cutoff and, if a generation is given, it hasn't
+	 * been flushed since.
+	 */
+	private boolean flushBatch(ResourceNameEnum resource, Batch batch, long cutoffMillis, long generation)
+	{
+		Batch.Payload payload = null;
+		
+		synchronized (batch) {
+			if (batch.count > 0 && batch.firstMillis <= cutoffMillis &&
+				(generation < 0L || generation == batch.generation)) {
+				try {
+					payload = batch.drain();
+				} catch (IOException e) {
+					_Logger.log(Level.WARNING, "Failed to encode batch for resource: " + resource, e);
+					
+					this.droppedCount.addAndGet(batch.count);
+					batch.reset();
+				}
+			}
+		}
+		
+		if (payload != null) {
+			publishBatch(resource, payload);
+			
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Checks if an item too large for the limit uncompressed still fits
+	 * once compressed, as the only item of a batch.
+	 */
+	private boolean fitsAlone(byte[] item)
+	{
+		if (this.compression.equals(ConfigConst.COMPRESSION_NONE)) {
+			return false;
+		}
+		
+		try {
+			Batch batch = new Batch(this.compression);
+			batch.add(item, 0L);
+			
+			return (batch.drain().encoded.length <= this.maxMessageSize);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+	
+	private Batch getBatch(ResourceNameEnum resource)
+	{
+		synchronized (this.batches) {
+			return this.batches.computeIfAbsent(resource, r -> new Batch(this.compression));
+		}
+	}
+	
+	private void publishBatch(ResourceNameEnum resource, Batch.Payload payload)
+	{
+		int count = payload.count;
+		
+		double fill =
+			Math.max((double) count / this.maxItems, (double) payload.encoded.length / this.maxMessageSize);
+		
+		this.batchCount.incrementAndGet();
+		this.itemCount.addAndGet(count);
+		this.rawBytes.addAndGet(payload.rawSize);
+		this.compressedBytes.addAndGet(payload.encoded.length);
+		this.fillTotal.add(Math.min(fill, 1.0d));
+		
+		_Logger.fine(
+			"Flushing batch for " + resource + ": items=" + count +
+			", raw=" + payload.rawSize + ", encoded=" + payload.encoded.length);
+		
+		if (this.publisher == null || ! this.publisher.test(resource, payload.encoded)) {
+			_Logger.warning("Failed to publish batch of " + count + " items for resource: " + resource);
+			
+			this.droppedCount.addAndGet(count);
+		}
+	}
+	
+	/**
+	 * Schedules a flush of the batch the maximum delay after its first
+	 * item was added. The flush is skipped if the batch was flushed (by
+	 * size) in the meantime.
+	 */
+	private void scheduleFlush(ResourceNameEnum resource, Batch batch, long generation)
+	{
+		ScheduledExecutorService scheduler = this.flushScheduler;
+		
+		if (scheduler != null) {
+			try {
+				scheduler.schedule(
+					() -> flushBatch(resource, batch, Long.MAX_VALUE, generation),
+					this.maxDelayMillis, TimeUnit.MILLISECONDS);
+			} catch (RejectedExecutionException e) {
+				_Logger.fine("Flush scheduler is shut down. Batch will be flushed on demand: " + resource);
+			}
+		}
+	}
+	
+	
+	// inner classes
+	
+	/**
+	 * Accumulates the items of a single resource as a JSON array,
+	 * encoding them as they're added. Callers synchronize on the instance.
+	 */
+	private static class Batch
+	{
+		private final String compression;
+		
+		private ByteArrayOutputStream buffer = null;
+		private OutputStream encoder = null;
+		private int  count       = 0;
+		private int  rawSize     = 0;
+		private int  unflushed   = 0;
+		private long firstMillis = 0L;
+		private long generation  = 0L;
+		
+		Batch(String compression)
+		{
+			this.compression = compression;
+			
+			reset();
+		}
+		
+		/**
+		 * Checks if adding the item might push the encoded payload past the
+		 * limit. Compressed output is only flushed (which costs a little
+		 * compression) once the unflushed input might no longer fit.
+		 */
+		boolean wouldOverflow(int itemLength, int maxMessageSize) throws IOException
+		{
+			if (this.count == 0) {
+				return false;
+			}
+			
+			// separator + item + closing bracket, assuming none of it compresses
+			int added = 1 + itemLength + 1 + (this.encoder != this.buffer ? COMPRESSED_FRAME_BYTES : 0);
+			
+			if (this.buffer.size() + this.unflushed + added <= maxMessageSize) {
+				return false;
+			}
+			
+			if (this.unflushed > 0) {
+				this.encoder.flush();
+				this.unflushed = 0;
+			}
+			
+			return (this.buffer.size() + added > maxMessageSize);
+		}
+		
+		/**
+		 * Adds the item, returning true if it's the first of a new batch.
+		 */
+		boolean add(byte[] item, long nowMillis) throws IOException
+		{
+			boolean isFirst = (this.count == 0);
+			
+			if (isFirst) {
+				this.encoder.write('[');
+				this.firstMillis = nowMillis;
+			} else {
+				this.encoder.write(',');
+			}
+			
+			this.encoder.write(item, 0, item.length);
+			this.rawSize += item.length + 1;
+			
+			if (this.encoder != this.buffer) {
+				this.unflushed += item.length + 1;
+			}
+			++this.count;
+			
+			return isFirst;
+		}
+		
+		Payload drain() throws IOException
+		{
+			this.encoder.write(']');
+			this.encoder.close();
+			
+			Payload payload = new Payload(this.buffer.toByteArray(), this.rawSize + 1, this.count);
+			
+			reset();
+			
+			return payload;
+		}
+		
+		void reset()
+		{
+			this.buffer = new ByteArrayOutputStream(1024);
+			this.count = 0;
+			this.rawSize = 0;
+			this.unflushed = 0;
+			this.firstMillis = 0L;
+			++this.generation;
+			
+			try {
+				// sync flush, so the encoded size can be checked mid-batch
+				if (this.compression.equals(ConfigConst.COMPRESSION_GZIP)) {
+					this.encoder = new GZIPOutputStream(this.buffer, true);
+				} else if (this.compression.equals(ConfigConst.COMPRESSION_DEFLATE)) {
+					this.encoder = new DeflaterOutputStream(this.buffer, true);
+				} else {
+					this.encoder = this.buffer;
+				}
+			} catch (IOException e) {
+				// writing the gzip header to memory can't fail
+				throw new IllegalStateException(e);
+			}
+		}
+		
+		/**
+		 * A drained batch.
+		 */
+		static class Payload
+		{
+			final byte[] encoded;
+			final int rawSize;
+			final int count;
+			
+			Payload(byte[] encoded, int rawSize, int count)
+			{
+				this.encoded = encoded;
+				this.rawSize = rawSize;
+				this.count = count;
+			}
+		}
+	}
+}
@@ -0,0 +1,561 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.connection;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.common.IActuatorDataListener;
+import programmingtheiot.common.IDataMessageListener;
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.ActuatorData;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SystemPerformanceData;
+
+/**
+ * Fans inbound messages out to any number of {@link IDataMessageListener}
+ * subscribers. Set it as a connector's data message listener in place
+ * of a single consumer.
+ * <p>
+ * Each subscriber chooses the resources it wants and has its own
+ * bounded mailbox and worker thread, so the transport callback thread
+ * only enqueues. When a mailbox is full, the subscriber's
+ * {@link OverflowPolicy} decides what is dropped. A slow or throwing
+ * subscriber only affects its own mailbox.
+ * <p>
+ * Since subscribers run on their own threads, the handle methods
+ * return true once at least one subscriber has queued the message,
+ * not when (or whether) it was handled successfully.
+ * 
+ */
+public class DataMessageDispatcher implements IDataMessageListener
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(DataMessageDispatcher.class.getName());
+	
+	private static final long STOP_TIMEOUT_MILLIS = 5000L;
+	
+	
+	// private var's
+	
+	private int            mailboxSize   = ConfigConst.DEFAULT_DISPATCH_MAILBOX_SIZE;
+	private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+	private long           blockMillis   = ConfigConst.DEFAULT_DISPATCH_BLOCK_MILLIS;
+	
+	private Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+	
+	private volatile boolean isStarted = false;
+	
+	
+	// constructors
+	
+	/**
+	 * Default. Reads the mailbox size, overflow policy and block time
+	 * from the gateway configuration.
+	 * 
+	 */
+	public DataMessageDispatcher()
+	{
+		this(
+			ConfigUtil.getInstance().getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.DISPATCH_MAILBOX_SIZE_KEY, ConfigConst.DEFAULT_DISPATCH_MAILBOX_SIZE),
+			OverflowPolicy.fromName(
+				ConfigUtil.getInstance().getProperty(ConfigConst.GATEWAY_DEVICE, ConfigConst.DISPATCH_OVERFLOW_POLICY_KEY),
+				OverflowPolicy.DROP_OLDEST),
+			ConfigUtil.getInstance().getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.DISPATCH_BLOCK_MILLIS_KEY, ConfigConst.DEFAULT_DISPATCH_BLOCK_MILLIS));
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param mailboxSize The default number of messages queued per subscriber.
+	 * @param overflowPolicy The default policy when a mailbox is full.
+	 * @param blockMillis The longest a {@link OverflowPolicy#BLOCK} subscriber holds up the caller.
+	 */
+	public DataMessageDispatcher(int mailboxSize, OverflowPolicy overflowPolicy, long blockMillis)
+	{
+		super();
+		
+		if (mailboxSize > 0) {
+			this.mailboxSize = mailboxSize;
+		}
+		
+		if (overflowPolicy != null) {
+			this.overflowPolicy = overflowPolicy;
+		}
+		
+		if (blockMillis >= 0L) {
+			this.blockMillis = blockMillis;
+		}
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Subscribes a listener using the default mailbox size and overflow policy.
+	 * 
+	 * @param name A unique subscriber name, used for metrics and the worker thread.
+	 * @param listener The listener.
+	 * @param resources The resources to receive; none for all.
+	 * @return boolean True if subscribed; false if the name is taken or invalid.
+	 */
+	public boolean subscribe(String name, IDataMessageListener listener, ResourceNameEnum ... resources)
+	{
+		return subscribe(name, listener, this.overflowPolicy, this.mailboxSize, resources);
+	}
+	
+	/**
+	 * Subscribes a listener.
+	 * 
+	 * @param name A unique subscriber name, used for metrics and the worker thread.
+	 * @param listener The listener.
+	 * @param overflowPolicy The policy when the mailbox is full.
+	 * @param mailboxSize The number of messages that may be queued.
+	 * @param resources The resources to receive; none for all.
+	 * @return boolean True if subscribed; false if the name is taken or invalid.
+	 */
+	public boolean subscribe(
+		String name, IDataMessageListener listener, OverflowPolicy overflowPolicy, int mailboxSize, ResourceNameEnum ... resources)
+	{
+		if (name == null || listener == null || listener == this) {
+			_Logger.warning("Invalid subscriber. Ignoring: " + name);
+			
+			return false;
+		}
+		
+		Mailbox mailbox = new Mailbox(
+			name, listener,
+			(overflowPolicy != null ? overflowPolicy : this.overflowPolicy),
+			(mailboxSize > 0 ? mailboxSize : this.mailboxSize),
+			resources);
+		
+		synchronized (this) {
+			if (this.mailboxes.putIfAbsent(name, mailbox) != null) {
+				_Logger.warning("Subscriber already exists. Ignoring: " + name);
+				
+				return false;
+			}
+			
+			if (this.isStarted) {
+				mailbox.start();
+			}
+		}
+		
+		_Logger.info(
+			"Dispatcher subscriber added: " + name + ", resources: " + mailbox.resourcesToString() +
+			", mailbox: " + mailbox.capacity + ", overflow: " + mailbox.policy);
+		
+		return true;
+	}
+	
+	/**
+	 * Removes a subscriber after delivering whatever is still queued.
+	 * 
+	 * @param name The subscriber name.
+	 * @return boolean True if the subscriber existed.
+	 */
+	public boolean unsubscribe(String name)
+	{
+		Mailbox mailbox = (name != null ? this.mailboxes.remove(name) : null);
+		
+		if (mailbox == null) {
+			return false;
+		}
+		
+		mailbox.stop();
+		
+		return true;
+	}
+	
+	public synchronized boolean startDispatcher()
+	{
+		if (this.isStarted) {
+			_Logger.warning("Data message dispatcher already started.");
+			
+			return false;
+		}
+		
+		this.isStarted = true;
+		
+		for (Mailbox mailbox : this.mailboxes.values()) {
+			mailbox.start();
+		}
+		
+		_Logger.info("Data message dispatcher started with subscribers: " + this.mailboxes.keySet());
+		
+		return true;
+	}
+	
+	/**
+	 * Stops the workers after delivering whatever is still queued.
+	 * 
+	 * @return boolean
+	 */
+	public synchronized boolean stopDispatcher()
+	{
+		if (! this.isStarted) {
+			_Logger.warning("Data message dispatcher already stopped.");
+			
+			return false;
+		}
+		
+		this.isStarted = false;
+		
+		for (Mailbox mailbox : this.mailboxes.values()) {
+			mailbox.stop();
+		}
+		
+		_Logger.info("Data message dispatcher stopped.");
+		
+		return true;
+	}
+	
+	public long getDeliveredCount(String name)
+	{
+		Mailbox mailbox = (name != null ? this.mailboxes.get(name) : null);
+		
+		return (mailbox != null ? mailbox.deliveredCount.get() : 0L);
+	}
+	
+	public long getDroppedCount(String name)
+	{
+		Mailbox mailbox = (name != null ? this.mailboxes.get(name) : null);
+		
+		return (mailbox != null ? mailbox.droppedCount.get() : 0L);
+	}
+	
+	public long getFailedCount(String name)
+	{
+		Mailbox mailbox = (name != null ? this.mailboxes.get(name) : null);
+		
+		return (mailbox != null ? mailbox.failedCount.get() : 0L);
+	}
+	
+	/**
+	 * Returns the number of messages queued for the subscriber.
+	 * 
+	 * @param name The subscriber name.
+	 * @return int The mailbox depth, or 0 if the subscriber is unknown.
+	 */
+	public int getMailboxDepth(String name)
+	{
+		Mailbox mailbox = (name != null ? this.mailboxes.get(name) : null);
+		
+		return (mailbox != null ? mailbox.getDepth() : 0);
+	}
+	
+	public Set<String> getSubscriberNames()
+	{
+		return Collections.unmodifiableSet(this.mailboxes.keySet());
+	}
+	
+	public boolean isStarted()
+	{
+		return this.isStarted;
+	}
+	
+	@Override
+	public boolean handleActuatorCommandResponse(ResourceNameEnum resourceName, ActuatorData data)
+	{
+		return dispatch(resourceName, listener -> listener.handleActuatorCommandResponse(resourceName, data));
+	}
+	
+	@Override
+	public boolean handleActuatorCommandRequest(ResourceNameEnum resourceName, ActuatorData data)
+	{
+		return dispatch(resourceName, listener -> listener.handleActuatorCommandRequest(resourceName, data));
+	}
+	
+	@Override
+	public boolean handleIncomingMessage(ResourceNameEnum resourceName, String msg)
+	{
+		return dispatch(resourceName, listener -> listener.handleIncomingMessage(resourceName, msg));
+	}
+	
+	@Override
+	public boolean handleIncomingMessage(ResourceNameEnum resourceName, ByteBuffer data)
+	{
+		if (data == null) {
+			return false;
+		}
+		
+		// each subscriber reads its own view, so positions don't interfere
+		return dispatch(resourceName, listener -> listener.handleIncomingMessage(resourceName, data.duplicate()));
+	}
+	
+	@Override
+	public boolean handleSensorMessage(ResourceNameEnum resourceName, SensorData data)
+	{
+		return dispatch(resourceName, listener -> listener.handleSensorMessage(resourceName, data));
+	}
+	
+	@Override
+	public boolean handleSystemPerformanceMessage(ResourceNameEnum resourceName, SystemPerformanceData data)
+	{
+		return dispatch(resourceName, listener -> listener.handleSystemPerformanceMessage(resourceName, data));
+	}
+	
+	/**
+	 * Passes the actuator data listener to every subscriber directly,
+	 * since it is configuration rather than data.
+	 * 
+	 */
+	@Override
+	public void setActuatorDataListener(String name, IActuatorDataListener listener)
+	{
+		for (Mailbox mailbox : this.mailboxes.values()) {
+			mailbox.listener.setActuatorDataListener(name, listener);
+		}
+	}
+	
+	
+	// private methods
+	
+	/**
+	 * Offers the call to every subscriber of the resource.
+	 * 
+	 * @return boolean True if at least one subscriber queued it.
+	 */
+	private boolean dispatch(ResourceNameEnum resourceName, Predicate<IDataMessageListener> call)
+	{
+		if (resourceName == null) {
+			return false;
+		}
+		
+		boolean accepted = false;
+		
+		for (Mailbox mailbox : this.mailboxes.values()) {
+			if (mailbox.accepts(resourceName) && mailbox.offer(call)) {
+				accepted = true;
+			}
+		}
+		
+		return accepted;
+	}
+	
+	
+	// inner classes
+	
+	/**
+	 * A subscriber's bounded queue and worker thread.
+	 */
+	private class Mailbox implements Runnable
+	{
+		private final String name;
+		private final IDataMessageListener listener;
+		private final OverflowPolicy policy;
+		private final int capacity;
+		private final Set<ResourceNameEnum> resources;
+		
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition     hasWork = lock.newCondition();
+		private final Condition     hasRoom = lock.newCondition();
+		
+		private final ArrayDeque<Predicate<IDataMessageListener>> queue = new ArrayDeque<>();
+		
+		private final AtomicLong deliveredCount = new AtomicLong(0L);
+		private final AtomicLong droppedCount   = new AtomicLong(0L);
+		private final AtomicLong failedCount    = new AtomicLong(0L);
+		
+		private boolean isRunning = false;
+		private Thread  worker = null;
+		
+		Mailbox(
+			String name, IDataMessageListener listener, OverflowPolicy policy, int capacity, ResourceNameEnum[] resources)
+		{
+			this.name = name;
+			this.listener = listener;
+			this.policy = policy;
+			this.capacity = capacity;
+			this.resources = EnumSet.noneOf(ResourceNameEnum.class);
+			
+			if (resources != null) {
+				for (ResourceNameEnum resource : resources) {
+					if (resource != null) {
+						this.resources.add(resource);
+					}
+				}
+			}
+		}
+		
+		boolean accepts(ResourceNameEnum resource)
+		{
+			return (this.resources.isEmpty() || this.resources.contains(resource));
+		}
+		
+		boolean offer(Predicate<IDataMessageListener> call)
+		{
+			this.lock.lock();
+			
+			try {
+				if (this.queue.size() >= this.capacity) {
+					switch (this.policy) {
+						case DROP_OLDEST:
+							this.queue.pollFirst();
+							this.droppedCount.incrementAndGet();
+							break;
+						
+						case BLOCK:
+							long waitNanos = TimeUnit.MILLISECONDS.toNanos(blockMillis);
+							
+							while (this.queue.size() >= this.capacity && waitNanos > 0L) {
+								waitNanos = this.hasRoom.awaitNanos(waitNanos);
+							}
+							
+							if (this.queue.size() < this.capacity) {
+								break;
+							}
+							
+							this.droppedCount.incrementAndGet();
+							
+							return false;
+						
+						case GROW:
+							break;
+						
+						default:
+							this.droppedCount.incrementAndGet();
+							
+							return false;
+					}
+				}
+				
+				this.queue.addLast(call);
+				this.hasWork.signal();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				this.droppedCount.incrementAndGet();
+				
+				return false;
+			} finally {
+				this.lock.unlock();
+			}
+			
+			return true;
+		}
+		
+		int getDepth()
+		{
+			this.lock.lock();
+			
+			try {
+				return this.queue.size();
+			} finally {
+				this.lock.unlock();
+			}
+		}
+		
+		String resourcesToString()
+		{
+			return (this.resources.isEmpty() ? "all" : this.resources.toString());
+		}
+		
+		void start()
+		{
+			this.lock.lock();
+			
+			try {
+				if (this.isRunning) {
+					return;
+				}
+				
+				this.isRunning = true;
+				this.worker = new Thread(this, "DataMessageDispatcher-" + this.name);
+				this.worker.setDaemon(true);
+				this.worker.start();
+			} finally {
+				this.lock.unlock();
+			}
+		}
+		
+		void stop()
+		{
+			Thread thread = null;
+			
+			this.lock.lock();
+			
+			try {
+				this.isRunning = false;
+				this.hasWork.signalAll();
+				thread = this.worker;
+				this.worker = null;
+			} finally {
+				this.lock.unlock();
+			}
+			
+			if (thread != null) {
+				try {
+					thread.join(STOP_TIMEOUT_MILLIS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+		
+		@Override
+		public void run()
+		{
+			while (true) {
+				Predicate<IDataMessageListener> call = null;
+				
+				this.lock.lock();
+				
+				try {
+					while (this.isRunning && this.queue.isEmpty()) {
+						this.hasWork.await();
+					}
+					
+					if (this.queue.isEmpty()) {
+						// stopped and drained
+						return;
+					}
+					
+					call = this.queue.pollFirst();
+					this.hasRoom.signal();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					
+					return;
+				} finally {
+					this.lock.unlock();
+				}
+				
+				try {
+					call.test(this.listener);
+					this.deliveredCount.incrementAndGet();
+				} catch (Exception e) {
+					this.failedCount.incrementAndGet();
+					
+					_Logger.log(Level.WARNING, "Dispatcher subscriber failed: " + this.name, e);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,360 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.connection;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+
+/**
+ * Change-detection stage for edge data sent to the cloud. Each
+ * (device, typeID) stream is compared against the last value that was
+ * forwarded, and a new value is only forwarded if it moved outside the
+ * absolute or relative deadband, or if the stream has been silent for
+ * longer than the max-silence heartbeat interval.
+ * <p>
+ * {@link #filter(String, int, float, long)} returns the delta from the
+ * last forwarded value, so the forwarded values form a delta-encoded
+ * stream: summing the returned deltas reproduces the forwarded values.
+ * <p>
+ * Callers that may fail to deliver a value use
+ * {@link #check(String, int, float, long)} and only
+ * {@link #commit(String, int, float, long)} it once it has been sent, so
+ * a lost send doesn't become the baseline for later values.
+ * <p>
+ * Per-stream state is held in primitive arrays. Device ID's are interned
+ * to an int index, and the (device index, typeID) pair is mapped to a
+ * slot with an open-addressing table, so no objects are allocated per
+ * sample once a stream is known.
+ * 
+ */
+public class EdgeChangeFilter
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(EdgeChangeFilter.class.getName());
+	
+	private static final int  INITIAL_CAPACITY = 1024;
+	private static final long EMPTY_KEY = -1L;
+	
+	private static final int SUPPRESSED = 0;
+	private static final int CHANGED    = 1;
+	private static final int HEARTBEAT  = 2;
+	
+	
+	// private var's
+	
+	private float absDeadband      = ConfigConst.DEFAULT_ABS_DEADBAND;
+	private float relDeadband      = ConfigConst.DEFAULT_REL_DEADBAND;
+	private long  maxSilenceMillis = ConfigConst.DEFAULT_MAX_SILENCE_MILLIS;
+	
+	private Map<String, Integer> deviceIndexMap = new HashMap<>();
+	
+	// open-addressing (device index, typeID) -> slot table
+	private long[] slotKeys   = null;
+	private int[]  slotIndex  = null;
+	
+	// per-slot stream state
+	private float[] lastValues     = null;
+	private long[]  lastSentMillis = null;
+	private int     slotCount      = 0;
+	
+	private long forwardedCount  = 0L;
+	private long heartbeatCount  = 0L;
+	private long suppressedCount = 0L;
+	
+	
+	// constructors
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param absDeadband The absolute change needed to forward a value (0 disables).
+	 * @param relDeadband The change relative to the last forwarded value needed
+	 * to forward a value, e.g. 0.05 for 5% (0 disables). If both deadbands are
+	 * enabled, exceeding either one forwards the value; if neither is, any
+	 * change does.
+	 * @param maxSilenceMillis The longest time a stream may go without forwarding
+	 * a value (0 disables the heartbeat).
+	 */
+	public EdgeChangeFilter(float absDeadband, float relDeadband, long maxSilenceMillis)
+	{
+		super();
+		
+		if (absDeadband >= 0.0f) {
+			this.absDeadband = absDeadband;
+		}
+		
+		if (relDeadband >= 0.0f) {
+			this.relDeadband = relDeadband;
+		}
+		
+		if (maxSilenceMillis >= 0L) {
+			this.maxSilenceMillis = maxSilenceMillis;
+		}
+		
+		this.slotKeys  = new long[INITIAL_CAPACITY * 2];
+		this.slotIndex = new int[INITIAL_CAPACITY * 2];
+		
+		Arrays.fill(this.slotKeys, EMPTY_KEY);
+		
+		this.lastValues     = new float[INITIAL_CAPACITY];
+		this.lastSentMillis = new long[INITIAL_CAPACITY];
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Checks if the value should be forwarded, and records it as the
+	 * last forwarded value of its stream if so.
+	 * 
+	 * @param deviceID The device (location) ID.
+	 * @param typeID The data type ID.
+	 * @param value The new value.
+	 * @param nowMillis The sample time in milliseconds.
+	 * @return float The delta from the last forwarded value (the value
+	 * itself for the first sample), or {@link Float#NaN} if the value is
+	 * suppressed.
+	 */
+	public synchronized float filter(String deviceID, int typeID, float value, long nowMillis)
+	{
+		float delta = check(deviceID, typeID, value, nowMillis);
+		
+		if (! Float.isNaN(delta)) {
+			commit(deviceID, typeID, value, nowMillis);
+		}
+		
+		return delta;
+	}
+	
+	/**
+	 * Checks if the value should be forwarded, without recording it.
+	 * Call {@link #commit(String, int, float, long)} once it's been sent.
+	 * 
+	 * @param deviceID The device (location) ID.
+	 * @param typeID The data type ID.
+	 * @param value The new value.
+	 * @param nowMillis The sample time in milliseconds.
+	 * @return float The delta from the last forwarded value (the value
+	 * itself for the first sample), or {@link Float#NaN} if the value is
+	 * suppressed.
+	 */
+	public synchronized float check(String deviceID, int typeID, float value, long nowMillis)
+	{
+		int slot = findSlot(internDeviceID(deviceID), typeID);
+		
+		if (slot < 0) {
+			return value;
+		}
+		
+		if (evaluate(slot, value, nowMillis) == SUPPRESSED) {
+			++this.suppressedCount;
+			
+			return Float.NaN;
+		}
+		
+		return value - this.lastValues[slot];
+	}
+	
+	/**
+	 * Records the value as the last forwarded value of its stream.
+	 * 
+	 * @param deviceID The device (location) ID.
+	 * @param typeID The data type ID.
+	 * @param value The forwarded value.
+	 * @param nowMillis The sample time in milliseconds.
+	 */
+	public synchronized void commit(String deviceID, int typeID, float value, long nowMillis)
+	{
+		int deviceIndex = internDeviceID(deviceID);
+		int slot = findSlot(deviceIndex, typeID);
+		
+		if (slot < 0) {
+			slot = addSlot(deviceIndex, typeID);
+		} else if (evaluate(slot, value, nowMillis) == HEARTBEAT) {
+			++this.heartbeatCount;
+		}
+		
+		this.lastValues[slot] = value;
+		this.lastSentMillis[slot] = nowMillis;
+		++this.forwardedCount;
+	}
+	
+	/**
+	 * Forgets all stream state. Device ID's remain interned.
+	 * 
+	 */
+	public synchronized void reset()
+	{
+		Arrays.fill(this.slotKeys, EMPTY_KEY);
+		
+		this.slotCount = 0;
+	}
+	
+	public synchronized int getDeviceCount()
+	{
+		return this.deviceIndexMap.size();
+	}
+	
+	public synchronized int getStreamCount()
+	{
+		return this.slotCount;
+	}
+	
+	public synchronized long getForwardedCount()
+	{
+		return this.forwardedCount;
+	}
+	
+	public synchronized long getHeartbeatCount()
+	{
+		return this.heartbeatCount;
+	}
+	
+	public synchronized long getSuppressedCount()
+	{
+		return this.suppressedCount;
+	}
+	
+	
+	// private methods
+	
+	private int evaluate(int slot, float value, long nowMillis)
+	{
+		float lastValue = this.lastValues[slot];
+		float absDelta = Math.abs(value - lastValue);
+		
+		boolean changed;
+		
+		if (this.absDeadband > 0.0f || this.relDeadband > 0.0f) {
+			// outside either enabled deadband
+			changed =
+				(this.absDeadband > 0.0f && absDelta > this.absDeadband) ||
+				(this.relDeadband > 0.0f && absDelta > this.relDeadband * Math.abs(lastValue));
+		} else {
+			changed = (absDelta > 0.0f);
+		}
+		
+		if (changed) {
+			return CHANGED;
+		}
+		
+		if (this.maxSilenceMillis > 0L && nowMillis - this.lastSentMillis[slot] >= this.maxSilenceMillis) {
+			return HEARTBEAT;
+		}
+		
+		return SUPPRESSED;
+	}
+	
+	private int internDeviceID(String deviceID)
+	{
+		String id = (deviceID != null ? deviceID : ConfigConst.NOT_SET);
+		Integer index = this.deviceIndexMap.get(id);
+		
+		if (index == null) {
+			index = this.deviceIndexMap.size();
+			this.deviceIndexMap.put(id, index);
+		}
+		
+		return index;
+	}
+	
+	private int findSlot(int deviceIndex, int typeID)
+	{
+		long key = toKey(deviceIndex, typeID);
+		int mask = this.slotKeys.length - 1;
+		
+		for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+			long k = this.slotKeys[i];
+			
+			if (k == key) {
+				return this.slotIndex[i];
+			}
+			
+			if (k == EMPTY_KEY) {
+				return -1;
+			}
+		}
+	}
+	
+	private int addSlot(int deviceIndex, int typeID)
+	{
+		int slot = this.slotCount++;
+		
+		if (slot >= this.lastValues.length) {
+			int capacity = this.lastValues.length * 2;
+			
+			this.lastValues     = Arrays.copyOf(this.lastValues, capacity);
+			this.lastSentMillis = Arrays.copyOf(this.lastSentMillis, capacity);
+		}
+		
+		// keep the table at most half full
+		if (this.slotCount * 2 > this.slotKeys.length) {
+			rehash(this.slotKeys.length * 2);
+		}
+		
+		insertKey(toKey(deviceIndex, typeID), slot);
+		
+		if (this.slotCount % 100000 == 0) {
+			_Logger.info("Edge change filter is tracking " + this.slotCount + " streams.");
+		}
+		
+		return slot;
+	}
+	
+	private void insertKey(long key, int slot)
+	{
+		int mask = this.slotKeys.length - 1;
+		int i = hash(key) & mask;
+		
+		while (this.slotKeys[i] != EMPTY_KEY) {
+			i = (i + 1) & mask;
+		}
+		
+		this.slotKeys[i] = key;
+		this.slotIndex[i] = slot;
+	}
+	
+	private void rehash(int capacity)
+	{
+		long[] oldKeys = this.slotKeys;
+		int[] oldIndex = this.slotIndex;
+		
+		this.slotKeys = new long[capacity];
+		this.slotIndex = new int[capacity];
+		
+		Arrays.fill(this.slotKeys, EMPTY_KEY);
+		
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY_KEY) {
+				insertKey(oldKeys[i], oldIndex[i]);
+			}
+		}
+	}
+	
+	private static long toKey(int deviceIndex, int typeID)
+	{
+		return ((long) deviceIndex << 32) | (typeID & 0xFFFFFFFFL);
+	}
+	
+	private static int hash(long key)
+	{
+		long h = key * 0x9E3779B97F4A7C15L;
+		
+		return (int) (h ^ (h >>> 32));
+	}
+}
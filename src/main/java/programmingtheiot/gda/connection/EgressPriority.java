@@ -0,0 +1,63 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.connection;
+
+import programmingtheiot.common.ResourceNameEnum;
+
+/**
+ * Priority classes used by {@link EgressScheduler}, highest first.
+ * 
+ */
+public enum EgressPriority
+{
+	ACTUATION,
+	ALERT,
+	SYSTEM_PERF,
+	SENSOR;
+	
+	
+	// static
+	
+	/**
+	 * Returns the priority class for outbound messages of the given resource.
+	 * Commands map to {@link #ACTUATION}, management status messages to
+	 * {@link #ALERT}, system performance to {@link #SYSTEM_PERF} and
+	 * everything else to {@link #SENSOR}.
+	 * 
+	 * @param resource The resource being published.
+	 * @return EgressPriority
+	 */
+	public static EgressPriority fromResource(ResourceNameEnum resource)
+	{
+		if (resource == null) {
+			return SENSOR;
+		}
+		
+		switch (resource) {
+			case CDA_ACTUATOR_CMD_RESOURCE:
+			case CDA_MGMT_STATUS_CMD_RESOURCE:
+			case GDA_MGMT_STATUS_CMD_RESOURCE:
+				return ACTUATION;
+			
+			case CDA_MGMT_STATUS_MSG_RESOURCE:
+			case GDA_MGMT_STATUS_MSG_RESOURCE:
+				return ALERT;
+			
+			case CDA_SYSTEM_PERF_MSG_RESOURCE:
+			case GDA_SYSTEM_PERF_MSG_RESOURCE:
+				return SYSTEM_PERF;
+			
+			default:
+				return SENSOR;
+		}
+	}
+}
@@ -0,0 +1,588 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.connection;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+
+/**
+ * Schedules outbound sends across named channels (e.g. MQTT, cloud and
+ * SMTP) by {@link EgressPriority}.
+ * <p>
+ * Each channel has its own worker thread, so a slow channel can't hold
+ * up another, and its own token bucket rate limit. Within a channel,
+ * {@link EgressPriority#ACTUATION} is always sent first. The remaining
+ * classes share the channel by weighted fair queuing, so bulk sensor
+ * data still progresses under load but can't starve alerts.
+ * 
+ */
+public class EgressScheduler
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(EgressScheduler.class.getName());
+	
+	public static final String MQTT_CHANNEL  = "mqtt";
+	public static final String CLOUD_CHANNEL = "cloud";
+	public static final String SMTP_CHANNEL  = "smtp";
+	
+	private static final int PRIORITY_COUNT = EgressPriority.values().length;
+	private static final long STOP_TIMEOUT_MILLIS = 5000L;
+	
+	
+	// private var's
+	
+	private int[] weights       = {8, 4, 2, 1};
+	private int   queueCapacity = ConfigConst.DEFAULT_EGRESS_QUEUE_SIZE;
+	
+	private Map<String, Channel> channels = new ConcurrentHashMap<>();
+	
+	private AtomicLongArray submittedCounts = new AtomicLongArray(PRIORITY_COUNT);
+	private AtomicLongArray sentCounts      = new AtomicLongArray(PRIORITY_COUNT);
+	private AtomicLongArray failedCounts    = new AtomicLongArray(PRIORITY_COUNT);
+	private AtomicLongArray droppedCounts   = new AtomicLongArray(PRIORITY_COUNT);
+	
+	private volatile boolean isStarted = false;
+	
+	
+	// constructors
+	
+	/**
+	 * Default. Reads the weights, queue size and the MQTT, cloud and
+	 * SMTP channel rate limits from the gateway configuration.
+	 * 
+	 */
+	public EgressScheduler()
+	{
+		super();
+		
+		ConfigUtil configUtil = ConfigUtil.getInstance();
+		
+		setWeights(
+			configUtil.getProperty(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.EGRESS_WEIGHTS_KEY, ConfigConst.DEFAULT_EGRESS_WEIGHTS));
+		
+		int capacity =
+			configUtil.getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.EGRESS_QUEUE_SIZE_KEY, ConfigConst.DEFAULT_EGRESS_QUEUE_SIZE);
+		int burst =
+			configUtil.getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.EGRESS_BURST_KEY, ConfigConst.DEFAULT_EGRESS_BURST);
+		
+		if (capacity > 0) {
+			this.queueCapacity = capacity;
+		}
+		
+		addChannel(
+			MQTT_CHANNEL,
+			configUtil.getFloat(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.MQTT_EGRESS_RATE_KEY, ConfigConst.DEFAULT_EGRESS_RATE),
+			burst);
+		addChannel(
+			CLOUD_CHANNEL,
+			configUtil.getFloat(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.CLOUD_EGRESS_RATE_KEY, ConfigConst.DEFAULT_EGRESS_RATE),
+			burst);
+		addChannel(
+			SMTP_CHANNEL,
+			configUtil.getFloat(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.SMTP_EGRESS_RATE_KEY, ConfigConst.DEFAULT_EGRESS_RATE),
+			burst);
+	}
+	
+	/**
+	 * Constructor. No channels are created; use {@link #addChannel(String, double, int)}.
+	 * 
+	 * @param weights The WFQ weights for each {@link EgressPriority}, in order.
+	 * The {@link EgressPriority#ACTUATION} weight is unused since that class is
+	 * always served first.
+	 * @param queueCapacity The maximum number of queued sends per channel and priority.
+	 */
+	public EgressScheduler(int[] weights, int queueCapacity)
+	{
+		super();
+		
+		if (weights != null && weights.length == PRIORITY_COUNT) {
+			for (int i = 0; i < PRIORITY_COUNT; i++) {
+				this.weights[i] = Math.max(weights[i], 1);
+			}
+		}
+		
+		if (queueCapacity > 0) {
+			this.queueCapacity = queueCapacity;
+		}
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Adds a channel with a token bucket rate limit. If the scheduler is
+	 * already running, the channel's worker is started immediately.
+	 * 
+	 * @param name The channel name.
+	 * @param ratePerSecond The sustained sends per second (0 or less disables the limit).
+	 * @param burst The maximum number of sends allowed back-to-back.
+	 * @return boolean True if the channel was added.
+	 */
+	public boolean addChannel(String name, double ratePerSecond, int burst)
+	{
+		if (name == null || this.channels.containsKey(name)) {
+			return false;
+		}
+		
+		Channel channel = new Channel(name, ratePerSecond, Math.max(burst, 1));
+		
+		this.channels.put(name, channel);
+		
+		if (this.isStarted) {
+			channel.start();
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Queues a send on the given channel.
+	 * 
+	 * @param channelName The channel to send on.
+	 * @param priority The priority class of the send.
+	 * @param task Performs the send; returns true on success.
+	 * @return boolean True if the send was queued, false if the channel is
+	 * unknown or its queue for this priority is full.
+	 */
+	public boolean submit(String channelName, EgressPriority priority, BooleanSupplier task)
+	{
+		return enqueue(channelName, priority, task, null);
+	}
+		
+	/**
+	 * Queues a send on the given channel and returns a future that
+	 * completes with the send's result once the channel's worker has
+	 * run it. Since that result can't arrive while the channel isn't
+	 * running, the send is rejected if the scheduler hasn't been started.
+	 * 
+	 * @param channelName The channel to send on.
+	 * @param priority The priority class of the send.
+	 * @param task Performs the send; returns true on success.
+	 * @return CompletableFuture Completes with true if the send succeeded,
+	 * or false if it failed or couldn't be queued. It never completes
+	 * exceptionally.
+	 */
+	public CompletableFuture<Boolean> schedule(String channelName, EgressPriority priority, BooleanSupplier task)
+	{
+		CompletableFuture<Boolean> result = new CompletableFuture<>();
+		
+		if (! enqueue(channelName, priority, task, result)) {
+			result.complete(false);
+		}
+		
+		return result;
+	}
+	
+	public synchronized boolean startScheduler()
+	{
+		if (this.isStarted) {
+			_Logger.warning("Egress scheduler already started.");
+			
+			return false;
+		}
+		
+		this.isStarted = true;
+		
+		for (Channel channel : this.channels.values()) {
+			channel.start();
+		}
+		
+		_Logger.info("Egress scheduler started with channels: " + this.channels.keySet());
+		
+		return true;
+	}
+	
+	/**
+	 * Stops the workers after sending whatever is still queued, ignoring
+	 * rate limits.
+	 * 
+	 * @return boolean
+	 */
+	public synchronized boolean stopScheduler()
+	{
+		if (! this.isStarted) {
+			_Logger.warning("Egress scheduler already stopped.");
+			
+			return false;
+		}
+		
+		this.isStarted = false;
+		
+		for (Channel channel : this.channels.values()) {
+			channel.stop();
+		}
+		
+		_Logger.info("Egress scheduler stopped.");
+		
+		return true;
+	}
+	
+	public long getSubmittedCount(EgressPriority priority)
+	{
+		return this.submittedCounts.get(priority.ordinal());
+	}
+	
+	public long getSentCount(EgressPriority priority)
+	{
+		return this.sentCounts.get(priority.ordinal());
+	}
+	
+	public long getFailedCount(EgressPriority priority)
+	{
+		return this.failedCounts.get(priority.ordinal());
+	}
+	
+	public long getDroppedCount(EgressPriority priority)
+	{
+		return this.droppedCounts.get(priority.ordinal());
+	}
+	
+	/**
+	 * Returns the number of sends queued on the channel for the priority.
+	 * 
+	 * @param channelName The channel name.
+	 * @param priority The priority class.
+	 * @return int The queue depth, or 0 if the channel is unknown.
+	 */
+	public int getQueueDepth(String channelName, EgressPriority priority)
+	{
+		Channel channel = (channelName != null ? this.channels.get(channelName) : null);
+		
+		return (channel != null ? channel.getQueueDepth(priority) : 0);
+	}
+	
+	public boolean isStarted()
+	{
+		return this.isStarted;
+	}
+	
+	
+	// private methods
+	
+	private boolean enqueue(
+		String channelName, EgressPriority priority, BooleanSupplier task, CompletableFuture<Boolean> result)
+	{
+		Channel channel = (channelName != null ? this.channels.get(channelName) : null);
+		
+		if (channel == null || priority == null || task == null) {
+			_Logger.warning("Invalid egress request. Channel: " + channelName + ", priority: " + priority);
+			
+			return false;
+		}
+		
+		this.submittedCounts.incrementAndGet(priority.ordinal());
+		
+		if (! channel.enqueue(priority, task, result)) {
+			this.droppedCounts.incrementAndGet(priority.ordinal());
+			
+			_Logger.fine("Egress send not queued. Dropping " + priority + " send on channel: " + channelName);
+			
+			return false;
+		}
+		
+		return true;
+	}
+	
+	private void setWeights(String weightList)
+	{
+		if (weightList == null) {
+			return;
+		}
+		
+		String[] tokens = weightList.split(",");
+		
+		if (tokens.length != PRIORITY_COUNT) {
+			_Logger.warning("Expected " + PRIORITY_COUNT + " egress weights. Using defaults: " + weightList);
+			
+			return;
+		}
+		
+		try {
+			int[] parsed = new int[PRIORITY_COUNT];
+			
+			for (int i = 0; i < PRIORITY_COUNT; i++) {
+				parsed[i] = Math.max(Integer.parseInt(tokens[i].trim()), 1);
+			}
+			
+			this.weights = parsed;
+		} catch (NumberFormatException e) {
+			_Logger.warning("Invalid egress weights. Using defaults: " + weightList);
+		}
+	}
+	
+	
+	// inner classes
+	
+	/**
+	 * A queued send, its WFQ finish tag and, if the caller wants it, the
+	 * future to complete with its result.
+	 */
+	private static class Item
+	{
+		private final BooleanSupplier task;
+		private final double finishTag;
+		private final CompletableFuture<Boolean> result;
+		
+		Item(BooleanSupplier task, double finishTag, CompletableFuture<Boolean> result)
+		{
+			this.task = task;
+			this.finishTag = finishTag;
+			this.result = result;
+		}
+	}
+	
+	/**
+	 * Per-channel queues, token bucket and worker thread.
+	 */
+	private class Channel implements Runnable
+	{
+		private final String name;
+		private final double tokensPerNano;
+		private final int    burst;
+		
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition     hasWork = lock.newCondition();
+		
+		private final List<ArrayDeque<Item>> queues = new ArrayList<>(PRIORITY_COUNT);
+		private final double[] lastFinishTags = new double[PRIORITY_COUNT];
+		
+		private double  virtualTime = 0.0d;
+		private double  tokens = 0.0d;
+		private long    lastRefillNanos = 0L;
+		private int     queuedCount = 0;
+		private boolean isRunning = false;
+		private Thread  worker = null;
+		
+		Channel(String name, double ratePerSecond, int burst)
+		{
+			this.name = name;
+			this.tokensPerNano = (ratePerSecond > 0.0d ? ratePerSecond / TimeUnit.SECONDS.toNanos(1L) : 0.0d);
+			this.burst = burst;
+			this.tokens = burst;
+			this.lastRefillNanos = System.nanoTime();
+			
+			for (int i = 0; i < PRIORITY_COUNT; i++) {
+				this.queues.add(new ArrayDeque<>());
+			}
+		}
+		
+		boolean enqueue(EgressPriority priority, BooleanSupplier task, CompletableFuture<Boolean> result)
+		{
+			int p = priority.ordinal();
+			
+			this.lock.lock();
+			
+			try {
+				// a stopped worker would never complete the result
+				if (this.queues.get(p).size() >= queueCapacity || (result != null && ! this.isRunning)) {
+					return false;
+				}
+				
+				double finishTag = Math.max(this.virtualTime, this.lastFinishTags[p]) + 1.0d / weights[p];
+				
+				this.lastFinishTags[p] = finishTag;
+				this.queues.get(p).addLast(new Item(task, finishTag, result));
+				++this.queuedCount;
+				
+				this.hasWork.signal();
+			} finally {
+				this.lock.unlock();
+			}
+			
+			return true;
+		}
+		
+		int getQueueDepth(EgressPriority priority)
+		{
+			this.lock.lock();
+			
+			try {
+				return this.queues.get(priority.ordinal()).size();
+			} finally {
+				this.lock.unlock();
+			}
+		}
+		
+		void start()
+		{
+			this.lock.lock();
+			
+			try {
+				if (this.isRunning) {
+					return;
+				}
+				
+				this.isRunning = true;
+				this.worker = new Thread(this, "EgressScheduler-" + this.name);
+				this.worker.setDaemon(true);
+				this.worker.start();
+			} finally {
+				this.lock.unlock();
+			}
+		}
+		
+		void stop()
+		{
+			Thread thread = null;
+			
+			this.lock.lock();
+			
+			try {
+				this.isRunning = false;
+				this.hasWork.signalAll();
+				thread = this.worker;
+				this.worker = null;
+			} finally {
+				this.lock.unlock();
+			}
+			
+			if (thread != null) {
+				try {
+					thread.join(STOP_TIMEOUT_MILLIS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+		
+		@Override
+		public void run()
+		{
+			while (true) {
+				Item item = null;
+				int priority = -1;
+				
+				this.lock.lock();
+				
+				try {
+					while (this.isRunning && this.queuedCount == 0) {
+						this.hasWork.await();
+					}
+					
+					if (this.queuedCount == 0) {
+						// stopped and drained
+						return;
+					}
+					
+					if (this.isRunning) {
+						long waitNanos = acquireToken();
+						
+						if (waitNanos > 0L) {
+							// new higher priority work may arrive while waiting; that's fine
+							this.hasWork.awaitNanos(waitNanos);
+							continue;
+						}
+					}
+					
+					priority = selectQueue();
+					item = this.queues.get(priority).pollFirst();
+					--this.queuedCount;
+					this.virtualTime = Math.max(this.virtualTime, item.finishTag);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					
+					return;
+				} finally {
+					this.lock.unlock();
+				}
+				
+				send(item, priority);
+			}
+		}
+		
+		private long acquireToken()
+		{
+			if (this.tokensPerNano <= 0.0d) {
+				return 0L;
+			}
+			
+			long now = System.nanoTime();
+			
+			this.tokens = Math.min(this.burst, this.tokens + (now - this.lastRefillNanos) * this.tokensPerNano);
+			this.lastRefillNanos = now;
+			
+			if (this.tokens >= 1.0d) {
+				this.tokens -= 1.0d;
+				
+				return 0L;
+			}
+			
+			return (long) Math.ceil((1.0d - this.tokens) / this.tokensPerNano);
+		}
+		
+		private int selectQueue()
+		{
+			int actuation = EgressPriority.ACTUATION.ordinal();
+			
+			if (! this.queues.get(actuation).isEmpty()) {
+				return actuation;
+			}
+			
+			int selected = -1;
+			double minTag = Double.MAX_VALUE;
+			
+			for (int i = 0; i < PRIORITY_COUNT; i++) {
+				Item head = this.queues.get(i).peekFirst();
+				
+				if (head != null && head.finishTag < minTag) {
+					minTag = head.finishTag;
+					selected = i;
+				}
+			}
+			
+			return selected;
+		}
+		
+		private void send(Item item, int priority)
+		{
+			boolean success = false;
+			
+			try {
+				success = item.task.getAsBoolean();
+			} catch (Exception e) {
+				_Logger.log(Level.WARNING, "Egress send failed on channel: " + this.name, e);
+			}
+			
+			if (success) {
+				sentCounts.incrementAndGet(priority);
+			} else {
+				failedCounts.incrementAndGet(priority);
+			}
+			
+			if (item.result != null) {
+				item.result.complete(success);
+			}
+		}
+	}
+}
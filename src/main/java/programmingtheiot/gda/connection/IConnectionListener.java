@@ -27,4 +27,32 @@ public interface IConnectionListener
 	 */
 	public void onDisconnect();
 	
+	/**
+	 * Callback to be invoked after successful connection, with the
+	 * measured connect latency. For a reconnect, this is the time from
+	 * losing the previous connection until the connection (and any
+	 * resubscribe) was restored.
+	 * <p>
+	 * The default implementation calls {@link #onConnect()}.
+	 * 
+	 * @param latencyMillis The connect latency in milliseconds.
+	 */
+	public default void onConnect(long latencyMillis)
+	{
+		onConnect();
+	}
+	
+	/**
+	 * Callback to be invoked after the connection is lost or closed,
+	 * with the length of time the connection had been up.
+	 * <p>
+	 * The default implementation calls {@link #onDisconnect()}.
+	 * 
+	 * @param connectedMillis How long the connection was up, in milliseconds.
+	 */
+	public default void onDisconnect(long connectedMillis)
+	{
+		onDisconnect();
+	}
+	
 }
@@ -9,6 +9,7 @@
 package programmingtheiot.gda.connection;
 
 import java.util.Date;
+import java.util.List;
 
 import programmingtheiot.data.ActuatorData;
 import programmingtheiot.data.SensorData;
@@ -58,6 +59,25 @@ public interface IPersistenceClient
 	 */
 	public SensorData[] getSensorData(String topic, Date startDate, Date endDate);
 	
+	/**
+	 * Attempts to retrieve aggregated sensor data (count, sum, min, max and
+	 * last value per time bucket) for the given topic and type ID, without
+	 * reading the raw data. Will return null if the adapter doesn't keep
+	 * rollups, or if the requested resolution needs raw data.
+	 * 
+	 * @param topic The target topic name.
+	 * @param typeID The sensor type ID.
+	 * @param startDate The start date.
+	 * @param endDate The end date.
+	 * @param resolutionMillis The requested time bucket size.
+	 * @return List The rollups in time order.
+	 */
+	public default List<RollupStore.Rollup> getSensorDataRollups(
+		String topic, int typeID, Date startDate, Date endDate, long resolutionMillis)
+	{
+		return null;
+	}
+	
 	/**
 	 * Registers the specified {@link programmingtheiot.gda.connection.labbenchstudios.data.IPersistenceListener}
 	 * for all {@link #storeData()} calls for the named data type.
@@ -69,6 +89,15 @@ public interface IPersistenceClient
 	 */
 	public void registerDataStorageListener(Class cType, IPersistenceListener listener, String ... topics);
 	
+	/**
+	 * Unregisters the specified {@link IPersistenceListener}, so it's no
+	 * longer notified of {@link #storeData()} calls.
+	 * 
+	 * @param listener The listener to remove.
+	 * @return boolean True if the listener was registered; false otherwise.
+	 */
+	public boolean unregisterDataStorageListener(IPersistenceListener listener);
+	
 	/**
 	 * Attempts to write the source data instance to the persistence server.
 	 * 
@@ -0,0 +1,34 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.gda.connection;
+
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.SensorData;
+
+/**
+ * Interface contract for consuming events from a {@link SensorDataRingBuffer}.
+ * 
+ */
+public interface ISensorEventHandler
+{
+	/**
+	 * Callback invoked for each published event, in sequence order.
+	 * <p>
+	 * The data instance is a ring slot that will be overwritten once
+	 * the handler moves on, so it must not be retained; copy anything
+	 * that is needed later (e.g. via {@link SensorData#copyFrom(SensorData)}).
+	 * 
+	 * @param resource The resource the data was received on.
+	 * @param data The slot holding the data.
+	 * @param sequence The event's sequence number.
+	 * @param endOfBatch True for the last event available in this batch.
+	 */
+	public void onEvent(ResourceNameEnum resource, SensorData data, long sequence, boolean endOfBatch);
+
+}
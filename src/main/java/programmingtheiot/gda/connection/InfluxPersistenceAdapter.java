@@ -46,6 +46,10 @@ public class InfluxPersistenceAdapter implements IPersistenceClient
 	
 	// private var's
 	
+	private RollupStore rollupStore = null;
+	private RetentionCompactor retentionCompactor = null;
+	private volatile PersistenceChangeFeed changeFeed = null;
+	
 	
 	// constructors
 	
@@ -69,15 +73,35 @@ public class InfluxPersistenceAdapter implements IPersistenceClient
 	@Override
 	public boolean connectClient()
 	{
+		// expired values are removed in the background whether or not the backend is reachable
+		if (this.retentionCompactor != null) {
+			this.retentionCompactor.startCompactor();
+		}
+		
 		return false;
 	}
 
 	/**
-	 *
+	 * Also closes the change feed, stopping its delivery threads and
+	 * unregistering all listeners; they need to register again after
+	 * reconnecting.
 	 */
 	@Override
 	public boolean disconnectClient()
 	{
+		if (this.retentionCompactor != null) {
+			this.retentionCompactor.stopCompactor();
+		}
+		
+		PersistenceChangeFeed feed = this.changeFeed;
+		
+		if (feed != null) {
+			// a closed feed can't be reused, so the next connection gets a new one
+			this.changeFeed = new PersistenceChangeFeed();
+			
+			feed.close();
+		}
+		
 		return false;
 	}
 
@@ -99,12 +123,41 @@ public class InfluxPersistenceAdapter implements IPersistenceClient
 		return null;
 	}
 
+	/**
+	 * Answers the query from the materialized rollups, using the
+	 * resolution picked by {@link RollupStore#planQuery(long, long, long, long)}.
+	 */
+	@Override
+	public List<RollupStore.Rollup> getSensorDataRollups(
+		String topic, int typeID, Date startDate, Date endDate, long resolutionMillis)
+	{
+		if (this.rollupStore == null || topic == null || startDate == null || endDate == null) {
+			return null;
+		}
+		
+		return this.rollupStore.query(topic, typeID, startDate.getTime(), endDate.getTime(), resolutionMillis);
+	}
+
 	/**
 	 *
 	 */
 	@Override
 	public void registerDataStorageListener(Class cType, IPersistenceListener listener, String... topics)
 	{
+		if (this.changeFeed != null) {
+			this.changeFeed.addListener(cType, listener, topics);
+		} else {
+			_Logger.warning("Change feed disabled. Ignoring listener: " + listener);
+		}
+	}
+
+	/**
+	 *
+	 */
+	@Override
+	public boolean unregisterDataStorageListener(IPersistenceListener listener)
+	{
+		return (this.changeFeed != null && this.changeFeed.removeListener(listener));
 	}
 
 	/**
@@ -113,6 +166,10 @@ public class InfluxPersistenceAdapter implements IPersistenceClient
 	@Override
 	public boolean storeData(String topic, int qos, ActuatorData... data)
 	{
+		if (this.changeFeed != null) {
+			this.changeFeed.append(topic, qos, (Object[]) data);
+		}
+		
 		return false;
 	}
 
@@ -122,6 +179,17 @@ public class InfluxPersistenceAdapter implements IPersistenceClient
 	@Override
 	public boolean storeData(String topic, int qos, SensorData... data)
 	{
+		// rollups are updated at write time so range queries never need the raw data
+		if (this.rollupStore != null && topic != null && data != null) {
+			for (SensorData sensorData : data) {
+				this.rollupStore.update(topic, sensorData);
+			}
+		}
+		
+		if (this.changeFeed != null) {
+			this.changeFeed.append(topic, qos, (Object[]) data);
+		}
+		
 		return false;
 	}
 
@@ -131,6 +199,10 @@ public class InfluxPersistenceAdapter implements IPersistenceClient
 	@Override
 	public boolean storeData(String topic, int qos, SystemPerformanceData... data)
 	{
+		if (this.changeFeed != null) {
+			this.changeFeed.append(topic, qos, (Object[]) data);
+		}
+		
 		return false;
 	}
 	
@@ -142,6 +214,22 @@ public class InfluxPersistenceAdapter implements IPersistenceClient
 	 */
 	private void initConfig()
 	{
+		if (ConfigUtil.getInstance().getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_CHANGE_FEED_KEY)) {
+			this.changeFeed = new PersistenceChangeFeed();
+		}
+		
+		if (ConfigUtil.getInstance().getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_ROLLUPS_KEY)) {
+			this.rollupStore = new RollupStore();
+			
+			if (ConfigUtil.getInstance().getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_RETENTION_KEY)) {
+				this.rollupStore.setRetentionPolicy(
+					new RetentionPolicy(),
+					ConfigUtil.getInstance().getInteger(
+						ConfigConst.GATEWAY_DEVICE, ConfigConst.MAX_RAW_SAMPLES_KEY, ConfigConst.DEFAULT_MAX_RAW_SAMPLES));
+				
+				this.retentionCompactor = new RetentionCompactor(this.rollupStore);
+			}
+		}
 	}
 
 }
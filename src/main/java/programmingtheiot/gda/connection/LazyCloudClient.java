@@ -0,0 +1,183 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.connection;
+
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.IDataMessageListener;
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SystemPerformanceData;
+
+/**
+ * {@link ICloudClient} decorator that defers creating and connecting
+ * the real client until it's first used, so the cost of loading its
+ * credentials and certificates and connecting to the cloud service is
+ * kept off the gateway's startup path.
+ * <p>
+ * connectClient() only records that the client should be connected;
+ * the first send or subscribe creates the client and connects it.
+ * 
+ */
+public class LazyCloudClient implements ICloudClient
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(LazyCloudClient.class.getName());
+	
+	
+	// private var's
+	
+	private Supplier<ICloudClient> clientFactory = null;
+	private IDataMessageListener   dataMsgListener = null;
+	
+	private volatile ICloudClient cloudClient = null;
+	private volatile boolean      isConnectRequested = false;
+	
+	
+	// constructors
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param clientFactory Creates the real client on first use.
+	 */
+	public LazyCloudClient(Supplier<ICloudClient> clientFactory)
+	{
+		super();
+		
+		this.clientFactory = clientFactory;
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Returns true once the real client has been created.
+	 * 
+	 * @return boolean
+	 */
+	public boolean isInitialized()
+	{
+		return (this.cloudClient != null);
+	}
+	
+	@Override
+	public boolean connectClient()
+	{
+		this.isConnectRequested = true;
+		
+		return true;
+	}
+	
+	@Override
+	public synchronized boolean disconnectClient()
+	{
+		this.isConnectRequested = false;
+		
+		if (this.cloudClient != null) {
+			return this.cloudClient.disconnectClient();
+		}
+		
+		return true;
+	}
+	
+	@Override
+	public boolean sendEdgeDataToCloud(ResourceNameEnum resource, SensorData data)
+	{
+		ICloudClient client = getCloudClient();
+		
+		return (client != null && client.sendEdgeDataToCloud(resource, data));
+	}
+	
+	@Override
+	public boolean sendEdgeDataToCloud(ResourceNameEnum resource, SystemPerformanceData data)
+	{
+		ICloudClient client = getCloudClient();
+		
+		return (client != null && client.sendEdgeDataToCloud(resource, data));
+	}
+	
+	@Override
+	public boolean subscribeToCloudEvents(ResourceNameEnum resource)
+	{
+		ICloudClient client = getCloudClient();
+		
+		return (client != null && client.subscribeToCloudEvents(resource));
+	}
+	
+	@Override
+	public boolean unsubscribeFromCloudEvents(ResourceNameEnum resource)
+	{
+		ICloudClient client = this.cloudClient;
+		
+		return (client != null && client.unsubscribeFromCloudEvents(resource));
+	}
+	
+	@Override
+	public synchronized boolean setDataMessageListener(IDataMessageListener listener)
+	{
+		if (listener == null) {
+			return false;
+		}
+		
+		this.dataMsgListener = listener;
+		
+		return (this.cloudClient == null || this.cloudClient.setDataMessageListener(listener));
+	}
+	
+	
+	// private methods
+	
+	/**
+	 * Returns the real client, creating and connecting it on first call.
+	 * 
+	 * @return ICloudClient The client, or null if connectClient() hasn't been called.
+	 */
+	private ICloudClient getCloudClient()
+	{
+		ICloudClient client = this.cloudClient;
+		
+		if (client != null) {
+			return client;
+		}
+		
+		synchronized (this) {
+			if (this.cloudClient == null) {
+				if (! this.isConnectRequested) {
+					return null;
+				}
+				
+				long startMillis = System.currentTimeMillis();
+				
+				client = this.clientFactory.get();
+				
+				if (this.dataMsgListener != null) {
+					client.setDataMessageListener(this.dataMsgListener);
+				}
+				
+				if (! client.connectClient()) {
+					_Logger.warning("Failed to connect cloud client on first use.");
+				}
+				
+				this.cloudClient = client;
+				
+				_Logger.info("Cloud client initialized on first use in " + (System.currentTimeMillis() - startMillis) + " ms");
+			}
+			
+			return this.cloudClient;
+		}
+	}
+
+}
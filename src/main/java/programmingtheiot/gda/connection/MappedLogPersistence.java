@@ -0,0 +1,598 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.connection;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
+import org.eclipse.paho.client.mqttv3.MqttPersistable;
+import org.eclipse.paho.client.mqttv3.MqttPersistenceException;
+
+import programmingtheiot.common.ConfigConst;
+
+/**
+ * An {@link MqttClientPersistence} that keeps QoS 1 / 2 in-flight state
+ * in a single append-only log file per client, accessed through a
+ * memory-mapped buffer.
+ * <p>
+ * Each put or remove appends one record (a remove writes a tombstone),
+ * so there is no per-message file create / delete as with paho's
+ * file persistence. The live entries are also held in memory, so gets
+ * never touch the file. Once the log exceeds the compaction threshold
+ * and is mostly dead records, the live entries are rewritten to a new
+ * log, which atomically replaces the old one.
+ * <p>
+ * Writes go to the page cache via the mapping, so the state survives a
+ * process restart or crash; the log is only forced to the device on
+ * compaction and close. On open, the log is replayed up to the first
+ * torn or corrupt record.
+ * 
+ */
+public class MappedLogPersistence implements MqttClientPersistence
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(MappedLogPersistence.class.getName());
+	
+	public static final String LOG_FILE_EXT = ".mlog";
+	
+	private static final int  LOG_MAGIC      = 0x50494f4d; // "PIOM"
+	private static final int  LOG_VERSION    = 1;
+	private static final int  HEADER_SIZE    = 16;
+	private static final int  RECORD_HEADER  = 17;
+	private static final byte RECORD_PUT     = 1;
+	private static final byte RECORD_REMOVE  = 2;
+	private static final long MIN_MAP_SIZE   = 64L * 1024L;
+	
+	
+	// private var's
+	
+	private File dataDir = null;
+	private long compactThreshold = ConfigConst.DEFAULT_SESSION_STORE_COMPACT_BYTES;
+	
+	private Map<String, StoredEntry> entries = new HashMap<>();
+	
+	private File             logFile = null;
+	private FileChannel      channel = null;
+	private FileLock         fileLock = null;
+	private MappedByteBuffer buffer = null;
+	
+	private int  epoch = 0;
+	private long writePos = HEADER_SIZE;
+	private long liveBytes = 0L;
+	private long compactCount = 0L;
+	
+	
+	// constructors
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param dataDir The directory to store the log files in. Created if needed.
+	 * @param compactThreshold The log size, in bytes, at which compaction is
+	 * considered. Compaction runs once the log is at least twice the size of
+	 * the live entries.
+	 */
+	public MappedLogPersistence(String dataDir, long compactThreshold)
+	{
+		super();
+		
+		this.dataDir = new File(dataDir != null ? dataDir : ConfigConst.DEFAULT_SESSION_STORE_DIR);
+		
+		if (compactThreshold > 0L) {
+			this.compactThreshold = compactThreshold;
+		}
+	}
+	
+	
+	// public methods
+	
+	@Override
+	public synchronized void open(String clientId, String serverURI) throws MqttPersistenceException
+	{
+		if (this.channel != null) {
+			return;
+		}
+		
+		if (! this.dataDir.exists() && ! this.dataDir.mkdirs()) {
+			throw new MqttPersistenceException(new IOException("Can't create session store directory: " + this.dataDir));
+		}
+		
+		this.logFile = new File(this.dataDir, toFileName(clientId, serverURI));
+		
+		try {
+			this.channel =
+				FileChannel.open(
+					this.logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			
+			try {
+				this.fileLock = this.channel.tryLock();
+			} catch (OverlappingFileLockException e) {
+				// already locked by another instance in this JVM
+				this.fileLock = null;
+			}
+			
+			if (this.fileLock == null) {
+				this.channel.close();
+				this.channel = null;
+				
+				throw new MqttPersistenceException(MqttPersistenceException.REASON_CODE_PERSISTENCE_IN_USE);
+			}
+			
+			long fileSize = this.channel.size();
+			
+			mapLog(Math.max(fileSize, MIN_MAP_SIZE));
+			
+			if (fileSize < HEADER_SIZE || this.buffer.getInt(0) != LOG_MAGIC) {
+				writeHeader(0);
+			} else {
+				replayLog();
+			}
+			
+			_Logger.info(
+				"Opened MQTT session store " + this.logFile + " with " + this.entries.size() +
+				" in-flight message(s).");
+		} catch (IOException e) {
+			closeQuietly();
+			
+			throw new MqttPersistenceException(e);
+		}
+	}
+	
+	@Override
+	public synchronized void close() throws MqttPersistenceException
+	{
+		if (this.channel == null) {
+			return;
+		}
+		
+		this.buffer.force();
+		
+		closeQuietly();
+		
+		this.entries.clear();
+	}
+	
+	@Override
+	public synchronized void put(String key, MqttPersistable persistable) throws MqttPersistenceException
+	{
+		checkIsOpen();
+		
+		int headerLen  = persistable.getHeaderLength();
+		int payloadLen = (persistable.getPayloadBytes() != null ? persistable.getPayloadLength() : 0);
+		
+		// paho's own file persistence stores the header and payload together
+		// in the same way, and restores from the combined bytes
+		byte[] data = new byte[headerLen + payloadLen];
+		
+		System.arraycopy(persistable.getHeaderBytes(), persistable.getHeaderOffset(), data, 0, headerLen);
+		
+		if (payloadLen > 0) {
+			System.arraycopy(persistable.getPayloadBytes(), persistable.getPayloadOffset(), data, headerLen, payloadLen);
+		}
+		
+		appendRecord(RECORD_PUT, key, data);
+		
+		StoredEntry prevEntry = this.entries.put(key, new StoredEntry(data));
+		
+		if (prevEntry != null) {
+			this.liveBytes -= recordSize(key, prevEntry.data.length);
+		}
+		
+		this.liveBytes += recordSize(key, data.length);
+		
+		compactIfNeeded();
+	}
+	
+	@Override
+	public synchronized MqttPersistable get(String key) throws MqttPersistenceException
+	{
+		checkIsOpen();
+		
+		return this.entries.get(key);
+	}
+	
+	@Override
+	public synchronized void remove(String key) throws MqttPersistenceException
+	{
+		checkIsOpen();
+		
+		StoredEntry prevEntry = this.entries.remove(key);
+		
+		if (prevEntry != null) {
+			appendRecord(RECORD_REMOVE, key, new byte[0]);
+			
+			this.liveBytes -= recordSize(key, prevEntry.data.length);
+			
+			compactIfNeeded();
+		}
+	}
+	
+	@Override
+	public synchronized Enumeration<String> keys() throws MqttPersistenceException
+	{
+		checkIsOpen();
+		
+		return Collections.enumeration(new ArrayList<>(this.entries.keySet()));
+	}
+	
+	@Override
+	public synchronized void clear() throws MqttPersistenceException
+	{
+		checkIsOpen();
+		
+		this.entries.clear();
+		this.liveBytes = 0L;
+		
+		// records from the previous epoch are ignored on replay, so the
+		// old contents don't need to be erased
+		writeHeader(this.epoch + 1);
+	}
+	
+	@Override
+	public synchronized boolean containsKey(String key) throws MqttPersistenceException
+	{
+		checkIsOpen();
+		
+		return this.entries.containsKey(key);
+	}
+	
+	/**
+	 * Rewrites the log so it contains only the live entries. If the
+	 * rewritten log can't be swapped in, the original log is reopened
+	 * and the store stays usable.
+	 * 
+	 * @return boolean True on success; false otherwise.
+	 */
+	public synchronized boolean compact()
+	{
+		if (this.channel == null) {
+			return false;
+		}
+		
+		File tmpFile = new File(this.dataDir, this.logFile.getName() + ".tmp");
+		long newWritePos = HEADER_SIZE;
+		
+		try {
+			long newSize = Math.max(MIN_MAP_SIZE, (HEADER_SIZE + this.liveBytes) * 2L);
+			
+			try (FileChannel tmpChannel =
+					FileChannel.open(
+						tmpFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+						StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				MappedByteBuffer tmpBuffer = tmpChannel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+				
+				tmpBuffer.putInt(0, LOG_MAGIC);
+				tmpBuffer.putInt(4, LOG_VERSION);
+				tmpBuffer.putInt(8, this.epoch);
+				tmpBuffer.position(HEADER_SIZE);
+				
+				for (Map.Entry<String, StoredEntry> entry : this.entries.entrySet()) {
+					writeRecord(tmpBuffer, RECORD_PUT, entry.getKey(), entry.getValue().data);
+				}
+				
+				newWritePos = tmpBuffer.position();
+				
+				tmpBuffer.force();
+			}
+		} catch (IOException e) {
+			_Logger.log(Level.SEVERE, "Failed to compact MQTT session store: " + this.logFile, e);
+			
+			return false;
+		}
+		
+		// the log can't be replaced while it's open and locked on all platforms
+		closeQuietly();
+		
+		boolean isMoved = false;
+		
+		try {
+			Files.move(tmpFile.toPath(), this.logFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			
+			isMoved = true;
+		} catch (IOException e) {
+			_Logger.log(Level.SEVERE, "Failed to replace MQTT session store. Keeping uncompacted log: " + this.logFile, e);
+			
+			tmpFile.delete();
+		}
+		
+		try {
+			// either the compacted log or, if the move failed, the original one
+			reopenLog();
+		} catch (IOException e) {
+			_Logger.log(Level.SEVERE, "Failed to reopen MQTT session store after compaction: " + this.logFile, e);
+			
+			closeQuietly();
+			
+			return false;
+		}
+			
+		if (! isMoved) {
+			return false;
+		}
+			
+		this.writePos = newWritePos;
+			this.compactCount++;
+			
+			_Logger.fine("Compacted MQTT session store " + this.logFile + " to " + this.writePos + " bytes.");
+			
+			return true;
+	}
+	
+	public synchronized long getCompactCount()
+	{
+		return this.compactCount;
+	}
+	
+	public synchronized long getLogSize()
+	{
+		return this.writePos;
+	}
+	
+	public synchronized int size()
+	{
+		return this.entries.size();
+	}
+	
+	
+	// private methods
+	
+	private void appendRecord(byte type, String key, byte[] data) throws MqttPersistenceException
+	{
+		long size = recordSize(key, data.length);
+		
+		try {
+			if (this.writePos + size > this.buffer.capacity()) {
+				mapLog(Math.max(this.buffer.capacity() * 2L, this.writePos + size));
+			}
+		} catch (IOException e) {
+			throw new MqttPersistenceException(e);
+		}
+		
+		this.buffer.position((int) this.writePos);
+		
+		writeRecord(this.buffer, type, key, data);
+		
+		this.writePos = this.buffer.position();
+	}
+	
+	private void checkIsOpen() throws MqttPersistenceException
+	{
+		if (this.channel == null) {
+			throw new MqttPersistenceException(MqttPersistenceException.REASON_CODE_CLIENT_EXCEPTION);
+		}
+	}
+	
+	private void closeQuietly()
+	{
+		try {
+			if (this.fileLock != null) {
+				this.fileLock.release();
+			}
+			
+			if (this.channel != null) {
+				this.channel.close();
+			}
+		} catch (IOException e) {
+			_Logger.log(Level.WARNING, "Failed to close MQTT session store: " + this.logFile, e);
+		}
+		
+		this.fileLock = null;
+		this.channel  = null;
+		this.buffer   = null;
+	}
+	
+	private void compactIfNeeded()
+	{
+		if (this.writePos > this.compactThreshold && this.writePos > (HEADER_SIZE + this.liveBytes) * 2L) {
+			compact();
+		}
+	}
+	
+	private void mapLog(long size) throws IOException
+	{
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("MQTT session store exceeds maximum size: " + this.logFile);
+		}
+		
+		this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+	}
+	
+	private void reopenLog() throws IOException
+	{
+		this.channel = FileChannel.open(this.logFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		
+		try {
+			this.fileLock = this.channel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			this.fileLock = null;
+		}
+		
+		if (this.fileLock == null) {
+			throw new IOException("MQTT session store locked by another process: " + this.logFile);
+		}
+		
+		mapLog(this.channel.size());
+	}
+	
+	private void replayLog()
+	{
+		this.epoch    = this.buffer.getInt(8);
+		this.writePos = HEADER_SIZE;
+		
+		ByteBuffer buf = this.buffer.duplicate();
+		CRC32      crc = new CRC32();
+		
+		while (buf.capacity() - this.writePos >= RECORD_HEADER) {
+			buf.position((int) this.writePos);
+			
+			byte type      = buf.get();
+			int  recEpoch  = buf.getInt();
+			int  keyLen    = buf.getInt();
+			int  dataLen   = buf.getInt();
+			int  recCrc    = buf.getInt();
+			
+			if ((type != RECORD_PUT && type != RECORD_REMOVE) || recEpoch != this.epoch ||
+				keyLen <= 0 || dataLen < 0 || (long) keyLen + dataLen > buf.remaining()) {
+				break;
+			}
+			
+			byte[] keyBytes = new byte[keyLen];
+			byte[] data     = new byte[dataLen];
+			
+			buf.get(keyBytes);
+			buf.get(data);
+			
+			crc.reset();
+			crc.update(keyBytes);
+			crc.update(data);
+			
+			if ((int) crc.getValue() != recCrc) {
+				_Logger.warning("Corrupt record in MQTT session store. Truncating at " + this.writePos + ": " + this.logFile);
+				
+				break;
+			}
+			
+			String key = new String(keyBytes, StandardCharsets.UTF_8);
+			
+			if (type == RECORD_PUT) {
+				this.entries.put(key, new StoredEntry(data));
+			} else {
+				this.entries.remove(key);
+			}
+			
+			this.writePos = buf.position();
+		}
+		
+		this.liveBytes = 0L;
+		
+		for (Map.Entry<String, StoredEntry> entry : this.entries.entrySet()) {
+			this.liveBytes += recordSize(entry.getKey(), entry.getValue().data.length);
+		}
+	}
+	
+	private void writeHeader(int epoch)
+	{
+		this.epoch    = epoch;
+		this.writePos = HEADER_SIZE;
+		
+		this.buffer.putInt(0, LOG_MAGIC);
+		this.buffer.putInt(4, LOG_VERSION);
+		this.buffer.putInt(8, epoch);
+		this.buffer.putInt(12, 0);
+		
+		// mark the end of the log in case the file held records from an older epoch
+		this.buffer.put(HEADER_SIZE, (byte) 0);
+	}
+	
+	private void writeRecord(ByteBuffer buf, byte type, String key, byte[] data)
+	{
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		CRC32  crc      = new CRC32();
+		
+		crc.update(keyBytes);
+		crc.update(data);
+		
+		buf.put(type);
+		buf.putInt(this.epoch);
+		buf.putInt(keyBytes.length);
+		buf.putInt(data.length);
+		buf.putInt((int) crc.getValue());
+		buf.put(keyBytes);
+		buf.put(data);
+	}
+	
+	private static long recordSize(String key, int dataLen)
+	{
+		return RECORD_HEADER + key.getBytes(StandardCharsets.UTF_8).length + dataLen;
+	}
+	
+	private static String toFileName(String clientId, String serverURI)
+	{
+		String name = clientId + "-" + serverURI;
+		
+		return name.replaceAll("[^A-Za-z0-9._-]", "_") + LOG_FILE_EXT;
+	}
+	
+	
+	// inner classes
+	
+	/**
+	 * A stored entry. The header holds the combined header and payload
+	 * bytes, matching paho's own file persistence.
+	 * 
+	 */
+	private static class StoredEntry implements MqttPersistable
+	{
+		private final byte[] data;
+		
+		StoredEntry(byte[] data)
+		{
+			this.data = data;
+		}
+		
+		@Override
+		public byte[] getHeaderBytes()
+		{
+			return this.data;
+		}
+		
+		@Override
+		public int getHeaderLength()
+		{
+			return this.data.length;
+		}
+		
+		@Override
+		public int getHeaderOffset()
+		{
+			return 0;
+		}
+		
+		@Override
+		public byte[] getPayloadBytes()
+		{
+			return null;
+		}
+		
+		@Override
+		public int getPayloadLength()
+		{
+			return 0;
+		}
+		
+		@Override
+		public int getPayloadOffset()
+		{
+			return 0;
+		}
+	}
+}
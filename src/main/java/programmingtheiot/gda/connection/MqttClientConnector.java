@@ -11,13 +11,22 @@
 
 package programmingtheiot.gda.connection;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.net.ssl.SSLSocketFactory;
+
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
 import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
 import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
@@ -29,9 +38,15 @@ import programmingtheiot.common.ConfigConst;
 import programmingtheiot.common.ConfigUtil;
 import programmingtheiot.common.IDataMessageListener;
 import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.common.SimpleCertManagementUtil;
+import programmingtheiot.data.ActuatorData;
+import programmingtheiot.data.DataUtil;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SystemPerformanceData;
 
 /**
- * Shell representation of class for student implementation.
+ * MQTT 3.1.1 client connector for the GDA, built on the synchronous
+ * Paho {@link MqttClient}.
  * 
  */
 public class MqttClientConnector implements IPubSubClient, MqttCallbackExtended
@@ -43,6 +58,34 @@ public class MqttClientConnector implements IPubSubClient, MqttCallbackExtended
 	
 	// params
 	
+	private MqttClient           mqttClient = null;
+	private MqttConnectOptions   connOpts = null;
+	private MqttClientPersistence persistence = null;
+	private IDataMessageListener dataMsgListener = null;
+	private IConnectionListener  connListener = null;
+	private ReconnectController  reconnectCtrl = null;
+	private QosPolicy            qosPolicy = null;
+	
+	// topic -> QoS of current subscriptions, replayed after a reconnect
+	private Map<String, Integer> subscriptions = new ConcurrentHashMap<>();
+	
+	private String  clientID = null;
+	private String  brokerAddr = null;
+	private String  host = ConfigConst.DEFAULT_HOST;
+	private String  protocol = ConfigConst.DEFAULT_MQTT_PROTOCOL;
+	private int     port = ConfigConst.DEFAULT_MQTT_PORT;
+	private int     brokerKeepAlive = ConfigConst.DEFAULT_KEEP_ALIVE;
+	private boolean enableEncryption = false;
+	private boolean enableSessionStore = false;
+	private String  sessionStoreDir = ConfigConst.DEFAULT_SESSION_STORE_DIR;
+	private int     sessionStoreCompactBytes = ConfigConst.DEFAULT_SESSION_STORE_COMPACT_BYTES;
+	private long    maxInflightWaitMillis = ConfigConst.DEFAULT_MAX_INFLIGHT_WAIT_MILLIS;
+	
+	private volatile boolean isUserDisconnect = false;
+	private volatile boolean needsResubscribe = false;
+	private volatile long    connectedMillis = 0L;
+	private volatile long    disconnectedMillis = 0L;
+	
 	
 	// constructors
 	
@@ -51,8 +94,21 @@ public class MqttClientConnector implements IPubSubClient, MqttCallbackExtended
 	 * 
 	 */
 	public MqttClientConnector()
+	{
+		this(ConfigConst.MQTT_GATEWAY_SERVICE);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param configSectionName The name of the configuration section to use for
+	 * the MQTT client configuration parameters.
+	 */
+	public MqttClientConnector(String configSectionName)
 	{
 		super();
+		
+		initClientParameters(configSectionName);
 	}
 	
 	
@@ -61,47 +117,231 @@ public class MqttClientConnector implements IPubSubClient, MqttCallbackExtended
 	@Override
 	public boolean connectClient()
 	{
+		try {
+			if (this.mqttClient == null) {
+				this.mqttClient = createClient();
+				this.mqttClient.setCallback(this);
+			}
+			
+			if (! this.mqttClient.isConnected()) {
+				_Logger.info("MQTT client connecting to broker: " + this.brokerAddr);
+				
+				long startMillis = System.currentTimeMillis();
+				
+				this.isUserDisconnect = false;
+				this.mqttClient.connect(this.connOpts);
+				
+				notifyConnected(System.currentTimeMillis() - startMillis);
+				
+				return true;
+			} else {
+				_Logger.warning("MQTT client already connected to broker: " + this.brokerAddr);
+			}
+		} catch (MqttException e) {
+			_Logger.log(Level.SEVERE, "Failed to connect MQTT client to broker: " + this.brokerAddr, e);
+		}
+		
 		return false;
 	}
 
 	@Override
 	public boolean disconnectClient()
 	{
+		this.isUserDisconnect = true;
+		this.reconnectCtrl.cancelReconnect(this.clientID);
+		
+		try {
+			if (this.mqttClient != null && this.mqttClient.isConnected()) {
+				_Logger.info("MQTT client disconnecting from broker: " + this.brokerAddr);
+				
+				this.mqttClient.disconnect();
+				
+				return true;
+			} else {
+				_Logger.warning("MQTT client already disconnected from broker: " + this.brokerAddr);
+			}
+		} catch (MqttException e) {
+			_Logger.log(Level.SEVERE, "Failed to disconnect MQTT client from broker: " + this.brokerAddr, e);
+		}
+		
 		return false;
 	}
 
 	public boolean isConnected()
 	{
-		return false;
+		return (this.mqttClient != null && this.mqttClient.isConnected());
 	}
 	
 	@Override
 	public boolean publishMessage(ResourceNameEnum topicName, String msg, int qos)
 	{
-		return false;
+		if (topicName == null) {
+			_Logger.warning("Resource is null. Unable to publish message: " + this.brokerAddr);
+			
+			return false;
+		}
+		
+		if (msg == null || msg.length() == 0) {
+			_Logger.warning("Message is null or empty. Unable to publish message: " + this.brokerAddr);
+			
+			return false;
+		}
+		
+		if (this.qosPolicy != null) {
+			qos = this.qosPolicy.getQos(topicName, qos);
+		}
+		
+		return publishMessage(topicName.getResourceName(), msg.getBytes(StandardCharsets.UTF_8), qos);
+	}
+	
+	/**
+	 * Publishes a raw payload to the given topic. This is used for
+	 * payloads that aren't UTF-8 text (e.g. compressed batches) or
+	 * topics that don't map to a {@link ResourceNameEnum}.
+	 * 
+	 * @param topic The full topic name.
+	 * @param payload The message payload.
+	 * @param qos The requested QoS.
+	 * @return boolean
+	 */
+	public boolean publishMessage(String topic, byte[] payload, int qos)
+	{
+		if (topic == null || payload == null || payload.length == 0) {
+			_Logger.warning("Topic or payload is null or empty. Unable to publish message: " + this.brokerAddr);
+			
+			return false;
+		}
+		
+		if (! isConnected()) {
+			_Logger.warning("MQTT client not connected. Unable to publish message: " + topic);
+			
+			return false;
+		}
+		
+		MqttMessage mqttMsg = new MqttMessage(payload);
+		mqttMsg.setQos(validateQos(qos));
+		
+		if (this.qosPolicy != null && mqttMsg.getQos() > 0) {
+			this.qosPolicy.recordInFlight(
+				this.mqttClient.getPendingDeliveryTokens().length, this.connOpts.getMaxInflight());
+		}
+		
+		long startMillis = System.currentTimeMillis();
+		
+		while (true) {
+			try {
+				// the synchronous client returns once the publish is acknowledged
+				this.mqttClient.publish(topic, mqttMsg);
+				
+				if (this.qosPolicy != null && mqttMsg.getQos() > 0) {
+					this.qosPolicy.recordLatency(System.currentTimeMillis() - startMillis);
+				}
+				
+				return true;
+			} catch (MqttPersistenceException e) {
+				_Logger.warning("Persistence exception thrown when publishing. " + e.getMessage());
+				
+				return false;
+			} catch (MqttException e) {
+				// paho decrements its in-flight count asynchronously after the ack, so a
+				// fast broker can briefly exhaust the window; wait for it to drain
+				if (e.getReasonCode() == MqttException.REASON_CODE_MAX_INFLIGHT &&
+					System.currentTimeMillis() - startMillis < this.maxInflightWaitMillis) {
+					try {
+						Thread.sleep(1L);
+					} catch (InterruptedException ie) {
+						Thread.currentThread().interrupt();
+						
+						return false;
+					}
+				} else {
+					_Logger.log(Level.WARNING, "Failed to publish message to topic: " + topic, e);
+					
+					return false;
+				}
+			}
+		}
 	}
 
 	@Override
 	public boolean subscribeToTopic(ResourceNameEnum topicName, int qos)
 	{
+		if (topicName == null) {
+			_Logger.warning("Resource is null. Unable to subscribe: " + this.brokerAddr);
+			
+			return false;
+		}
+		
+		if (! isConnected()) {
+			_Logger.warning("MQTT client not connected. Unable to subscribe: " + topicName.getResourceName());
+			
+			return false;
+		}
+		
+		try {
+			this.mqttClient.subscribe(topicName.getResourceName(), validateQos(qos));
+			this.subscriptions.put(topicName.getResourceName(), validateQos(qos));
+			
+			_Logger.info("Successfully subscribed to topic: " + topicName.getResourceName());
+			
+			return true;
+		} catch (MqttException e) {
+			_Logger.log(Level.SEVERE, "Failed to subscribe to topic: " + topicName.getResourceName(), e);
+		}
+		
 		return false;
 	}
 
 	@Override
 	public boolean unsubscribeFromTopic(ResourceNameEnum topicName)
 	{
+		if (topicName == null) {
+			_Logger.warning("Resource is null. Unable to unsubscribe: " + this.brokerAddr);
+			
+			return false;
+		}
+		
+		if (! isConnected()) {
+			_Logger.warning("MQTT client not connected. Unable to unsubscribe: " + topicName.getResourceName());
+			
+			return false;
+		}
+		
+		try {
+			this.subscriptions.remove(topicName.getResourceName());
+			this.mqttClient.unsubscribe(topicName.getResourceName());
+			
+			_Logger.info("Successfully unsubscribed from topic: " + topicName.getResourceName());
+			
+			return true;
+		} catch (MqttException e) {
+			_Logger.log(Level.SEVERE, "Failed to unsubscribe from topic: " + topicName.getResourceName(), e);
+		}
+		
 		return false;
 	}
 
 	@Override
 	public boolean setConnectionListener(IConnectionListener listener)
 	{
+		if (listener != null) {
+			this.connListener = listener;
+			
+			return true;
+		}
+		
 		return false;
 	}
 	
 	@Override
 	public boolean setDataMessageListener(IDataMessageListener listener)
 	{
+		if (listener != null) {
+			this.dataMsgListener = listener;
+			
+			return true;
+		}
+		
 		return false;
 	}
 	
@@ -110,26 +350,178 @@ public class MqttClientConnector implements IPubSubClient, MqttCallbackExtended
 	@Override
 	public void connectComplete(boolean reconnect, String serverURI)
 	{
+		_Logger.info("MQTT connection complete. Reconnect: " + reconnect + ", broker: " + serverURI);
+		
+		// connectClient() and the reconnect controller notify the listener
+		// themselves; only paho's own automatic reconnect is reported here
+		if (reconnect && ! this.reconnectCtrl.isEnabled()) {
+			notifyConnected(System.currentTimeMillis() - this.disconnectedMillis);
+		}
 	}
 
 	@Override
 	public void connectionLost(Throwable t)
 	{
+		_Logger.log(Level.WARNING, "MQTT connection lost: " + this.brokerAddr, t);
+		
+		this.disconnectedMillis = System.currentTimeMillis();
+		
+		if (this.connListener != null) {
+			this.connListener.onDisconnect(this.disconnectedMillis - this.connectedMillis);
+		}
+		
+		if (this.reconnectCtrl.isEnabled() && ! this.isUserDisconnect) {
+			this.reconnectCtrl.scheduleReconnect(
+				this.clientID, this.host, this::reconnectClient, this::notifyConnected);
+		}
 	}
 	
 	@Override
 	public void deliveryComplete(IMqttDeliveryToken token)
 	{
+		_Logger.finest("Delivered MQTT message with ID: " + token.getMessageId());
 	}
 	
 	@Override
 	public void messageArrived(String topic, MqttMessage msg) throws Exception
 	{
+		ResourceNameEnum resource = ResourceNameEnum.getEnumFromValue(topic);
+		
+		if (resource == null) {
+			_Logger.fine("Received message on unmapped topic. Ignoring: " + topic);
+			
+			return;
+		}
+		
+		if (this.dataMsgListener == null) {
+			_Logger.fine("No data message listener set. Ignoring message on topic: " + topic);
+			
+			return;
+		}
+		
+		// parse straight from the received bytes; no intermediate String copy
+		ByteBuffer payload = ByteBuffer.wrap(msg.getPayload());
+		
+		try {
+			switch (resource) {
+				case CDA_ACTUATOR_RESPONSE_RESOURCE:
+					ActuatorData actuatorData = DataUtil.getInstance().jsonToActuatorData(payload);
+					this.dataMsgListener.handleActuatorCommandResponse(resource, actuatorData);
+					break;
+				
+				case CDA_SENSOR_MSG_RESOURCE:
+					SensorData sensorData = DataUtil.getInstance().jsonToSensorData(payload);
+					this.dataMsgListener.handleSensorMessage(resource, sensorData);
+					break;
+				
+				case CDA_SYSTEM_PERF_MSG_RESOURCE:
+					SystemPerformanceData sysPerfData = DataUtil.getInstance().jsonToSystemPerformanceData(payload);
+					this.dataMsgListener.handleSystemPerformanceMessage(resource, sysPerfData);
+					break;
+				
+				default:
+					this.dataMsgListener.handleIncomingMessage(resource, payload);
+			}
+		} catch (Exception e) {
+			_Logger.log(Level.WARNING, "Failed to process message on topic: " + topic, e);
+		}
 	}
 
 	
 	// private methods
 	
+	/**
+	 * Creates the paho client. If the session store is enabled, in-flight
+	 * state is kept in a {@link MappedLogPersistence} log under a stable
+	 * client ID, so a restarted gateway resumes its broker session and
+	 * redelivers unacknowledged QoS 1 / 2 messages. If the log is already
+	 * in use (e.g. by another client in this process), this falls back
+	 * to in-memory persistence and a unique client ID.
+	 * 
+	 * @return MqttClient
+	 * @throws MqttException If the client can't be created.
+	 */
+	private MqttClient createClient() throws MqttException
+	{
+		if (this.enableSessionStore) {
+			this.persistence = new MappedLogPersistence(this.sessionStoreDir, this.sessionStoreCompactBytes);
+			
+			try {
+				return new MqttClient(this.brokerAddr, this.clientID, this.persistence);
+			} catch (MqttPersistenceException e) {
+				_Logger.warning(
+					"MQTT session store unavailable. Using in-memory persistence: " + e.getMessage());
+				
+				// a one-off client ID must not leave a persistent session behind
+				this.clientID = this.clientID + "-" + System.nanoTime();
+				this.connOpts.setCleanSession(true);
+			}
+		}
+		
+		this.persistence = new MemoryPersistence();
+		
+		return new MqttClient(this.brokerAddr, this.clientID, this.persistence);
+	}
+	
+	/**
+	 * Records the connect time and notifies the connection listener.
+	 * 
+	 * @param latencyMillis The connect or reconnect latency.
+	 */
+	private void notifyConnected(long latencyMillis)
+	{
+		this.connectedMillis = System.currentTimeMillis();
+		
+		_Logger.info("MQTT client connected to " + this.brokerAddr + " in " + latencyMillis + " ms");
+		
+		if (this.connListener != null) {
+			this.connListener.onConnect(latencyMillis);
+		}
+	}
+	
+	/**
+	 * Makes one reconnect attempt on behalf of the {@link ReconnectController}.
+	 * If the broker didn't keep the session, all current subscriptions are
+	 * restored with a single SUBSCRIBE request.
+	 * 
+	 * @return boolean True if connected and resubscribed; false otherwise.
+	 */
+	private boolean reconnectClient()
+	{
+		try {
+			if (! this.mqttClient.isConnected()) {
+				IMqttToken token = this.mqttClient.connectWithResult(this.connOpts);
+				
+				this.needsResubscribe = ! token.getSessionPresent();
+			}
+			
+			if (this.needsResubscribe && ! this.subscriptions.isEmpty()) {
+				Map<String, Integer> subs = new HashMap<>(this.subscriptions);
+				
+				String[] topics = new String[subs.size()];
+				int[]    qos    = new int[subs.size()];
+				int      i      = 0;
+				
+				for (Map.Entry<String, Integer> entry : subs.entrySet()) {
+					topics[i] = entry.getKey();
+					qos[i++]  = entry.getValue();
+				}
+				
+				this.mqttClient.subscribe(topics, qos);
+				
+				_Logger.info("Resubscribed to " + topics.length + " topic(s) in a single request: " + this.brokerAddr);
+			}
+			
+			this.needsResubscribe = false;
+			
+			return true;
+		} catch (MqttException e) {
+			_Logger.fine("MQTT reconnect attempt failed: " + this.brokerAddr + ". " + e.getMessage());
+		}
+		
+		return false;
+	}
+	
 	/**
 	 * Called by the constructor to set the MQTT client parameters to be used for the connection.
 	 * 
@@ -138,7 +530,80 @@ public class MqttClientConnector implements IPubSubClient, MqttCallbackExtended
 	 */
 	private void initClientParameters(String configSectionName)
 	{
-		// TODO: implement this
+		ConfigUtil configUtil = ConfigUtil.getInstance();
+		
+		this.host =
+			configUtil.getProperty(
+				configSectionName, ConfigConst.HOST_KEY, ConfigConst.DEFAULT_HOST);
+		this.port =
+			configUtil.getInteger(
+				configSectionName, ConfigConst.PORT_KEY, ConfigConst.DEFAULT_MQTT_PORT);
+		this.brokerKeepAlive =
+			configUtil.getInteger(
+				configSectionName, ConfigConst.KEEP_ALIVE_KEY, ConfigConst.DEFAULT_KEEP_ALIVE);
+		
+		String locationID =
+			configUtil.getProperty(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.DEVICE_LOCATION_ID_KEY, ConfigConst.NOT_SET);
+		
+		this.enableSessionStore =
+			configUtil.getBoolean(configSectionName, ConfigConst.ENABLE_SESSION_STORE_KEY);
+		
+		if (this.enableSessionStore) {
+			// the broker session and the local store are both keyed by the
+			// client ID, so it must stay the same across restarts
+			this.clientID = ConfigConst.GATEWAY_DEVICE + "-" + locationID + "-" + configSectionName;
+			
+			this.sessionStoreDir =
+				configUtil.getProperty(
+					configSectionName, ConfigConst.SESSION_STORE_DIR_KEY, ConfigConst.DEFAULT_SESSION_STORE_DIR);
+			this.sessionStoreCompactBytes =
+				configUtil.getInteger(
+					configSectionName, ConfigConst.SESSION_STORE_COMPACT_BYTES_KEY, ConfigConst.DEFAULT_SESSION_STORE_COMPACT_BYTES);
+		} else {
+			// paho requires a unique client ID per connection
+			this.clientID = ConfigConst.GATEWAY_DEVICE + "-" + locationID + "-" + System.nanoTime();
+		}
+		
+		this.connOpts = new MqttConnectOptions();
+		this.connOpts.setKeepAliveInterval(this.brokerKeepAlive);
+		
+		// only resume the broker session if the client ID is stable across
+		// restarts; otherwise every restart would orphan a persistent session
+		this.connOpts.setCleanSession(! this.enableSessionStore);
+		
+		// the shared reconnect controller jitters reconnects across all
+		// connectors; paho's own fixed schedule is only used without it
+		this.reconnectCtrl = ReconnectController.getInstance();
+		this.connOpts.setAutomaticReconnect(! this.reconnectCtrl.isEnabled());
+		
+		// paho releases an in-flight slot slightly after the publish token
+		// completes, so back-to-back QoS 1 / 2 publishes need headroom
+		this.connOpts.setMaxInflight(
+			configUtil.getInteger(
+				configSectionName, ConfigConst.RECEIVE_MAX_KEY, ConfigConst.DEFAULT_RECEIVE_MAX));
+		this.maxInflightWaitMillis =
+			configUtil.getInteger(
+				configSectionName, ConfigConst.MAX_INFLIGHT_WAIT_MILLIS_KEY, ConfigConst.DEFAULT_MAX_INFLIGHT_WAIT_MILLIS);
+		
+		this.enableEncryption =
+			configUtil.getBoolean(configSectionName, ConfigConst.ENABLE_CRYPT_KEY);
+		
+		if (this.enableEncryption) {
+			initSecureConnectionParameters(configSectionName);
+		}
+		
+		if (configUtil.getBoolean(configSectionName, ConfigConst.ENABLE_AUTH_KEY)) {
+			initCredentialConnectionParameters(configSectionName);
+		}
+		
+		if (configUtil.getBoolean(configSectionName, ConfigConst.ENABLE_QOS_POLICY_KEY)) {
+			this.qosPolicy = new QosPolicy(configSectionName);
+		}
+		
+		this.brokerAddr = this.protocol + "://" + this.host + ":" + this.port;
+		
+		_Logger.info("Using MQTT broker address: " + this.brokerAddr);
 	}
 	
 	/**
@@ -149,7 +614,14 @@ public class MqttClientConnector implements IPubSubClient, MqttCallbackExtended
 	 */
 	private void initCredentialConnectionParameters(String configSectionName)
 	{
-		// TODO: implement this
+		Properties props = ConfigUtil.getInstance().getCredentials(configSectionName);
+		
+		if (props != null) {
+			this.connOpts.setUserName(props.getProperty(ConfigConst.USER_NAME_TOKEN_KEY, ""));
+			this.connOpts.setPassword(props.getProperty(ConfigConst.USER_AUTH_TOKEN_KEY, "").toCharArray());
+		} else {
+			_Logger.warning("No credentials loaded for MQTT client. Continuing without auth.");
+		}
 	}
 	
 	/**
@@ -160,6 +632,38 @@ public class MqttClientConnector implements IPubSubClient, MqttCallbackExtended
 	 */
 	private void initSecureConnectionParameters(String configSectionName)
 	{
-		// TODO: implement this
+		ConfigUtil configUtil = ConfigUtil.getInstance();
+		
+		String certFile = configUtil.getProperty(configSectionName, ConfigConst.CERT_FILE_KEY);
+		
+		SSLSocketFactory sslFactory = SimpleCertManagementUtil.getInstance().loadCertificate(certFile);
+		
+		if (sslFactory != null) {
+			this.connOpts.setSocketFactory(sslFactory);
+			
+			this.port =
+				configUtil.getInteger(
+					configSectionName, ConfigConst.SECURE_PORT_KEY, ConfigConst.DEFAULT_MQTT_SECURE_PORT);
+			this.protocol = ConfigConst.DEFAULT_MQTT_SECURE_PROTOCOL;
+		} else {
+			_Logger.warning("Failed to load certificate. Using insecure MQTT connection: " + certFile);
+			
+			this.enableEncryption = false;
+		}
+	}
+
+	/**
+	 * Returns the given QoS if valid, or the default QoS otherwise.
+	 * 
+	 * @param qos The requested QoS.
+	 * @return int
+	 */
+	private int validateQos(int qos)
+	{
+		if (qos < 0 || qos > 2) {
+			qos = ConfigConst.DEFAULT_QOS;
+		}
+		
+		return qos;
 	}
 }
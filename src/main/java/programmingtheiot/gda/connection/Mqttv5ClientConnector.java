@@ -11,31 +11,71 @@
 
 package programmingtheiot.gda.connection;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.eclipse.paho.mqttv5.client.IMqttDeliveryToken;
+import javax.net.ssl.SSLSocketFactory;
+
 import org.eclipse.paho.mqttv5.client.IMqttToken;
+import org.eclipse.paho.mqttv5.client.MqttActionListener;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
 import org.eclipse.paho.mqttv5.client.MqttCallback;
-import org.eclipse.paho.mqttv5.client.MqttClient;
 import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
 import org.eclipse.paho.mqttv5.client.MqttDisconnectResponse;
 import org.eclipse.paho.mqttv5.client.persist.MemoryPersistence;
 import org.eclipse.paho.mqttv5.common.MqttException;
 import org.eclipse.paho.mqttv5.common.MqttMessage;
-import org.eclipse.paho.mqttv5.common.MqttPersistenceException;
-import org.eclipse.paho.mqttv5.common.MqttSecurityException;
+import org.eclipse.paho.mqttv5.common.MqttSubscription;
 import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+import org.eclipse.paho.mqttv5.common.packet.UserProperty;
+import org.eclipse.paho.mqttv5.common.util.MqttTopicValidator;
 
 import programmingtheiot.common.ConfigConst;
 import programmingtheiot.common.ConfigUtil;
 import programmingtheiot.common.IDataMessageListener;
 import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.common.SimpleCertManagementUtil;
+import programmingtheiot.data.ActuatorData;
+import programmingtheiot.data.DataUtil;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SystemPerformanceData;
 
 /**
- * Shell representation of class for student implementation.
- * 
+ * MQTT v5 client connector.
+ * <p>
+ * In addition to the basic {@link IPubSubClient} contract, this uses
+ * the following MQTT 5 features, all configured within the
+ * {@link ConfigConst#MQTT_GATEWAY_SERVICE} section:
+ * <ul>
+ * <li>Topic aliases: the client advertises {@link ConfigConst#TOPIC_ALIAS_MAX_KEY}
+ * to the broker, and Paho assigns outgoing aliases up to the broker's
+ * advertised maximum, so repeated publishes to the same resource only
+ * carry the full topic name once per connection.</li>
+ * <li>Shared subscriptions: if {@link ConfigConst#SHARED_SUB_GROUP_KEY} is set,
+ * each subscription uses the '$share/{group}/{topic}' filter so that
+ * several GDA instances can load-balance inbound CDA traffic.</li>
+ * <li>Receive maximum: the client limits the number of unacknowledged
+ * inbound QoS 1 / 2 messages to {@link ConfigConst#RECEIVE_MAX_KEY}, and
+ * limits its own in-flight QoS 1 / 2 publishes to the smaller of that
+ * value and the broker's receive maximum.</li>
+ * <li>Message expiry: sensor and system performance messages are published
+ * with {@link ConfigConst#MSG_EXPIRY_SECS_KEY} so the broker discards
+ * stale readings instead of delivering them late.</li>
+ * <li>User properties: every publish carries the gateway's location ID,
+ * and inbound messages can be dropped by location ID before their payload
+ * is decoded (see {@link #setLocationFilter(Predicate)}).</li>
+ * </ul>
  */
 public class Mqttv5ClientConnector implements IPubSubClient, MqttCallback
 {
@@ -44,8 +84,47 @@ public class Mqttv5ClientConnector implements IPubSubClient, MqttCallback
 	private static final Logger _Logger =
 		Logger.getLogger(Mqttv5ClientConnector.class.getName());
 	
+	public static final long DEFAULT_ACTION_TIMEOUT_MILLIS = 10000L;
+	
 	// params
 	
+	private MqttAsyncClient       mqttClient = null;
+	private MqttConnectionOptions connOpts = null;
+	private MemoryPersistence     persistence = null;
+	
+	private IDataMessageListener dataMsgListener = null;
+	private IConnectionListener  connListener = null;
+	private Predicate<String>    locationFilter = null;
+	private ReconnectController  reconnectCtrl = null;
+	private QosPolicy            qosPolicy = null;
+	
+	private Map<String, BiConsumer<String, byte[]>> topicHandlers = new ConcurrentHashMap<>();
+	
+	// topic filter -> QoS of current subscriptions, replayed after a reconnect
+	private Map<String, Integer> subscriptions = new ConcurrentHashMap<>();
+	
+	private String  clientID = null;
+	private String  brokerAddr = null;
+	private String  host = ConfigConst.DEFAULT_HOST;
+	private String  protocol = ConfigConst.DEFAULT_MQTT_PROTOCOL;
+	private String  locationID = ConfigConst.NOT_SET;
+	private String  sharedSubGroup = null;
+	private int     port = ConfigConst.DEFAULT_MQTT_PORT;
+	private int     brokerKeepAlive = ConfigConst.DEFAULT_KEEP_ALIVE;
+	private int     topicAliasMax = ConfigConst.DEFAULT_TOPIC_ALIAS_MAX;
+	private int     receiveMax = ConfigConst.DEFAULT_RECEIVE_MAX;
+	private long    msgExpirySecs = ConfigConst.DEFAULT_MSG_EXPIRY_SECS;
+	private long    sessionExpirySecs = ConfigConst.DEFAULT_SESSION_EXPIRY_SECS;
+	private boolean enableEncryption = false;
+	
+	private volatile Semaphore inFlightPermits = null;
+	private volatile int       inFlightMax = 0;
+	
+	private volatile boolean isUserDisconnect = false;
+	private volatile boolean needsResubscribe = false;
+	private volatile long    connectedMillis = 0L;
+	private volatile long    disconnectedMillis = 0L;
+	
 	
 	// constructors
 	
@@ -54,8 +133,21 @@ public class Mqttv5ClientConnector implements IPubSubClient, MqttCallback
 	 * 
 	 */
 	public Mqttv5ClientConnector()
+	{
+		this(ConfigConst.MQTT_GATEWAY_SERVICE);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param configSectionName The name of the configuration section to use for
+	 * the MQTT client configuration parameters.
+	 */
+	public Mqttv5ClientConnector(String configSectionName)
 	{
 		super();
+		
+		initClientParameters(configSectionName);
 	}
 	
 	
@@ -64,91 +156,718 @@ public class Mqttv5ClientConnector implements IPubSubClient, MqttCallback
 	@Override
 	public boolean connectClient()
 	{
+		try {
+			if (this.mqttClient == null) {
+				this.persistence = new MemoryPersistence();
+				this.mqttClient  = new MqttAsyncClient(this.brokerAddr, this.clientID, this.persistence);
+				this.mqttClient.setCallback(this);
+			}
+			
+			if (! this.mqttClient.isConnected()) {
+				_Logger.info("MQTT v5 client connecting to broker: " + this.brokerAddr);
+				
+				long startMillis = System.currentTimeMillis();
+				
+				this.isUserDisconnect = false;
+				
+				IMqttToken token = this.mqttClient.connect(this.connOpts);
+				token.waitForCompletion(DEFAULT_ACTION_TIMEOUT_MILLIS);
+				
+				initFlowControl(token.getResponseProperties());
+				notifyConnected(System.currentTimeMillis() - startMillis);
+				
+				return true;
+			} else {
+				_Logger.warning("MQTT v5 client already connected to broker: " + this.brokerAddr);
+			}
+		} catch (MqttException e) {
+			_Logger.log(Level.SEVERE, "Failed to connect MQTT v5 client to broker: " + this.brokerAddr, e);
+		}
+		
 		return false;
 	}
-
+	
 	@Override
 	public boolean disconnectClient()
 	{
+		this.isUserDisconnect = true;
+		this.reconnectCtrl.cancelReconnect(this.clientID);
+		
+		try {
+			if (this.mqttClient != null && this.mqttClient.isConnected()) {
+				_Logger.info("MQTT v5 client disconnecting from broker: " + this.brokerAddr);
+				
+				this.mqttClient.disconnect().waitForCompletion(DEFAULT_ACTION_TIMEOUT_MILLIS);
+				
+				return true;
+			} else {
+				_Logger.warning("MQTT v5 client already disconnected from broker: " + this.brokerAddr);
+			}
+		} catch (MqttException e) {
+			_Logger.log(Level.SEVERE, "Failed to disconnect MQTT v5 client from broker: " + this.brokerAddr, e);
+		}
+		
 		return false;
 	}
-
+	
+	/**
+	 * Returns the limit on in-flight QoS 1 / 2 publishes negotiated at
+	 * connect, i.e. the smaller of the configured and the broker's
+	 * receive maximum.
+	 * 
+	 * @return int The limit, or 0 if not yet connected.
+	 */
+	public int getInFlightMax()
+	{
+		return this.inFlightMax;
+	}
+	
 	public boolean isConnected()
 	{
-		return false;
+		return (this.mqttClient != null && this.mqttClient.isConnected());
 	}
 	
 	@Override
 	public boolean publishMessage(ResourceNameEnum topicName, String msg, int qos)
 	{
-		return false;
+		if (topicName == null) {
+			_Logger.warning("Resource is null. Unable to publish message: " + this.brokerAddr);
+			
+			return false;
+		}
+		
+		if (msg == null || msg.length() == 0) {
+			_Logger.warning("Message is null or empty. Unable to publish message: " + this.brokerAddr);
+			
+			return false;
+		}
+		
+		if (this.qosPolicy != null) {
+			qos = this.qosPolicy.getQos(topicName, qos);
+		}
+		
+		MqttProperties props = new MqttProperties();
+		props.setUserProperties(createUserProperties());
+		
+		if (this.msgExpirySecs > 0 && isExpirable(topicName)) {
+			props.setMessageExpiryInterval(this.msgExpirySecs);
+		}
+		
+		return publishMessage(topicName.getResourceName(), msg.getBytes(StandardCharsets.UTF_8), qos, false, props);
 	}
-
+	
+	/**
+	 * Publishes the given payload to an arbitrary topic. This is intended for
+	 * GDA-internal coordination traffic that doesn't map to a
+	 * {@link ResourceNameEnum}.
+	 * 
+	 * @param topic The topic to publish to.
+	 * @param payload The payload bytes (may be empty, e.g. to clear a retained message).
+	 * @param qos The QoS level. This is expected to be 0 - 2.
+	 * @param retain True if the broker should retain the message.
+	 * @return boolean True on success; false otherwise.
+	 */
+	public boolean publishMessage(String topic, byte[] payload, int qos, boolean retain)
+	{
+		return publishMessage(topic, payload, qos, retain, null);
+	}
+	
 	@Override
 	public boolean subscribeToTopic(ResourceNameEnum topicName, int qos)
 	{
+		if (topicName == null) {
+			_Logger.warning("Resource is null. Unable to subscribe: " + this.brokerAddr);
+			
+			return false;
+		}
+		
+		return subscribeToTopic(createTopicFilter(topicName.getResourceName(), this.sharedSubGroup), qos);
+	}
+	
+	/**
+	 * Subscribes to an arbitrary topic filter. No shared subscription
+	 * prefix is applied.
+	 * 
+	 * @param topicFilter The topic filter (wildcards permitted).
+	 * @param qos The QoS level. This is expected to be 0 - 2.
+	 * @return boolean True on success; false otherwise.
+	 */
+	public boolean subscribeToTopic(String topicFilter, int qos)
+	{
+		if (! isConnected()) {
+			_Logger.warning("MQTT v5 client not connected. Unable to subscribe: " + topicFilter);
+			
+			return false;
+		}
+		
+		if (this.locationFilter != null && topicFilter.startsWith(ConfigConst.SHARED_SUB_PREFIX)) {
+			_Logger.warning("Shared subscriptions not supported with a location filter. Unable to subscribe: " + topicFilter);
+			
+			return false;
+		}
+		
+		qos = validateQos(qos);
+		
+		try {
+			this.mqttClient.subscribe(new MqttSubscription(topicFilter, qos))
+				.waitForCompletion(DEFAULT_ACTION_TIMEOUT_MILLIS);
+			this.subscriptions.put(topicFilter, qos);
+			
+			_Logger.info("Successfully subscribed to topic: " + topicFilter);
+			
+			return true;
+		} catch (Exception e) {
+			_Logger.log(Level.SEVERE, "Failed to subscribe to topic: " + topicFilter, e);
+		}
+		
 		return false;
 	}
-
+	
+	/**
+	 * Subscribes to an arbitrary topic filter and routes matching messages
+	 * to the given handler instead of the data message listener. Used for
+	 * GDA-internal topics (e.g. cluster membership) that don't map to a
+	 * {@link ResourceNameEnum}.
+	 * 
+	 * @param topicFilter The topic filter (may contain wildcards).
+	 * @param qos The requested QoS.
+	 * @param handler Receives the topic and raw payload of each message.
+	 * @return boolean True on success; false otherwise.
+	 */
+	public boolean subscribeToTopic(String topicFilter, int qos, BiConsumer<String, byte[]> handler)
+	{
+		if (handler != null) {
+			// routed in messageArrived() rather than via paho's per-subscription
+			// listeners, which depend on broker support for subscription identifiers
+			this.topicHandlers.put(topicFilter, handler);
+		}
+		
+		if (subscribeToTopic(topicFilter, qos)) {
+			return true;
+		}
+		
+		this.topicHandlers.remove(topicFilter);
+		
+		return false;
+	}
+	
 	@Override
 	public boolean unsubscribeFromTopic(ResourceNameEnum topicName)
 	{
+		if (topicName == null) {
+			_Logger.warning("Resource is null. Unable to unsubscribe: " + this.brokerAddr);
+			
+			return false;
+		}
+		
+		return unsubscribeFromTopic(createTopicFilter(topicName.getResourceName(), this.sharedSubGroup));
+	}
+	
+	/**
+	 * Unsubscribes from an arbitrary topic filter.
+	 * 
+	 * @param topicFilter The topic filter used when subscribing.
+	 * @return boolean True on success; false otherwise.
+	 */
+	public boolean unsubscribeFromTopic(String topicFilter)
+	{
+		if (! isConnected()) {
+			_Logger.warning("MQTT v5 client not connected. Unable to unsubscribe: " + topicFilter);
+			
+			return false;
+		}
+		
+		this.topicHandlers.remove(topicFilter);
+		this.subscriptions.remove(topicFilter);
+		
+		try {
+			this.mqttClient.unsubscribe(topicFilter).waitForCompletion(DEFAULT_ACTION_TIMEOUT_MILLIS);
+			
+			_Logger.info("Successfully unsubscribed from topic: " + topicFilter);
+			
+			return true;
+		} catch (Exception e) {
+			_Logger.log(Level.SEVERE, "Failed to unsubscribe from topic: " + topicFilter, e);
+		}
+		
 		return false;
 	}
-
+	
 	@Override
 	public boolean setConnectionListener(IConnectionListener listener)
 	{
+		if (listener != null) {
+			this.connListener = listener;
+			
+			return true;
+		}
+		
 		return false;
 	}
 	
 	@Override
 	public boolean setDataMessageListener(IDataMessageListener listener)
 	{
+		if (listener != null) {
+			this.dataMsgListener = listener;
+			
+			return true;
+		}
+		
 		return false;
 	}
 	
+	/**
+	 * Sets a filter on the location ID user property of inbound messages.
+	 * Messages whose location ID fails the test are acknowledged but not
+	 * decoded or passed to the data message listener. Messages without a
+	 * location ID user property are always processed.
+	 * 
+	 * <p>
+	 * A location filter can't be combined with shared subscriptions: the
+	 * broker delivers each message to only one member of the group, so a
+	 * message dropped here would never be processed by any GDA instance.
+	 * 
+	 * @param filter The filter to apply, or null to process all messages.
+	 * @return boolean True if set; false if shared subscriptions are in use.
+	 */
+	public boolean setLocationFilter(Predicate<String> filter)
+	{
+		if (filter != null && hasSharedSubscriptions()) {
+			_Logger.warning("Location filter ignored. Not supported with shared subscriptions: " + this.sharedSubGroup);
+			
+			return false;
+		}
+		
+		this.locationFilter = filter;
+		
+		return true;
+	}
+	
+	/**
+	 * Sets the will message the broker should publish (retained) if this client
+	 * disconnects unexpectedly. Must be called before {@link #connectClient()}.
+	 * 
+	 * @param topic The will topic.
+	 * @param payload The will payload.
+	 * @param qos The will QoS.
+	 * @param retain True if the will message should be retained.
+	 */
+	public void setWillMessage(String topic, byte[] payload, int qos, boolean retain)
+	{
+		MqttMessage willMsg = new MqttMessage(payload);
+		willMsg.setQos(validateQos(qos));
+		willMsg.setRetained(retain);
+		
+		this.connOpts.setWill(topic, willMsg);
+	}
+	
+	/**
+	 * Returns the topic filter to use for the given topic and shared
+	 * subscription group.
+	 * 
+	 * @param topic The topic name.
+	 * @param group The shared subscription group, or null / empty for none.
+	 * @return String The topic filter, e.g. '$share/{group}/{topic}'.
+	 */
+	public static String createTopicFilter(String topic, String group)
+	{
+		if (group != null && group.trim().length() > 0) {
+			return ConfigConst.SHARED_SUB_PREFIX + group.trim() + "/" + topic;
+		}
+		
+		return topic;
+	}
+	
 	// callbacks
 	
 	@Override
 	public void authPacketArrived(int reasonCode, MqttProperties properties)
 	{
-		// TODO: implement this callback
+		_Logger.fine("MQTT v5 auth packet arrived. Reason code: " + reasonCode);
 	}
-
+	
 	@Override
 	public void connectComplete(boolean reconnect, String serverURI)
 	{
-		// TODO: implement this callback
+		_Logger.info("MQTT v5 connection complete. Reconnect: " + reconnect + ", broker: " + serverURI);
+		
+		// connectClient() and the reconnect controller notify the listener
+		// themselves; only paho's own automatic reconnect is reported here
+		if (reconnect && ! this.reconnectCtrl.isEnabled()) {
+			notifyConnected(System.currentTimeMillis() - this.disconnectedMillis);
+		}
 	}
-
+	
 	@Override
 	public void deliveryComplete(IMqttToken token)
 	{
-		// TODO: implement this callback
+		// in-flight permits are released by the publish action listener
 	}
-
+	
 	@Override
 	public void disconnected(MqttDisconnectResponse disconnectResponse)
 	{
-		// TODO: implement this callback
+		_Logger.info("MQTT v5 client disconnected: " + disconnectResponse);
+		
+		this.disconnectedMillis = System.currentTimeMillis();
+		
+		if (this.connListener != null) {
+			this.connListener.onDisconnect(this.disconnectedMillis - this.connectedMillis);
+		}
+		
+		if (this.reconnectCtrl.isEnabled() && ! this.isUserDisconnect) {
+			this.reconnectCtrl.scheduleReconnect(
+				this.clientID, this.host, this::reconnectClient, this::notifyConnected);
+		}
 	}
-
+	
 	@Override
 	public void mqttErrorOccurred(MqttException exception)
 	{
-		// TODO: implement this callback
+		_Logger.log(Level.WARNING, "MQTT v5 error occurred.", exception);
 	}
-
+	
 	@Override
 	public void messageArrived(String topic, MqttMessage msg) throws Exception
 	{
-		// TODO: implement this callback
+		if (! this.topicHandlers.isEmpty()) {
+			for (Map.Entry<String, BiConsumer<String, byte[]>> entry : this.topicHandlers.entrySet()) {
+				if (MqttTopicValidator.isMatched(getMatchFilter(entry.getKey()), topic)) {
+					try {
+						entry.getValue().accept(topic, msg.getPayload());
+					} catch (Exception e) {
+						_Logger.log(Level.WARNING, "Failed to process message on topic: " + topic, e);
+					}
+					
+					return;
+				}
+			}
+		}
+		
+		if (this.locationFilter != null) {
+			String msgLocationID = getUserProperty(msg.getProperties(), ConfigConst.LOCATION_ID_PROP);
+			
+			if (msgLocationID != null && ! this.locationFilter.test(msgLocationID)) {
+				_Logger.finest("Ignoring message for location: " + msgLocationID);
+				
+				return;
+			}
+		}
+		
+		ResourceNameEnum resource = ResourceNameEnum.getEnumFromValue(topic);
+		
+		if (resource == null) {
+			_Logger.fine("Received message on unmapped topic. Ignoring: " + topic);
+			
+			return;
+		}
+		
+		if (this.dataMsgListener == null) {
+			_Logger.fine("No data message listener set. Ignoring message on topic: " + topic);
+			
+			return;
+		}
+		
+		// parse straight from the received bytes; no intermediate String copy
+		ByteBuffer payload = ByteBuffer.wrap(msg.getPayload());
+		
+		try {
+			switch (resource) {
+				case CDA_ACTUATOR_RESPONSE_RESOURCE:
+					ActuatorData actuatorData = DataUtil.getInstance().jsonToActuatorData(payload);
+					this.dataMsgListener.handleActuatorCommandResponse(resource, actuatorData);
+					break;
+				
+				case CDA_SENSOR_MSG_RESOURCE:
+					SensorData sensorData = DataUtil.getInstance().jsonToSensorData(payload);
+					this.dataMsgListener.handleSensorMessage(resource, sensorData);
+					break;
+				
+				case CDA_SYSTEM_PERF_MSG_RESOURCE:
+					SystemPerformanceData sysPerfData = DataUtil.getInstance().jsonToSystemPerformanceData(payload);
+					this.dataMsgListener.handleSystemPerformanceMessage(resource, sysPerfData);
+					break;
+				
+				default:
+					this.dataMsgListener.handleIncomingMessage(resource, payload);
+			}
+		} catch (Exception e) {
+			_Logger.log(Level.WARNING, "Failed to process message on topic: " + topic, e);
+		}
 	}
-
+	
 	
 	// private methods
 	
+	/**
+	 * Returns the list of user properties attached to every publish.
+	 * 
+	 * @return List<UserProperty>
+	 */
+	private List<UserProperty> createUserProperties()
+	{
+		List<UserProperty> userProps = new ArrayList<>(1);
+		userProps.add(new UserProperty(ConfigConst.LOCATION_ID_PROP, this.locationID));
+		
+		return userProps;
+	}
+	
+	/**
+	 * Returns the part of the given topic filter that message topics are
+	 * matched against, i.e. without any '$share/{group}/' prefix.
+	 * 
+	 * @param topicFilter The topic filter.
+	 * @return String The filter to match.
+	 */
+	private static String getMatchFilter(String topicFilter)
+	{
+		if (topicFilter.startsWith(ConfigConst.SHARED_SUB_PREFIX)) {
+			int slash = topicFilter.indexOf('/', ConfigConst.SHARED_SUB_PREFIX.length());
+			
+			if (slash > 0) {
+				return topicFilter.substring(slash + 1);
+			}
+		}
+		
+		return topicFilter;
+	}
+	
+	/**
+	 * Returns the value of the first user property with the given name.
+	 * 
+	 * @param props The message properties (may be null).
+	 * @param name The user property name.
+	 * @return String The value, or null if not present.
+	 */
+	private String getUserProperty(MqttProperties props, String name)
+	{
+		if (props != null && props.getUserProperties() != null) {
+			for (UserProperty userProp : props.getUserProperties()) {
+				if (name.equals(userProp.getKey())) {
+					return userProp.getValue();
+				}
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Checks if a shared subscription group is configured, or any
+	 * current subscription is shared.
+	 * 
+	 * @return boolean
+	 */
+	private boolean hasSharedSubscriptions()
+	{
+		if (this.sharedSubGroup != null && this.sharedSubGroup.trim().length() > 0) {
+			return true;
+		}
+		
+		for (String topicFilter : this.subscriptions.keySet()) {
+			if (topicFilter.startsWith(ConfigConst.SHARED_SUB_PREFIX)) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Sets up the outgoing in-flight limit using the smaller of the
+	 * configured receive maximum and the broker's advertised receive
+	 * maximum (from CONNACK).
+	 * 
+	 * @param connAckProps The CONNACK properties (may be null).
+	 */
+	private void initFlowControl(MqttProperties connAckProps)
+	{
+		int maxInFlight = this.receiveMax;
+		
+		if (connAckProps != null) {
+			if (connAckProps.getReceiveMaximum() != null) {
+				maxInFlight = Math.min(maxInFlight, connAckProps.getReceiveMaximum());
+			}
+			
+			_Logger.info(
+				"MQTT v5 broker limits. Topic alias max: " + connAckProps.getTopicAliasMaximum() +
+				", receive max: " + connAckProps.getReceiveMaximum());
+		}
+		
+		this.inFlightMax     = Math.max(maxInFlight, 1);
+		this.inFlightPermits = new Semaphore(this.inFlightMax);
+	}
+	
+	/**
+	 * Records the connect time and notifies the connection listener.
+	 * 
+	 * @param latencyMillis The connect or reconnect latency.
+	 */
+	private void notifyConnected(long latencyMillis)
+	{
+		this.connectedMillis = System.currentTimeMillis();
+		
+		_Logger.info("MQTT v5 client connected to " + this.brokerAddr + " in " + latencyMillis + " ms");
+		
+		if (this.connListener != null) {
+			this.connListener.onConnect(latencyMillis);
+		}
+	}
+	
+	/**
+	 * Makes one reconnect attempt on behalf of the {@link ReconnectController}.
+	 * If the broker didn't keep the session, all current subscriptions are
+	 * restored with a single SUBSCRIBE packet.
+	 * 
+	 * @return boolean True if connected and resubscribed; false otherwise.
+	 */
+	private boolean reconnectClient()
+	{
+		try {
+			if (! this.mqttClient.isConnected()) {
+				IMqttToken token = this.mqttClient.connect(this.connOpts);
+				token.waitForCompletion(DEFAULT_ACTION_TIMEOUT_MILLIS);
+				
+				initFlowControl(token.getResponseProperties());
+				
+				this.needsResubscribe = ! token.getSessionPresent();
+			}
+			
+			if (this.needsResubscribe && ! this.subscriptions.isEmpty()) {
+				List<MqttSubscription> subs = new ArrayList<>();
+				
+				for (Map.Entry<String, Integer> entry : this.subscriptions.entrySet()) {
+					subs.add(new MqttSubscription(entry.getKey(), entry.getValue()));
+				}
+				
+				this.mqttClient.subscribe(subs.toArray(new MqttSubscription[0]))
+					.waitForCompletion(DEFAULT_ACTION_TIMEOUT_MILLIS);
+				
+				_Logger.info("Resubscribed to " + subs.size() + " topic filter(s) in a single request: " + this.brokerAddr);
+			}
+			
+			this.needsResubscribe = false;
+			
+			return true;
+		} catch (MqttException e) {
+			_Logger.fine("MQTT v5 reconnect attempt failed: " + this.brokerAddr + ". " + e.getMessage());
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Checks if messages published to the given resource should expire.
+	 * Only telemetry goes stale; commands and responses are never expired.
+	 * 
+	 * @param resource The resource to check.
+	 * @return boolean True if the message expiry interval should be set.
+	 */
+	private boolean isExpirable(ResourceNameEnum resource)
+	{
+		String resourceType = resource.getResourceType();
+		
+		return (ConfigConst.SENSOR_MSG.equals(resourceType) || ConfigConst.SYSTEM_PERF_MSG.equals(resourceType));
+	}
+	
+	/**
+	 * Publishes the given payload. QoS 1 and 2 publishes wait for an in-flight
+	 * permit, which is released once the broker acknowledges the message.
+	 * 
+	 * @param topic The topic name.
+	 * @param payload The payload bytes.
+	 * @param qos The QoS level.
+	 * @param retain True if the broker should retain the message.
+	 * @param props The publish properties (may be null).
+	 * @return boolean True on success; false otherwise.
+	 */
+	private boolean publishMessage(String topic, byte[] payload, int qos, boolean retain, MqttProperties props)
+	{
+		if (! isConnected()) {
+			_Logger.warning("MQTT v5 client not connected. Unable to publish to topic: " + topic);
+			
+			return false;
+		}
+		
+		qos = validateQos(qos);
+		
+		MqttMessage mqttMsg = new MqttMessage(payload);
+		mqttMsg.setQos(qos);
+		mqttMsg.setRetained(retain);
+		
+		if (props != null) {
+			mqttMsg.setProperties(props);
+		}
+		
+		Semaphore permits = this.inFlightPermits;
+		MqttActionListener permitReleaser = null;
+		
+		try {
+			if (qos > 0 && permits != null) {
+				QosPolicy policy      = this.qosPolicy;
+				long      startMillis = System.currentTimeMillis();
+				
+				if (policy != null) {
+					policy.recordInFlight(this.inFlightMax - permits.availablePermits(), this.inFlightMax);
+				}
+				
+				if (! permits.tryAcquire(DEFAULT_ACTION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+					_Logger.warning("Timed out waiting for an in-flight slot. Unable to publish to topic: " + topic);
+					
+					return false;
+				}
+				
+				permitReleaser = new MqttActionListener() {
+					@Override
+					public void onSuccess(IMqttToken asyncActionToken)
+					{
+						permits.release();
+						
+						if (policy != null) {
+							policy.recordLatency(System.currentTimeMillis() - startMillis);
+						}
+					}
+					
+					@Override
+					public void onFailure(IMqttToken asyncActionToken, Throwable e)
+					{
+						permits.release();
+					}
+				};
+			}
+			
+			this.mqttClient.publish(topic, mqttMsg, null, permitReleaser);
+			
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (MqttException e) {
+			if (permitReleaser != null) {
+				permits.release();
+			}
+			
+			_Logger.log(Level.SEVERE, "Failed to publish message to topic: " + topic, e);
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Returns the given QoS if valid, or the default QoS otherwise.
+	 * 
+	 * @param qos The requested QoS.
+	 * @return int A QoS level between 0 and 2.
+	 */
+	private int validateQos(int qos)
+	{
+		if (qos < 0 || qos > 2) {
+			qos = ConfigConst.DEFAULT_QOS;
+		}
+		
+		return qos;
+	}
+	
 	/**
 	 * Called by the constructor to set the MQTT client parameters to be used for the connection.
 	 * 
@@ -157,7 +876,77 @@ public class Mqttv5ClientConnector implements IPubSubClient, MqttCallback
 	 */
 	private void initClientParameters(String configSectionName)
 	{
-		// TODO: implement this
+		ConfigUtil configUtil = ConfigUtil.getInstance();
+		
+		this.host =
+			configUtil.getProperty(
+				configSectionName, ConfigConst.HOST_KEY, ConfigConst.DEFAULT_HOST);
+		this.port =
+			configUtil.getInteger(
+				configSectionName, ConfigConst.PORT_KEY, ConfigConst.DEFAULT_MQTT_PORT);
+		this.brokerKeepAlive =
+			configUtil.getInteger(
+				configSectionName, ConfigConst.KEEP_ALIVE_KEY, ConfigConst.DEFAULT_KEEP_ALIVE);
+		this.topicAliasMax =
+			configUtil.getInteger(
+				configSectionName, ConfigConst.TOPIC_ALIAS_MAX_KEY, ConfigConst.DEFAULT_TOPIC_ALIAS_MAX);
+		this.receiveMax =
+			configUtil.getInteger(
+				configSectionName, ConfigConst.RECEIVE_MAX_KEY, ConfigConst.DEFAULT_RECEIVE_MAX);
+		this.msgExpirySecs =
+			configUtil.getInteger(
+				configSectionName, ConfigConst.MSG_EXPIRY_SECS_KEY, ConfigConst.DEFAULT_MSG_EXPIRY_SECS);
+		this.sessionExpirySecs =
+			configUtil.getInteger(
+				configSectionName, ConfigConst.SESSION_EXPIRY_SECS_KEY, ConfigConst.DEFAULT_SESSION_EXPIRY_SECS);
+		this.sharedSubGroup =
+			configUtil.getProperty(
+				configSectionName, ConfigConst.SHARED_SUB_GROUP_KEY, null);
+		this.locationID =
+			configUtil.getProperty(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.DEVICE_LOCATION_ID_KEY, ConfigConst.NOT_SET);
+		
+		// paho requires a unique client ID per connection
+		this.clientID = ConfigConst.GATEWAY_DEVICE + "-" + this.locationID + "-" + System.nanoTime();
+		
+		this.connOpts = new MqttConnectionOptions();
+		this.connOpts.setKeepAliveInterval(this.brokerKeepAlive);
+		this.connOpts.setCleanStart(this.sessionExpirySecs <= 0);
+		this.connOpts.setSessionExpiryInterval(this.sessionExpirySecs);
+		
+		// the shared reconnect controller jitters reconnects across all
+		// connectors; paho's own fixed schedule is only used without it
+		this.reconnectCtrl = ReconnectController.getInstance();
+		this.connOpts.setAutomaticReconnect(! this.reconnectCtrl.isEnabled());
+		
+		if (this.topicAliasMax > 0) {
+			this.connOpts.setTopicAliasMaximum(this.topicAliasMax);
+		}
+		
+		if (this.receiveMax > 0) {
+			this.connOpts.setReceiveMaximum(this.receiveMax);
+		} else {
+			this.receiveMax = ConfigConst.DEFAULT_RECEIVE_MAX;
+		}
+		
+		this.enableEncryption =
+			configUtil.getBoolean(configSectionName, ConfigConst.ENABLE_CRYPT_KEY);
+		
+		if (this.enableEncryption) {
+			initSecureConnectionParameters(configSectionName);
+		}
+		
+		if (configUtil.getBoolean(configSectionName, ConfigConst.ENABLE_AUTH_KEY)) {
+			initCredentialConnectionParameters(configSectionName);
+		}
+		
+		if (configUtil.getBoolean(configSectionName, ConfigConst.ENABLE_QOS_POLICY_KEY)) {
+			this.qosPolicy = new QosPolicy(configSectionName);
+		}
+		
+		this.brokerAddr = this.protocol + "://" + this.host + ":" + this.port;
+		
+		_Logger.info("Using MQTT v5 broker address: " + this.brokerAddr);
 	}
 	
 	/**
@@ -168,7 +957,15 @@ public class Mqttv5ClientConnector implements IPubSubClient, MqttCallback
 	 */
 	private void initCredentialConnectionParameters(String configSectionName)
 	{
-		// TODO: implement this
+		Properties props = ConfigUtil.getInstance().getCredentials(configSectionName);
+		
+		if (props != null) {
+			this.connOpts.setUserName(props.getProperty(ConfigConst.USER_NAME_TOKEN_KEY, ""));
+			this.connOpts.setPassword(
+				props.getProperty(ConfigConst.USER_AUTH_TOKEN_KEY, "").getBytes(StandardCharsets.UTF_8));
+		} else {
+			_Logger.warning("No credentials loaded for MQTT v5 client. Continuing without auth.");
+		}
 	}
 	
 	/**
@@ -179,7 +976,24 @@ public class Mqttv5ClientConnector implements IPubSubClient, MqttCallback
 	 */
 	private void initSecureConnectionParameters(String configSectionName)
 	{
-		// TODO: implement this
+		ConfigUtil configUtil = ConfigUtil.getInstance();
+		
+		String certFile = configUtil.getProperty(configSectionName, ConfigConst.CERT_FILE_KEY);
+		
+		SSLSocketFactory sslFactory = SimpleCertManagementUtil.getInstance().loadCertificate(certFile);
+		
+		if (sslFactory != null) {
+			this.connOpts.setSocketFactory(sslFactory);
+			
+			this.port =
+				configUtil.getInteger(
+					configSectionName, ConfigConst.SECURE_PORT_KEY, ConfigConst.DEFAULT_MQTT_SECURE_PORT);
+			this.protocol = ConfigConst.DEFAULT_MQTT_SECURE_PROTOCOL;
+		} else {
+			_Logger.warning("Failed to load certificate. Using insecure MQTT v5 connection: " + certFile);
+			
+			this.enableEncryption = false;
+		}
 	}
 
 }
@@ -0,0 +1,56 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.connection;
+
+/**
+ * What {@link DataMessageDispatcher} does when a subscriber's mailbox
+ * is full.
+ * 
+ */
+public enum OverflowPolicy
+{
+	/** Discard the oldest queued message to make room (keeps the latest values). */
+	DROP_OLDEST,
+	
+	/** Discard the incoming message. */
+	DROP_NEWEST,
+	
+	/** Wait up to the configured time for room, then discard the incoming message. */
+	BLOCK,
+	
+	/** Never discard; the mailbox grows past its capacity. Only for low-volume messages. */
+	GROW;
+	
+	
+	// static
+	
+	/**
+	 * Returns the policy with the given name, or the default if the
+	 * name is null or unknown.
+	 * 
+	 * @param name The policy name (case insensitive).
+	 * @param defaultPolicy The policy to return if the name is invalid.
+	 * @return OverflowPolicy
+	 */
+	public static OverflowPolicy fromName(String name, OverflowPolicy defaultPolicy)
+	{
+		if (name != null) {
+			for (OverflowPolicy policy : values()) {
+				if (policy.name().equalsIgnoreCase(name.trim())) {
+					return policy;
+				}
+			}
+		}
+		
+		return defaultPolicy;
+	}
+}
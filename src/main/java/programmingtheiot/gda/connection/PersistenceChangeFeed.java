@@ -0,0 +1,434 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.connection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.data.ActuatorData;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SystemPerformanceData;
+
+/**
+ * An append-only change feed of stored records that pushes new
+ * records to registered {@link IPersistenceListener}s via
+ * {@link IPersistenceListener#onDataReadyToPublish(String, int, SensorData...)}
+ * and its overloads.
+ * <p>
+ * Records are kept in a fixed-size ring, numbered by sequence. Each
+ * listener has its own cursor and delivery thread, which waits for
+ * new records and delivers them in batches (one call per run of
+ * records with the same topic and type). A slow listener only falls
+ * behind on its own cursor; if it falls more than the ring's capacity
+ * behind, it skips the overwritten records and they are counted as
+ * dropped. Appends never wait for listeners.
+ * 
+ */
+public class PersistenceChangeFeed
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(PersistenceChangeFeed.class.getName());
+	
+	private static final AtomicInteger _FeedCount = new AtomicInteger(0);
+	
+	
+	// private var's
+	
+	private int capacity     = ConfigConst.DEFAULT_CHANGE_FEED_CAPACITY;
+	private int maxBatchSize = ConfigConst.DEFAULT_CHANGE_FEED_BATCH_SIZE;
+	
+	private Record[] ring = null;
+	private long headSequence = 0L;
+	private boolean closed = false;
+	
+	private final String feedName = "ChangeFeed-" + _FeedCount.incrementAndGet();
+	
+	private Map<IPersistenceListener, Subscriber> subscribers = new ConcurrentHashMap<>();
+	
+	
+	// constructors
+	
+	/**
+	 * Default. Reads the capacity and batch size from the gateway
+	 * configuration.
+	 * 
+	 */
+	public PersistenceChangeFeed()
+	{
+		this(
+			ConfigUtil.getInstance().getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.CHANGE_FEED_CAPACITY_KEY, ConfigConst.DEFAULT_CHANGE_FEED_CAPACITY),
+			ConfigUtil.getInstance().getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.CHANGE_FEED_BATCH_SIZE_KEY, ConfigConst.DEFAULT_CHANGE_FEED_BATCH_SIZE));
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param capacity The number of records retained for listeners that fall behind.
+	 * @param maxBatchSize The maximum number of records delivered per wakeup.
+	 */
+	public PersistenceChangeFeed(int capacity, int maxBatchSize)
+	{
+		super();
+		
+		if (capacity > 0) {
+			this.capacity = capacity;
+		}
+		
+		if (maxBatchSize > 0) {
+			this.maxBatchSize = maxBatchSize;
+		}
+		
+		this.ring = new Record[this.capacity];
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Registers a listener for records of the given type and topics.
+	 * The listener sees records appended after it is registered.
+	 * 
+	 * @param cType The data type (ActuatorData, SensorData or SystemPerformanceData), or null for all.
+	 * @param listener The listener.
+	 * @param topics The topics of interest; none for all.
+	 * @return boolean True if the listener was registered.
+	 */
+	public boolean addListener(Class<?> cType, IPersistenceListener listener, String ... topics)
+	{
+		if (listener == null) {
+			_Logger.warning("Listener is null. Ignoring.");
+			
+			return false;
+		}
+		
+		Subscriber subscriber = null;
+		
+		synchronized (this) {
+			if (this.closed || this.subscribers.containsKey(listener)) {
+				return false;
+			}
+			
+			subscriber = new Subscriber(cType, listener, topics, this.headSequence);
+			this.subscribers.put(listener, subscriber);
+		}
+		
+		subscriber.thread.start();
+		
+		_Logger.info(
+			"Change feed listener registered: " + listener.getClass().getSimpleName() +
+			", type: " + (cType != null ? cType.getSimpleName() : "all") + ", topics: " + subscriber.topicsToString());
+		
+		return true;
+	}
+	
+	/**
+	 * Appends the given records. Listeners are woken to deliver them.
+	 * 
+	 * @param topic The topic the records were stored under.
+	 * @param qos The QoS the records were stored with.
+	 * @param data The records.
+	 * @return long The sequence number of the last record appended, or -1 if none was.
+	 */
+	public long append(String topic, int qos, Object ... data)
+	{
+		if (topic == null || data == null || data.length == 0) {
+			return -1L;
+		}
+		
+		synchronized (this) {
+			if (this.closed) {
+				return -1L;
+			}
+			
+			for (Object item : data) {
+				if (item != null) {
+					this.ring[(int) (this.headSequence % this.capacity)] = new Record(this.headSequence, topic, qos, item);
+					++this.headSequence;
+				}
+			}
+			
+			notifyAll();
+			
+			return this.headSequence - 1L;
+		}
+	}
+	
+	/**
+	 * Stops all delivery threads and discards the feed's contents.
+	 * 
+	 */
+	public void close()
+	{
+		synchronized (this) {
+			this.closed = true;
+			notifyAll();
+		}
+		
+		for (Subscriber subscriber : this.subscribers.values()) {
+			subscriber.thread.interrupt();
+		}
+		
+		this.subscribers.clear();
+	}
+	
+	/**
+	 * Returns the number of records delivered to the given listener.
+	 * 
+	 * @param listener The listener.
+	 * @return long
+	 */
+	public long getDeliveredCount(IPersistenceListener listener)
+	{
+		Subscriber subscriber = this.subscribers.get(listener);
+		
+		return (subscriber != null ? subscriber.deliveredCount.get() : 0L);
+	}
+	
+	/**
+	 * Returns the number of records the given listener skipped because
+	 * it fell more than the feed's capacity behind.
+	 * 
+	 * @param listener The listener.
+	 * @return long
+	 */
+	public long getDroppedCount(IPersistenceListener listener)
+	{
+		Subscriber subscriber = this.subscribers.get(listener);
+		
+		return (subscriber != null ? subscriber.droppedCount.get() : 0L);
+	}
+	
+	/**
+	 * Returns the sequence number the next appended record will get.
+	 * 
+	 * @return long
+	 */
+	public synchronized long getHeadSequence()
+	{
+		return this.headSequence;
+	}
+	
+	/**
+	 * Returns how many records the given listener has yet to read.
+	 * 
+	 * @param listener The listener.
+	 * @return long The lag, or 0 if the listener is not registered.
+	 */
+	public long getLag(IPersistenceListener listener)
+	{
+		Subscriber subscriber = this.subscribers.get(listener);
+		
+		return (subscriber != null ? Math.max(0L, getHeadSequence() - subscriber.cursor) : 0L);
+	}
+	
+	/**
+	 * Unregisters the given listener and stops its delivery thread.
+	 * 
+	 * @param listener The listener.
+	 * @return boolean True if the listener was registered.
+	 */
+	public boolean removeListener(IPersistenceListener listener)
+	{
+		Subscriber subscriber = (listener != null ? this.subscribers.remove(listener) : null);
+		
+		if (subscriber == null) {
+			return false;
+		}
+		
+		subscriber.active = false;
+		subscriber.thread.interrupt();
+		
+		return true;
+	}
+	
+	
+	// private methods
+	
+	/**
+	 * Waits for records past the subscriber's cursor and copies up to
+	 * one batch of them. Returns null once the feed is closed.
+	 */
+	private List<Record> readBatch(Subscriber subscriber) throws InterruptedException
+	{
+		synchronized (this) {
+			while (! this.closed && subscriber.active && subscriber.cursor >= this.headSequence) {
+				wait();
+			}
+			
+			if (this.closed || ! subscriber.active) {
+				return null;
+			}
+			
+			long oldest = this.headSequence - this.capacity;
+			
+			if (subscriber.cursor < oldest) {
+				subscriber.droppedCount.addAndGet(oldest - subscriber.cursor);
+				subscriber.cursor = oldest;
+			}
+			
+			int count = (int) Math.min(this.maxBatchSize, this.headSequence - subscriber.cursor);
+			List<Record> batch = new ArrayList<>(count);
+			
+			for (int i = 0; i < count; i++) {
+				batch.add(this.ring[(int) ((subscriber.cursor + i) % this.capacity)]);
+			}
+			
+			subscriber.cursor += count;
+			
+			return batch;
+		}
+	}
+	
+	
+	// inner classes
+	
+	/**
+	 * One appended record.
+	 * 
+	 */
+	private static class Record
+	{
+		private final long   sequence;
+		private final String topic;
+		private final int    qos;
+		private final Object data;
+		
+		Record(long sequence, String topic, int qos, Object data)
+		{
+			this.sequence = sequence;
+			this.topic = topic;
+			this.qos = qos;
+			this.data = data;
+		}
+	}
+	
+	/**
+	 * A registered listener, its filter, cursor and delivery thread.
+	 * 
+	 */
+	private class Subscriber implements Runnable
+	{
+		private final Class<?> cType;
+		private final IPersistenceListener listener;
+		private final Set<String> topics;
+		private final Thread thread;
+		
+		private final AtomicLong deliveredCount = new AtomicLong(0L);
+		private final AtomicLong droppedCount   = new AtomicLong(0L);
+		
+		private volatile long cursor;
+		private volatile boolean active = true;
+		
+		Subscriber(Class<?> cType, IPersistenceListener listener, String[] topics, long cursor)
+		{
+			this.cType = cType;
+			this.listener = listener;
+			this.topics = (topics != null && topics.length > 0 ? new HashSet<>(Arrays.asList(topics)) : null);
+			this.cursor = cursor;
+			
+			this.thread = new Thread(this, feedName + "-" + listener.getClass().getSimpleName());
+			this.thread.setDaemon(true);
+		}
+		
+		@Override
+		public void run()
+		{
+			try {
+				List<Record> batch = null;
+				
+				while ((batch = readBatch(this)) != null) {
+					deliver(batch);
+				}
+			} catch (InterruptedException e) {
+				// removed or closed
+			}
+		}
+		
+		String topicsToString()
+		{
+			return (this.topics != null ? this.topics.toString() : "all");
+		}
+		
+		private boolean accepts(Record record)
+		{
+			return
+				(this.cType == null || this.cType.isInstance(record.data)) &&
+				(this.topics == null || this.topics.contains(record.topic));
+		}
+		
+		private void deliver(List<Record> batch)
+		{
+			List<Object> run = new ArrayList<>();
+			Record first = null;
+			
+			for (Record record : batch) {
+				if (! accepts(record)) {
+					continue;
+				}
+				
+				if (first != null &&
+					(! first.topic.equals(record.topic) || first.qos != record.qos || first.data.getClass() != record.data.getClass()))
+				{
+					notifyListener(first, run);
+					run.clear();
+				}
+				
+				if (run.isEmpty()) {
+					first = record;
+				}
+				
+				run.add(record.data);
+			}
+			
+			if (! run.isEmpty()) {
+				notifyListener(first, run);
+			}
+		}
+		
+		private void notifyListener(Record first, List<Object> run)
+		{
+			try {
+				if (first.data instanceof SensorData) {
+					this.listener.onDataReadyToPublish(first.topic, first.qos, run.toArray(new SensorData[run.size()]));
+				} else if (first.data instanceof ActuatorData) {
+					this.listener.onDataReadyToPublish(first.topic, first.qos, run.toArray(new ActuatorData[run.size()]));
+				} else if (first.data instanceof SystemPerformanceData) {
+					this.listener.onDataReadyToPublish(first.topic, first.qos, run.toArray(new SystemPerformanceData[run.size()]));
+				} else {
+					_Logger.fine("Unsupported record type. Skipping: " + first.data.getClass().getName());
+					
+					return;
+				}
+				
+				this.deliveredCount.addAndGet(run.size());
+			} catch (Exception e) {
+				// a failing listener loses this run but keeps its place in the feed
+				_Logger.log(Level.WARNING, "Change feed listener failed at sequence " + first.sequence, e);
+			}
+		}
+	}
+}
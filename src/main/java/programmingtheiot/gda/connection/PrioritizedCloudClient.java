@@ -0,0 +1,118 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.connection;
+
+import programmingtheiot.common.IDataMessageListener;
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SystemPerformanceData;
+
+/**
+ * {@link ICloudClient} decorator that routes both
+ * sendEdgeDataToCloud() calls through an {@link EgressScheduler}.
+ * Sensor data is sent as {@link EgressPriority#SENSOR} and system
+ * performance data as {@link EgressPriority#SYSTEM_PERF}. All other
+ * calls go straight to the wrapped client.
+ * 
+ */
+public class PrioritizedCloudClient implements ICloudClient
+{
+	// private var's
+	
+	private ICloudClient    cloudClient = null;
+	private EgressScheduler scheduler = null;
+	private String          channelName = null;
+	
+	
+	// constructors
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param cloudClient The client that performs the actual send.
+	 * @param scheduler The scheduler to queue sends on.
+	 * @param channelName The scheduler channel to use.
+	 */
+	public PrioritizedCloudClient(ICloudClient cloudClient, EgressScheduler scheduler, String channelName)
+	{
+		super();
+		
+		this.cloudClient = cloudClient;
+		this.scheduler = scheduler;
+		this.channelName = channelName;
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Returns the wrapped client.
+	 * 
+	 * @return ICloudClient
+	 */
+	public ICloudClient getCloudClient()
+	{
+		return this.cloudClient;
+	}
+	
+	@Override
+	public boolean connectClient()
+	{
+		return this.cloudClient.connectClient();
+	}
+	
+	@Override
+	public boolean disconnectClient()
+	{
+		return this.cloudClient.disconnectClient();
+	}
+	
+	@Override
+	public boolean sendEdgeDataToCloud(ResourceNameEnum resource, SensorData data)
+	{
+		if (resource == null || data == null) {
+			return false;
+		}
+		
+		return this.scheduler.submit(
+			this.channelName, EgressPriority.SENSOR, () -> this.cloudClient.sendEdgeDataToCloud(resource, data));
+	}
+	
+	@Override
+	public boolean sendEdgeDataToCloud(ResourceNameEnum resource, SystemPerformanceData data)
+	{
+		if (resource == null || data == null) {
+			return false;
+		}
+		
+		return this.scheduler.submit(
+			this.channelName, EgressPriority.SYSTEM_PERF, () -> this.cloudClient.sendEdgeDataToCloud(resource, data));
+	}
+	
+	@Override
+	public boolean subscribeToCloudEvents(ResourceNameEnum resource)
+	{
+		return this.cloudClient.subscribeToCloudEvents(resource);
+	}
+	
+	@Override
+	public boolean unsubscribeFromCloudEvents(ResourceNameEnum resource)
+	{
+		return this.cloudClient.unsubscribeFromCloudEvents(resource);
+	}
+	
+	@Override
+	public boolean setDataMessageListener(IDataMessageListener listener)
+	{
+		return this.cloudClient.setDataMessageListener(listener);
+	}
+}
@@ -0,0 +1,139 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.connection;
+
+import java.util.concurrent.CompletableFuture;
+
+import programmingtheiot.common.IDataMessageListener;
+import programmingtheiot.common.ResourceNameEnum;
+
+/**
+ * {@link IPubSubClient} decorator that routes {@link #publishMessage(ResourceNameEnum, String, int)}
+ * through an {@link EgressScheduler}. All other calls go straight to the
+ * wrapped client.
+ * <p>
+ * Since publishing is asynchronous, a return value of true means the
+ * message was queued, not that it was delivered. Callers that need the
+ * publish result can use {@link #publishMessageAsync(ResourceNameEnum, String, int)}.
+ * 
+ */
+public class PrioritizedPubSubClient implements IPubSubClient
+{
+	// private var's
+	
+	private IPubSubClient   pubSubClient = null;
+	private EgressScheduler scheduler = null;
+	private String          channelName = null;
+	
+	
+	// constructors
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param pubSubClient The client that performs the actual publish.
+	 * @param scheduler The scheduler to queue publishes on.
+	 * @param channelName The scheduler channel to use.
+	 */
+	public PrioritizedPubSubClient(IPubSubClient pubSubClient, EgressScheduler scheduler, String channelName)
+	{
+		super();
+		
+		this.pubSubClient = pubSubClient;
+		this.scheduler = scheduler;
+		this.channelName = channelName;
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Returns the wrapped client.
+	 * 
+	 * @return IPubSubClient
+	 */
+	public IPubSubClient getPubSubClient()
+	{
+		return this.pubSubClient;
+	}
+	
+	@Override
+	public boolean connectClient()
+	{
+		return this.pubSubClient.connectClient();
+	}
+	
+	@Override
+	public boolean disconnectClient()
+	{
+		return this.pubSubClient.disconnectClient();
+	}
+	
+	@Override
+	public boolean publishMessage(ResourceNameEnum topicName, String msg, int qos)
+	{
+		if (topicName == null || msg == null) {
+			return false;
+		}
+		
+		return this.scheduler.submit(
+			this.channelName,
+			EgressPriority.fromResource(topicName),
+			() -> this.pubSubClient.publishMessage(topicName, msg, qos));
+	}
+	
+	/**
+	 * Queues a publish and returns a future that completes with the
+	 * wrapped client's publish result.
+	 * 
+	 * @param topicName The topic to publish to.
+	 * @param msg The message to publish.
+	 * @param qos The QoS level.
+	 * @return CompletableFuture Completes with false if the publish failed
+	 * or couldn't be queued.
+	 */
+	public CompletableFuture<Boolean> publishMessageAsync(ResourceNameEnum topicName, String msg, int qos)
+	{
+		if (topicName == null || msg == null) {
+			return CompletableFuture.completedFuture(false);
+		}
+		
+		return this.scheduler.schedule(
+			this.channelName,
+			EgressPriority.fromResource(topicName),
+			() -> this.pubSubClient.publishMessage(topicName, msg, qos));
+	}
+	
+	@Override
+	public boolean subscribeToTopic(ResourceNameEnum topicName, int qos)
+	{
+		return this.pubSubClient.subscribeToTopic(topicName, qos);
+	}
+	
+	@Override
+	public boolean unsubscribeFromTopic(ResourceNameEnum topicName)
+	{
+		return this.pubSubClient.unsubscribeFromTopic(topicName);
+	}
+	
+	@Override
+	public boolean setDataMessageListener(IDataMessageListener listener)
+	{
+		return this.pubSubClient.setDataMessageListener(listener);
+	}
+	
+	@Override
+	public boolean setConnectionListener(IConnectionListener listener)
+	{
+		return this.pubSubClient.setConnectionListener(listener);
+	}
+}
@@ -0,0 +1,342 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.connection;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.common.ResourceNameEnum;
+
+/**
+ * Chooses the QoS for each outbound message by resource, instead of
+ * relying on the QoS passed in by the caller.
+ * <p>
+ * Each resource has a configured QoS (commands at 2, telemetry at 0,
+ * management traffic at 1 by default, overridable per resource). When
+ * the connection is under pressure - the in-flight window is close to
+ * full, or the 95th percentile publish latency exceeds the SLO -
+ * telemetry resources are downgraded by one level (e.g. 1 to 0). The
+ * configured QoS is restored once no pressure has been seen for the
+ * cooldown period. Commands and management traffic are never
+ * downgraded.
+ * 
+ */
+public class QosPolicy
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(QosPolicy.class.getName());
+	
+	public static final long DEFAULT_COOLDOWN_MILLIS = 10000L;
+	
+	private static final int LATENCY_WINDOW  = 128;
+	private static final int EVALUATE_EVERY  = 16;
+	private static final float LATENCY_PERCENTILE = 0.95f;
+	
+	/**
+	 * Returns true if the given resource carries telemetry, which may
+	 * be downgraded under load.
+	 * 
+	 * @param resource The resource.
+	 * @return boolean
+	 */
+	public static boolean isTelemetry(ResourceNameEnum resource)
+	{
+		if (resource == null) {
+			return false;
+		}
+		
+		switch (resource) {
+			case CDA_SENSOR_MSG_RESOURCE:
+			case CDA_SYSTEM_PERF_MSG_RESOURCE:
+			case GDA_SYSTEM_PERF_MSG_RESOURCE:
+			case CDA_MEDIA_MSG_RESOURCE:
+			case GDA_MEDIA_MSG_RESOURCE:
+				return true;
+			
+			default:
+				return false;
+		}
+	}
+	
+	
+	// private var's
+	
+	private Map<ResourceNameEnum, Integer> qosTable = new EnumMap<>(ResourceNameEnum.class);
+	
+	private long  latencySloMillis    = ConfigConst.DEFAULT_QOS_LATENCY_SLO_MILLIS;
+	private float saturationThreshold = ConfigConst.DEFAULT_QOS_SATURATION_PCT / 100.0f;
+	private long  cooldownMillis      = DEFAULT_COOLDOWN_MILLIS;
+	
+	private long[] latencies = new long[LATENCY_WINDOW];
+	private int    latencyCount = 0;
+	private int    latencyIndex = 0;
+	private float  saturation = 0.0f;
+	
+	private volatile boolean isDowngraded = false;
+	private long lastPressureMillis = 0L;
+	
+	private AtomicLong downgradeCount = new AtomicLong(0L);
+	private AtomicLong downgradedMsgCount = new AtomicLong(0L);
+	
+	
+	// constructors
+	
+	/**
+	 * Constructor. Reads the QoS overrides, latency SLO and saturation
+	 * threshold from the given configuration section.
+	 * 
+	 * @param configSectionName The name of the configuration section to use.
+	 */
+	public QosPolicy(String configSectionName)
+	{
+		this(
+			ConfigUtil.getInstance().getProperty(configSectionName, ConfigConst.QOS_POLICY_KEY, null),
+			ConfigUtil.getInstance().getInteger(
+				configSectionName, ConfigConst.QOS_LATENCY_SLO_MILLIS_KEY, ConfigConst.DEFAULT_QOS_LATENCY_SLO_MILLIS),
+			ConfigUtil.getInstance().getInteger(
+				configSectionName, ConfigConst.QOS_SATURATION_PCT_KEY, ConfigConst.DEFAULT_QOS_SATURATION_PCT),
+			DEFAULT_COOLDOWN_MILLIS);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param overrides Comma-separated 'RESOURCE_NAME:qos' entries that
+	 * replace the default QoS of those resources. May be null.
+	 * @param latencySloMillis The 95th percentile publish latency above
+	 * which telemetry is downgraded.
+	 * @param saturationPct The in-flight window usage (in percent) above
+	 * which telemetry is downgraded.
+	 * @param cooldownMillis How long without pressure before the
+	 * configured QoS is restored.
+	 */
+	public QosPolicy(String overrides, long latencySloMillis, int saturationPct, long cooldownMillis)
+	{
+		super();
+		
+		initDefaultTable();
+		parseOverrides(overrides);
+		
+		if (latencySloMillis > 0L) {
+			this.latencySloMillis = latencySloMillis;
+		}
+		
+		if (saturationPct > 0 && saturationPct <= 100) {
+			this.saturationThreshold = saturationPct / 100.0f;
+		}
+		
+		if (cooldownMillis >= 0L) {
+			this.cooldownMillis = cooldownMillis;
+		}
+		
+		_Logger.info(
+			"QoS policy: " + this.qosTable + ". Latency SLO: " + this.latencySloMillis +
+			" ms, saturation threshold: " + this.saturationThreshold);
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Returns the configured QoS for the given resource.
+	 * 
+	 * @param resource The resource.
+	 * @return int The configured QoS, or -1 if the resource isn't in the table.
+	 */
+	public int getConfiguredQos(ResourceNameEnum resource)
+	{
+		Integer qos = (resource != null ? this.qosTable.get(resource) : null);
+		
+		return (qos != null ? qos : -1);
+	}
+	
+	public long getDowngradeCount()
+	{
+		return this.downgradeCount.get();
+	}
+	
+	public long getDowngradedMessageCount()
+	{
+		return this.downgradedMsgCount.get();
+	}
+	
+	/**
+	 * Returns the 95th percentile of the recorded publish latencies.
+	 * 
+	 * @return long The latency in milliseconds, or 0 if none are recorded.
+	 */
+	public synchronized long getLatencyPercentile()
+	{
+		if (this.latencyCount == 0) {
+			return 0L;
+		}
+		
+		long[] sorted = Arrays.copyOf(this.latencies, this.latencyCount);
+		Arrays.sort(sorted);
+		
+		return sorted[Math.min((int) (this.latencyCount * LATENCY_PERCENTILE), this.latencyCount - 1)];
+	}
+	
+	/**
+	 * Returns the QoS to publish a message for the given resource with.
+	 * 
+	 * @param resource The resource being published.
+	 * @param requestedQos The QoS requested by the caller. Only used if
+	 * the resource isn't in the policy table.
+	 * @return int The QoS to use.
+	 */
+	public int getQos(ResourceNameEnum resource, int requestedQos)
+	{
+		int qos = getConfiguredQos(resource);
+		
+		if (qos < 0) {
+			return requestedQos;
+		}
+		
+		if (this.isDowngraded) {
+			checkRestore();
+			
+			if (this.isDowngraded && qos > 0 && isTelemetry(resource)) {
+				this.downgradedMsgCount.incrementAndGet();
+				
+				return qos - 1;
+			}
+		}
+		
+		return qos;
+	}
+	
+	public boolean isDowngraded()
+	{
+		return this.isDowngraded;
+	}
+	
+	/**
+	 * Records the current in-flight window usage.
+	 * 
+	 * @param inFlight The number of unacknowledged QoS 1 / 2 publishes.
+	 * @param maxInFlight The size of the in-flight window.
+	 */
+	public synchronized void recordInFlight(int inFlight, int maxInFlight)
+	{
+		if (maxInFlight > 0) {
+			this.saturation = (float) inFlight / maxInFlight;
+			
+			if (this.saturation >= this.saturationThreshold) {
+				onPressure("in-flight window " + inFlight + "/" + maxInFlight);
+			}
+		}
+	}
+	
+	/**
+	 * Records the latency of an acknowledged publish.
+	 * 
+	 * @param latencyMillis The time from publish to acknowledgement.
+	 */
+	public synchronized void recordLatency(long latencyMillis)
+	{
+		this.latencies[this.latencyIndex] = latencyMillis;
+		this.latencyIndex = (this.latencyIndex + 1) % LATENCY_WINDOW;
+		
+		if (this.latencyCount < LATENCY_WINDOW) {
+			this.latencyCount++;
+		}
+		
+		if (this.latencyIndex % EVALUATE_EVERY == 0) {
+			long percentile = getLatencyPercentile();
+			
+			if (percentile > this.latencySloMillis) {
+				onPressure("p95 publish latency " + percentile + " ms");
+			}
+		}
+	}
+	
+	
+	// private methods
+	
+	private synchronized void checkRestore()
+	{
+		if (this.isDowngraded && System.currentTimeMillis() - this.lastPressureMillis >= this.cooldownMillis) {
+			// start over so stale samples from the pressured period
+			// don't immediately trigger another downgrade
+			this.isDowngraded = false;
+			this.latencyCount = 0;
+			this.latencyIndex = 0;
+			this.saturation   = 0.0f;
+			
+			_Logger.info("Load has cleared. Restoring configured QoS for telemetry.");
+		}
+	}
+	
+	private void initDefaultTable()
+	{
+		for (ResourceNameEnum resource : ResourceNameEnum.values()) {
+			switch (EgressPriority.fromResource(resource)) {
+				case ACTUATION:
+					this.qosTable.put(resource, 2);
+					break;
+				
+				case ALERT:
+					this.qosTable.put(resource, 1);
+					break;
+				
+				default:
+					this.qosTable.put(resource, isTelemetry(resource) ? 0 : 1);
+			}
+		}
+		
+		this.qosTable.put(ResourceNameEnum.CDA_ACTUATOR_RESPONSE_RESOURCE, 2);
+	}
+	
+	private void onPressure(String reason)
+	{
+		this.lastPressureMillis = System.currentTimeMillis();
+		
+		if (! this.isDowngraded) {
+			this.isDowngraded = true;
+			this.downgradeCount.incrementAndGet();
+			
+			_Logger.warning("Connection under pressure (" + reason + "). Downgrading telemetry QoS.");
+		}
+	}
+	
+	private void parseOverrides(String overrides)
+	{
+		if (overrides == null || overrides.trim().isEmpty()) {
+			return;
+		}
+		
+		for (String entry : overrides.split(",")) {
+			String[] parts = entry.trim().split(":");
+			
+			try {
+				ResourceNameEnum resource = ResourceNameEnum.valueOf(parts[0].trim());
+				int qos = Integer.parseInt(parts[1].trim());
+				
+				if (qos >= 0 && qos <= 2) {
+					this.qosTable.put(resource, qos);
+				} else {
+					_Logger.warning("Invalid QoS in policy entry. Ignoring: " + entry);
+				}
+			} catch (Exception e) {
+				_Logger.warning("Invalid QoS policy entry. Ignoring: " + entry);
+			}
+		}
+	}
+}
@@ -0,0 +1,345 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.connection;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+
+/**
+ * Schedules reconnect attempts for all connectors in the gateway.
+ * <p>
+ * When a broker restarts, every client that lost its connection would
+ * otherwise retry on the same fixed schedule. This spreads the retries
+ * out using decorrelated jitter (each delay is drawn uniformly between
+ * the base delay and three times the previous delay, capped at the
+ * maximum), and limits the number of connect attempts in progress
+ * against any one host. An attempt that can't get a connect permit is
+ * deferred rather than counted as a failure.
+ * 
+ */
+public class ReconnectController
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(ReconnectController.class.getName());
+	
+	private static final ReconnectController _Instance = new ReconnectController();
+	
+	/**
+	 * Returns the shared instance, configured from the gateway
+	 * configuration.
+	 * 
+	 * @return ReconnectController
+	 */
+	public static final ReconnectController getInstance()
+	{
+		return _Instance;
+	}
+	
+	
+	// private var's
+	
+	private long    baseDelayMillis    = ConfigConst.DEFAULT_RECONNECT_BASE_MILLIS;
+	private long    maxDelayMillis     = ConfigConst.DEFAULT_RECONNECT_MAX_MILLIS;
+	private int     maxConnectsPerHost = ConfigConst.DEFAULT_MAX_CONNECTS_PER_HOST;
+	private boolean isEnabled          = true;
+	
+	private Map<String, Semaphore>     hostPermits = new ConcurrentHashMap<>();
+	private Map<String, ReconnectTask> pendingTasks = new ConcurrentHashMap<>();
+	
+	private AtomicLong attemptCount   = new AtomicLong(0L);
+	private AtomicLong deferredCount  = new AtomicLong(0L);
+	private AtomicLong reconnectCount = new AtomicLong(0L);
+	
+	private ScheduledExecutorService schedExecSvc = null;
+	
+	
+	// constructors
+	
+	/**
+	 * Default (private). Reads the settings from the gateway configuration.
+	 * 
+	 */
+	private ReconnectController()
+	{
+		super();
+		
+		ConfigUtil configUtil = ConfigUtil.getInstance();
+		
+		this.isEnabled =
+			configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_RECONNECT_CONTROL_KEY);
+		
+		initController(
+			configUtil.getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.RECONNECT_BASE_MILLIS_KEY, ConfigConst.DEFAULT_RECONNECT_BASE_MILLIS),
+			configUtil.getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.RECONNECT_MAX_MILLIS_KEY, ConfigConst.DEFAULT_RECONNECT_MAX_MILLIS),
+			configUtil.getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.MAX_CONNECTS_PER_HOST_KEY, ConfigConst.DEFAULT_MAX_CONNECTS_PER_HOST));
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param baseDelayMillis The shortest delay before a reconnect attempt.
+	 * @param maxDelayMillis The longest delay before a reconnect attempt.
+	 * @param maxConnectsPerHost The number of connect attempts that may be
+	 * in progress against the same host at once.
+	 */
+	public ReconnectController(long baseDelayMillis, long maxDelayMillis, int maxConnectsPerHost)
+	{
+		super();
+		
+		initController(baseDelayMillis, maxDelayMillis, maxConnectsPerHost);
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Cancels the pending reconnect for 'clientID', if any.
+	 * 
+	 * @param clientID The unique ID of the client.
+	 * @return boolean True if a reconnect was pending.
+	 */
+	public boolean cancelReconnect(String clientID)
+	{
+		ReconnectTask task = (clientID != null ? this.pendingTasks.remove(clientID) : null);
+		
+		if (task != null) {
+			task.isCancelled = true;
+			
+			return true;
+		}
+		
+		return false;
+	}
+	
+	public long getAttemptCount()
+	{
+		return this.attemptCount.get();
+	}
+	
+	public long getDeferredCount()
+	{
+		return this.deferredCount.get();
+	}
+	
+	public int getPendingCount()
+	{
+		return this.pendingTasks.size();
+	}
+	
+	public long getReconnectCount()
+	{
+		return this.reconnectCount.get();
+	}
+	
+	/**
+	 * Returns true if connectors should hand reconnects to this
+	 * controller instead of using their client library's built-in
+	 * automatic reconnect.
+	 * 
+	 * @return boolean
+	 */
+	public boolean isEnabled()
+	{
+		return this.isEnabled;
+	}
+	
+	/**
+	 * Returns the next delay using decorrelated jitter.
+	 * 
+	 * @param prevDelayMillis The previous delay, or 0 for the first attempt.
+	 * @return long The delay in milliseconds, between the base and maximum delay.
+	 */
+	public long nextDelayMillis(long prevDelayMillis)
+	{
+		long upper = Math.max(prevDelayMillis, this.baseDelayMillis) * 3L;
+		long delay = ThreadLocalRandom.current().nextLong(this.baseDelayMillis, upper + 1L);
+		
+		return Math.min(delay, this.maxDelayMillis);
+	}
+	
+	/**
+	 * Schedules reconnect attempts for the given client until 'connectTask'
+	 * returns true, or the reconnect is cancelled. Only one reconnect per
+	 * client is pending at a time; further calls while one is pending are
+	 * ignored.
+	 * 
+	 * @param clientID The unique ID of the client.
+	 * @param host The host the client connects to (used for the connect limit).
+	 * @param connectTask Makes one connect attempt, including any resubscribe.
+	 * @param onReconnected Receives the time from this call until the
+	 * successful attempt completed, in milliseconds. May be null.
+	 * @return boolean True if a new reconnect was scheduled.
+	 */
+	public boolean scheduleReconnect(
+		String clientID, String host, BooleanSupplier connectTask, LongConsumer onReconnected)
+	{
+		if (clientID == null || host == null || connectTask == null) {
+			_Logger.warning("Client ID, host or connect task is null. Ignoring reconnect.");
+			
+			return false;
+		}
+		
+		ReconnectTask task = new ReconnectTask(clientID, host, connectTask, onReconnected);
+		
+		if (this.pendingTasks.putIfAbsent(clientID, task) != null) {
+			_Logger.fine("Reconnect already pending for client: " + clientID);
+			
+			return false;
+		}
+		
+		task.delayMillis = nextDelayMillis(0L);
+		
+		_Logger.info("Scheduling reconnect for client " + clientID + " in " + task.delayMillis + " ms");
+		
+		this.schedExecSvc.schedule(() -> runTask(task), task.delayMillis, TimeUnit.MILLISECONDS);
+		
+		return true;
+	}
+	
+	
+	// private methods
+	
+	private Semaphore getHostPermits(String host)
+	{
+		return this.hostPermits.computeIfAbsent(host, h -> new Semaphore(this.maxConnectsPerHost));
+	}
+	
+	private void initController(long baseDelayMillis, long maxDelayMillis, int maxConnectsPerHost)
+	{
+		if (baseDelayMillis > 0L) {
+			this.baseDelayMillis = baseDelayMillis;
+		}
+		
+		this.maxDelayMillis = Math.max(maxDelayMillis, this.baseDelayMillis);
+		
+		if (maxConnectsPerHost > 0) {
+			this.maxConnectsPerHost = maxConnectsPerHost;
+		}
+		
+		this.schedExecSvc = Executors.newScheduledThreadPool(this.maxConnectsPerHost, runnable -> {
+			Thread thread = new Thread(runnable, "ReconnectController");
+			thread.setDaemon(true);
+			
+			return thread;
+		});
+		
+		_Logger.info(
+			"Reconnect delay: " + this.baseDelayMillis + " - " + this.maxDelayMillis +
+			" ms, max connects per host: " + this.maxConnectsPerHost);
+	}
+	
+	private void runTask(ReconnectTask task)
+	{
+		if (task.isCancelled) {
+			return;
+		}
+		
+		Semaphore permits = getHostPermits(task.host);
+		
+		if (! permits.tryAcquire()) {
+			// another client is connecting to the same host; try again
+			// shortly without growing this client's backoff
+			long delay = ThreadLocalRandom.current().nextLong(1L, this.baseDelayMillis + 1L);
+			
+			this.deferredCount.incrementAndGet();
+			this.schedExecSvc.schedule(() -> runTask(task), delay, TimeUnit.MILLISECONDS);
+			
+			return;
+		}
+		
+		boolean success = false;
+		
+		try {
+			this.attemptCount.incrementAndGet();
+			task.attempts++;
+			
+			success = task.connectTask.getAsBoolean();
+		} catch (Exception e) {
+			_Logger.log(Level.WARNING, "Reconnect attempt failed for client: " + task.clientID, e);
+		} finally {
+			permits.release();
+		}
+		
+		if (task.isCancelled) {
+			return;
+		}
+		
+		if (success) {
+			long latencyMillis = System.currentTimeMillis() - task.startMillis;
+			
+			this.pendingTasks.remove(task.clientID, task);
+			this.reconnectCount.incrementAndGet();
+			
+			_Logger.info(
+				"Reconnected client " + task.clientID + " after " + task.attempts +
+				" attempt(s) in " + latencyMillis + " ms");
+			
+			if (task.onReconnected != null) {
+				task.onReconnected.accept(latencyMillis);
+			}
+		} else {
+			task.delayMillis = nextDelayMillis(task.delayMillis);
+			
+			_Logger.info(
+				"Reconnect attempt " + task.attempts + " failed for client " + task.clientID +
+				". Retrying in " + task.delayMillis + " ms");
+			
+			this.schedExecSvc.schedule(() -> runTask(task), task.delayMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	
+	// inner classes
+	
+	/**
+	 * Tracks the reconnect state of one client.
+	 * 
+	 */
+	private static class ReconnectTask
+	{
+		private final String          clientID;
+		private final String          host;
+		private final BooleanSupplier connectTask;
+		private final LongConsumer    onReconnected;
+		private final long            startMillis = System.currentTimeMillis();
+		
+		private volatile long    delayMillis = 0L;
+		private volatile int     attempts = 0;
+		private volatile boolean isCancelled = false;
+		
+		ReconnectTask(String clientID, String host, BooleanSupplier connectTask, LongConsumer onReconnected)
+		{
+			this.clientID      = clientID;
+			this.host          = host;
+			this.connectTask   = connectTask;
+			this.onReconnected = onReconnected;
+		}
+	}
+}
@@ -42,6 +42,10 @@ public class RedisPersistenceAdapter implements IPersistenceClient
 	
 	// private var's
 	
+	private RollupStore rollupStore = null;
+	private RetentionCompactor retentionCompactor = null;
+	private volatile PersistenceChangeFeed changeFeed = null;
+	
 	
 	// constructors
 	
@@ -67,15 +71,35 @@ public class RedisPersistenceAdapter implements IPersistenceClient
 	@Override
 	public boolean connectClient()
 	{
+		// expired values are removed in the background whether or not the backend is reachable
+		if (this.retentionCompactor != null) {
+			this.retentionCompactor.startCompactor();
+		}
+		
 		return false;
 	}
 
 	/**
-	 *
+	 * Also closes the change feed, stopping its delivery threads and
+	 * unregistering all listeners; they need to register again after
+	 * reconnecting.
 	 */
 	@Override
 	public boolean disconnectClient()
 	{
+		if (this.retentionCompactor != null) {
+			this.retentionCompactor.stopCompactor();
+		}
+		
+		PersistenceChangeFeed feed = this.changeFeed;
+		
+		if (feed != null) {
+			// a closed feed can't be reused, so the next connection gets a new one
+			this.changeFeed = new PersistenceChangeFeed();
+			
+			feed.close();
+		}
+		
 		return false;
 	}
 
@@ -97,12 +121,41 @@ public class RedisPersistenceAdapter implements IPersistenceClient
 		return null;
 	}
 
+	/**
+	 * Answers the query from the materialized rollups, using the
+	 * resolution picked by {@link RollupStore#planQuery(long, long, long, long)}.
+	 */
+	@Override
+	public List<RollupStore.Rollup> getSensorDataRollups(
+		String topic, int typeID, Date startDate, Date endDate, long resolutionMillis)
+	{
+		if (this.rollupStore == null || topic == null || startDate == null || endDate == null) {
+			return null;
+		}
+		
+		return this.rollupStore.query(topic, typeID, startDate.getTime(), endDate.getTime(), resolutionMillis);
+	}
+
 	/**
 	 *
 	 */
 	@Override
 	public void registerDataStorageListener(Class cType, IPersistenceListener listener, String... topics)
 	{
+		if (this.changeFeed != null) {
+			this.changeFeed.addListener(cType, listener, topics);
+		} else {
+			_Logger.warning("Change feed disabled. Ignoring listener: " + listener);
+		}
+	}
+
+	/**
+	 *
+	 */
+	@Override
+	public boolean unregisterDataStorageListener(IPersistenceListener listener)
+	{
+		return (this.changeFeed != null && this.changeFeed.removeListener(listener));
 	}
 
 	/**
@@ -111,6 +164,10 @@ public class RedisPersistenceAdapter implements IPersistenceClient
 	@Override
 	public boolean storeData(String topic, int qos, ActuatorData... data)
 	{
+		if (this.changeFeed != null) {
+			this.changeFeed.append(topic, qos, (Object[]) data);
+		}
+		
 		return false;
 	}
 
@@ -120,6 +177,17 @@ public class RedisPersistenceAdapter implements IPersistenceClient
 	@Override
 	public boolean storeData(String topic, int qos, SensorData... data)
 	{
+		// rollups are updated at write time so range queries never need the raw data
+		if (this.rollupStore != null && topic != null && data != null) {
+			for (SensorData sensorData : data) {
+				this.rollupStore.update(topic, sensorData);
+			}
+		}
+		
+		if (this.changeFeed != null) {
+			this.changeFeed.append(topic, qos, (Object[]) data);
+		}
+		
 		return false;
 	}
 
@@ -129,6 +197,10 @@ public class RedisPersistenceAdapter implements IPersistenceClient
 	@Override
 	public boolean storeData(String topic, int qos, SystemPerformanceData... data)
 	{
+		if (this.changeFeed != null) {
+			this.changeFeed.append(topic, qos, (Object[]) data);
+		}
+		
 		return false;
 	}
 	
@@ -140,6 +212,22 @@ public class RedisPersistenceAdapter implements IPersistenceClient
 	 */
 	private void initConfig()
 	{
+		if (ConfigUtil.getInstance().getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_CHANGE_FEED_KEY)) {
+			this.changeFeed = new PersistenceChangeFeed();
+		}
+		
+		if (ConfigUtil.getInstance().getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_ROLLUPS_KEY)) {
+			this.rollupStore = new RollupStore();
+			
+			if (ConfigUtil.getInstance().getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_RETENTION_KEY)) {
+				this.rollupStore.setRetentionPolicy(
+					new RetentionPolicy(),
+					ConfigUtil.getInstance().getInteger(
+						ConfigConst.GATEWAY_DEVICE, ConfigConst.MAX_RAW_SAMPLES_KEY, ConfigConst.DEFAULT_MAX_RAW_SAMPLES));
+				
+				this.retentionCompactor = new RetentionCompactor(this.rollupStore);
+			}
+		}
 	}
 
 }
@@ -0,0 +1,292 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.connection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+
+/**
+ * Periodically removes values that have outlived their
+ * {@link RetentionPolicy} from a {@link RollupStore}.
+ * <p>
+ * Each pass walks every series and tier, removing expired values in
+ * batches of a bounded size. The series lock is released between
+ * batches, so writes to a series being compacted wait for at most
+ * one batch. Progress is exposed through the getters so it can be
+ * reported with the other gateway metrics.
+ * 
+ */
+public class RetentionCompactor
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(RetentionCompactor.class.getName());
+	
+	
+	// private var's
+	
+	private RollupStore rollupStore = null;
+	private long intervalMillis = ConfigConst.DEFAULT_COMPACTION_INTERVAL_MILLIS;
+	private int  batchSize      = ConfigConst.DEFAULT_COMPACTION_BATCH_SIZE;
+	
+	private ScheduledExecutorService schedExecSvc = null;
+	
+	private volatile boolean running = false;
+	
+	private final AtomicLong passCount      = new AtomicLong(0L);
+	private final AtomicLong batchCount     = new AtomicLong(0L);
+	private final AtomicLong seriesScanned  = new AtomicLong(0L);
+	private final AtomicLong seriesTotal    = new AtomicLong(0L);
+	private final AtomicLong lastPassMillis = new AtomicLong(0L);
+	private final AtomicLong lastPassDurationMillis = new AtomicLong(0L);
+	
+	private final AtomicLong[] deletedCounts = new AtomicLong[RetentionPolicy.Tier.values().length];
+	
+	
+	// constructors
+	
+	/**
+	 * Constructor. Reads the interval and batch size from the gateway
+	 * configuration.
+	 * 
+	 * @param rollupStore The store to compact. Its retention policy must be set.
+	 */
+	public RetentionCompactor(RollupStore rollupStore)
+	{
+		this(
+			rollupStore,
+			ConfigUtil.getInstance().getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.COMPACTION_INTERVAL_MILLIS_KEY, ConfigConst.DEFAULT_COMPACTION_INTERVAL_MILLIS),
+			ConfigUtil.getInstance().getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.COMPACTION_BATCH_SIZE_KEY, ConfigConst.DEFAULT_COMPACTION_BATCH_SIZE));
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param rollupStore The store to compact. Its retention policy must be set.
+	 * @param intervalMillis The time between compaction passes.
+	 * @param batchSize The maximum number of values removed per series lock.
+	 */
+	public RetentionCompactor(RollupStore rollupStore, long intervalMillis, int batchSize)
+	{
+		super();
+		
+		this.rollupStore = rollupStore;
+		
+		if (intervalMillis > 0L) {
+			this.intervalMillis = intervalMillis;
+		}
+		
+		if (batchSize > 0) {
+			this.batchSize = batchSize;
+		}
+		
+		for (int i = 0; i < this.deletedCounts.length; i++) {
+			this.deletedCounts[i] = new AtomicLong(0L);
+		}
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Runs one compaction pass over all series.
+	 * 
+	 * @param nowMillis The time to compute retention cutoffs from.
+	 * @return long The number of values removed.
+	 */
+	public long compact(long nowMillis)
+	{
+		if (this.rollupStore == null || this.rollupStore.getRetentionPolicy() == null) {
+			return 0L;
+		}
+		
+		synchronized (this) {
+			if (this.running) {
+				_Logger.fine("Compaction pass already running. Skipping.");
+				
+				return 0L;
+			}
+			
+			this.running = true;
+		}
+		
+		long startMillis = System.currentTimeMillis();
+		long deleted = 0L;
+		
+		try {
+			// snapshot the keys so series created during the pass are left for the next one
+			List<String> keys = new ArrayList<>(this.rollupStore.getSeriesKeys());
+			
+			this.seriesTotal.set(keys.size());
+			this.seriesScanned.set(0L);
+			
+			for (String key : keys) {
+				for (RetentionPolicy.Tier tier : RetentionPolicy.Tier.values()) {
+					int count = 0;
+					
+					do {
+						count = this.rollupStore.expire(key, tier, nowMillis, this.batchSize);
+						
+						if (count > 0) {
+							this.batchCount.incrementAndGet();
+							this.deletedCounts[tier.ordinal()].addAndGet(count);
+							deleted += count;
+						}
+					} while (count >= this.batchSize);
+				}
+				
+				this.seriesScanned.incrementAndGet();
+			}
+		} catch (Exception e) {
+			_Logger.log(Level.WARNING, "Compaction pass failed.", e);
+		} finally {
+			this.lastPassMillis.set(startMillis);
+			this.lastPassDurationMillis.set(System.currentTimeMillis() - startMillis);
+			this.passCount.incrementAndGet();
+			this.running = false;
+		}
+		
+		if (deleted > 0L) {
+			_Logger.info(
+				"Compaction pass removed " + deleted + " value(s) from " + this.seriesTotal.get() + " series in " +
+				this.lastPassDurationMillis.get() + " ms");
+		}
+		
+		return deleted;
+	}
+	
+	/**
+	 * Returns the number of batches removed across all passes.
+	 * 
+	 * @return long
+	 */
+	public long getBatchCount()
+	{
+		return this.batchCount.get();
+	}
+	
+	/**
+	 * Returns the number of values removed from the given tier across
+	 * all passes.
+	 * 
+	 * @param tier The tier.
+	 * @return long
+	 */
+	public long getDeletedCount(RetentionPolicy.Tier tier)
+	{
+		return this.deletedCounts[tier.ordinal()].get();
+	}
+	
+	/**
+	 * Returns the duration of the most recent pass.
+	 * 
+	 * @return long The duration in milliseconds.
+	 */
+	public long getLastPassDurationMillis()
+	{
+		return this.lastPassDurationMillis.get();
+	}
+	
+	/**
+	 * Returns the start time of the most recent pass.
+	 * 
+	 * @return long The time in milliseconds since the Epoch, or 0 if none has run.
+	 */
+	public long getLastPassMillis()
+	{
+		return this.lastPassMillis.get();
+	}
+	
+	/**
+	 * Returns the number of passes completed.
+	 * 
+	 * @return long
+	 */
+	public long getPassCount()
+	{
+		return this.passCount.get();
+	}
+	
+	/**
+	 * Returns the progress of the current (or most recent) pass.
+	 * 
+	 * @return float The fraction of series scanned, from 0.0 to 1.0.
+	 */
+	public float getProgress()
+	{
+		long total = this.seriesTotal.get();
+		
+		return (total > 0L ? Math.min(1.0f, (float) this.seriesScanned.get() / total) : 1.0f);
+	}
+	
+	/**
+	 * Returns true while a pass is in progress.
+	 * 
+	 * @return boolean
+	 */
+	public boolean isRunning()
+	{
+		return this.running;
+	}
+	
+	public synchronized boolean startCompactor()
+	{
+		if (this.schedExecSvc != null) {
+			_Logger.warning("Retention compactor already started.");
+			
+			return false;
+		}
+		
+		this.schedExecSvc = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "RetentionCompactor");
+			thread.setDaemon(true);
+			
+			return thread;
+		});
+		
+		this.schedExecSvc.scheduleWithFixedDelay(
+			() -> compact(System.currentTimeMillis()), this.intervalMillis, this.intervalMillis, TimeUnit.MILLISECONDS);
+		
+		_Logger.info(
+			"Retention compactor started. Interval: " + this.intervalMillis + " ms, batch size: " + this.batchSize);
+		
+		return true;
+	}
+	
+	public synchronized boolean stopCompactor()
+	{
+		if (this.schedExecSvc == null) {
+			_Logger.warning("Retention compactor already stopped.");
+			
+			return false;
+		}
+		
+		this.schedExecSvc.shutdownNow();
+		this.schedExecSvc = null;
+		
+		_Logger.info("Retention compactor stopped.");
+		
+		return true;
+	}
+}
@@ -0,0 +1,197 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.connection;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.common.ResourceNameEnum;
+
+/**
+ * Defines how long persisted telemetry is kept at each tier - raw
+ * values, and minute, hour and day rollups - per {@link ResourceNameEnum}.
+ * <p>
+ * Policies are written as four durations separated by '/', one per
+ * tier, e.g. "24h/30d/0/0" keeps raw values for 24 hours, minute
+ * rollups for 30 days, and hour and day rollups forever. Durations
+ * take an 's', 'm', 'h' or 'd' suffix; 0 means keep forever.
+ * 
+ */
+public class RetentionPolicy
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(RetentionPolicy.class.getName());
+	
+	/**
+	 * The storage tiers, finest first. Each rollup tier has the same
+	 * ordinal + 1 as its {@link RollupStore.Resolution}.
+	 * 
+	 */
+	public enum Tier
+	{
+		RAW,
+		MINUTE,
+		HOUR,
+		DAY;
+		
+		public static Tier fromResolution(RollupStore.Resolution resolution)
+		{
+			return values()[resolution.ordinal() + 1];
+		}
+	}
+	
+	public static final long KEEP_FOREVER = 0L;
+	
+	/**
+	 * Parses a policy string (e.g. "24h/30d/0/0") into one retention
+	 * period per tier.
+	 * 
+	 * @param policy The policy string.
+	 * @return long[] The retention in milliseconds per tier, or null if invalid.
+	 */
+	public static long[] parsePolicy(String policy)
+	{
+		if (policy == null) {
+			return null;
+		}
+		
+		String[] parts = policy.trim().split("/");
+		
+		if (parts.length != Tier.values().length) {
+			return null;
+		}
+		
+		long[] retention = new long[parts.length];
+		
+		for (int i = 0; i < parts.length; i++) {
+			retention[i] = parseDuration(parts[i].trim());
+			
+			if (retention[i] < 0L) {
+				return null;
+			}
+		}
+		
+		return retention;
+	}
+	
+	private static long parseDuration(String duration)
+	{
+		if (duration.isEmpty()) {
+			return -1L;
+		}
+		
+		long unitMillis = 1000L;
+		char unit = duration.charAt(duration.length() - 1);
+		
+		switch (unit) {
+			case 's': unitMillis = 1000L; break;
+			case 'm': unitMillis = 60L * 1000L; break;
+			case 'h': unitMillis = 60L * 60L * 1000L; break;
+			case 'd': unitMillis = 24L * 60L * 60L * 1000L; break;
+			default: unit = 0;
+		}
+		
+		try {
+			String value = (unit != 0 ? duration.substring(0, duration.length() - 1) : duration);
+			
+			return Long.parseLong(value) * unitMillis;
+		} catch (NumberFormatException e) {
+			return -1L;
+		}
+	}
+	
+	
+	// private var's
+	
+	private long[] defaultRetention = parsePolicy(ConfigConst.DEFAULT_RETENTION_POLICY);
+	
+	private Map<ResourceNameEnum, long[]> resourceRetention = new EnumMap<>(ResourceNameEnum.class);
+	
+	
+	// constructors
+	
+	/**
+	 * Default. Reads the default policy and per-resource overrides from
+	 * the gateway configuration.
+	 * 
+	 */
+	public RetentionPolicy()
+	{
+		this(
+			ConfigUtil.getInstance().getProperty(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.RETENTION_DEFAULT_KEY, ConfigConst.DEFAULT_RETENTION_POLICY),
+			ConfigUtil.getInstance().getProperty(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.RETENTION_POLICY_KEY, null));
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param defaultPolicy The policy for resources without an override.
+	 * @param overrides Comma-separated 'RESOURCE_NAME:policy' entries. May be null.
+	 */
+	public RetentionPolicy(String defaultPolicy, String overrides)
+	{
+		super();
+		
+		long[] retention = parsePolicy(defaultPolicy);
+		
+		if (retention != null) {
+			this.defaultRetention = retention;
+		} else {
+			_Logger.warning("Invalid default retention policy. Using " + ConfigConst.DEFAULT_RETENTION_POLICY + ": " + defaultPolicy);
+		}
+		
+		if (overrides != null && ! overrides.trim().isEmpty()) {
+			for (String entry : overrides.split(",")) {
+				String[] parts = entry.trim().split(":");
+				
+				try {
+					retention = parsePolicy(parts[1]);
+					
+					if (retention == null) {
+						throw new IllegalArgumentException();
+					}
+					
+					this.resourceRetention.put(ResourceNameEnum.valueOf(parts[0].trim()), retention);
+				} catch (Exception e) {
+					_Logger.warning("Invalid retention policy entry. Ignoring: " + entry);
+				}
+			}
+		}
+		
+		_Logger.info("Default retention (ms per tier): " + Arrays.toString(this.defaultRetention));
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Returns how long data for the given resource is kept at the given tier.
+	 * 
+	 * @param resource The resource, or null for the default policy.
+	 * @param tier The storage tier.
+	 * @return long The retention in milliseconds, or {@link #KEEP_FOREVER}.
+	 */
+	public long getRetentionMillis(ResourceNameEnum resource, Tier tier)
+	{
+		long[] retention = (resource != null ? this.resourceRetention.get(resource) : null);
+		
+		return (retention != null ? retention : this.defaultRetention)[tier.ordinal()];
+	}
+}
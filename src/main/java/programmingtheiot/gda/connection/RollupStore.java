@@ -0,0 +1,675 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.connection;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.BaseIotData;
+import programmingtheiot.data.SensorData;
+
+/**
+ * Keeps 1-minute, 1-hour and 1-day rollups (count, sum, min, max and
+ * last value) of sensor data per topic and type ID, updated as each
+ * value is stored.
+ * <p>
+ * Long-range queries are answered from the rollups rather than the
+ * raw data. {@link #planQuery(long, long, long, long)} picks the
+ * coarsest resolution that is no coarser than the one requested and
+ * still retains the start of the range; {@link #query(String, int, long, long, long)}
+ * then merges those buckets to the requested resolution.
+ * <p>
+ * With a {@link RetentionPolicy} set, raw values can be kept as well
+ * and each tier is kept for as long as the policy specifies for the
+ * series' resource, but never beyond the tier's bucket count. Expired
+ * values are removed in bounded batches by
+ * {@link #expire(String, RetentionPolicy.Tier, long, int)}, which is
+ * driven by a {@link RetentionCompactor}.
+ * 
+ */
+public class RollupStore
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(RollupStore.class.getName());
+	
+	/**
+	 * The materialized rollup resolutions, finest first.
+	 * 
+	 */
+	public enum Resolution
+	{
+		MINUTE(60L * 1000L, 2 * 24 * 60),
+		HOUR(60L * 60L * 1000L, 90 * 24),
+		DAY(24L * 60L * 60L * 1000L, 5 * 365);
+		
+		private final long millis;
+		private final int  defaultBuckets;
+		
+		Resolution(long millis, int defaultBuckets)
+		{
+			this.millis = millis;
+			this.defaultBuckets = defaultBuckets;
+		}
+		
+		public long getMillis()
+		{
+			return this.millis;
+		}
+		
+		public int getDefaultBuckets()
+		{
+			return this.defaultBuckets;
+		}
+	}
+	
+	private static final Resolution[] RESOLUTIONS = Resolution.values();
+	
+	/**
+	 * Returns the time of the given data, preferring the ISO timestamp
+	 * (which is what the CDA sends) over the local creation time.
+	 * 
+	 * @param data The data.
+	 * @return long The time in milliseconds since the Epoch.
+	 */
+	public static long toTimeMillis(BaseIotData data)
+	{
+		String timeStamp = data.getTimeStamp();
+		
+		if (timeStamp != null && ! timeStamp.isEmpty()) {
+			try {
+				return Instant.parse(timeStamp).toEpochMilli();
+			} catch (Exception e) {
+				// fall through to the local time
+			}
+		}
+		
+		return (data.getTimeStampMillis() > 0L ? data.getTimeStampMillis() : System.currentTimeMillis());
+	}
+	
+	
+	// private var's
+	
+	private int[] maxBuckets = new int[RESOLUTIONS.length];
+	
+	private Map<String, Series> seriesMap = new ConcurrentHashMap<>();
+	
+	private volatile RetentionPolicy retentionPolicy = null;
+	private volatile int maxRawSamples = 0;
+	
+	
+	// constructors
+	
+	/**
+	 * Default. Keeps 2 days of minute, 90 days of hour and 5 years
+	 * of day rollups.
+	 * 
+	 */
+	public RollupStore()
+	{
+		this(
+			Resolution.MINUTE.getDefaultBuckets(),
+			Resolution.HOUR.getDefaultBuckets(),
+			Resolution.DAY.getDefaultBuckets());
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param minuteBuckets The number of minute rollups to keep per series.
+	 * @param hourBuckets The number of hour rollups to keep per series.
+	 * @param dayBuckets The number of day rollups to keep per series.
+	 */
+	public RollupStore(int minuteBuckets, int hourBuckets, int dayBuckets)
+	{
+		super();
+		
+		int[] buckets = {minuteBuckets, hourBuckets, dayBuckets};
+		
+		for (int i = 0; i < RESOLUTIONS.length; i++) {
+			this.maxBuckets[i] = (buckets[i] > 0 ? buckets[i] : RESOLUTIONS[i].getDefaultBuckets());
+		}
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Removes up to the given number of values from one tier of a
+	 * series that are older than the retention policy allows. The
+	 * series is locked only for the duration of the call, so callers
+	 * should repeat it until it returns less than the batch size.
+	 * 
+	 * @param key The series key, as returned by {@link #getSeriesKeys()}.
+	 * @param tier The tier to expire.
+	 * @param nowMillis The current time.
+	 * @param maxDeletes The maximum number of values to remove.
+	 * @return int The number of values removed.
+	 */
+	public int expire(String key, RetentionPolicy.Tier tier, long nowMillis, int maxDeletes)
+	{
+		RetentionPolicy policy = this.retentionPolicy;
+		Series series = this.seriesMap.get(key);
+		
+		if (policy == null || series == null || tier == null || maxDeletes <= 0) {
+			return 0;
+		}
+		
+		long retentionMillis = policy.getRetentionMillis(series.resource, tier);
+		
+		if (retentionMillis == RetentionPolicy.KEEP_FOREVER) {
+			return 0;
+		}
+		
+		long cutoffMillis = nowMillis - retentionMillis;
+		int deleted = 0;
+		
+		synchronized (series) {
+			if (tier == RetentionPolicy.Tier.RAW) {
+				while (deleted < maxDeletes && ! series.raw.isEmpty() && series.raw.firstKey() < cutoffMillis) {
+					deleted += series.pollFirstRaw();
+				}
+			} else {
+				Resolution resolution = RESOLUTIONS[tier.ordinal() - 1];
+				TreeMap<Long, Bucket> level = series.levels.get(resolution.ordinal());
+				
+				// a bucket expires once its end is older than the cutoff
+				while (deleted < maxDeletes && ! level.isEmpty() && level.firstKey() + resolution.getMillis() <= cutoffMillis) {
+					level.pollFirstEntry();
+					++deleted;
+				}
+			}
+			
+			if (deleted > 0 && series.isEmpty()) {
+				this.seriesMap.remove(key, series);
+			}
+		}
+		
+		return deleted;
+	}
+	
+	/**
+	 * Returns the current retention policy, if any.
+	 * 
+	 * @return RetentionPolicy
+	 */
+	public RetentionPolicy getRetentionPolicy()
+	{
+		return this.retentionPolicy;
+	}
+	
+	/**
+	 * Returns the keys of all series currently tracked.
+	 * 
+	 * @return Set
+	 */
+	public Set<String> getSeriesKeys()
+	{
+		return Collections.unmodifiableSet(this.seriesMap.keySet());
+	}
+	
+	/**
+	 * Returns the resolution to answer a query from, or null if the
+	 * query needs raw data (i.e. a resolution finer than one minute).
+	 * 
+	 * @param startMillis The start of the range.
+	 * @param endMillis The end of the range.
+	 * @param resolutionMillis The requested resolution.
+	 * @param nowMillis The current time, used to check rollup retention.
+	 * @return Resolution
+	 */
+	public Resolution planQuery(long startMillis, long endMillis, long resolutionMillis, long nowMillis)
+	{
+		return planQuery(null, startMillis, endMillis, resolutionMillis, nowMillis);
+	}
+	
+	/**
+	 * Returns the resolution to answer a query for the given resource
+	 * from, or null if the query needs raw data. Retention is checked
+	 * against the resource's policy, if one is set.
+	 * 
+	 * @param resource The resource the data belongs to. May be null.
+	 * @param startMillis The start of the range.
+	 * @param endMillis The end of the range.
+	 * @param resolutionMillis The requested resolution.
+	 * @param nowMillis The current time, used to check rollup retention.
+	 * @return Resolution
+	 */
+	public Resolution planQuery(
+		ResourceNameEnum resource, long startMillis, long endMillis, long resolutionMillis, long nowMillis)
+	{
+		if (resolutionMillis < Resolution.MINUTE.getMillis() || endMillis < startMillis) {
+			return null;
+		}
+		
+		// coarsest resolution that is no coarser than requested and still covers the start
+		for (int i = RESOLUTIONS.length - 1; i >= 0; i--) {
+			if (RESOLUTIONS[i].getMillis() <= resolutionMillis && isRetained(i, resource, startMillis, nowMillis)) {
+				return RESOLUTIONS[i];
+			}
+		}
+		
+		// the finer rollups have aged out; use the finest one that hasn't
+		for (int i = 0; i < RESOLUTIONS.length; i++) {
+			if (isRetained(i, resource, startMillis, nowMillis)) {
+				return RESOLUTIONS[i];
+			}
+		}
+		
+		return Resolution.DAY;
+	}
+	
+	/**
+	 * Returns the rollups for the given series and range, merged to the
+	 * requested resolution (rounded down to a multiple of the planned
+	 * rollup resolution).
+	 * 
+	 * @param topic The topic the data was stored under.
+	 * @param typeID The sensor type ID.
+	 * @param startMillis The start of the range (inclusive).
+	 * @param endMillis The end of the range (inclusive).
+	 * @param resolutionMillis The requested resolution.
+	 * @return List The rollups in time order, or null if the query
+	 * needs raw data and none is kept.
+	 */
+	public List<Rollup> query(String topic, int typeID, long startMillis, long endMillis, long resolutionMillis)
+	{
+		Resolution resolution = planQuery(
+			ResourceNameEnum.getEnumFromValue(topic), startMillis, endMillis, resolutionMillis, System.currentTimeMillis());
+		
+		if (resolution == null) {
+			return (this.maxRawSamples > 0 && endMillis >= startMillis ?
+				queryRaw(topic, typeID, startMillis, endMillis, resolutionMillis) : null);
+		}
+		
+		Series series = this.seriesMap.get(createKey(topic, typeID));
+		
+		if (series == null) {
+			return Collections.emptyList();
+		}
+		
+		long bucketMillis = resolution.getMillis();
+		long widthMillis  = bucketMillis * Math.max(1L, resolutionMillis / bucketMillis);
+		
+		List<Rollup> rollups = new ArrayList<>();
+		Bucket merged = null;
+		long   mergedStart = 0L;
+		
+		synchronized (series) {
+			NavigableMap<Long, Bucket> buckets =
+				series.levels.get(resolution.ordinal()).subMap(floor(startMillis, bucketMillis), true, endMillis, true);
+			
+			for (Map.Entry<Long, Bucket> entry : buckets.entrySet()) {
+				long start = floor(entry.getKey(), widthMillis);
+				
+				if (merged == null || start != mergedStart) {
+					if (merged != null) {
+						rollups.add(merged.toRollup(mergedStart, widthMillis));
+					}
+					
+					merged = new Bucket();
+					mergedStart = start;
+				}
+				
+				merged.merge(entry.getValue());
+			}
+		}
+		
+		if (merged != null) {
+			rollups.add(merged.toRollup(mergedStart, widthMillis));
+		}
+		
+		_Logger.fine(
+			"Answered " + topic + "/" + typeID + " from " + resolution + " rollups: " + rollups.size() + " point(s)");
+		
+		return rollups;
+	}
+	
+	/**
+	 * Sets the retention policy. Rollups older than the policy allows
+	 * are removed by {@link #expire(String, RetentionPolicy.Tier, long, int)};
+	 * the bucket counts still cap each tier on the write path, so a
+	 * policy can shorten retention but not extend it. Raw values are
+	 * kept per series up to the given limit.
+	 * 
+	 * @param policy The retention policy, or null to use only the bucket counts.
+	 * @param maxRawSamples The maximum number of raw values kept per series (0 to keep none).
+	 */
+	public void setRetentionPolicy(RetentionPolicy policy, int maxRawSamples)
+	{
+		this.retentionPolicy = policy;
+		this.maxRawSamples = (policy != null ? Math.max(0, maxRawSamples) : 0);
+	}
+	
+	/**
+	 * Returns the number of series (topic and type ID pairs) tracked.
+	 * 
+	 * @return int
+	 */
+	public int size()
+	{
+		return this.seriesMap.size();
+	}
+	
+	/**
+	 * Adds the given sensor data to all rollups of its series.
+	 * 
+	 * @param topic The topic the data is stored under.
+	 * @param data The sensor data.
+	 */
+	public void update(String topic, SensorData data)
+	{
+		if (topic != null && data != null) {
+			update(topic, data.getTypeID(), data.getValue(), toTimeMillis(data));
+		}
+	}
+	
+	/**
+	 * Adds the given value to all rollups of its series.
+	 * 
+	 * @param topic The topic the data is stored under.
+	 * @param typeID The sensor type ID.
+	 * @param value The value.
+	 * @param timeMillis The time of the value.
+	 */
+	public void update(String topic, int typeID, float value, long timeMillis)
+	{
+		int maxRaw = this.maxRawSamples;
+		
+		while (true) {
+			Series series = this.seriesMap.computeIfAbsent(
+				createKey(topic, typeID), key -> new Series(ResourceNameEnum.getEnumFromValue(topic)));
+			
+			synchronized (series) {
+				// the series may have just been expired and removed; if so, start a new one
+				if (this.seriesMap.get(createKey(topic, typeID)) != series) {
+					continue;
+				}
+				
+				for (int i = 0; i < RESOLUTIONS.length; i++) {
+					TreeMap<Long, Bucket> level = series.levels.get(i);
+					long bucketStart = floor(timeMillis, RESOLUTIONS[i].getMillis());
+					
+					level.computeIfAbsent(bucketStart, start -> new Bucket()).add(value, timeMillis);
+					
+					while (level.size() > this.maxBuckets[i]) {
+						level.pollFirstEntry();
+					}
+				}
+				
+				if (maxRaw > 0) {
+					series.addRaw(value, timeMillis);
+					
+					while (series.rawCount > maxRaw) {
+						series.pollFirstRaw();
+					}
+				}
+			}
+			
+			return;
+		}
+	}
+	
+	
+	// private methods
+	
+	private String createKey(String topic, int typeID)
+	{
+		return topic + "#" + typeID;
+	}
+	
+	private long floor(long timeMillis, long widthMillis)
+	{
+		return Math.floorDiv(timeMillis, widthMillis) * widthMillis;
+	}
+	
+	private boolean isRetained(int level, ResourceNameEnum resource, long startMillis, long nowMillis)
+	{
+		long oldest = floor(nowMillis, RESOLUTIONS[level].getMillis()) - (this.maxBuckets[level] - 1) * RESOLUTIONS[level].getMillis();
+		
+		if (startMillis < oldest) {
+			return false;
+		}
+		
+		RetentionPolicy policy = this.retentionPolicy;
+		
+		if (policy != null) {
+			long retentionMillis = policy.getRetentionMillis(resource, RetentionPolicy.Tier.fromResolution(RESOLUTIONS[level]));
+			
+			return (retentionMillis == RetentionPolicy.KEEP_FOREVER || startMillis >= nowMillis - retentionMillis);
+		}
+		
+		return true;
+	}
+	
+	private List<Rollup> queryRaw(String topic, int typeID, long startMillis, long endMillis, long resolutionMillis)
+	{
+		Series series = this.seriesMap.get(createKey(topic, typeID));
+		
+		if (series == null) {
+			return Collections.emptyList();
+		}
+		
+		long widthMillis = Math.max(1L, resolutionMillis);
+		TreeMap<Long, Bucket> buckets = new TreeMap<>();
+		
+		synchronized (series) {
+			for (Map.Entry<Long, float[]> entry : series.raw.subMap(startMillis, true, endMillis, true).entrySet()) {
+				Bucket bucket = buckets.computeIfAbsent(floor(entry.getKey(), widthMillis), start -> new Bucket());
+				
+				for (float value : entry.getValue()) {
+					bucket.add(value, entry.getKey());
+				}
+			}
+		}
+		
+		List<Rollup> rollups = new ArrayList<>(buckets.size());
+		
+		for (Map.Entry<Long, Bucket> entry : buckets.entrySet()) {
+			rollups.add(entry.getValue().toRollup(entry.getKey(), widthMillis));
+		}
+		
+		return rollups;
+	}
+	
+	
+	// inner classes
+	
+	/**
+	 * The rollups of one series, one map of bucket start time to
+	 * bucket per resolution, plus any raw values kept (keyed by time,
+	 * so late arrivals still expire in time order).
+	 * 
+	 */
+	private static class Series
+	{
+		private final ResourceNameEnum resource;
+		private final TreeMap<Long, float[]> raw = new TreeMap<>();
+		private int rawCount = 0;
+		
+		private final List<TreeMap<Long, Bucket>> levels = new ArrayList<>(RESOLUTIONS.length);
+		
+		Series(ResourceNameEnum resource)
+		{
+			this.resource = resource;
+			
+			for (int i = 0; i < RESOLUTIONS.length; i++) {
+				this.levels.add(new TreeMap<>());
+			}
+		}
+		
+		boolean isEmpty()
+		{
+			for (TreeMap<Long, Bucket> level : this.levels) {
+				if (! level.isEmpty()) {
+					return false;
+				}
+			}
+			
+			return this.raw.isEmpty();
+		}
+		
+		void addRaw(float value, long timeMillis)
+		{
+			float[] values = this.raw.get(timeMillis);
+			
+			if (values == null) {
+				values = new float[] {value};
+			} else {
+				values = Arrays.copyOf(values, values.length + 1);
+				values[values.length - 1] = value;
+			}
+			
+			this.raw.put(timeMillis, values);
+			++this.rawCount;
+		}
+		
+		int pollFirstRaw()
+		{
+			Map.Entry<Long, float[]> entry = this.raw.pollFirstEntry();
+			int count = (entry != null ? entry.getValue().length : 0);
+			
+			this.rawCount -= count;
+			
+			return count;
+		}
+	}
+	
+	/**
+	 * A mutable aggregate, guarded by its series.
+	 * 
+	 */
+	private static class Bucket
+	{
+		private long   count = 0L;
+		private double sum = 0.0;
+		private float  min = Float.MAX_VALUE;
+		private float  max = -Float.MAX_VALUE;
+		private float  last = 0.0f;
+		private long   lastMillis = Long.MIN_VALUE;
+		
+		void add(float value, long timeMillis)
+		{
+			this.count++;
+			this.sum += value;
+			this.min = Math.min(this.min, value);
+			this.max = Math.max(this.max, value);
+			
+			if (timeMillis >= this.lastMillis) {
+				this.last = value;
+				this.lastMillis = timeMillis;
+			}
+		}
+		
+		void merge(Bucket bucket)
+		{
+			this.count += bucket.count;
+			this.sum += bucket.sum;
+			this.min = Math.min(this.min, bucket.min);
+			this.max = Math.max(this.max, bucket.max);
+			
+			if (bucket.lastMillis >= this.lastMillis) {
+				this.last = bucket.last;
+				this.lastMillis = bucket.lastMillis;
+			}
+		}
+		
+		Rollup toRollup(long startMillis, long durationMillis)
+		{
+			return new Rollup(startMillis, durationMillis, this.count, this.sum, this.min, this.max, this.last);
+		}
+	}
+	
+	/**
+	 * An immutable rollup of one time bucket.
+	 * 
+	 */
+	public static class Rollup
+	{
+		private final long   startMillis;
+		private final long   durationMillis;
+		private final long   count;
+		private final double sum;
+		private final float  min;
+		private final float  max;
+		private final float  last;
+		
+		Rollup(long startMillis, long durationMillis, long count, double sum, float min, float max, float last)
+		{
+			this.startMillis = startMillis;
+			this.durationMillis = durationMillis;
+			this.count = count;
+			this.sum = sum;
+			this.min = min;
+			this.max = max;
+			this.last = last;
+		}
+		
+		public float getAverage()
+		{
+			return (this.count > 0 ? (float) (this.sum / this.count) : 0.0f);
+		}
+		
+		public long getCount()
+		{
+			return this.count;
+		}
+		
+		public long getDurationMillis()
+		{
+			return this.durationMillis;
+		}
+		
+		public float getLast()
+		{
+			return this.last;
+		}
+		
+		public float getMax()
+		{
+			return this.max;
+		}
+		
+		public float getMin()
+		{
+			return this.min;
+		}
+		
+		public long getStartMillis()
+		{
+			return this.startMillis;
+		}
+		
+		public double getSum()
+		{
+			return this.sum;
+		}
+		
+		@Override
+		public String toString()
+		{
+			return "Rollup[start=" + this.startMillis + ",duration=" + this.durationMillis + ",count=" + this.count +
+				",avg=" + getAverage() + ",min=" + this.min + ",max=" + this.max + ",last=" + this.last + "]";
+		}
+	}
+}
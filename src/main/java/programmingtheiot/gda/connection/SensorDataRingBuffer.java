@@ -0,0 +1,635 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+
+package programmingtheiot.gda.connection;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.SensorData;
+
+/**
+ * A single-producer, multi-consumer ring of pre-allocated, mutable
+ * {@link SensorData} slots, in the style of the LMAX Disruptor.
+ * <p>
+ * The producer claims a sequence, fills the slot in place and
+ * publishes it by advancing the cursor; no locks are taken (except
+ * to wake a {@link WaitStrategy#BLOCK} consumer that is actually
+ * waiting) and nothing is
+ * allocated per event. Every registered {@link ISensorEventHandler}
+ * sees every event, on its own thread, and consumes all events
+ * published since its last wakeup as one batch. The producer never
+ * overwrites a slot that the slowest handler hasn't consumed; it
+ * either waits ({@link #publishEvent(ResourceNameEnum, SensorData)})
+ * or gives up ({@link #tryPublishEvent(ResourceNameEnum, SensorData)}).
+ * <p>
+ * Only one thread may publish. Handlers must be added before
+ * {@link #startRing()}.
+ * 
+ */
+public class SensorDataRingBuffer
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(SensorDataRingBuffer.class.getName());
+	
+	private static final long STOP_TIMEOUT_MILLIS = 5000L;
+	private static final int  SPIN_TRIES = 100;
+	
+	/**
+	 * How a consumer waits for the next event.
+	 * 
+	 */
+	public enum WaitStrategy
+	{
+		/** Spin on the cursor. Lowest latency; occupies a core per handler. */
+		BUSY_SPIN,
+		
+		/** Spin briefly, then yield between checks. */
+		YIELD,
+		
+		/** Wait on a condition the producer signals. Cheapest on CPU; highest latency. */
+		BLOCK
+	}
+	
+	
+	// private var's
+	
+	private final int  size;
+	private final long mask;
+	private final WaitStrategy waitStrategy;
+	
+	private final SensorData[] slots;
+	private final ResourceNameEnum[] resources;
+	
+	// published cursor, written by the producer and read by the handlers
+	private final Sequence cursor = new Sequence(-1L);
+	
+	// producer-only state
+	private long nextSequence = -1L;
+	private long cachedGatingSequence = -1L;
+	
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition     published = lock.newCondition();
+	
+	// set by a BLOCK handler before it waits, so the producer only signals when needed
+	private final AtomicBoolean signalNeeded = new AtomicBoolean(false);
+	
+	private Map<String, Processor> processors = new ConcurrentHashMap<>();
+	private Sequence[] gatingSequences = new Sequence[0];
+	
+	private final AtomicLong droppedCount = new AtomicLong(0L);
+	
+	private volatile boolean isRunning = false;
+	
+	
+	// constructors
+	
+	/**
+	 * Default. Reads the ring size and wait strategy from the gateway
+	 * configuration.
+	 * 
+	 */
+	public SensorDataRingBuffer()
+	{
+		this(
+			ConfigUtil.getInstance().getInteger(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.SENSOR_RING_SIZE_KEY, ConfigConst.DEFAULT_SENSOR_RING_SIZE),
+			parseWaitStrategy(
+				ConfigUtil.getInstance().getProperty(ConfigConst.GATEWAY_DEVICE, ConfigConst.SENSOR_RING_WAIT_STRATEGY_KEY)));
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param size The number of slots, rounded up to a power of two.
+	 * @param waitStrategy How handlers wait for events. Defaults to {@link WaitStrategy#BLOCK}.
+	 */
+	public SensorDataRingBuffer(int size, WaitStrategy waitStrategy)
+	{
+		super();
+		
+		int capacity = Integer.highestOneBit(Math.max(2, size) - 1) << 1;
+		
+		this.size = (capacity > 0 ? capacity : ConfigConst.DEFAULT_SENSOR_RING_SIZE);
+		this.mask = this.size - 1;
+		this.waitStrategy = (waitStrategy != null ? waitStrategy : WaitStrategy.BLOCK);
+		
+		this.slots = new SensorData[this.size];
+		this.resources = new ResourceNameEnum[this.size];
+		
+		for (int i = 0; i < this.size; i++) {
+			this.slots[i] = new SensorData();
+		}
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Registers a handler. Must be called before {@link #startRing()}.
+	 * 
+	 * @param name A unique handler name, used for metrics and the thread name.
+	 * @param handler The handler.
+	 * @return boolean True if added; false if running, or the name is taken or invalid.
+	 */
+	public synchronized boolean addHandler(String name, ISensorEventHandler handler)
+	{
+		if (name == null || handler == null || this.isRunning || this.processors.containsKey(name)) {
+			_Logger.warning("Can't add ring handler: " + name);
+			
+			return false;
+		}
+		
+		// new handlers start after whatever has already been published
+		Processor processor = new Processor(name, handler, this.cursor.get());
+		
+		this.processors.put(name, processor);
+		
+		Sequence[] gating = new Sequence[this.gatingSequences.length + 1];
+		System.arraycopy(this.gatingSequences, 0, gating, 0, this.gatingSequences.length);
+		gating[gating.length - 1] = processor.sequence;
+		
+		this.gatingSequences = gating;
+		
+		return true;
+	}
+	
+	/**
+	 * Claims the next slot, waiting while the ring is full. The caller
+	 * fills {@link #get(long)} and then calls {@link #publish(long)}.
+	 * 
+	 * @return long The claimed sequence.
+	 */
+	public long next()
+	{
+		long claimed = this.nextSequence + 1L;
+		long wrapPoint = claimed - this.size;
+		
+		if (wrapPoint > this.cachedGatingSequence) {
+			long minSequence;
+			
+			while (wrapPoint > (minSequence = getMinimumGatingSequence(claimed - 1L))) {
+				LockSupport.parkNanos(1L);
+			}
+			
+			this.cachedGatingSequence = minSequence;
+		}
+		
+		this.nextSequence = claimed;
+		
+		return claimed;
+	}
+	
+	/**
+	 * Claims the next slot if one is free.
+	 * 
+	 * @return long The claimed sequence, or -1 if the ring is full.
+	 */
+	public long tryNext()
+	{
+		long claimed = this.nextSequence + 1L;
+		long wrapPoint = claimed - this.size;
+		
+		if (wrapPoint > this.cachedGatingSequence) {
+			long minSequence = getMinimumGatingSequence(claimed - 1L);
+			
+			this.cachedGatingSequence = minSequence;
+			
+			if (wrapPoint > minSequence) {
+				return -1L;
+			}
+		}
+		
+		this.nextSequence = claimed;
+		
+		return claimed;
+	}
+	
+	/**
+	 * Returns the slot for the given claimed sequence.
+	 * 
+	 * @param sequence The sequence.
+	 * @return SensorData The slot.
+	 */
+	public SensorData get(long sequence)
+	{
+		return this.slots[(int) (sequence & this.mask)];
+	}
+	
+	/**
+	 * Publishes the given claimed sequence, making its slot visible to
+	 * the handlers.
+	 * 
+	 * @param sequence The sequence.
+	 * @param resource The resource the data was received on.
+	 */
+	public void publish(long sequence, ResourceNameEnum resource)
+	{
+		this.resources[(int) (sequence & this.mask)] = resource;
+		this.cursor.set(sequence);
+		
+		if (this.waitStrategy == WaitStrategy.BLOCK && this.signalNeeded.getAndSet(false)) {
+			this.lock.lock();
+			
+			try {
+				this.published.signalAll();
+			} finally {
+				this.lock.unlock();
+			}
+		}
+	}
+	
+	/**
+	 * Copies the given data into the next slot and publishes it,
+	 * waiting while the ring is full.
+	 * 
+	 * @param resource The resource the data was received on.
+	 * @param data The data to copy.
+	 * @return long The published sequence, or -1 if the data is null.
+	 */
+	public long publishEvent(ResourceNameEnum resource, SensorData data)
+	{
+		if (data == null) {
+			return -1L;
+		}
+		
+		long sequence = next();
+		
+		get(sequence).copyFrom(data);
+		publish(sequence, resource);
+		
+		return sequence;
+	}
+	
+	/**
+	 * Copies the given data into the next slot and publishes it, unless
+	 * the ring is full, in which case the event is dropped and counted.
+	 * Suits callers that must not block, such as transport callbacks.
+	 * 
+	 * @param resource The resource the data was received on.
+	 * @param data The data to copy.
+	 * @return boolean True if published.
+	 */
+	public boolean tryPublishEvent(ResourceNameEnum resource, SensorData data)
+	{
+		if (data == null) {
+			return false;
+		}
+		
+		long sequence = tryNext();
+		
+		if (sequence < 0L) {
+			this.droppedCount.incrementAndGet();
+			
+			return false;
+		}
+		
+		get(sequence).copyFrom(data);
+		publish(sequence, resource);
+		
+		return true;
+	}
+	
+	public synchronized boolean startRing()
+	{
+		if (this.isRunning) {
+			_Logger.warning("Sensor ring already started.");
+			
+			return false;
+		}
+		
+		this.isRunning = true;
+		
+		for (Processor processor : this.processors.values()) {
+			processor.start();
+		}
+		
+		_Logger.info(
+			"Sensor ring started. Size: " + this.size + ", wait strategy: " + this.waitStrategy +
+			", handlers: " + this.processors.keySet());
+		
+		return true;
+	}
+	
+	/**
+	 * Stops the handlers after they consume whatever was published.
+	 * 
+	 * @return boolean
+	 */
+	public synchronized boolean stopRing()
+	{
+		if (! this.isRunning) {
+			_Logger.warning("Sensor ring already stopped.");
+			
+			return false;
+		}
+		
+		this.isRunning = false;
+		
+		this.lock.lock();
+		
+		try {
+			this.published.signalAll();
+		} finally {
+			this.lock.unlock();
+		}
+		
+		for (Processor processor : this.processors.values()) {
+			processor.stop();
+		}
+		
+		_Logger.info("Sensor ring stopped.");
+		
+		return true;
+	}
+	
+	/**
+	 * Returns the number of batches the handler has consumed.
+	 * 
+	 * @param name The handler name.
+	 * @return long
+	 */
+	public long getBatchCount(String name)
+	{
+		Processor processor = (name != null ? this.processors.get(name) : null);
+		
+		return (processor != null ? processor.batchCount.get() : 0L);
+	}
+	
+	/**
+	 * Returns the sequence of the last published event.
+	 * 
+	 * @return long The cursor, or -1 if nothing has been published.
+	 */
+	public long getCursor()
+	{
+		return this.cursor.get();
+	}
+	
+	public long getDroppedCount()
+	{
+		return this.droppedCount.get();
+	}
+	
+	/**
+	 * Returns the number of events the handler has consumed, including
+	 * any it failed on.
+	 * 
+	 * @param name The handler name.
+	 * @return long
+	 */
+	public long getEventCount(String name)
+	{
+		Processor processor = (name != null ? this.processors.get(name) : null);
+		
+		return (processor != null ? processor.sequence.get() - processor.startSequence : 0L);
+	}
+	
+	public long getFailedCount(String name)
+	{
+		Processor processor = (name != null ? this.processors.get(name) : null);
+		
+		return (processor != null ? processor.failedCount.get() : 0L);
+	}
+	
+	/**
+	 * Returns the number of slots the producer can claim without waiting.
+	 * 
+	 * @return long
+	 */
+	public long getRemainingCapacity()
+	{
+		long produced = this.cursor.get();
+		
+		return this.size - (produced - getMinimumGatingSequence(produced));
+	}
+	
+	public int getSize()
+	{
+		return this.size;
+	}
+	
+	public WaitStrategy getWaitStrategy()
+	{
+		return this.waitStrategy;
+	}
+	
+	public boolean isRunning()
+	{
+		return this.isRunning;
+	}
+	
+	
+	// private methods
+	
+	private static WaitStrategy parseWaitStrategy(String name)
+	{
+		if (name != null) {
+			for (WaitStrategy strategy : WaitStrategy.values()) {
+				if (strategy.name().equalsIgnoreCase(name.trim())) {
+					return strategy;
+				}
+			}
+		}
+		
+		return WaitStrategy.BLOCK;
+	}
+	
+	private long getMinimumGatingSequence(long defaultSequence)
+	{
+		long minimum = defaultSequence;
+		
+		for (Sequence sequence : this.gatingSequences) {
+			minimum = Math.min(minimum, sequence.get());
+		}
+		
+		return minimum;
+	}
+	
+	/**
+	 * Waits until the given sequence is published, returning the
+	 * highest published sequence (the end of the batch), or -1 if the
+	 * ring stopped with nothing left to consume.
+	 */
+	private long waitFor(long sequence) throws InterruptedException
+	{
+		long available;
+		int  tries = SPIN_TRIES;
+		
+		while ((available = this.cursor.get()) < sequence) {
+			if (! this.isRunning) {
+				return -1L;
+			}
+			
+			switch (this.waitStrategy) {
+				case BUSY_SPIN:
+					Thread.onSpinWait();
+					break;
+				
+				case YIELD:
+					if (tries > 0) {
+						--tries;
+						Thread.onSpinWait();
+					} else {
+						Thread.yield();
+					}
+					
+					break;
+				
+				default:
+					this.lock.lock();
+					
+					try {
+						while (this.isRunning) {
+							// raised before the re-check, so a publish after it is sure to signal
+							this.signalNeeded.set(true);
+							
+							if (this.cursor.get() >= sequence) {
+								break;
+							}
+							
+							this.published.await(STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+						}
+					} finally {
+						this.lock.unlock();
+					}
+			}
+		}
+		
+		return available;
+	}
+	
+	
+	// inner classes
+	
+	/**
+	 * A sequence counter padded on both sides, so the producer's cursor
+	 * and each handler's sequence sit on separate cache lines.
+	 */
+	@SuppressWarnings("unused")
+	private static class Sequence
+	{
+		private long p1, p2, p3, p4, p5, p6, p7;
+		private final AtomicLong value;
+		private long p9, p10, p11, p12, p13, p14, p15;
+		
+		Sequence(long initialValue)
+		{
+			this.value = new AtomicLong(initialValue);
+		}
+		
+		long get()
+		{
+			return this.value.get();
+		}
+		
+		void set(long newValue)
+		{
+			// ordered store; readers see the slot writes that preceded it
+			this.value.lazySet(newValue);
+		}
+	}
+	
+	/**
+	 * A handler, its consumed sequence and thread.
+	 */
+	private class Processor implements Runnable
+	{
+		private final String name;
+		private final ISensorEventHandler handler;
+		private final Sequence sequence;
+		private final long startSequence;
+		
+		private final AtomicLong batchCount  = new AtomicLong(0L);
+		private final AtomicLong failedCount = new AtomicLong(0L);
+		
+		private Thread worker = null;
+		
+		Processor(String name, ISensorEventHandler handler, long startSequence)
+		{
+			this.name = name;
+			this.handler = handler;
+			this.startSequence = startSequence;
+			this.sequence = new Sequence(startSequence);
+		}
+		
+		void start()
+		{
+			this.worker = new Thread(this, "SensorDataRingBuffer-" + this.name);
+			this.worker.setDaemon(true);
+			this.worker.start();
+		}
+		
+		void stop()
+		{
+			Thread thread = this.worker;
+			this.worker = null;
+			
+			if (thread != null) {
+				try {
+					thread.join(STOP_TIMEOUT_MILLIS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+		
+		@Override
+		public void run()
+		{
+			long next = this.sequence.get() + 1L;
+			
+			try {
+				while (true) {
+					long available = waitFor(next);
+					
+					if (available < next) {
+						// stopped and drained
+						return;
+					}
+					
+					for (long seq = next; seq <= available; seq++) {
+						int index = (int) (seq & mask);
+						
+						try {
+							this.handler.onEvent(resources[index], slots[index], seq, seq == available);
+						} catch (Exception e) {
+							this.failedCount.incrementAndGet();
+							
+							_Logger.log(Level.WARNING, "Ring handler failed at sequence " + seq + ": " + this.name, e);
+						}
+					}
+					
+					// releases the whole batch to the producer at once
+					this.sequence.set(available);
+					this.batchCount.incrementAndGet();
+					
+					next = available + 1L;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -22,6 +22,11 @@ import programmingtheiot.common.ConfigUtil;
  */
 public class SmtpAuthenticator extends Authenticator
 {
+	// private var's
+	
+	private String configSectionName = ConfigConst.SMTP_GATEWAY_SERVICE;
+	
+	
 	// constructors
 	
 	/**
@@ -33,6 +38,21 @@ public class SmtpAuthenticator extends Authenticator
 		super();
 	}
 	
+	/**
+	 * Constructor.
+	 * 
+	 * @param configSectionName The name of the configuration section
+	 * whose credential file should be used.
+	 */
+	public SmtpAuthenticator(String configSectionName)
+	{
+		super();
+		
+		if (configSectionName != null) {
+			this.configSectionName = configSectionName;
+		}
+	}
+	
 	
 	// protected methods
 	
@@ -45,7 +65,11 @@ public class SmtpAuthenticator extends Authenticator
 	protected PasswordAuthentication getPasswordAuthentication()
 	{
 		Properties credProps =
-			ConfigUtil.getInstance().getCredentials(ConfigConst.SMTP_GATEWAY_SERVICE);
+			ConfigUtil.getInstance().getCredentials(this.configSectionName);
+		
+		if (credProps == null) {
+			return null;
+		}
 		
 		return new PasswordAuthentication(
 			credProps.getProperty(ConfigConst.USER_NAME_TOKEN_KEY),
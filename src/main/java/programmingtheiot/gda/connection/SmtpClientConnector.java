@@ -13,7 +13,9 @@ package programmingtheiot.gda.connection;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Properties;
 import java.util.logging.Level;
@@ -37,14 +39,45 @@ import programmingtheiot.common.IDataMessageListener;
 import programmingtheiot.common.ResourceNameEnum;
 
 
+/**
+ * SMTP client for sending alert messages.
+ * <p>
+ * A single authenticated {@link Transport} connection is kept open and
+ * reused across sends, and is only reopened if the server drops it.
+ * Sends are capped at a configurable number of messages per minute so
+ * an alert storm can't flood the mail relay; use {@link AlertDigestEngine}
+ * to fold bursts of alerts into periodic digests.
+ * 
+ */
 public class SmtpClientConnector
 {
 	// static
 	
+	private static final Logger _Logger =
+		Logger.getLogger(SmtpClientConnector.class.getName());
+	
+	private static final long RATE_WINDOW_MILLIS = 60000L;
 	
 	
 	// private var's
 	
+	private Session   session = null;
+	private Transport transport = null;
+	private IDataMessageListener dataMsgListener = null;
+	
+	private String  host = ConfigConst.DEFAULT_HOST;
+	private int     port = ConfigConst.DEFAULT_SMTP_PORT;
+	private String  fromAddr = ConfigConst.DEFAULT_ALERT_ADDRESS;
+	private String  toAddr = ConfigConst.DEFAULT_ALERT_ADDRESS;
+	private int     maxMsgsPerMinute = ConfigConst.DEFAULT_MAX_MSGS_PER_MINUTE;
+	
+	private long    rateWindowStart = 0L;
+	private int     rateWindowCount = 0;
+	
+	private long    sentCount = 0L;
+	private long    throttledCount = 0L;
+	private long    failedCount = 0L;
+	private long    connectCount = 0L;
 	
 	
 	// constructors
@@ -54,25 +87,310 @@ public class SmtpClientConnector
 	 * 
 	 */
 	public SmtpClientConnector()
+	{
+		this(ConfigConst.SMTP_GATEWAY_SERVICE);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param configSectionName The name of the configuration section to use for
+	 * the SMTP client configuration parameters.
+	 */
+	public SmtpClientConnector(String configSectionName)
 	{
 		super();
+		
+		initClientParameters(configSectionName);
 	}
 	
 	
 	// public methods
 	
-	public boolean sendMessage(ResourceNameEnum resource, String payload, int timeout)
+	/**
+	 * Opens the pooled SMTP connection if it isn't already open. Calling
+	 * this is optional, since {@link #sendMessage(ResourceNameEnum, String, int)}
+	 * connects on demand.
+	 * 
+	 * @return boolean
+	 */
+	public synchronized boolean connectClient()
 	{
+		if (this.transport != null && this.transport.isConnected()) {
+			_Logger.warning("SMTP client already connected: " + this.host + ":" + this.port);
+			
+			return false;
+		}
+		
+		return openTransport();
+	}
+	
+	/**
+	 * Closes the pooled SMTP connection.
+	 * 
+	 * @return boolean
+	 */
+	public synchronized boolean disconnectClient()
+	{
+		if (this.transport == null || ! this.transport.isConnected()) {
+			_Logger.warning("SMTP client already disconnected: " + this.host + ":" + this.port);
+			
+			return false;
+		}
+		
+		try {
+			this.transport.close();
+			
+			_Logger.info("SMTP client disconnected: " + this.host + ":" + this.port);
+			
+			return true;
+		} catch (MessagingException e) {
+			_Logger.log(Level.WARNING, "Failed to close SMTP connection cleanly.", e);
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Sends the payload as a plain text email over the pooled connection.
+	 * <p>
+	 * The timeout argument is not applied per call; the pooled connection
+	 * uses the connect and read timeouts from the configuration.
+	 * 
+	 * @param resource The resource the message relates to; used for the subject.
+	 * @param payload The message body.
+	 * @param timeout Unused.
+	 * @return boolean True if the message was sent, false if it failed or
+	 * the per-minute cap was reached.
+	 */
+	public synchronized boolean sendMessage(ResourceNameEnum resource, String payload, int timeout)
+	{
+		if (payload == null) {
+			_Logger.warning("Payload is null. Unable to send message.");
+			
+			return false;
+		}
+		
+		if (! acquireRateSlot(System.currentTimeMillis())) {
+			++this.throttledCount;
+			
+			_Logger.warning("SMTP message cap of " + this.maxMsgsPerMinute + " per minute reached. Not sending.");
+			
+			return false;
+		}
+		
+		try {
+			Message msg = createMessage(resource, payload);
+			
+			boolean isSent = sendWithTransport(msg);
+			
+			if (! isSent && this.transport != null && ! this.transport.isConnected()) {
+				// the connection dropped mid-send; reconnect and retry once
+				closeQuietly();
+				isSent = sendWithTransport(msg);
+			}
+			
+			if (isSent) {
+				++this.sentCount;
+				
+				return true;
+			}
+		} catch (MessagingException e) {
+			_Logger.log(Level.WARNING, "Failed to create SMTP message.", e);
+		}
+		
+		++this.failedCount;
+		
 		return false;
 	}
 
 	public boolean setDataMessageListener(IDataMessageListener listener)
 	{
+		if (listener != null) {
+			this.dataMsgListener = listener;
+			
+			return true;
+		}
+		
 		return false;
 	}
+	
+	public synchronized long getSentCount()
+	{
+		return this.sentCount;
+	}
+	
+	public synchronized long getThrottledCount()
+	{
+		return this.throttledCount;
+	}
+	
+	public synchronized long getFailedCount()
+	{
+		return this.failedCount;
+	}
+	
+	/**
+	 * Returns the number of times an SMTP connection was opened. With
+	 * connection reuse this should stay well below the sent count.
+	 * 
+	 * @return long
+	 */
+	public synchronized long getConnectCount()
+	{
+		return this.connectCount;
+	}
+	
+	public synchronized void setMaxMessagesPerMinute(int maxMsgsPerMinute)
+	{
+		if (maxMsgsPerMinute > 0) {
+			this.maxMsgsPerMinute = maxMsgsPerMinute;
+		}
+	}
 
 	
 	// private methods
 	
+	private boolean acquireRateSlot(long nowMillis)
+	{
+		if (nowMillis - this.rateWindowStart >= RATE_WINDOW_MILLIS) {
+			this.rateWindowStart = nowMillis;
+			this.rateWindowCount = 0;
+		}
+		
+		if (this.rateWindowCount >= this.maxMsgsPerMinute) {
+			return false;
+		}
+		
+		++this.rateWindowCount;
+		
+		return true;
+	}
+	
+	private void closeQuietly()
+	{
+		try {
+			if (this.transport != null) {
+				this.transport.close();
+			}
+		} catch (MessagingException e) {
+			// ignore
+		}
+	}
+	
+	private Message createMessage(ResourceNameEnum resource, String payload) throws MessagingException
+	{
+		MimeMessage msg = new MimeMessage(this.session);
+		
+		msg.setFrom(new InternetAddress(this.fromAddr));
+		msg.setRecipients(Message.RecipientType.TO, InternetAddress.parse(this.toAddr));
+		msg.setSubject(
+			ConfigConst.PRODUCT_NAME + " Alert: " +
+			(resource != null ? resource.getResourceName() : ConfigConst.GATEWAY_DEVICE));
+		msg.setText(payload, StandardCharsets.UTF_8.name());
+		msg.setSentDate(new Date());
+		
+		return msg;
+	}
+	
+	private void initClientParameters(String configSectionName)
+	{
+		ConfigUtil configUtil = ConfigUtil.getInstance();
+		
+		this.host =
+			configUtil.getProperty(configSectionName, ConfigConst.HOST_KEY, ConfigConst.DEFAULT_HOST);
+		this.port =
+			configUtil.getInteger(configSectionName, ConfigConst.PORT_KEY, ConfigConst.DEFAULT_SMTP_PORT);
+		this.maxMsgsPerMinute =
+			configUtil.getInteger(
+				configSectionName, ConfigConst.MAX_MSGS_PER_MINUTE_KEY, ConfigConst.DEFAULT_MAX_MSGS_PER_MINUTE);
+		
+		int timeoutMillis =
+			configUtil.getInteger(
+				configSectionName, ConfigConst.SMTP_TIMEOUT_MILLIS_KEY, ConfigConst.DEFAULT_SMTP_TIMEOUT_MILLIS);
+		
+		boolean enableAuth  = configUtil.getBoolean(configSectionName, ConfigConst.ENABLE_AUTH_KEY);
+		boolean enableCrypt = configUtil.getBoolean(configSectionName, ConfigConst.ENABLE_CRYPT_KEY);
+		
+		if (enableCrypt) {
+			this.port =
+				configUtil.getInteger(
+					configSectionName, ConfigConst.SECURE_PORT_KEY, ConfigConst.DEFAULT_SMTP_SECURE_PORT);
+		}
+		
+		// addresses may be kept with the credentials or in the config section
+		Properties credProps = (enableAuth ? configUtil.getCredentials(configSectionName) : null);
+		
+		this.fromAddr = lookupAddress(credProps, configSectionName, ConfigConst.FROM_ADDRESS_KEY);
+		this.toAddr   = lookupAddress(credProps, configSectionName, ConfigConst.TO_ADDRESS_KEY);
+		
+		Properties props = new Properties();
+		props.put(ConfigConst.SMTP_PROP_HOST_KEY, this.host);
+		props.put(ConfigConst.SMTP_PROP_PORT_KEY, String.valueOf(this.port));
+		props.put(ConfigConst.SMTP_PROP_AUTH_KEY, String.valueOf(enableAuth));
+		props.put(ConfigConst.SMTP_PROP_ENABLE_TLS_KEY, String.valueOf(enableCrypt));
+		props.put("mail.smtp.connectiontimeout", String.valueOf(timeoutMillis));
+		props.put("mail.smtp.timeout", String.valueOf(timeoutMillis));
+		props.put("mail.smtp.writetimeout", String.valueOf(timeoutMillis));
+		
+		Authenticator auth = (enableAuth ? new SmtpAuthenticator(configSectionName) : null);
+		
+		this.session = Session.getInstance(props, auth);
+		
+		_Logger.info("Using SMTP server: " + this.host + ":" + this.port + ", auth: " + enableAuth + ", TLS: " + enableCrypt);
+	}
+	
+	private String lookupAddress(Properties credProps, String configSectionName, String key)
+	{
+		String addr = (credProps != null ? credProps.getProperty(key) : null);
+		
+		if (addr == null || addr.trim().isEmpty()) {
+			addr = ConfigUtil.getInstance().getProperty(configSectionName, key, ConfigConst.DEFAULT_ALERT_ADDRESS);
+		}
+		
+		return addr.trim();
+	}
+	
+	private boolean openTransport()
+	{
+		try {
+			if (this.transport == null) {
+				this.transport = this.session.getTransport("smtp");
+			}
+			
+			this.transport.connect();
+			++this.connectCount;
+			
+			_Logger.info("SMTP client connected: " + this.host + ":" + this.port);
+			
+			return true;
+		} catch (MessagingException e) {
+			_Logger.log(Level.WARNING, "Failed to connect to SMTP server: " + this.host + ":" + this.port, e);
+		}
+		
+		return false;
+	}
+	
+	private boolean sendWithTransport(Message msg)
+	{
+		if (this.transport == null || ! this.transport.isConnected()) {
+			if (! openTransport()) {
+				return false;
+			}
+		}
+		
+		try {
+			msg.saveChanges();
+			this.transport.sendMessage(msg, msg.getAllRecipients());
+			
+			return true;
+		} catch (SendFailedException e) {
+			_Logger.log(Level.WARNING, "SMTP server rejected message recipients.", e);
+		} catch (MessagingException e) {
+			_Logger.log(Level.WARNING, "Failed to send SMTP message.", e);
+		}
+		
+		return false;
+	}
 	
 }
@@ -11,16 +11,24 @@
 
 package programmingtheiot.gda.connection.handlers;
 
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.eclipse.californium.core.CoapResource;
 import org.eclipse.californium.core.coap.CoAP.ResponseCode;
+import org.eclipse.californium.core.coap.MediaTypeRegistry;
 import org.eclipse.californium.core.server.resources.CoapExchange;
 
 import programmingtheiot.common.ConfigConst;
 import programmingtheiot.common.ConfigUtil;
 import programmingtheiot.common.IDataMessageListener;
 import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.ActuatorData;
+import programmingtheiot.data.DataUtil;
+import programmingtheiot.data.LastValueCache;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SystemPerformanceData;
 
 
 /**
@@ -36,6 +44,10 @@ public class GenericCoapResourceHandler extends CoapResource
 	
 	// params
 	
+	private ResourceNameEnum     resource        = null;
+	private IDataMessageListener dataMsgListener = null;
+	private LastValueCache       lastValueCache  = null;
+	
 	
 	// constructors
 	
@@ -46,7 +58,9 @@ public class GenericCoapResourceHandler extends CoapResource
 	 */
 	public GenericCoapResourceHandler(ResourceNameEnum resource)
 	{
-		this(resource.getResourceName());
+		super(resource.getResourceName());
+		
+		this.resource = resource;
 	}
 	
 	/**
@@ -57,6 +71,8 @@ public class GenericCoapResourceHandler extends CoapResource
 	public GenericCoapResourceHandler(String resourceName)
 	{
 		super(resourceName);
+		
+		this.resource = ResourceNameEnum.getEnumFromValue(resourceName);
 	}
 	
 	
@@ -67,23 +83,119 @@ public class GenericCoapResourceHandler extends CoapResource
 	{
 	}
 	
+	/**
+	 * Returns the latest value(s) for this resource from the last value
+	 * cache, without touching the persistence store. The optional
+	 * 'locationID' and 'typeID' query parameters narrow the result to
+	 * one device, or one value; otherwise a JSON array is returned.
+	 * 
+	 */
 	@Override
 	public void handleGET(CoapExchange context)
 	{
+		if (this.resource == null || this.lastValueCache == null) {
+			context.respond(ResponseCode.NOT_IMPLEMENTED);
+			
+			return;
+		}
+		
+		String locationID = context.getQueryParameter(ConfigConst.LOCATION_ID_PROP);
+		String typeID = context.getQueryParameter(ConfigConst.TYPE_ID_PROP);
+		String jsonData = null;
+		
+		if (locationID != null && typeID != null) {
+			try {
+				jsonData = this.lastValueCache.getLatestJson(this.resource, locationID, Integer.parseInt(typeID));
+			} catch (NumberFormatException e) {
+				context.respond(ResponseCode.BAD_REQUEST);
+				
+				return;
+			}
+		} else {
+			jsonData = this.lastValueCache.getLatestJson(this.resource, locationID);
+		}
+		
+		if (jsonData != null) {
+			context.respond(ResponseCode.CONTENT, jsonData, MediaTypeRegistry.APPLICATION_JSON);
+		} else {
+			context.respond(ResponseCode.NOT_FOUND);
+		}
 	}
 	
 	@Override
 	public void handlePOST(CoapExchange context)
 	{
+		context.respond(handleIncomingPayload(context) ? ResponseCode.CREATED : ResponseCode.BAD_REQUEST);
 	}
 	
 	@Override
 	public void handlePUT(CoapExchange context)
 	{
+		context.respond(handleIncomingPayload(context) ? ResponseCode.CHANGED : ResponseCode.BAD_REQUEST);
 	}
 	
 	public void setDataMessageListener(IDataMessageListener listener)
 	{
+		if (listener != null) {
+			this.dataMsgListener = listener;
+		}
+	}
+	
+	/**
+	 * Sets the cache used to answer GET requests.
+	 * 
+	 * @param cache The last value cache.
+	 */
+	public void setLastValueCache(LastValueCache cache)
+	{
+		if (cache != null) {
+			this.lastValueCache = cache;
+		}
+	}
+	
+	
+	// private methods
+	
+	/**
+	 * Decodes the request payload in place and passes it to the
+	 * data message listener, using the same routing as the MQTT
+	 * connectors.
+	 * 
+	 * @param context The CoAP exchange holding the request.
+	 * @return boolean True if the listener accepted the payload.
+	 */
+	private boolean handleIncomingPayload(CoapExchange context)
+	{
+		if (this.resource == null || this.dataMsgListener == null) {
+			_Logger.fine("No resource mapping or data message listener. Ignoring request for: " + getName());
+			
+			return false;
+		}
+		
+		ByteBuffer payload = ByteBuffer.wrap(context.getRequestPayload());
+		
+		try {
+			switch (this.resource) {
+				case CDA_ACTUATOR_RESPONSE_RESOURCE:
+					ActuatorData actuatorData = DataUtil.getInstance().jsonToActuatorData(payload);
+					return this.dataMsgListener.handleActuatorCommandResponse(this.resource, actuatorData);
+				
+				case CDA_SENSOR_MSG_RESOURCE:
+					SensorData sensorData = DataUtil.getInstance().jsonToSensorData(payload);
+					return this.dataMsgListener.handleSensorMessage(this.resource, sensorData);
+				
+				case CDA_SYSTEM_PERF_MSG_RESOURCE:
+					SystemPerformanceData sysPerfData = DataUtil.getInstance().jsonToSystemPerformanceData(payload);
+					return this.dataMsgListener.handleSystemPerformanceMessage(this.resource, sysPerfData);
+				
+				default:
+					return this.dataMsgListener.handleIncomingMessage(this.resource, payload);
+			}
+		} catch (Exception e) {
+			_Logger.log(Level.WARNING, "Failed to process CoAP request for: " + getName(), e);
+			
+			return false;
+		}
 	}
 	
 }
@@ -0,0 +1,164 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * You may find it more helpful to your design to adjust the
+ * functionality, constants and interfaces (if there are any)
+ * provided within in order to meet the needs of your specific
+ * Programming the Internet of Things project.
+ */
+package programmingtheiot.gda.system;
+
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+
+/**
+ * Computes the delay before the next telemetry poll based on how
+ * much CPU and memory utilization moved since the previous sample.
+ * <p>
+ * If either delta exceeds its threshold, the delay drops to the
+ * minimum so short spikes are captured. While values remain stable,
+ * the delay backs off exponentially until it reaches the maximum.
+ * 
+ */
+public class AdaptivePollingPolicy
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(AdaptivePollingPolicy.class.getName());
+	
+	
+	// private var's
+	
+	private long  minDelayMillis = ConfigConst.DEFAULT_MIN_POLL_CYCLES * 1000L;
+	private long  maxDelayMillis = ConfigConst.DEFAULT_POLL_CYCLES * 1000L;
+	private float backoffFactor  = ConfigConst.DEFAULT_POLL_BACKOFF_FACTOR;
+	private float cpuThreshold   = ConfigConst.DEFAULT_CPU_DELTA_THRESHOLD;
+	private float memThreshold   = ConfigConst.DEFAULT_MEM_DELTA_THRESHOLD;
+	
+	private long    curDelayMillis = maxDelayMillis;
+	private float   lastCpuUtil    = 0.0f;
+	private float   lastMemUtil    = 0.0f;
+	private boolean hasSample      = false;
+	
+	
+	// constructors
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param minDelayMillis The shortest delay between polls, used while utilization is changing.
+	 * @param maxDelayMillis The longest delay between polls, used while utilization is stable.
+	 * @param backoffFactor The multiplier applied to the delay after each stable sample (must be > 1).
+	 * @param cpuThreshold The CPU utilization delta that is considered a significant change.
+	 * @param memThreshold The memory utilization delta that is considered a significant change.
+	 */
+	public AdaptivePollingPolicy(
+		long minDelayMillis, long maxDelayMillis, float backoffFactor, float cpuThreshold, float memThreshold)
+	{
+		super();
+		
+		if (minDelayMillis > 0L) {
+			this.minDelayMillis = minDelayMillis;
+		}
+		
+		if (maxDelayMillis >= this.minDelayMillis) {
+			this.maxDelayMillis = maxDelayMillis;
+		} else {
+			this.maxDelayMillis = this.minDelayMillis;
+		}
+		
+		if (backoffFactor > 1.0f) {
+			this.backoffFactor = backoffFactor;
+		}
+		
+		if (cpuThreshold >= 0.0f) {
+			this.cpuThreshold = cpuThreshold;
+		}
+		
+		if (memThreshold >= 0.0f) {
+			this.memThreshold = memThreshold;
+		}
+		
+		this.curDelayMillis = this.maxDelayMillis;
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Returns the most recently computed delay.
+	 * 
+	 * @return long The delay in milliseconds.
+	 */
+	public synchronized long getCurrentDelayMillis()
+	{
+		return this.curDelayMillis;
+	}
+	
+	/**
+	 * Returns the shortest delay this policy will produce.
+	 * 
+	 * @return long The delay in milliseconds.
+	 */
+	public long getMinDelayMillis()
+	{
+		return this.minDelayMillis;
+	}
+	
+	/**
+	 * Returns the longest delay this policy will produce.
+	 * 
+	 * @return long The delay in milliseconds.
+	 */
+	public long getMaxDelayMillis()
+	{
+		return this.maxDelayMillis;
+	}
+	
+	/**
+	 * Records the latest sample and returns the delay to wait before
+	 * taking the next one.
+	 * 
+	 * @param cpuUtil The latest CPU utilization value.
+	 * @param memUtil The latest memory utilization value.
+	 * @return long The delay in milliseconds.
+	 */
+	public synchronized long nextDelayMillis(float cpuUtil, float memUtil)
+	{
+		if (this.hasSample) {
+			float cpuDelta = Math.abs(cpuUtil - this.lastCpuUtil);
+			float memDelta = Math.abs(memUtil - this.lastMemUtil);
+			
+			if (cpuDelta > this.cpuThreshold || memDelta > this.memThreshold) {
+				this.curDelayMillis = this.minDelayMillis;
+				
+				_Logger.fine("Utilization changed. CPU delta: " + cpuDelta + ", Mem delta: " + memDelta);
+			} else {
+				long nextDelay = (long) (this.curDelayMillis * this.backoffFactor);
+				
+				this.curDelayMillis = Math.min(Math.max(nextDelay, this.minDelayMillis), this.maxDelayMillis);
+			}
+		}
+		
+		this.lastCpuUtil = cpuUtil;
+		this.lastMemUtil = memUtil;
+		this.hasSample   = true;
+		
+		return this.curDelayMillis;
+	}
+	
+	/**
+	 * Clears the sample history and resets the delay to the maximum.
+	 * 
+	 */
+	public synchronized void reset()
+	{
+		this.hasSample      = false;
+		this.curDelayMillis = this.maxDelayMillis;
+	}
+
+}
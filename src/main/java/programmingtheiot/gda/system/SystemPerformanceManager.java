@@ -11,6 +11,7 @@
 package programmingtheiot.gda.system;
 
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -25,6 +26,13 @@ import programmingtheiot.data.SystemPerformanceData;
 
 /**
  * System Performance Manager implementation with telemetry collection.
+ * <p>
+ * By default telemetry is polled at the fixed rate configured via
+ * {@link ConfigConst#POLL_CYCLES_KEY}. If adaptive polling is enabled,
+ * each poll schedules the next one using {@link AdaptivePollingPolicy},
+ * and the configured poll rate becomes the upper bound. If change-only
+ * reporting is enabled, the listener is only notified when CPU or
+ * memory utilization moves by more than the configured deadband.
  * 
  */
 public class SystemPerformanceManager
@@ -39,7 +47,18 @@ public class SystemPerformanceManager
 	private SystemMemUtilTask sysMemUtilTask = null;
 	
 	private Runnable taskRunner = null;
-	private boolean isStarted = false;
+	private volatile boolean isStarted = false;
+	
+	private IDataMessageListener dataMsgListener = null;
+	private String locationID = ConfigConst.NOT_SET;
+	
+	private AdaptivePollingPolicy pollingPolicy = null;
+	
+	private boolean enableChangeOnlyReporting = false;
+	private float   reportDeadband = ConfigConst.DEFAULT_REPORT_DEADBAND;
+	private float   lastReportedCpuUtil = 0.0f;
+	private float   lastReportedMemUtil = 0.0f;
+	private boolean hasReported = false;
 	
 	
 	// constructors
@@ -50,14 +69,47 @@ public class SystemPerformanceManager
 	 */
 	public SystemPerformanceManager()
 	{
+		ConfigUtil configUtil = ConfigUtil.getInstance();
+		
 		this.pollRate =
-			ConfigUtil.getInstance().getInteger(
+			configUtil.getInteger(
 				ConfigConst.GATEWAY_DEVICE, ConfigConst.POLL_CYCLES_KEY, ConfigConst.DEFAULT_POLL_CYCLES);
 		
 		if (this.pollRate <= 0) {
 			this.pollRate = ConfigConst.DEFAULT_POLL_CYCLES;
 		}
 		
+		this.locationID =
+			configUtil.getProperty(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.DEVICE_LOCATION_ID_KEY, ConfigConst.NOT_SET);
+		
+		if (configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_ADAPTIVE_POLLING_KEY)) {
+			int minPollRate =
+				configUtil.getInteger(
+					ConfigConst.GATEWAY_DEVICE, ConfigConst.MIN_POLL_CYCLES_KEY, ConfigConst.DEFAULT_MIN_POLL_CYCLES);
+			
+			this.pollingPolicy =
+				new AdaptivePollingPolicy(
+					minPollRate * 1000L,
+					this.pollRate * 1000L,
+					configUtil.getFloat(
+						ConfigConst.GATEWAY_DEVICE, ConfigConst.POLL_BACKOFF_FACTOR_KEY, ConfigConst.DEFAULT_POLL_BACKOFF_FACTOR),
+					configUtil.getFloat(
+						ConfigConst.GATEWAY_DEVICE, ConfigConst.CPU_DELTA_THRESHOLD_KEY, ConfigConst.DEFAULT_CPU_DELTA_THRESHOLD),
+					configUtil.getFloat(
+						ConfigConst.GATEWAY_DEVICE, ConfigConst.MEM_DELTA_THRESHOLD_KEY, ConfigConst.DEFAULT_MEM_DELTA_THRESHOLD));
+			
+			_Logger.info(
+				"Adaptive polling enabled. Min poll rate: " + minPollRate + "s, max poll rate: " + this.pollRate + "s");
+		}
+		
+		this.enableChangeOnlyReporting =
+			configUtil.getBoolean(ConfigConst.GATEWAY_DEVICE, ConfigConst.ENABLE_CHANGE_ONLY_REPORT_KEY);
+		
+		this.reportDeadband =
+			configUtil.getFloat(
+				ConfigConst.GATEWAY_DEVICE, ConfigConst.REPORT_DEADBAND_KEY, ConfigConst.DEFAULT_REPORT_DEADBAND);
+		
 		// Initialize scheduler and telemetry tasks
 		this.schedExecSvc   = Executors.newScheduledThreadPool(1);
 		this.sysCpuUtilTask = new SystemCpuUtilTask();
@@ -71,20 +123,11 @@ public class SystemPerformanceManager
 	
 	// public methods
 	
-	/**
-	 * Handles telemetry collection by retrieving CPU and memory utilization values.
-	 */
-	public void handleTelemetry()
-	{
-		float cpuUtil = this.sysCpuUtilTask.getTelemetryValue();
-		float memUtil = this.sysMemUtilTask.getTelemetryValue();
-		
-		// NOTE: you may need to change the logging level to 'info' to see the message
-		_Logger.fine("CPU utilization: " + cpuUtil + ", Mem utilization: " + memUtil);
-	}
-	
 	public void setDataMessageListener(IDataMessageListener listener)
 	{
+		if (listener != null) {
+			this.dataMsgListener = listener;
+		}
 	}
 	
 	/**
@@ -97,10 +140,16 @@ public class SystemPerformanceManager
 		if (! this.isStarted) {
 			_Logger.info("SystemPerformanceManager is starting...");
 			
-			ScheduledFuture<?> futureTask =
-				this.schedExecSvc.scheduleAtFixedRate(this.taskRunner, 1L, this.pollRate, TimeUnit.SECONDS);
-			
 			this.isStarted = true;
+			
+			if (this.pollingPolicy != null) {
+				this.pollingPolicy.reset();
+				
+				scheduleNextPoll(1000L);
+			} else {
+				ScheduledFuture<?> futureTask =
+					this.schedExecSvc.scheduleAtFixedRate(this.taskRunner, 1L, this.pollRate, TimeUnit.SECONDS);
+			}
 		} else {
 			_Logger.info("SystemPerformanceManager is already started.");
 		}
@@ -115,12 +164,96 @@ public class SystemPerformanceManager
 	 */
 	public boolean stopManager()
 	{
-		this.schedExecSvc.shutdown();
 		this.isStarted = false;
+		this.schedExecSvc.shutdown();
 		
 		_Logger.info("SystemPerformanceManager is stopped.");
 		
 		return true;
 	}
 	
-}
\ No newline at end of file
+	
+	// private methods
+	
+	/**
+	 * Handles telemetry collection by retrieving CPU and memory utilization values.
+	 * If a listener is set, it will be notified with a new {@link SystemPerformanceData}
+	 * instance unless change-only reporting suppresses the update.
+	 * <p>
+	 * Only called from the scheduler: if adaptive polling is enabled, the
+	 * next poll is scheduled before returning, so calling it from anywhere
+	 * else would start a second, parallel poll schedule.
+	 */
+	private void handleTelemetry()
+	{
+		float cpuUtil = this.sysCpuUtilTask.getTelemetryValue();
+		float memUtil = this.sysMemUtilTask.getTelemetryValue();
+		
+		// NOTE: you may need to change the logging level to 'info' to see the message
+		_Logger.fine("CPU utilization: " + cpuUtil + ", Mem utilization: " + memUtil);
+		
+		try {
+			if (this.dataMsgListener != null && isReportable(cpuUtil, memUtil)) {
+				SystemPerformanceData spd = new SystemPerformanceData();
+				spd.setLocationID(this.locationID);
+				spd.setCpuUtilization(cpuUtil);
+				spd.setMemoryUtilization(memUtil);
+				
+				this.dataMsgListener.handleSystemPerformanceMessage(
+					ResourceNameEnum.GDA_SYSTEM_PERF_MSG_RESOURCE, spd);
+			}
+		} catch (Exception e) {
+			_Logger.log(Level.WARNING, "Failed to notify listener of system performance data.", e);
+		} finally {
+			if (this.pollingPolicy != null) {
+				scheduleNextPoll(this.pollingPolicy.nextDelayMillis(cpuUtil, memUtil));
+			}
+		}
+	}
+	
+	/**
+	 * Checks if the given values should be passed to the listener. If
+	 * change-only reporting is disabled, this always returns true.
+	 * 
+	 * @param cpuUtil The latest CPU utilization value.
+	 * @param memUtil The latest memory utilization value.
+	 * @return boolean True if the values should be reported; false otherwise.
+	 */
+	private boolean isReportable(float cpuUtil, float memUtil)
+	{
+		if (this.enableChangeOnlyReporting && this.hasReported) {
+			float cpuDelta = Math.abs(cpuUtil - this.lastReportedCpuUtil);
+			float memDelta = Math.abs(memUtil - this.lastReportedMemUtil);
+			
+			if (cpuDelta < this.reportDeadband && memDelta < this.reportDeadband) {
+				_Logger.finest("Utilization within deadband. Suppressing update.");
+				
+				return false;
+			}
+		}
+		
+		this.lastReportedCpuUtil = cpuUtil;
+		this.lastReportedMemUtil = memUtil;
+		this.hasReported = true;
+		
+		return true;
+	}
+	
+	/**
+	 * Schedules a single telemetry poll after the given delay, as long
+	 * as the manager is still running.
+	 * 
+	 * @param delayMillis The delay in milliseconds.
+	 */
+	private void scheduleNextPoll(long delayMillis)
+	{
+		if (this.isStarted) {
+			try {
+				this.schedExecSvc.schedule(this.taskRunner, delayMillis, TimeUnit.MILLISECONDS);
+			} catch (RejectedExecutionException e) {
+				_Logger.fine("Scheduler is shut down. Not scheduling next poll.");
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,182 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */ 
+
+package programmingtheiot.integration.app;
+
+import static org.junit.Assert.*;
+
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import programmingtheiot.gda.app.PartitionCoordinator;
+import programmingtheiot.gda.connection.Mqttv5ClientConnector;
+import programmingtheiot.integration.connection.EmbeddedMqttBroker;
+
+/**
+ * This test case class contains very basic integration tests for
+ * PartitionCoordinator. It runs several coordinators in one JVM
+ * against an {@link EmbeddedMqttBroker}. It should not be considered
+ * complete, but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ * 
+ */
+public class PartitionCoordinatorTest
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(PartitionCoordinatorTest.class.getName());
+	
+	public static final int  PARTITION_COUNT  = 16;
+	public static final long HEARTBEAT_MILLIS = 200L;
+	public static final long TIMEOUT_MILLIS   = 600L;
+	public static final long MAX_WAIT_MILLIS  = 5000L;
+	
+	
+	// member var's
+	
+	private EmbeddedMqttBroker     mqttBroker = null;
+	private PartitionCoordinator[] coordinators = null;
+	
+	
+	// test setup methods
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		this.mqttBroker = new EmbeddedMqttBroker();
+		assertTrue(this.mqttBroker.start());
+		
+		this.coordinators = new PartitionCoordinator[] {
+			createCoordinator("gdaA"), createCoordinator("gdaB"), createCoordinator("gdaC")
+		};
+	}
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		for (PartitionCoordinator coordinator : this.coordinators) {
+			coordinator.stopCoordinator();
+		}
+		
+		this.mqttBroker.stop();
+	}
+	
+	
+	// test methods
+	
+	@Test
+	public void testOwnershipConvergesAndRebalances()
+	{
+		for (PartitionCoordinator coordinator : this.coordinators) {
+			assertTrue(coordinator.startCoordinator());
+		}
+		
+		assertTrue(waitForMembers(3, this.coordinators));
+		assertTrue(isCompleteAndDisjoint(this.coordinators));
+		
+		for (PartitionCoordinator coordinator : this.coordinators) {
+			_Logger.info(coordinator.getInstanceID() + " owns " + coordinator.getOwnedPartitions());
+			
+			assertFalse(coordinator.getOwnedPartitions().isEmpty());
+		}
+		
+		// an orderly stop clears the retained heartbeat, so the others take over right away
+		long startMillis = System.currentTimeMillis();
+		
+		assertTrue(this.coordinators[2].stopCoordinator());
+		
+		PartitionCoordinator[] remaining = { this.coordinators[0], this.coordinators[1] };
+		
+		assertTrue(waitForMembers(2, remaining));
+		assertTrue(isCompleteAndDisjoint(remaining));
+		
+		_Logger.info("Rebalanced after stop in " + (System.currentTimeMillis() - startMillis) + " ms");
+	}
+	
+	@Test
+	public void testLateJoinerReceivesRetainedHeartbeats()
+	{
+		assertTrue(this.coordinators[0].startCoordinator());
+		assertTrue(this.coordinators[1].startCoordinator());
+		assertTrue(waitForMembers(2, this.coordinators[0], this.coordinators[1]));
+		
+		assertTrue(this.coordinators[2].startCoordinator());
+		assertTrue(waitForMembers(3, this.coordinators));
+		assertTrue(isCompleteAndDisjoint(this.coordinators));
+	}
+	
+	
+	// private methods
+	
+	private PartitionCoordinator createCoordinator(String instanceID)
+	{
+		return new PartitionCoordinator(
+			instanceID, PARTITION_COUNT, HEARTBEAT_MILLIS, TIMEOUT_MILLIS,
+			new Mqttv5ClientConnector(EmbeddedMqttBroker.CONFIG_SECTION));
+	}
+	
+	private boolean isCompleteAndDisjoint(PartitionCoordinator ... members)
+	{
+		for (int p = 0; p < PARTITION_COUNT; p++) {
+			int owners = 0;
+			
+			for (PartitionCoordinator member : members) {
+				if (member.getPartitionTable().isPartitionOwned(p)) {
+					owners++;
+				}
+			}
+			
+			if (owners != 1) {
+				_Logger.warning("Partition " + p + " has " + owners + " owners.");
+				
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private boolean waitForMembers(int count, PartitionCoordinator ... members)
+	{
+		long endMillis = System.currentTimeMillis() + MAX_WAIT_MILLIS;
+		
+		while (System.currentTimeMillis() < endMillis) {
+			boolean converged = true;
+			
+			for (PartitionCoordinator member : members) {
+				if (member.getPartitionTable().getMembers().size() != count) {
+					converged = false;
+				}
+			}
+			
+			if (converged) {
+				return true;
+			}
+			
+			try {
+				Thread.sleep(50L);
+			} catch (InterruptedException e) {
+				return false;
+			}
+		}
+		
+		return false;
+	}
+
+}
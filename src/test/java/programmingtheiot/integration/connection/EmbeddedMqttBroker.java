@@ -0,0 +1,1375 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.integration.connection;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+
+/**
+ * Minimal in-process MQTT 3.1.1 / 5 broker for offline, reproducible
+ * connector tests and benchmarks. It starts in a few milliseconds and
+ * needs nothing outside the JVM.
+ * <p>
+ * Supported: QoS 0, 1 and 2 in both directions (including DUP
+ * handling and redelivery of in-flight messages on session resume),
+ * retained messages, clean and persistent sessions (v3 clean session
+ * flag, v5 clean start + session expiry), will messages, '+' / '#'
+ * wildcards, v5 shared subscriptions ('$share/{group}/{filter}',
+ * round-robin), inbound v5 topic aliases, and forwarding of v5 user
+ * properties, message expiry, content type and response topic /
+ * correlation data.
+ * <p>
+ * Not supported: TLS, authentication, AUTH packets, outbound topic
+ * aliases, subscription identifiers and flow control towards clients.
+ * <p>
+ * Impairments can be injected for testing: a fixed per-packet latency
+ * applied to every packet received from a client, and a loss rate
+ * applied to QoS 0 deliveries (QoS 1 and 2 are what the protocol
+ * guarantees, so they're never dropped). The loss generator is seeded,
+ * so runs are repeatable.
+ * 
+ */
+public class EmbeddedMqttBroker
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(EmbeddedMqttBroker.class.getName());
+	
+	public static final int CONNECT     = 1;
+	public static final int CONNACK     = 2;
+	public static final int PUBLISH     = 3;
+	public static final int PUBACK      = 4;
+	public static final int PUBREC      = 5;
+	public static final int PUBREL      = 6;
+	public static final int PUBCOMP     = 7;
+	public static final int SUBSCRIBE   = 8;
+	public static final int SUBACK      = 9;
+	public static final int UNSUBSCRIBE = 10;
+	public static final int UNSUBACK    = 11;
+	public static final int PINGREQ     = 12;
+	public static final int PINGRESP    = 13;
+	public static final int DISCONNECT  = 14;
+	public static final int AUTH        = 15;
+	
+	/**
+	 * The configuration section connectors should use to reach this broker.
+	 */
+	public static final String CONFIG_SECTION = "Mqtt.EmbeddedBroker";
+	
+	public static final int  DEFAULT_PORT = 11883;
+	public static final int  DEFAULT_TOPIC_ALIAS_MAX = 16;
+	public static final long DEFAULT_RANDOM_SEED     = 42L;
+	
+	private static final String SHARED_PREFIX = "$share/";
+	
+	// v5 property identifiers used by the broker
+	private static final int PROP_MSG_EXPIRY      = 0x02;
+	private static final int PROP_SESSION_EXPIRY  = 0x11;
+	private static final int PROP_ASSIGNED_ID     = 0x12;
+	private static final int PROP_RECEIVE_MAX     = 0x21;
+	private static final int PROP_TOPIC_ALIAS_MAX = 0x22;
+	private static final int PROP_TOPIC_ALIAS     = 0x23;
+	
+	
+	// private var's
+	
+	private int          port = 0;
+	private ServerSocket serverSocket = null;
+	private Thread       acceptThread = null;
+	private int          topicAliasMax = DEFAULT_TOPIC_ALIAS_MAX;
+	private int          receiveMax = 0;
+	
+	private volatile boolean isStarted = false;
+	private volatile long    latencyMillis = 0L;
+	private volatile double  lossRate = 0.0d;
+	
+	private Random random = new Random(DEFAULT_RANDOM_SEED);
+	
+	private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+	private final Map<String, Message> retainedMsgs = new ConcurrentHashMap<>();
+	private final Set<Connection>      connections = ConcurrentHashMap.newKeySet();
+	private final Map<String, AtomicInteger> sharedCursors = new ConcurrentHashMap<>();
+	
+	private final AtomicLongArray packetsReceived = new AtomicLongArray(16);
+	private final AtomicLong      msgsDelivered = new AtomicLong();
+	private final AtomicLong      msgsDropped = new AtomicLong();
+	private final AtomicLong      msgsAliased = new AtomicLong();
+	private final AtomicInteger   connCounter = new AtomicInteger();
+	
+	
+	// constructors
+	
+	/**
+	 * Default. Uses the port from the {@link #CONFIG_SECTION} section, which
+	 * is also what connectors created with that section connect to.
+	 * 
+	 */
+	public EmbeddedMqttBroker()
+	{
+		this(ConfigUtil.getInstance().getInteger(CONFIG_SECTION, ConfigConst.PORT_KEY, DEFAULT_PORT));
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param port The port to listen on (0 for an ephemeral port).
+	 */
+	public EmbeddedMqttBroker(int port)
+	{
+		super();
+		
+		this.port = port;
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Returns the number of currently open client connections.
+	 * 
+	 * @return int
+	 */
+	public int getConnectionCount()
+	{
+		return this.connections.size();
+	}
+	
+	/**
+	 * Returns the number of PUBLISH packets received from MQTT 5 clients
+	 * that carried a previously established topic alias instead of the
+	 * topic name.
+	 * 
+	 * @return long
+	 */
+	public long getAliasedPublishCount()
+	{
+		return this.msgsAliased.get();
+	}
+	
+	/**
+	 * Returns the number of PUBLISH packets delivered to subscribers.
+	 * 
+	 * @return long
+	 */
+	public long getDeliveredCount()
+	{
+		return this.msgsDelivered.get();
+	}
+	
+	/**
+	 * Returns the number of deliveries dropped by injected loss, or
+	 * because no session could accept them.
+	 * 
+	 * @return long
+	 */
+	public long getDroppedCount()
+	{
+		return this.msgsDropped.get();
+	}
+	
+	/**
+	 * Returns the number of packets of the given type received from clients.
+	 * 
+	 * @param packetType The MQTT control packet type (e.g. {@link #PINGREQ}).
+	 * @return long
+	 */
+	public long getPacketCount(int packetType)
+	{
+		return this.packetsReceived.get(packetType & 0x0F);
+	}
+	
+	/**
+	 * Returns the port the broker is listening on.
+	 * 
+	 * @return int
+	 */
+	public int getPort()
+	{
+		return (this.serverSocket != null ? this.serverSocket.getLocalPort() : this.port);
+	}
+	
+	/**
+	 * Returns the number of retained messages.
+	 * 
+	 * @return int
+	 */
+	public int getRetainedCount()
+	{
+		return this.retainedMsgs.size();
+	}
+	
+	/**
+	 * Returns the number of sessions (connected or persisted).
+	 * 
+	 * @return int
+	 */
+	public int getSessionCount()
+	{
+		return this.sessions.size();
+	}
+	
+	/**
+	 * Returns true if the broker is accepting connections.
+	 * 
+	 * @return boolean
+	 */
+	public boolean isStarted()
+	{
+		return this.isStarted;
+	}
+	
+	/**
+	 * Sets the latency added to every packet received from a client.
+	 * 
+	 * @param latencyMillis The latency in milliseconds (0 to disable).
+	 */
+	public void setLatencyMillis(long latencyMillis)
+	{
+		this.latencyMillis = Math.max(0L, latencyMillis);
+	}
+	
+	/**
+	 * Sets the fraction of QoS 0 deliveries to drop.
+	 * 
+	 * @param lossRate The loss rate, from 0.0 (none) to 1.0 (all).
+	 * @param seed The random seed, so runs are repeatable.
+	 */
+	public void setLossRate(double lossRate, long seed)
+	{
+		synchronized (this.random) {
+			this.random.setSeed(seed);
+		}
+		
+		this.lossRate = Math.min(1.0d, Math.max(0.0d, lossRate));
+	}
+	
+	/**
+	 * Sets the receive maximum advertised to MQTT 5 clients, i.e. how many
+	 * unacknowledged QoS 1 / 2 publishes each client may have in flight.
+	 * Must be called before {@link #start()}.
+	 * 
+	 * @param receiveMax The maximum (0 to not advertise one).
+	 */
+	public void setReceiveMax(int receiveMax)
+	{
+		this.receiveMax = Math.max(0, Math.min(0xFFFF, receiveMax));
+	}
+	
+	/**
+	 * Sets the topic alias maximum advertised to MQTT 5 clients. Must be
+	 * called before {@link #start()}.
+	 * 
+	 * @param topicAliasMax The maximum (0 to disable inbound aliases).
+	 */
+	public void setTopicAliasMax(int topicAliasMax)
+	{
+		this.topicAliasMax = Math.max(0, Math.min(0xFFFF, topicAliasMax));
+	}
+	
+	/**
+	 * Binds the listening socket on the loopback interface and starts
+	 * accepting connections.
+	 * 
+	 * @return boolean True on success; false otherwise.
+	 */
+	public synchronized boolean start()
+	{
+		if (this.isStarted) {
+			return true;
+		}
+		
+		try {
+			this.serverSocket = new ServerSocket();
+			this.serverSocket.setReuseAddress(true);
+			this.serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), this.port));
+			
+			this.isStarted = true;
+			
+			this.acceptThread = new Thread(this::acceptConnections, "EmbeddedMqttBroker-accept");
+			this.acceptThread.setDaemon(true);
+			this.acceptThread.start();
+			
+			_Logger.info("Embedded MQTT broker started on port " + getPort());
+			
+			return true;
+		} catch (IOException e) {
+			_Logger.log(Level.SEVERE, "Failed to start embedded MQTT broker on port " + this.port, e);
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Closes all connections and the listening socket, and discards
+	 * all sessions and retained messages. Wills are not published.
+	 * 
+	 */
+	public synchronized void stop()
+	{
+		if (! this.isStarted) {
+			return;
+		}
+		
+		this.isStarted = false;
+		
+		try {
+			this.serverSocket.close();
+			
+			// the listening socket is only released once the blocked accept() returns
+			this.acceptThread.join(1000L);
+		} catch (IOException | InterruptedException e) {
+			// ignore
+		}
+		
+		for (Connection conn : this.connections) {
+			conn.will = null;
+			conn.close();
+		}
+		
+		this.connections.clear();
+		this.sessions.clear();
+		this.retainedMsgs.clear();
+		
+		_Logger.info("Embedded MQTT broker stopped.");
+	}
+	
+	/**
+	 * Checks if the topic name matches the topic filter.
+	 * 
+	 * @param filter The topic filter, which may contain '+' and '#'.
+	 * @param topic The topic name.
+	 * @return boolean
+	 */
+	public static boolean matches(String filter, String topic)
+	{
+		// wildcards at the first level don't match '$' topics
+		if (topic.startsWith("$") && (filter.startsWith("+") || filter.startsWith("#"))) {
+			return false;
+		}
+		
+		int f = 0;
+		int t = 0;
+		int fLen = filter.length();
+		int tLen = topic.length();
+		
+		while (f < fLen) {
+			char c = filter.charAt(f);
+			
+			if (c == '#') {
+				return true;
+			}
+			
+			if (c == '+') {
+				while (t < tLen && topic.charAt(t) != '/') {
+					t++;
+				}
+				
+				f++;
+			} else {
+				if (t >= tLen) {
+					// 'a/b/#' also matches 'a/b'
+					return (filter.startsWith("/#", f) && f + 2 == fLen);
+				}
+				
+				if (topic.charAt(t) != c) {
+					return false;
+				}
+				
+				f++;
+				t++;
+			}
+		}
+		
+		return (t == tLen);
+	}
+	
+	
+	// private methods
+	
+	private void acceptConnections()
+	{
+		while (this.isStarted) {
+			try {
+				Socket socket = this.serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				
+				Connection conn = new Connection(socket);
+				this.connections.add(conn);
+				
+				Thread thread = new Thread(conn::run, "EmbeddedMqttBroker-conn-" + this.connCounter.incrementAndGet());
+				thread.setDaemon(true);
+				thread.start();
+			} catch (IOException e) {
+				if (this.isStarted) {
+					_Logger.log(Level.WARNING, "Failed to accept connection.", e);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Stores or clears the retained message (if flagged), then delivers
+	 * the message to all matching subscriptions.
+	 * 
+	 * @param msg The message to route.
+	 * @param sender The publishing session (may be null for wills).
+	 */
+	private void route(Message msg, Session sender)
+	{
+		if (msg.retain) {
+			if (msg.payload.length == 0) {
+				this.retainedMsgs.remove(msg.topic);
+			} else {
+				this.retainedMsgs.put(msg.topic, msg);
+			}
+		}
+		
+		Map<String, List<Session>> sharedGroups = null;
+		
+		for (Session session : this.sessions.values()) {
+			int     maxQos = -1;
+			boolean retainAsPublished = false;
+			
+			for (Map.Entry<String, Subscription> entry : session.subs.entrySet()) {
+				Subscription sub = entry.getValue();
+				
+				if (! matches(sub.filter, msg.topic)) {
+					continue;
+				}
+				
+				if (sub.shareGroup != null) {
+					if (sharedGroups == null) {
+						sharedGroups = new LinkedHashMap<>();
+					}
+					
+					sharedGroups.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(session);
+				} else if (! (sub.noLocal && session == sender)) {
+					// overlapping subscriptions result in a single delivery at the highest QoS
+					if (sub.qos > maxQos) {
+						maxQos = sub.qos;
+					}
+					
+					retainAsPublished |= sub.retainAsPublished;
+				}
+			}
+			
+			if (maxQos >= 0) {
+				session.deliver(msg, maxQos, retainAsPublished && msg.retain);
+			}
+		}
+		
+		if (sharedGroups != null) {
+			for (Map.Entry<String, List<Session>> entry : sharedGroups.entrySet()) {
+				List<Session> members = entry.getValue();
+				
+				int index = Math.floorMod(
+					this.sharedCursors.computeIfAbsent(entry.getKey(), k -> new AtomicInteger()).getAndIncrement(),
+					members.size());
+				
+				Session session = members.get(index);
+				Subscription sub = session.subs.get(entry.getKey());
+				
+				if (sub != null) {
+					session.deliver(msg, sub.qos, false);
+				}
+			}
+		}
+	}
+	
+	private boolean isLost()
+	{
+		if (this.lossRate <= 0.0d) {
+			return false;
+		}
+		
+		synchronized (this.random) {
+			return (this.random.nextDouble() < this.lossRate);
+		}
+	}
+	
+	
+	// packet helpers
+	
+	private static int readVarInt(ByteBuffer buf)
+	{
+		int value = 0;
+		int shift = 0;
+		int b;
+		
+		do {
+			b = buf.get() & 0xFF;
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		
+		return value;
+	}
+	
+	private static String readString(ByteBuffer buf)
+	{
+		byte[] bytes = readBinary(buf);
+		
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	private static byte[] readBinary(ByteBuffer buf)
+	{
+		byte[] bytes = new byte[buf.getShort() & 0xFFFF];
+		buf.get(bytes);
+		
+		return bytes;
+	}
+	
+	private static void writeVarInt(ByteArrayOutputStream out, int value)
+	{
+		do {
+			int b = value & 0x7F;
+			value >>>= 7;
+			
+			out.write(value > 0 ? b | 0x80 : b);
+		} while (value > 0);
+	}
+	
+	private static void writeShort(ByteArrayOutputStream out, int value)
+	{
+		out.write((value >>> 8) & 0xFF);
+		out.write(value & 0xFF);
+	}
+	
+	private static void writeString(ByteArrayOutputStream out, String value)
+	{
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		
+		writeShort(out, bytes.length);
+		out.write(bytes, 0, bytes.length);
+	}
+	
+	/**
+	 * Parses a v5 property block. Numeric properties are returned in the
+	 * map; properties that must be forwarded with a message (payload
+	 * format, message expiry, content type, response topic, correlation
+	 * data and user properties) are copied verbatim into 'forward'.
+	 * 
+	 * @param buf The buffer, positioned at the property length.
+	 * @param forward Receives forwardable properties (may be null).
+	 * @return Map<Integer, Long> The numeric property values.
+	 */
+	private static Map<Integer, Long> readProperties(ByteBuffer buf, ByteArrayOutputStream forward)
+	{
+		Map<Integer, Long> numericProps = new HashMap<>();
+		
+		int len = readVarInt(buf);
+		int end = buf.position() + len;
+		
+		while (buf.position() < end) {
+			int start = buf.position();
+			int id = readVarInt(buf);
+			
+			switch (id) {
+				// byte
+				case 0x01: case 0x17: case 0x19: case 0x24: case 0x25: case 0x28: case 0x29: case 0x2A:
+					numericProps.put(id, (long) (buf.get() & 0xFF));
+					break;
+				
+				// two byte integer
+				case 0x13: case 0x21: case 0x22: case 0x23:
+					numericProps.put(id, (long) (buf.getShort() & 0xFFFF));
+					break;
+				
+				// four byte integer
+				case 0x02: case 0x11: case 0x18: case 0x27:
+					numericProps.put(id, buf.getInt() & 0xFFFFFFFFL);
+					break;
+				
+				// variable byte integer
+				case 0x0B:
+					numericProps.put(id, (long) readVarInt(buf));
+					break;
+				
+				// UTF-8 string or binary data
+				case 0x03: case 0x08: case 0x09: case 0x12: case 0x15: case 0x16: case 0x1A: case 0x1C: case 0x1F:
+					readBinary(buf);
+					break;
+				
+				// UTF-8 string pair
+				case 0x26:
+					readBinary(buf);
+					readBinary(buf);
+					break;
+				
+				default:
+					throw new IllegalArgumentException("Malformed property: " + id);
+			}
+			
+			if (forward != null && (id <= 0x03 || id == 0x08 || id == 0x09 || id == 0x26)) {
+				forward.write(buf.array(), buf.arrayOffset() + start, buf.position() - start);
+			}
+		}
+		
+		return numericProps;
+	}
+	
+	
+	// inner classes
+	
+	/**
+	 * An application message as routed by the broker.
+	 */
+	private static class Message
+	{
+		final String  topic;
+		final byte[]  payload;
+		final int     qos;
+		final boolean retain;
+		final byte[]  props;
+		final long    expiresAtMillis;
+		
+		Message(String topic, byte[] payload, int qos, boolean retain, byte[] props, long expirySecs)
+		{
+			this.topic   = topic;
+			this.payload = payload;
+			this.qos     = qos;
+			this.retain  = retain;
+			this.props   = (props != null ? props : new byte[0]);
+			this.expiresAtMillis = (expirySecs > 0 ? System.currentTimeMillis() + expirySecs * 1000L : 0L);
+		}
+		
+		boolean isExpired()
+		{
+			return (this.expiresAtMillis > 0L && System.currentTimeMillis() > this.expiresAtMillis);
+		}
+	}
+	
+	/**
+	 * A single subscription within a session.
+	 */
+	private static class Subscription
+	{
+		String  filter;
+		String  shareGroup;
+		int     qos;
+		boolean noLocal;
+		boolean retainAsPublished;
+	}
+	
+	/**
+	 * An outbound QoS 1 or 2 message awaiting acknowledgement.
+	 */
+	private static class InFlight
+	{
+		final Message msg;
+		final int     qos;
+		final boolean retain;
+		boolean       released = false;
+		
+		InFlight(Message msg, int qos, boolean retain)
+		{
+			this.msg    = msg;
+			this.qos    = qos;
+			this.retain = retain;
+		}
+	}
+	
+	/**
+	 * Client session state, which may outlive a connection.
+	 */
+	private class Session
+	{
+		final String clientID;
+		final Map<String, Subscription> subs = new ConcurrentHashMap<>();
+		final Map<Integer, InFlight>    inFlight = new LinkedHashMap<>();
+		final Set<Integer>              inboundQos2Ids = new HashSet<>();
+		final Deque<Message>            queued = new ArrayDeque<>();
+		
+		volatile Connection conn = null;
+		
+		boolean persistent = false;
+		long    expirySecs = 0L;
+		long    disconnectedAtMillis = 0L;
+		int     nextPacketID = 1;
+		
+		Session(String clientID)
+		{
+			this.clientID = clientID;
+		}
+		
+		boolean isExpired()
+		{
+			if (this.conn != null || this.expirySecs == 0xFFFFFFFFL) {
+				return false;
+			}
+			
+			return (System.currentTimeMillis() - this.disconnectedAtMillis > this.expirySecs * 1000L);
+		}
+		
+		/**
+		 * Delivers (or queues, if persistent and offline) the message at the
+		 * lower of the message and subscription QoS.
+		 */
+		synchronized void deliver(Message msg, int subQos, boolean retain)
+		{
+			int qos = Math.min(msg.qos, subQos);
+			
+			if (msg.isExpired()) {
+				return;
+			}
+			
+			Connection conn = this.conn;
+			
+			if (conn == null) {
+				if (this.persistent && qos > 0) {
+					this.queued.add(new Message(msg.topic, msg.payload, qos, retain, msg.props, 0L));
+				} else {
+					EmbeddedMqttBroker.this.msgsDropped.incrementAndGet();
+				}
+				
+				return;
+			}
+			
+			if (qos == 0) {
+				if (isLost()) {
+					EmbeddedMqttBroker.this.msgsDropped.incrementAndGet();
+				} else {
+					conn.sendPublish(msg, 0, retain, 0, false);
+				}
+				
+				return;
+			}
+			
+			int packetID = allocatePacketID();
+			
+			this.inFlight.put(packetID, new InFlight(msg, qos, retain));
+			
+			conn.sendPublish(msg, qos, retain, packetID, false);
+		}
+		
+		/**
+		 * Resends unacknowledged messages and flushes queued messages after
+		 * a session resumes.
+		 */
+		synchronized void resume(Connection conn)
+		{
+			for (Map.Entry<Integer, InFlight> entry : this.inFlight.entrySet()) {
+				InFlight inFlight = entry.getValue();
+				
+				if (inFlight.released) {
+					conn.sendAck(PUBREL, entry.getKey());
+				} else {
+					conn.sendPublish(inFlight.msg, inFlight.qos, inFlight.retain, entry.getKey(), true);
+				}
+			}
+			
+			while (! this.queued.isEmpty()) {
+				Message msg = this.queued.poll();
+				
+				deliver(msg, msg.qos, msg.retain);
+			}
+		}
+		
+		synchronized void handleAck(int packetType, int packetID)
+		{
+			switch (packetType) {
+				case PUBACK:
+				case PUBCOMP:
+					this.inFlight.remove(packetID);
+					break;
+				
+				case PUBREC:
+					InFlight inFlight = this.inFlight.get(packetID);
+					
+					if (inFlight != null) {
+						inFlight.released = true;
+					}
+					
+					Connection conn = this.conn;
+					
+					if (conn != null) {
+						conn.sendAck(PUBREL, packetID);
+					}
+					
+					break;
+			}
+		}
+		
+		private int allocatePacketID()
+		{
+			do {
+				this.nextPacketID = (this.nextPacketID % 0xFFFF) + 1;
+			} while (this.inFlight.containsKey(this.nextPacketID));
+			
+			return this.nextPacketID;
+		}
+	}
+	
+	/**
+	 * A single client network connection.
+	 */
+	private class Connection
+	{
+		final Socket socket;
+		
+		DataInputStream in = null;
+		OutputStream    out = null;
+		Session         session = null;
+		Message         will = null;
+		int             protocolLevel = 4;
+		boolean         isClosed = false;
+		
+		final Map<Integer, String> inboundAliases = new HashMap<>();
+		
+		Connection(Socket socket)
+		{
+			this.socket = socket;
+		}
+		
+		boolean isV5()
+		{
+			return (this.protocolLevel == 5);
+		}
+		
+		void run()
+		{
+			try {
+				this.in  = new DataInputStream(this.socket.getInputStream());
+				this.out = new BufferedOutputStream(this.socket.getOutputStream());
+				
+				while (! this.isClosed) {
+					int header = this.in.read();
+					
+					if (header < 0) {
+						break;
+					}
+					
+					int remainingLen = 0;
+					int shift = 0;
+					int b;
+					
+					do {
+						b = this.in.readUnsignedByte();
+						remainingLen |= (b & 0x7F) << shift;
+						shift += 7;
+					} while ((b & 0x80) != 0);
+					
+					byte[] body = new byte[remainingLen];
+					this.in.readFully(body);
+					
+					int packetType = header >>> 4;
+					
+					EmbeddedMqttBroker.this.packetsReceived.incrementAndGet(packetType);
+					
+					long latency = EmbeddedMqttBroker.this.latencyMillis;
+					
+					if (latency > 0L) {
+						Thread.sleep(latency);
+					}
+					
+					if (this.session == null && packetType != CONNECT) {
+						throw new IOException("Protocol error: first packet must be CONNECT");
+					}
+					
+					handlePacket(packetType, header & 0x0F, ByteBuffer.wrap(body));
+				}
+			} catch (EOFException | SocketTimeoutException e) {
+				_Logger.fine("Connection closed by client or keep alive expired: " + this.socket);
+			} catch (Exception e) {
+				if (! this.isClosed) {
+					_Logger.log(Level.FINE, "Connection error: " + this.socket, e);
+				}
+			} finally {
+				closeAbnormally();
+			}
+		}
+		
+		void handlePacket(int packetType, int flags, ByteBuffer buf) throws IOException
+		{
+			switch (packetType) {
+				case CONNECT:
+					handleConnect(buf);
+					break;
+				
+				case PUBLISH:
+					handlePublish(flags, buf);
+					break;
+				
+				case PUBACK:
+				case PUBREC:
+				case PUBCOMP:
+					this.session.handleAck(packetType, buf.getShort() & 0xFFFF);
+					break;
+				
+				case PUBREL:
+					int packetID = buf.getShort() & 0xFFFF;
+					
+					synchronized (this.session) {
+						this.session.inboundQos2Ids.remove(packetID);
+					}
+					
+					sendAck(PUBCOMP, packetID);
+					break;
+				
+				case SUBSCRIBE:
+					handleSubscribe(buf);
+					break;
+				
+				case UNSUBSCRIBE:
+					handleUnsubscribe(buf);
+					break;
+				
+				case PINGREQ:
+					send(PINGRESP << 4, new ByteArrayOutputStream());
+					break;
+				
+				case DISCONNECT:
+					int reasonCode = (isV5() && buf.hasRemaining() ? buf.get() & 0xFF : 0);
+					
+					// v5 reason code 0x04 is 'disconnect with will message'
+					if (reasonCode != 0x04) {
+						this.will = null;
+					}
+					
+					close();
+					break;
+				
+				default:
+					throw new IOException("Unsupported packet type: " + packetType);
+			}
+		}
+		
+		void handleConnect(ByteBuffer buf) throws IOException
+		{
+			readString(buf);
+			
+			this.protocolLevel = buf.get() & 0xFF;
+			
+			int connectFlags = buf.get() & 0xFF;
+			int keepAlive = buf.getShort() & 0xFFFF;
+			
+			if (this.protocolLevel < 3 || this.protocolLevel > 5) {
+				ByteArrayOutputStream connack = new ByteArrayOutputStream();
+				connack.write(0);
+				connack.write(0x01);
+				send(CONNACK << 4, connack);
+				close();
+				
+				return;
+			}
+			
+			long sessionExpirySecs = 0L;
+			
+			if (isV5()) {
+				Long expiry = readProperties(buf, null).get(PROP_SESSION_EXPIRY);
+				
+				if (expiry != null) {
+					sessionExpirySecs = expiry;
+				}
+			}
+			
+			String  clientID = readString(buf);
+			boolean assignedID = false;
+			
+			if (clientID.isEmpty()) {
+				clientID = "embedded-" + System.nanoTime();
+				assignedID = true;
+			}
+			
+			if ((connectFlags & 0x04) != 0) {
+				ByteArrayOutputStream willProps = null;
+				long willExpirySecs = 0L;
+				
+				if (isV5()) {
+					willProps = new ByteArrayOutputStream();
+					
+					Long expiry = readProperties(buf, willProps).get(PROP_MSG_EXPIRY);
+					
+					if (expiry != null) {
+						willExpirySecs = expiry;
+					}
+				}
+				
+				String willTopic = readString(buf);
+				byte[] willPayload = readBinary(buf);
+				
+				this.will = new Message(
+					willTopic, willPayload, (connectFlags >>> 3) & 0x03, (connectFlags & 0x20) != 0,
+					(willProps != null ? willProps.toByteArray() : null), willExpirySecs);
+			}
+			
+			boolean cleanStart = ((connectFlags & 0x02) != 0);
+			boolean persistent = (isV5() ? sessionExpirySecs > 0 : ! cleanStart);
+			boolean sessionPresent = false;
+			
+			if (keepAlive > 0) {
+				this.socket.setSoTimeout(keepAlive * 1500);
+			}
+			
+			Session prevSession = EmbeddedMqttBroker.this.sessions.get(clientID);
+			Connection prevConn = (prevSession != null ? prevSession.conn : null);
+			
+			if (prevConn != null) {
+				// session takeover: the existing connection is closed (outside the
+				// sessions lock, since publishing its will delivers to other sessions)
+				prevConn.closeAbnormally();
+			}
+			
+			synchronized (EmbeddedMqttBroker.this.sessions) {
+				Session session = EmbeddedMqttBroker.this.sessions.get(clientID);
+				
+				if (session == null || cleanStart || session.isExpired()) {
+					session = new Session(clientID);
+				} else {
+					sessionPresent = true;
+				}
+				
+				session.persistent = persistent;
+				session.expirySecs = (isV5() ? sessionExpirySecs : (persistent ? 0xFFFFFFFFL : 0L));
+				session.conn = this;
+				
+				EmbeddedMqttBroker.this.sessions.put(clientID, session);
+				
+				this.session = session;
+			}
+			
+			ByteArrayOutputStream connack = new ByteArrayOutputStream();
+			connack.write(sessionPresent ? 1 : 0);
+			connack.write(0);
+			
+			if (isV5()) {
+				ByteArrayOutputStream props = new ByteArrayOutputStream();
+				
+				if (EmbeddedMqttBroker.this.topicAliasMax > 0) {
+					props.write(PROP_TOPIC_ALIAS_MAX);
+					writeShort(props, EmbeddedMqttBroker.this.topicAliasMax);
+				}
+				
+				if (EmbeddedMqttBroker.this.receiveMax > 0) {
+					props.write(PROP_RECEIVE_MAX);
+					writeShort(props, EmbeddedMqttBroker.this.receiveMax);
+				}
+				
+				if (assignedID) {
+					props.write(PROP_ASSIGNED_ID);
+					writeString(props, clientID);
+				}
+				
+				writeVarInt(connack, props.size());
+				props.writeTo(connack);
+			}
+			
+			send(CONNACK << 4, connack);
+			
+			if (sessionPresent) {
+				this.session.resume(this);
+			}
+		}
+		
+		void handlePublish(int flags, ByteBuffer buf) throws IOException
+		{
+			int     qos = (flags >>> 1) & 0x03;
+			boolean retain = ((flags & 0x01) != 0);
+			String  topic = readString(buf);
+			int     packetID = (qos > 0 ? buf.getShort() & 0xFFFF : 0);
+			
+			ByteArrayOutputStream forwardProps = null;
+			long expirySecs = 0L;
+			
+			if (isV5()) {
+				forwardProps = new ByteArrayOutputStream();
+				
+				Map<Integer, Long> props = readProperties(buf, forwardProps);
+				Long alias = props.get(PROP_TOPIC_ALIAS);
+				Long expiry = props.get(PROP_MSG_EXPIRY);
+				
+				if (alias != null) {
+					if (topic.isEmpty()) {
+						topic = this.inboundAliases.get(alias.intValue());
+						
+						if (topic == null) {
+							throw new IOException("Protocol error: unknown topic alias " + alias);
+						}
+						
+						EmbeddedMqttBroker.this.msgsAliased.incrementAndGet();
+					} else {
+						this.inboundAliases.put(alias.intValue(), topic);
+					}
+				}
+				
+				if (expiry != null) {
+					expirySecs = expiry;
+				}
+			}
+			
+			byte[] payload = new byte[buf.remaining()];
+			buf.get(payload);
+			
+			Message msg = new Message(
+				topic, payload, qos, retain, (forwardProps != null ? forwardProps.toByteArray() : null), expirySecs);
+			
+			switch (qos) {
+				case 0:
+					route(msg, this.session);
+					break;
+				
+				case 1:
+					route(msg, this.session);
+					sendAck(PUBACK, packetID);
+					break;
+				
+				default:
+					boolean isNew;
+					
+					synchronized (this.session) {
+						isNew = this.session.inboundQos2Ids.add(packetID);
+					}
+					
+					// a DUP of an unreleased QoS 2 message must not be delivered twice
+					if (isNew) {
+						route(msg, this.session);
+					}
+					
+					sendAck(PUBREC, packetID);
+			}
+		}
+		
+		void handleSubscribe(ByteBuffer buf) throws IOException
+		{
+			int packetID = buf.getShort() & 0xFFFF;
+			
+			if (isV5()) {
+				readProperties(buf, null);
+			}
+			
+			ByteArrayOutputStream suback = new ByteArrayOutputStream();
+			writeShort(suback, packetID);
+			
+			if (isV5()) {
+				writeVarInt(suback, 0);
+			}
+			
+			List<Subscription> retainedSubs = new ArrayList<>();
+			
+			while (buf.hasRemaining()) {
+				String fullFilter = readString(buf);
+				int    options = buf.get() & 0xFF;
+				
+				Subscription sub = new Subscription();
+				sub.filter = fullFilter;
+				sub.qos = Math.min(options & 0x03, 2);
+				sub.noLocal = isV5() && (options & 0x04) != 0;
+				sub.retainAsPublished = isV5() && (options & 0x08) != 0;
+				
+				int retainHandling = (isV5() ? (options >>> 4) & 0x03 : 0);
+				
+				if (fullFilter.startsWith(SHARED_PREFIX)) {
+					int slash = fullFilter.indexOf('/', SHARED_PREFIX.length());
+					
+					if (slash < 0) {
+						// 0x8F: topic filter invalid (v3 clients only support 0x80: failure)
+						suback.write(isV5() ? 0x8F : 0x80);
+						continue;
+					}
+					
+					sub.shareGroup = fullFilter.substring(SHARED_PREFIX.length(), slash);
+					sub.filter = fullFilter.substring(slash + 1);
+				}
+				
+				boolean isNew = (this.session.subs.put(fullFilter, sub) == null);
+				
+				if (sub.shareGroup == null && (retainHandling == 0 || (retainHandling == 1 && isNew))) {
+					retainedSubs.add(sub);
+				}
+				
+				suback.write(sub.qos);
+			}
+			
+			send(SUBACK << 4, suback);
+			
+			for (Subscription sub : retainedSubs) {
+				for (Message msg : EmbeddedMqttBroker.this.retainedMsgs.values()) {
+					if (matches(sub.filter, msg.topic)) {
+						this.session.deliver(msg, sub.qos, true);
+					}
+				}
+			}
+		}
+		
+		void handleUnsubscribe(ByteBuffer buf) throws IOException
+		{
+			int packetID = buf.getShort() & 0xFFFF;
+			
+			if (isV5()) {
+				readProperties(buf, null);
+			}
+			
+			ByteArrayOutputStream reasonCodes = new ByteArrayOutputStream();
+			
+			while (buf.hasRemaining()) {
+				boolean existed = (this.session.subs.remove(readString(buf)) != null);
+				
+				// 0x11: no subscription existed
+				reasonCodes.write(existed ? 0x00 : 0x11);
+			}
+			
+			ByteArrayOutputStream unsuback = new ByteArrayOutputStream();
+			writeShort(unsuback, packetID);
+			
+			if (isV5()) {
+				writeVarInt(unsuback, 0);
+				reasonCodes.writeTo(unsuback);
+			}
+			
+			send(UNSUBACK << 4, unsuback);
+		}
+		
+		void sendAck(int packetType, int packetID)
+		{
+			ByteArrayOutputStream ack = new ByteArrayOutputStream(2);
+			writeShort(ack, packetID);
+			
+			try {
+				send((packetType << 4) | (packetType == PUBREL ? 0x02 : 0), ack);
+			} catch (IOException e) {
+				closeAbnormally();
+			}
+		}
+		
+		void sendPublish(Message msg, int qos, boolean retain, int packetID, boolean dup)
+		{
+			ByteArrayOutputStream body = new ByteArrayOutputStream(msg.topic.length() + msg.payload.length + 16);
+			writeString(body, msg.topic);
+			
+			if (qos > 0) {
+				writeShort(body, packetID);
+			}
+			
+			if (isV5()) {
+				writeVarInt(body, msg.props.length);
+				body.write(msg.props, 0, msg.props.length);
+			}
+			
+			body.write(msg.payload, 0, msg.payload.length);
+			
+			int header = (PUBLISH << 4) | (dup ? 0x08 : 0) | (qos << 1) | (retain ? 0x01 : 0);
+			
+			try {
+				send(header, body);
+				
+				EmbeddedMqttBroker.this.msgsDelivered.incrementAndGet();
+			} catch (IOException e) {
+				closeAbnormally();
+			}
+		}
+		
+		void send(int header, ByteArrayOutputStream body) throws IOException
+		{
+			ByteArrayOutputStream packet = new ByteArrayOutputStream(body.size() + 5);
+			packet.write(header);
+			writeVarInt(packet, body.size());
+			body.writeTo(packet);
+			
+			synchronized (this) {
+				if (this.isClosed) {
+					throw new IOException("Connection closed.");
+				}
+				
+				packet.writeTo(this.out);
+				this.out.flush();
+			}
+		}
+		
+		/**
+		 * Closes the connection after a network failure, keep alive
+		 * timeout or protocol error, publishing the will (if any).
+		 */
+		void closeAbnormally()
+		{
+			Message will = this.will;
+			this.will = null;
+			
+			boolean wasOpen = close();
+			
+			if (wasOpen && will != null && EmbeddedMqttBroker.this.isStarted) {
+				route(will, null);
+			}
+		}
+		
+		/**
+		 * Closes the connection and detaches the session, discarding it
+		 * unless persistent.
+		 * 
+		 * @return boolean True if the connection was open.
+		 */
+		boolean close()
+		{
+			synchronized (this) {
+				if (this.isClosed) {
+					return false;
+				}
+				
+				this.isClosed = true;
+			}
+			
+			try {
+				this.socket.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			
+			EmbeddedMqttBroker.this.connections.remove(this);
+			
+			Session session = this.session;
+			
+			if (session != null) {
+				synchronized (EmbeddedMqttBroker.this.sessions) {
+					if (session.conn == this) {
+						session.conn = null;
+						session.disconnectedAtMillis = System.currentTimeMillis();
+						
+						if (! session.persistent) {
+							EmbeddedMqttBroker.this.sessions.remove(session.clientID, session);
+						}
+					}
+				}
+			}
+			
+			return true;
+		}
+	}
+
+}
@@ -0,0 +1,285 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.integration.connection;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+
+/**
+ * Minimal in-process SMTP server for offline connector tests. It
+ * accepts every sender, recipient and AUTH PLAIN / LOGIN exchange,
+ * and keeps the DATA section of every accepted message in memory.
+ * <p>
+ * Not supported: STARTTLS, pipelining and size limits.
+ * 
+ */
+public class FakeSmtpServer
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(FakeSmtpServer.class.getName());
+	
+	public static final String CONFIG_SECTION = "Smtp.FakeServer";
+	public static final int    DEFAULT_PORT = 10025;
+	
+	
+	// private var's
+	
+	private int          port = 0;
+	private ServerSocket serverSocket = null;
+	private Thread       acceptThread = null;
+	
+	private volatile boolean isStarted = false;
+	
+	private final Set<Socket>   sockets = ConcurrentHashMap.newKeySet();
+	private final List<String>  messages = Collections.synchronizedList(new ArrayList<>());
+	private final AtomicInteger connectionCount = new AtomicInteger();
+	
+	
+	// constructors
+	
+	/**
+	 * Default. Uses the port from the {@link #CONFIG_SECTION} section, which
+	 * is also what connectors created with that section connect to.
+	 * 
+	 */
+	public FakeSmtpServer()
+	{
+		this(ConfigUtil.getInstance().getInteger(CONFIG_SECTION, ConfigConst.PORT_KEY, DEFAULT_PORT));
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param port The port to listen on (0 for an ephemeral port).
+	 */
+	public FakeSmtpServer(int port)
+	{
+		super();
+		
+		this.port = port;
+	}
+	
+	
+	// public methods
+	
+	/**
+	 * Returns the total number of connections accepted since start.
+	 * 
+	 * @return int
+	 */
+	public int getConnectionCount()
+	{
+		return this.connectionCount.get();
+	}
+	
+	/**
+	 * Returns a copy of the DATA section of each accepted message, in order.
+	 * 
+	 * @return List<String>
+	 */
+	public List<String> getMessages()
+	{
+		synchronized (this.messages) {
+			return new ArrayList<>(this.messages);
+		}
+	}
+	
+	public int getMessageCount()
+	{
+		return this.messages.size();
+	}
+	
+	public int getPort()
+	{
+		return (this.serverSocket != null ? this.serverSocket.getLocalPort() : this.port);
+	}
+	
+	/**
+	 * Binds the listening socket on the loopback interface and starts
+	 * accepting connections.
+	 * 
+	 * @return boolean True on success; false otherwise.
+	 */
+	public synchronized boolean start()
+	{
+		if (this.isStarted) {
+			return true;
+		}
+		
+		try {
+			this.serverSocket = new ServerSocket();
+			this.serverSocket.setReuseAddress(true);
+			this.serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), this.port));
+			
+			this.isStarted = true;
+			
+			this.acceptThread = new Thread(this::acceptConnections, "FakeSmtpServer-accept");
+			this.acceptThread.setDaemon(true);
+			this.acceptThread.start();
+			
+			_Logger.info("Fake SMTP server started on port " + getPort());
+			
+			return true;
+		} catch (IOException e) {
+			_Logger.log(Level.SEVERE, "Failed to start fake SMTP server on port " + this.port, e);
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Closes all connections and the listening socket.
+	 * 
+	 */
+	public synchronized void stop()
+	{
+		if (! this.isStarted) {
+			return;
+		}
+		
+		this.isStarted = false;
+		
+		try {
+			this.serverSocket.close();
+			
+			// the listening socket is only released once the blocked accept() returns
+			this.acceptThread.join(1000L);
+		} catch (IOException | InterruptedException e) {
+			// ignore
+		}
+		
+		for (Socket socket : this.sockets) {
+			closeQuietly(socket);
+		}
+		
+		this.sockets.clear();
+		
+		_Logger.info("Fake SMTP server stopped.");
+	}
+	
+	
+	// private methods
+	
+	private void acceptConnections()
+	{
+		while (this.isStarted) {
+			try {
+				Socket socket = this.serverSocket.accept();
+				
+				this.sockets.add(socket);
+				this.connectionCount.incrementAndGet();
+				
+				Thread thread = new Thread(() -> handleConnection(socket), "FakeSmtpServer-conn");
+				thread.setDaemon(true);
+				thread.start();
+			} catch (IOException e) {
+				if (this.isStarted) {
+					_Logger.log(Level.WARNING, "Failed to accept connection.", e);
+				}
+			}
+		}
+	}
+	
+	private void closeQuietly(Socket socket)
+	{
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+	
+	private void handleConnection(Socket socket)
+	{
+		try {
+			BufferedReader in =
+				new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+			OutputStream out = socket.getOutputStream();
+			
+			reply(out, "220 localhost fake SMTP ready");
+			
+			String line = null;
+			
+			while ((line = in.readLine()) != null) {
+				String cmd = line.toUpperCase();
+				
+				if (cmd.startsWith("EHLO")) {
+					reply(out, "250-localhost\r\n250-AUTH PLAIN LOGIN\r\n250 8BITMIME");
+				} else if (cmd.startsWith("HELO")) {
+					reply(out, "250 localhost");
+				} else if (cmd.startsWith("AUTH LOGIN")) {
+					reply(out, "334 VXNlcm5hbWU6");
+					in.readLine();
+					reply(out, "334 UGFzc3dvcmQ6");
+					in.readLine();
+					reply(out, "235 2.7.0 Authentication successful");
+				} else if (cmd.startsWith("AUTH PLAIN")) {
+					if (cmd.trim().equals("AUTH PLAIN")) {
+						reply(out, "334 ");
+						in.readLine();
+					}
+					
+					reply(out, "235 2.7.0 Authentication successful");
+				} else if (cmd.startsWith("MAIL FROM") || cmd.startsWith("RCPT TO") || cmd.startsWith("RSET") || cmd.startsWith("NOOP")) {
+					reply(out, "250 OK");
+				} else if (cmd.startsWith("DATA")) {
+					reply(out, "354 End data with <CR><LF>.<CR><LF>");
+					
+					StringBuilder data = new StringBuilder();
+					
+					while ((line = in.readLine()) != null && ! line.equals(".")) {
+						// undo dot-stuffing
+						data.append(line.startsWith("..") ? line.substring(1) : line).append("\r\n");
+					}
+					
+					this.messages.add(data.toString());
+					reply(out, "250 OK: queued");
+				} else if (cmd.startsWith("QUIT")) {
+					reply(out, "221 Bye");
+					break;
+				} else {
+					reply(out, "502 Command not implemented");
+				}
+			}
+		} catch (IOException e) {
+			if (this.isStarted) {
+				_Logger.fine("Connection closed: " + e.getMessage());
+			}
+		} finally {
+			this.sockets.remove(socket);
+			closeQuietly(socket);
+		}
+	}
+	
+	private void reply(OutputStream out, String msg) throws IOException
+	{
+		out.write((msg + "\r\n").getBytes(StandardCharsets.US_ASCII));
+		out.flush();
+	}
+}
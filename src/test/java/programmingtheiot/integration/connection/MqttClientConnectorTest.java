@@ -47,6 +47,7 @@ public class MqttClientConnectorTest
 	// TODO: make sure MqttClientConnector is configured to
 	// use the synchronous MqttClient
 	private MqttClientConnector mqttClient = null;
+	private EmbeddedMqttBroker  mqttBroker = null;
 	
 	
 	// test setup methods
@@ -57,7 +58,10 @@ public class MqttClientConnectorTest
 	@Before
 	public void setUp() throws Exception
 	{
-		this.mqttClient = new MqttClientConnector();
+		this.mqttBroker = new EmbeddedMqttBroker();
+		assertTrue(this.mqttBroker.start());
+		
+		this.mqttClient = new MqttClientConnector(EmbeddedMqttBroker.CONFIG_SECTION);
 	}
 	
 	/**
@@ -66,6 +70,7 @@ public class MqttClientConnectorTest
 	@After
 	public void tearDown() throws Exception
 	{
+		this.mqttBroker.stop();
 	}
 	
 	// test methods
@@ -76,7 +81,7 @@ public class MqttClientConnectorTest
 //	@Test
 	public void testConnectAndDisconnect()
 	{
-		int delay = ConfigUtil.getInstance().getInteger(ConfigConst.MQTT_GATEWAY_SERVICE, ConfigConst.KEEP_ALIVE_KEY, ConfigConst.DEFAULT_KEEP_ALIVE);
+		int delay = ConfigUtil.getInstance().getInteger(EmbeddedMqttBroker.CONFIG_SECTION, ConfigConst.KEEP_ALIVE_KEY, ConfigConst.DEFAULT_KEEP_ALIVE);
 		
 		assertTrue(this.mqttClient.connectClient());
 		assertFalse(this.mqttClient.connectClient());
@@ -98,7 +103,7 @@ public class MqttClientConnectorTest
 	public void testPublishAndSubscribe()
 	{
 		int qos = 0;
-		int delay = ConfigUtil.getInstance().getInteger(ConfigConst.MQTT_GATEWAY_SERVICE, ConfigConst.KEEP_ALIVE_KEY, ConfigConst.DEFAULT_KEEP_ALIVE);
+		int delay = ConfigUtil.getInstance().getInteger(EmbeddedMqttBroker.CONFIG_SECTION, ConfigConst.KEEP_ALIVE_KEY, ConfigConst.DEFAULT_KEEP_ALIVE);
 		
 		assertTrue(this.mqttClient.connectClient());
 		assertTrue(this.mqttClient.subscribeToTopic(ResourceNameEnum.GDA_MGMT_STATUS_MSG_RESOURCE, qos));
@@ -214,7 +219,7 @@ public class MqttClientConnectorTest
 	public void testIntegrateWithCdaSubscribeCdaMgmtTopic()
 	{
 		int qos = 1;
-		int delay = ConfigUtil.getInstance().getInteger(ConfigConst.MQTT_GATEWAY_SERVICE, ConfigConst.KEEP_ALIVE_KEY, ConfigConst.DEFAULT_KEEP_ALIVE);
+		int delay = ConfigUtil.getInstance().getInteger(EmbeddedMqttBroker.CONFIG_SECTION, ConfigConst.KEEP_ALIVE_KEY, ConfigConst.DEFAULT_KEEP_ALIVE);
 		
 		assertTrue(this.mqttClient.connectClient());
 		assertTrue(this.mqttClient.subscribeToTopic(ResourceNameEnum.CDA_MGMT_STATUS_MSG_RESOURCE, qos));
@@ -43,6 +43,7 @@ public class MqttClientControlPacketTest
 	// member var's
 	
 	private MqttClientConnector mqttClient = null;
+	private EmbeddedMqttBroker  mqttBroker = null;
 	
 	
 	// test setup methods
@@ -50,12 +51,16 @@ public class MqttClientControlPacketTest
 	@Before
 	public void setUp() throws Exception
 	{
-		this.mqttClient = new MqttClientConnector();
+		this.mqttBroker = new EmbeddedMqttBroker();
+		assertTrue(this.mqttBroker.start());
+		
+		this.mqttClient = new MqttClientConnector(EmbeddedMqttBroker.CONFIG_SECTION);
 	}
 	
 	@After
 	public void tearDown() throws Exception
 	{
+		this.mqttBroker.stop();
 	}
 	
 	// test methods
@@ -63,21 +68,76 @@ public class MqttClientControlPacketTest
 	@Test
 	public void testConnectAndDisconnect()
 	{
-		// TODO: implement this test
+		assertTrue(this.mqttClient.connectClient());
+		assertEquals(1, this.mqttBroker.getPacketCount(EmbeddedMqttBroker.CONNECT));
+		assertEquals(1, this.mqttBroker.getConnectionCount());
+		
+		assertTrue(this.mqttClient.disconnectClient());
+		
+		assertTrue(waitForPacketCount(EmbeddedMqttBroker.DISCONNECT, 1, 5000L));
 	}
 	
 	@Test
 	public void testServerPing()
 	{
-		// TODO: implement this test
+		int keepAlive = ConfigUtil.getInstance().getInteger(
+			EmbeddedMqttBroker.CONFIG_SECTION, ConfigConst.KEEP_ALIVE_KEY, ConfigConst.DEFAULT_KEEP_ALIVE);
+		
+		assertTrue(this.mqttClient.connectClient());
+		
+		// an idle client must send PINGREQ within the keep alive interval
+		assertTrue(waitForPacketCount(EmbeddedMqttBroker.PINGREQ, 1, keepAlive * 1000L + 2000L));
+		assertTrue(this.mqttClient.isConnected());
+		assertTrue(this.mqttClient.disconnectClient());
 	}
 	
 	@Test
 	public void testPubSub()
 	{
-		// TODO: implement this test
-		// 
 		// IMPORTANT: be sure to use QoS 1 and 2 to see ALL control packets
+		ResourceNameEnum resource = ResourceNameEnum.GDA_MGMT_STATUS_MSG_RESOURCE;
+		
+		assertTrue(this.mqttClient.connectClient());
+		assertTrue(this.mqttClient.subscribeToTopic(resource, 2));
+		
+		assertTrue(this.mqttClient.publishMessage(resource, "TEST: QoS 1 payload.", 1));
+		assertTrue(this.mqttClient.publishMessage(resource, "TEST: QoS 2 payload.", 2));
+		
+		// PUBLISH (x2) and PUBREL from the publisher; PUBACK, PUBREC and PUBCOMP from the subscriber
+		assertTrue(waitForPacketCount(EmbeddedMqttBroker.PUBCOMP, 1, 5000L));
+		assertEquals(2, this.mqttBroker.getPacketCount(EmbeddedMqttBroker.PUBLISH));
+		assertEquals(1, this.mqttBroker.getPacketCount(EmbeddedMqttBroker.PUBACK));
+		assertEquals(1, this.mqttBroker.getPacketCount(EmbeddedMqttBroker.PUBREC));
+		assertEquals(1, this.mqttBroker.getPacketCount(EmbeddedMqttBroker.PUBREL));
+		assertEquals(2, this.mqttBroker.getDeliveredCount());
+		
+		assertTrue(this.mqttClient.unsubscribeFromTopic(resource));
+		assertEquals(1, this.mqttBroker.getPacketCount(EmbeddedMqttBroker.SUBSCRIBE));
+		assertEquals(1, this.mqttBroker.getPacketCount(EmbeddedMqttBroker.UNSUBSCRIBE));
+		assertTrue(this.mqttClient.disconnectClient());
+	}
+	
+	// private methods
+	
+	private boolean waitForPacketCount(int packetType, long count, long timeoutMillis)
+	{
+		long endMillis = System.currentTimeMillis() + timeoutMillis;
+		
+		while (this.mqttBroker.getPacketCount(packetType) < count) {
+			if (System.currentTimeMillis() > endMillis) {
+				_Logger.warning("Timed out waiting for packet type " + packetType);
+				
+				return false;
+			}
+			
+			try {
+				Thread.sleep(10L);
+			} catch (InterruptedException e) {
+				return false;
+			}
+		}
+		
+		return true;
 	}
 	
 }
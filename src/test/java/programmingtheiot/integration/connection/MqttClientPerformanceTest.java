@@ -33,6 +33,9 @@ import programmingtheiot.gda.connection.MqttClientConnector;
  * IMPORTANT NOTE: This test expects MqttClientConnector to be
  * configured using the synchronous MqttClient.
  *
+ * The tests run against an {@link EmbeddedMqttBroker}, so results
+ * don't depend on an external broker and can be compared between runs.
+ * 
  */
 public class MqttClientPerformanceTest
 {
@@ -48,6 +51,7 @@ public class MqttClientPerformanceTest
 	// TODO: make sure MqttClientConnector is configured to
 	// use the synchronous MqttClient
 	private MqttClientConnector mqttClient = null;
+	private EmbeddedMqttBroker  mqttBroker = null;
 	
 	
 	// test setup methods
@@ -59,7 +63,11 @@ public class MqttClientPerformanceTest
 	public void setUp() throws Exception
 	{
 		ConfigUtil.getInstance();
-		this.mqttClient = new MqttClientConnector();
+		
+		this.mqttBroker = new EmbeddedMqttBroker();
+		assertTrue(this.mqttBroker.start());
+		
+		this.mqttClient = new MqttClientConnector(EmbeddedMqttBroker.CONFIG_SECTION);
 	}
 	
 	/**
@@ -68,6 +76,7 @@ public class MqttClientPerformanceTest
 	@After
 	public void tearDown() throws Exception
 	{
+		this.mqttBroker.stop();
 	}
 	
 	// test methods
@@ -116,6 +125,19 @@ public class MqttClientPerformanceTest
 		execTestPublish(MAX_TEST_RUNS, 2);
 	}
 	
+	/**
+	 * Test method for {@link programmingtheiot.gda.connection.MqttClientConnector#publishMessage(programmingtheiot.common.ResourceNameEnum, java.lang.String, int)}.
+	 * Each packet is delayed by the broker, so QoS 1 throughput is bound by
+	 * the simulated round trip.
+	 */
+	@Test
+	public void testPublishQoS1WithLatency()
+	{
+		this.mqttBroker.setLatencyMillis(1L);
+		
+		execTestPublish(MAX_TEST_RUNS / 10, 1);
+	}
+	
 	// private methods
 	
 	/**
@@ -0,0 +1,264 @@
+/**
+ * 
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.integration.connection;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.gda.connection.*;
+
+/**
+ * This test case class contains very basic integration tests for
+ * Mqttv5ClientConnector. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ * 
+ */
+public class Mqttv5ClientConnectorTest
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(Mqttv5ClientConnectorTest.class.getName());
+	
+	public static final String SHARED_TOPIC = "PIOT/Test/SharedMsg";
+	public static final String SHARED_GROUP = "gda";
+	
+	public static final long WAIT_MILLIS = 5000L;
+	
+	
+	// member var's
+	
+	private Mqttv5ClientConnector mqttClient = null;
+	private EmbeddedMqttBroker    mqttBroker = null;
+	
+	
+	// test setup methods
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		this.mqttBroker = new EmbeddedMqttBroker();
+		assertTrue(this.mqttBroker.start());
+		
+		this.mqttClient = new Mqttv5ClientConnector(EmbeddedMqttBroker.CONFIG_SECTION);
+	}
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		if (this.mqttClient.isConnected()) {
+			this.mqttClient.disconnectClient();
+		}
+		
+		this.mqttBroker.stop();
+	}
+	
+	// test methods
+	
+	/**
+	 * Test method for {@link programmingtheiot.gda.connection.Mqttv5ClientConnector#createTopicFilter(String, String)}.
+	 */
+	@Test
+	public void testCreateTopicFilter()
+	{
+		String topic = ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE.getResourceName();
+		
+		assertEquals(topic, Mqttv5ClientConnector.createTopicFilter(topic, null));
+		assertEquals(topic, Mqttv5ClientConnector.createTopicFilter(topic, " "));
+		assertEquals(
+			ConfigConst.SHARED_SUB_PREFIX + "gda/" + topic,
+			Mqttv5ClientConnector.createTopicFilter(topic, "gda"));
+	}
+	
+	/**
+	 * Test method for {@link programmingtheiot.gda.connection.Mqttv5ClientConnector#publishMessage(programmingtheiot.common.ResourceNameEnum, java.lang.String, int)}.
+	 */
+	@Test
+	public void testPublishAndSubscribe()
+	{
+		int qos = 1;
+		
+		assertTrue(this.mqttClient.connectClient());
+		assertTrue(this.mqttClient.subscribeToTopic(ResourceNameEnum.GDA_MGMT_STATUS_MSG_RESOURCE, qos));
+		assertTrue(this.mqttClient.subscribeToTopic(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, qos));
+		
+		// repeated publishes to the same resource will use a topic alias
+		// if the broker advertises a topic alias maximum > 0
+		for (int i = 1; i <= 10; i++) {
+			assertTrue(this.mqttClient.publishMessage(ResourceNameEnum.GDA_MGMT_STATUS_MSG_RESOURCE, "TEST: GDA message payload " + i, qos));
+		}
+		
+		try {
+			Thread.sleep(5000);
+		} catch (Exception e) {
+			// ignore
+		}
+		
+		// each QoS 1 publish is routed back to this client's own subscription
+		assertEquals(10, this.mqttBroker.getDeliveredCount());
+		
+		assertTrue(this.mqttClient.unsubscribeFromTopic(ResourceNameEnum.GDA_MGMT_STATUS_MSG_RESOURCE));
+		assertTrue(this.mqttClient.unsubscribeFromTopic(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE));
+		assertTrue(this.mqttClient.disconnectClient());
+	}
+
+	/**
+	 * Tests that repeated publishes to the same topic use a topic alias
+	 * after the first one.
+	 */
+	@Test
+	public void testTopicAliasOnRepeatPublish()
+	{
+		int count = 10;
+		
+		assertTrue(this.mqttClient.connectClient());
+		
+		for (int i = 1; i <= count; i++) {
+			assertTrue(this.mqttClient.publishMessage(ResourceNameEnum.GDA_MGMT_STATUS_MSG_RESOURCE, "TEST: alias " + i, 1));
+}
+
+		assertTrue(waitFor(() -> this.mqttBroker.getPacketCount(EmbeddedMqttBroker.PUBLISH) >= count));
+		
+		// only the first publish carries the full topic name
+		assertEquals(count - 1, this.mqttBroker.getAliasedPublishCount());
+	}
+	
+	/**
+	 * Tests that each message published to a shared subscription is
+	 * received by exactly one member of the group.
+	 */
+	@Test
+	public void testSharedSubscription()
+	{
+		int count = 20;
+		
+		Mqttv5ClientConnector memberA = new Mqttv5ClientConnector(EmbeddedMqttBroker.CONFIG_SECTION);
+		Mqttv5ClientConnector memberB = new Mqttv5ClientConnector(EmbeddedMqttBroker.CONFIG_SECTION);
+		
+		AtomicInteger receivedA = new AtomicInteger();
+		AtomicInteger receivedB = new AtomicInteger();
+		
+		String topicFilter = Mqttv5ClientConnector.createTopicFilter(SHARED_TOPIC, SHARED_GROUP);
+		
+		try {
+			assertTrue(memberA.connectClient());
+			assertTrue(memberB.connectClient());
+			assertTrue(memberA.subscribeToTopic(topicFilter, 1, (topic, payload) -> receivedA.incrementAndGet()));
+			assertTrue(memberB.subscribeToTopic(topicFilter, 1, (topic, payload) -> receivedB.incrementAndGet()));
+			
+			assertTrue(this.mqttClient.connectClient());
+			
+			for (int i = 1; i <= count; i++) {
+				assertTrue(
+					this.mqttClient.publishMessage(SHARED_TOPIC, ("TEST: shared " + i).getBytes(StandardCharsets.UTF_8), 1, false));
+			}
+			
+			assertTrue(waitFor(() -> receivedA.get() + receivedB.get() >= count));
+			
+			_Logger.info("Shared subscription deliveries. Member A: " + receivedA.get() + ", member B: " + receivedB.get());
+			
+			// no duplicates, and the group load-balances
+			assertEquals(count, receivedA.get() + receivedB.get());
+			assertEquals(count, this.mqttBroker.getDeliveredCount());
+			assertTrue(receivedA.get() > 0);
+			assertTrue(receivedB.get() > 0);
+		} finally {
+			memberA.disconnectClient();
+			memberB.disconnectClient();
+		}
+	}
+	
+	/**
+	 * Tests that in-flight publishes are limited to the broker's receive
+	 * maximum when it's smaller than the configured one.
+	 */
+	@Test
+	public void testReceiveMaxFromBroker()
+	{
+		int count = 50;
+		
+		this.mqttBroker.stop();
+		this.mqttBroker = new EmbeddedMqttBroker();
+		this.mqttBroker.setReceiveMax(4);
+		
+		assertTrue(this.mqttBroker.start());
+		assertTrue(this.mqttClient.connectClient());
+		assertEquals(4, this.mqttClient.getInFlightMax());
+		
+		assertTrue(this.mqttClient.subscribeToTopic(SHARED_TOPIC, 1));
+		
+		for (int i = 1; i <= count; i++) {
+			assertTrue(
+				this.mqttClient.publishMessage(SHARED_TOPIC, ("TEST: flow " + i).getBytes(StandardCharsets.UTF_8), 1, false));
+		}
+		
+		assertTrue(waitFor(() -> this.mqttBroker.getDeliveredCount() >= count));
+		assertEquals(count, this.mqttBroker.getDeliveredCount());
+	}
+	
+	/**
+	 * Tests that a location filter and shared subscriptions can't be
+	 * combined, since filtered messages would be lost to the whole group.
+	 */
+	@Test
+	public void testLocationFilterRejectedWithSharedSubscription()
+	{
+		String topicFilter = Mqttv5ClientConnector.createTopicFilter(SHARED_TOPIC, SHARED_GROUP);
+		
+		assertTrue(this.mqttClient.connectClient());
+		assertTrue(this.mqttClient.setLocationFilter(locationID -> false));
+		assertFalse(this.mqttClient.subscribeToTopic(topicFilter, 1));
+		
+		assertTrue(this.mqttClient.setLocationFilter(null));
+		assertTrue(this.mqttClient.subscribeToTopic(topicFilter, 1));
+		assertFalse(this.mqttClient.setLocationFilter(locationID -> false));
+	}
+	
+	
+	// private methods
+	
+	private boolean waitFor(BooleanSupplier condition)
+	{
+		long endMillis = System.currentTimeMillis() + WAIT_MILLIS;
+		
+		while (! condition.getAsBoolean()) {
+			if (System.currentTimeMillis() > endMillis) {
+				return false;
+			}
+			
+			try {
+				Thread.sleep(10L);
+			} catch (InterruptedException e) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+
+}
@@ -11,6 +11,7 @@ package programmingtheiot.integration.connection;
 
 import static org.junit.Assert.*;
 
+import java.util.List;
 import java.util.logging.Logger;
 
 import org.junit.After;
@@ -48,6 +49,7 @@ public class SmtpClientConnectorTest
 	
 	private SmtpClientConnector smtpClient = null;
 	private IDataMessageListener dml = null;
+	private FakeSmtpServer smtpServer = null;
 	
 	
 	// test setup methods
@@ -74,7 +76,10 @@ public class SmtpClientConnectorTest
 	@Before
 	public void setUp() throws Exception
 	{
-		this.smtpClient = new SmtpClientConnector();
+		this.smtpServer = new FakeSmtpServer();
+		assertTrue(this.smtpServer.start());
+		
+		this.smtpClient = new SmtpClientConnector(FakeSmtpServer.CONFIG_SECTION);
 		this.dml = new DefaultDataMessageListener();
 		
 		this.smtpClient.setDataMessageListener(this.dml);
@@ -86,6 +91,8 @@ public class SmtpClientConnectorTest
 	@After
 	public void tearDown() throws Exception
 	{
+		this.smtpClient.disconnectClient();
+		this.smtpServer.stop();
 	}
 	
 	// test methods
@@ -106,6 +113,74 @@ public class SmtpClientConnectorTest
 		String ssdJson = DataUtil.getInstance().systemStateDataToJson(ssd);
 		
 		assertTrue(this.smtpClient.sendMessage(ResourceNameEnum.GDA_MGMT_STATUS_MSG_RESOURCE, ssdJson, DEFAULT_TIMEOUT));
+		assertEquals(1, this.smtpServer.getMessageCount());
+	}
+	
+	/**
+	 * 
+	 */
+	@Test
+	public void testConnectionReuseAndMessageCap()
+	{
+		this.smtpClient.setMaxMessagesPerMinute(5);
+		
+		for (int i = 0; i < 5; i++) {
+			assertTrue(this.smtpClient.sendMessage(ResourceNameEnum.GDA_MGMT_STATUS_MSG_RESOURCE, "Alert " + i, DEFAULT_TIMEOUT));
+		}
+		
+		// the 6th message within the minute is refused
+		assertFalse(this.smtpClient.sendMessage(ResourceNameEnum.GDA_MGMT_STATUS_MSG_RESOURCE, "Alert 5", DEFAULT_TIMEOUT));
+		
+		assertEquals(5, this.smtpServer.getMessageCount());
+		assertEquals(1, this.smtpServer.getConnectionCount());
+		assertEquals(1, this.smtpClient.getConnectCount());
+		assertEquals(1, this.smtpClient.getThrottledCount());
+	}
+	
+	/**
+	 * 
+	 */
+	@Test
+	public void testAlertDigest() throws Exception
+	{
+		AlertDigestEngine digestEngine =
+			new AlertDigestEngine(
+				FakeSmtpServer.CONFIG_SECTION,
+				(resource, msg) -> this.smtpClient.sendMessage(resource, msg, DEFAULT_TIMEOUT));
+		
+		assertTrue(digestEngine.startEngine());
+		
+		// an alert storm from two devices on two resources
+		for (int i = 0; i < 1000; i++) {
+			digestEngine.addAlert(ResourceNameEnum.CDA_ACTUATOR_RESPONSE_RESOURCE, "device" + (i % 2), "Actuator error " + i);
+			digestEngine.addAlert(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, "device" + (i % 2), "Sensor threshold " + i);
+		}
+		
+		assertTrue(digestEngine.stopEngine());
+		
+		List<String> messages = this.smtpServer.getMessages();
+		
+		_Logger.info("Digest messages received: " + messages.size());
+		
+		// one digest per resource, all over one connection
+		assertEquals(2, messages.size());
+		assertEquals(2, digestEngine.getDigestCount());
+		assertEquals(2000, digestEngine.getAlertCount());
+		assertEquals(1, this.smtpServer.getConnectionCount());
+		
+		String actuatorDigest = null;
+		
+		for (String msg : messages) {
+			if (msg.contains("Actuator error")) {
+				actuatorDigest = msg;
+			}
+		}
+		
+		assertNotNull(actuatorDigest);
+		assertTrue(actuatorDigest.contains("1000 alert(s) from 2 device(s)"));
+		assertTrue(actuatorDigest.contains("Device device0: 500 alert(s)"));
+		assertTrue(actuatorDigest.contains("Actuator error 999"));
+		assertFalse(actuatorDigest.contains("Actuator error 1\r\n"));
 	}
 	
 }
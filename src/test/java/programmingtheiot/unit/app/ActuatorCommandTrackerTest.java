@@ -0,0 +1,252 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.unit.app;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.data.ActuatorData;
+import programmingtheiot.gda.app.ActuatorCommandTracker;
+
+/**
+ * This test case class contains very basic unit tests for
+ * ActuatorCommandTracker. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ * 
+ */
+public class ActuatorCommandTrackerTest
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(ActuatorCommandTrackerTest.class.getName());
+	
+	public static final long TIMEOUT_MILLIS = 500L;
+	public static final long TICK_MILLIS    = 10L;
+	public static final int  WHEEL_SIZE     = 16;
+	public static final int  MAX_COMMANDS   = 32768;
+	
+	// member var's
+	
+	private ActuatorCommandTracker tracker = null;
+	
+	// test setup methods
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		this.tracker = new ActuatorCommandTracker(TIMEOUT_MILLIS, TICK_MILLIS, WHEEL_SIZE, MAX_COMMANDS);
+	}
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		this.tracker.stopTracker();
+	}
+	
+	// test methods
+	
+	@Test
+	public void testResponseCompletesCommand() throws Exception
+	{
+		ActuatorData command = createCommand();
+		CompletableFuture<ActuatorData> future = this.tracker.register(command);
+		
+		assertNotEquals(ConfigConst.DEFAULT_REQUEST_ID, command.getRequestID());
+		assertEquals(1, this.tracker.getOutstandingCount());
+		
+		assertTrue(this.tracker.complete(createResponse(command)));
+		
+		ActuatorData response = future.get(1, TimeUnit.SECONDS);
+		
+		assertTrue(response.isResponseFlagEnabled());
+		assertEquals(command.getRequestID(), response.getRequestID());
+		assertEquals(0, this.tracker.getOutstandingCount());
+		assertEquals(1L, this.tracker.getCompletedCount());
+		assertTrue(this.tracker.getLatencyMaxMillis() > 0.0d);
+		assertTrue(this.tracker.getLatencyPercentileMillis(99.0d) > 0.0d);
+		
+		// a duplicate response is ignored
+		assertFalse(this.tracker.complete(createResponse(command)));
+	}
+	
+	@Test
+	public void testUnknownResponseIgnored()
+	{
+		ActuatorData response = new ActuatorData();
+		response.setAsResponse();
+		
+		assertFalse(this.tracker.complete(response));
+		
+		response.setRequestID(12345L);
+		
+		assertFalse(this.tracker.complete(response));
+		assertEquals(0L, this.tracker.getCompletedCount());
+	}
+	
+	@Test
+	public void testCommandTimesOut() throws Exception
+	{
+		ActuatorData command = createCommand();
+		CompletableFuture<ActuatorData> future = this.tracker.register(command);
+		long startNanos = System.nanoTime();
+		
+		// half way: still outstanding
+		assertEquals(0, this.tracker.expireTimeouts(startNanos + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS / 2)));
+		assertFalse(future.isDone());
+		
+		// timeout spans several wheel revolutions
+		assertEquals(1, this.tracker.expireTimeouts(startNanos + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS + 2 * TICK_MILLIS)));
+		assertTrue(future.isCompletedExceptionally());
+		assertEquals(1L, this.tracker.getTimedOutCount());
+		assertEquals(0, this.tracker.getOutstandingCount());
+		
+		try {
+			future.get();
+			fail("Expected timeout");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		
+		// a late response is ignored
+		assertFalse(this.tracker.complete(createResponse(command)));
+	}
+	
+	@Test
+	public void testTickerExpiresCommands() throws Exception
+	{
+		assertTrue(this.tracker.startTracker());
+		
+		CompletableFuture<ActuatorData> future = this.tracker.register(createCommand(), 50L);
+		
+		try {
+			future.get(TIMEOUT_MILLIS * 4, TimeUnit.MILLISECONDS);
+			fail("Expected timeout");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+	}
+	
+	@Test
+	public void testRejectsWhenFull()
+	{
+		ActuatorCommandTracker smallTracker = new ActuatorCommandTracker(TIMEOUT_MILLIS, TICK_MILLIS, WHEEL_SIZE, 2);
+		
+		smallTracker.register(createCommand());
+		smallTracker.register(createCommand());
+		
+		CompletableFuture<ActuatorData> future = smallTracker.register(createCommand());
+		
+		assertTrue(future.isCompletedExceptionally());
+		assertEquals(1L, smallTracker.getRejectedCount());
+		
+		try {
+			future.join();
+		} catch (Exception e) {
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+	}
+	
+	@Test
+	public void testManyOutstandingCommands()
+	{
+		int count = 20000;
+		List<ActuatorData> commands = new ArrayList<>(count);
+		List<CompletableFuture<ActuatorData>> futures = new ArrayList<>(count);
+		
+		long startNanos = System.nanoTime();
+		
+		for (int i = 0; i < count; i++) {
+			ActuatorData command = createCommand();
+			
+			futures.add(this.tracker.register(command));
+			commands.add(command);
+		}
+		
+		assertEquals(count, this.tracker.getOutstandingCount());
+		
+		// answer every other command; the rest time out
+		for (int i = 0; i < count; i += 2) {
+			assertTrue(this.tracker.complete(createResponse(commands.get(i))));
+		}
+		
+		assertEquals(count / 2, this.tracker.expireTimeouts(startNanos + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS * 2)));
+		
+		_Logger.info(
+			"Completed: " + this.tracker.getCompletedCount() + ", timed out: " + this.tracker.getTimedOutCount() +
+			", p50 latency (ms): " + this.tracker.getLatencyPercentileMillis(50.0d) +
+			", max latency (ms): " + this.tracker.getLatencyMaxMillis());
+		
+		assertEquals(0, this.tracker.getOutstandingCount());
+		assertEquals(count / 2, this.tracker.getCompletedCount());
+		assertEquals(count / 2, this.tracker.getTimedOutCount());
+		
+		for (int i = 0; i < count; i++) {
+			assertEquals(i % 2 != 0, futures.get(i).isCompletedExceptionally());
+		}
+	}
+	
+	@Test
+	public void testStopCancelsOutstandingCommands()
+	{
+		assertTrue(this.tracker.startTracker());
+		
+		CompletableFuture<ActuatorData> future = this.tracker.register(createCommand());
+		
+		assertTrue(this.tracker.stopTracker());
+		assertTrue(future.isCompletedExceptionally());
+		assertEquals(0, this.tracker.getOutstandingCount());
+		
+		// restarted for tearDown
+		assertTrue(this.tracker.startTracker());
+	}
+	
+	
+	// private methods
+	
+	private ActuatorData createCommand()
+	{
+		ActuatorData command = new ActuatorData();
+		command.setName("LED");
+		command.setCommand(ConfigConst.ON_COMMAND);
+		
+		return command;
+	}
+	
+	private ActuatorData createResponse(ActuatorData command)
+	{
+		ActuatorData response = new ActuatorData();
+		response.updateData(command);
+		response.setAsResponse();
+		
+		return response;
+	}
+
+}
@@ -0,0 +1,141 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.unit.app;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import programmingtheiot.gda.app.ConnectorStartup;
+import programmingtheiot.gda.app.ConnectorStartup.TaskState;
+
+/**
+ * This test case class contains very basic unit tests for
+ * ConnectorStartup. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ * 
+ */
+public class ConnectorStartupTest
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(ConnectorStartupTest.class.getName());
+	
+	public static final long TASK_MILLIS    = 300L;
+	public static final long TIMEOUT_MILLIS = 2000L;
+	
+	// member var's
+	
+	private ConnectorStartup startup = null;
+	private List<String>     completed = null;
+	
+	// test setup methods
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		this.startup   = new ConnectorStartup(TIMEOUT_MILLIS);
+		this.completed = new CopyOnWriteArrayList<>();
+	}
+	
+	// test methods
+	
+	@Test
+	public void testIndependentTasksRunInParallel()
+	{
+		assertTrue(this.startup.addTask("a", createTask("a", TASK_MILLIS, true)));
+		assertTrue(this.startup.addTask("b", createTask("b", TASK_MILLIS, true)));
+		assertTrue(this.startup.addTask("c", createTask("c", TASK_MILLIS, true)));
+		
+		assertTrue(this.startup.runTasks());
+		
+		_Logger.info("Three parallel tasks took " + this.startup.getTotalMillis() + " ms");
+		
+		assertEquals(3, this.completed.size());
+		assertTrue(this.startup.getTotalMillis() < TASK_MILLIS * 2);
+		assertTrue(this.startup.getElapsedMillis("a") >= TASK_MILLIS);
+	}
+	
+	@Test
+	public void testDependentTaskWaits()
+	{
+		this.startup.addTask("partition", createTask("partition", TASK_MILLIS, true));
+		this.startup.addTask("cloud", createTask("cloud", 0L, true));
+		this.startup.addTask("mqtt", createTask("mqtt", 0L, true), "partition");
+		
+		assertTrue(this.startup.runTasks());
+		
+		assertTrue(this.completed.indexOf("partition") < this.completed.indexOf("mqtt"));
+		assertEquals("cloud", this.completed.get(0));
+	}
+	
+	@Test
+	public void testFailureAndTimeoutSkipDependents()
+	{
+		ConnectorStartup shortStartup = new ConnectorStartup(TASK_MILLIS);
+		
+		shortStartup.addTask("slow", createTask("slow", TIMEOUT_MILLIS, true));
+		shortStartup.addTask("failing", createTask("failing", 0L, false));
+		shortStartup.addTask("afterSlow", createTask("afterSlow", 0L, true), "slow");
+		shortStartup.addTask("afterFailing", createTask("afterFailing", 0L, true), "failing");
+		shortStartup.addTask("independent", createTask("independent", 0L, true));
+		
+		assertFalse(shortStartup.runTasks());
+		
+		_Logger.info("Failed tasks: " + shortStartup.getFailedTasks());
+		
+		assertEquals(TaskState.TIMED_OUT, shortStartup.getTaskState("slow"));
+		assertEquals(TaskState.FAILED, shortStartup.getTaskState("failing"));
+		assertEquals(TaskState.SKIPPED, shortStartup.getTaskState("afterSlow"));
+		assertEquals(TaskState.SKIPPED, shortStartup.getTaskState("afterFailing"));
+		assertEquals(TaskState.SUCCEEDED, shortStartup.getTaskState("independent"));
+		assertEquals(4, shortStartup.getFailedTasks().size());
+		assertTrue(shortStartup.getTotalMillis() < TIMEOUT_MILLIS);
+	}
+	
+	@Test
+	public void testInvalidTasks()
+	{
+		assertTrue(this.startup.addTask("a", createTask("a", 0L, true)));
+		assertFalse(this.startup.addTask("a", createTask("a", 0L, true)));
+		assertFalse(this.startup.addTask("b", createTask("b", 0L, true), "unknown"));
+		assertNull(this.startup.getTaskState("b"));
+	}
+	
+	
+	// private methods
+	
+	private BooleanSupplier createTask(String name, long delayMillis, boolean result)
+	{
+		return () -> {
+			try {
+				Thread.sleep(delayMillis);
+			} catch (InterruptedException e) {
+				// ignore
+			}
+			
+			this.completed.add(name);
+			
+			return result;
+		};
+	}
+
+}
@@ -0,0 +1,188 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.unit.app;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.DataUtil;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.gda.app.DeviceRegistry;
+import programmingtheiot.gda.app.DeviceRegistry.DeviceRecord;
+
+/**
+ * This test case class contains very basic unit tests for
+ * DeviceRegistry. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ * 
+ */
+public class DeviceRegistryTest
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(DeviceRegistryTest.class.getName());
+	
+	public static final int  QUEUE_SIZE      = 5000;
+	public static final int  BATCH_SIZE      = 100;
+	public static final long SNAPSHOT_MILLIS = 60000L;
+	
+	// member var's
+	
+	private Path           snapshotDir = null;
+	private String         snapshotFile = null;
+	private DeviceRegistry registry = null;
+	
+	// test setup methods
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		this.snapshotDir  = Files.createTempDirectory("gda-registry");
+		this.snapshotFile = this.snapshotDir.resolve("registry.dat").toString();
+		this.registry     = new DeviceRegistry(QUEUE_SIZE, BATCH_SIZE, this.snapshotFile, SNAPSHOT_MILLIS);
+	}
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		Files.deleteIfExists(this.snapshotDir.resolve("registry.dat"));
+		Files.deleteIfExists(this.snapshotDir);
+	}
+	
+	// test methods
+	
+	@Test
+	public void testRegistrationStormAppliedInBatches()
+	{
+		for (int i = 0; i < QUEUE_SIZE; i++) {
+			assertTrue(this.registry.submitRegistration(createRegistration("cda" + i, i)));
+		}
+		
+		// queue is full
+		assertFalse(this.registry.submitRegistration(createRegistration("cdaExtra", 0)));
+		assertEquals(1, this.registry.getRejectedCount());
+		assertEquals(0, this.registry.getDeviceCount());
+		
+		assertEquals(QUEUE_SIZE, this.registry.processPendingRegistrations());
+		assertEquals(QUEUE_SIZE, this.registry.getDeviceCount());
+		assertEquals(QUEUE_SIZE / BATCH_SIZE, this.registry.getBatchCount());
+		
+		DeviceRecord record = this.registry.getDevice("cda1234");
+		
+		assertNotNull(record);
+		assertEquals(1234 * 0.001f, record.getLatitude(), 0.0001f);
+		assertTrue(record.getResources().isEmpty());
+		assertNull(this.registry.getDevice("cdaExtra"));
+	}
+	
+	@Test
+	public void testTouchDevice()
+	{
+		assertTrue(this.registry.registerDevice(createRegistration("cda1", 1)));
+		
+		long now = System.currentTimeMillis() + 1000L;
+		
+		assertTrue(this.registry.touchDevice("cda1", ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, now));
+		assertFalse(this.registry.touchDevice("unknown", ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, now));
+		
+		DeviceRecord record = this.registry.getDevice("cda1");
+		
+		assertEquals(now, record.getLastSeenMillis());
+		assertTrue(record.supportsResource(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE));
+		assertFalse(record.supportsResource(ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE));
+	}
+	
+	@Test
+	public void testInvalidRegistration()
+	{
+		assertFalse(this.registry.submitRegistration(null));
+		assertFalse(this.registry.registerDevice(DataUtil.getInstance().jsonToSensorData("{\"locationID\":\" \"}")));
+		assertEquals(0, this.registry.getDeviceCount());
+	}
+	
+	@Test
+	public void testSnapshotRestoresRegistry()
+	{
+		for (int i = 0; i < 1000; i++) {
+			this.registry.registerDevice(createRegistration("cda" + i, i));
+		}
+		
+		this.registry.touchDevice("cda42", ResourceNameEnum.CDA_ACTUATOR_RESPONSE_RESOURCE, System.currentTimeMillis());
+		
+		assertTrue(this.registry.saveSnapshot());
+		
+		DeviceRegistry restored = new DeviceRegistry(QUEUE_SIZE, BATCH_SIZE, this.snapshotFile, SNAPSHOT_MILLIS);
+		
+		assertEquals(1000, restored.loadSnapshot());
+		assertEquals(1000, restored.getDeviceCount());
+		
+		DeviceRecord record = restored.getDevice("cda42");
+		
+		_Logger.info("Restored device: " + record.getLocationID() + ", resources: " + record.getResources());
+		
+		assertEquals(42 * 0.001f, record.getLatitude(), 0.0001f);
+		assertEquals(this.registry.getDevice("cda42").getLastSeenMillis(), record.getLastSeenMillis());
+		assertTrue(record.supportsResource(ResourceNameEnum.CDA_ACTUATOR_RESPONSE_RESOURCE));
+	}
+	
+	@Test
+	public void testTruncatedSnapshotLoadsNothing() throws Exception
+	{
+		for (int i = 0; i < 100; i++) {
+			this.registry.registerDevice(createRegistration("cda" + i, i));
+		}
+		
+		assertTrue(this.registry.saveSnapshot());
+		
+		// cut the file off partway through the records
+		Path path = this.snapshotDir.resolve("registry.dat");
+		byte[] bytes = Files.readAllBytes(path);
+		
+		Files.write(path, Arrays.copyOf(bytes, bytes.length / 2));
+		
+		DeviceRegistry restored = new DeviceRegistry(QUEUE_SIZE, BATCH_SIZE, this.snapshotFile, SNAPSHOT_MILLIS);
+		
+		assertEquals(0, restored.loadSnapshot());
+		assertEquals(0, restored.getDeviceCount());
+		assertNull(restored.getDevice("cda0"));
+	}
+	
+	
+	// private methods
+	
+	private SensorData createRegistration(String locationID, int i)
+	{
+		SensorData data = new SensorData();
+		data.setLocationID(locationID);
+		data.setLatitude(i * 0.001f);
+		data.setLongitude(-i * 0.001f);
+		data.setElevation(10.0f);
+		
+		return data;
+	}
+
+}
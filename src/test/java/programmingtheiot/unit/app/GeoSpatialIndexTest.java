@@ -0,0 +1,175 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.unit.app;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.gda.app.GeoSpatialIndex;
+import programmingtheiot.gda.app.GeoSpatialIndex.GeoReading;
+import programmingtheiot.gda.app.GeoSpatialIndex.RegionAggregate;
+
+/**
+ * This test case class contains very basic unit tests for
+ * GeoSpatialIndex. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ * 
+ */
+public class GeoSpatialIndexTest
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(GeoSpatialIndexTest.class.getName());
+	
+	public static final int   PRECISION     = 6;
+	public static final long  WINDOW_MILLIS = 300000L;
+	public static final int   CAPACITY      = 64;
+	
+	// roughly 0.009 degrees of latitude per km
+	public static final float BASE_LAT = 42.3601f;
+	public static final float BASE_LON = -71.0589f;
+	
+	// member var's
+	
+	private GeoSpatialIndex index = null;
+	private long            now   = 0L;
+	
+	// test setup methods
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		this.index = new GeoSpatialIndex(PRECISION, WINDOW_MILLIS, CAPACITY);
+		this.now   = System.currentTimeMillis();
+		
+		// a 10 x 10 grid of humidity sensors, ~1 km apart, plus one temperature sensor
+		for (int i = 0; i < 10; i++) {
+			for (int j = 0; j < 10; j++) {
+				this.index.addSensorData(
+					createReading("cda-" + i + "-" + j, ConfigConst.HUMIDITY_SENSOR_TYPE,
+						BASE_LAT + i * 0.009f, BASE_LON + j * 0.0122f, 40.0f + i), this.now);
+			}
+		}
+		
+		this.index.addSensorData(
+			createReading("cda-temp", ConfigConst.TEMP_SENSOR_TYPE, BASE_LAT, BASE_LON, 21.0f), this.now);
+	}
+	
+	// test methods
+	
+	@Test
+	public void testToGeohash()
+	{
+		assertEquals("u4pruydq", GeoSpatialIndex.toGeohash(57.64911f, 10.40744f, 8));
+		assertEquals("drt2zp", GeoSpatialIndex.toGeohash(BASE_LAT, BASE_LON, 6));
+	}
+	
+	@Test
+	public void testBoundingBoxQuery()
+	{
+		List<GeoReading> readings = this.index.findInBoundingBox(
+			ConfigConst.HUMIDITY_SENSOR_TYPE,
+			BASE_LAT - 0.001f, BASE_LON - 0.001f, BASE_LAT + 0.019f, BASE_LON + 0.025f, 0L);
+		
+		// rows 0 - 2 and columns 0 - 2
+		assertEquals(9, readings.size());
+		
+		// wrong type, and readings older than 'since'
+		assertEquals(1, this.index.findInBoundingBox(
+			ConfigConst.TEMP_SENSOR_TYPE, BASE_LAT - 1.0f, BASE_LON - 1.0f, BASE_LAT + 1.0f, BASE_LON + 1.0f, 0L).size());
+		assertEquals(0, this.index.findInBoundingBox(
+			ConfigConst.HUMIDITY_SENSOR_TYPE, BASE_LAT - 1.0f, BASE_LON - 1.0f, BASE_LAT + 1.0f, BASE_LON + 1.0f, this.now + 1).size());
+	}
+	
+	@Test
+	public void testRadiusQuery()
+	{
+		List<GeoReading> readings = this.index.findWithinRadius(
+			ConfigConst.HUMIDITY_SENSOR_TYPE, BASE_LAT, BASE_LON, 2100.0, this.now - 60000L);
+		
+		_Logger.info("Readings within 2.1 km: " + readings.size());
+		
+		// (0,0), (0,1), (0,2), (1,0), (1,1), (2,0) are within ~2 km; (1,2) and (2,1) are ~2.24 km away
+		assertEquals(6, readings.size());
+	}
+	
+	@Test
+	public void testRegionAggregates()
+	{
+		String region = GeoSpatialIndex.toGeohash(BASE_LAT, BASE_LON, 3);
+		
+		RegionAggregate aggregate = this.index.getRegionAggregate(region, ConfigConst.HUMIDITY_SENSOR_TYPE, 0L);
+		
+		assertEquals(100, aggregate.getCount());
+		assertEquals(40.0f, aggregate.getMin(), 0.001f);
+		assertEquals(49.0f, aggregate.getMax(), 0.001f);
+		assertEquals(44.5f, aggregate.getMean(), 0.001f);
+		
+		assertNull(this.index.getRegionAggregate("drt2zpzz", ConfigConst.HUMIDITY_SENSOR_TYPE, 0L));
+		assertNull(this.index.getRegionAggregate("a", ConfigConst.HUMIDITY_SENSOR_TYPE, 0L));
+		
+		List<RegionAggregate> aggregates =
+			this.index.getRegionAggregates(5, ConfigConst.HUMIDITY_SENSOR_TYPE, 0L);
+		
+		int total = 0;
+		
+		for (RegionAggregate agg : aggregates) {
+			_Logger.info("Region " + agg.getGeohash() + ": count " + agg.getCount() + ", mean " + agg.getMean());
+			
+			assertEquals(5, agg.getGeohash().length());
+			total += agg.getCount();
+		}
+		
+		assertTrue(aggregates.size() > 1);
+		assertEquals(100, total);
+	}
+	
+	@Test
+	public void testInvalidPositionAndPurge()
+	{
+		assertFalse(this.index.addSensorData(createReading("bad", ConfigConst.TEMP_SENSOR_TYPE, 95.0f, 0.0f, 1.0f), this.now));
+		assertEquals(1, this.index.getSkippedCount());
+		
+		// no position set, so not indexed at (0, 0)
+		assertFalse(this.index.addSensorData(new SensorData(ConfigConst.TEMP_SENSOR_TYPE), this.now));
+		assertEquals(2, this.index.getSkippedCount());
+		
+		assertTrue(this.index.getCellCount() > 0);
+		assertEquals(this.index.getCellCount(), this.index.purgeExpired(this.now + WINDOW_MILLIS + 1));
+		assertEquals(0, this.index.getCellCount());
+	}
+	
+	
+	// private methods
+	
+	private SensorData createReading(String locationID, int typeID, float lat, float lon, float value)
+	{
+		SensorData data = new SensorData(typeID);
+		data.setLocationID(locationID);
+		data.setLatitude(lat);
+		data.setLongitude(lon);
+		data.setValue(value);
+		
+		return data;
+	}
+
+}
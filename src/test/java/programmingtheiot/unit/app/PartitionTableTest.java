@@ -0,0 +1,143 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.unit.app;
+
+import static org.junit.Assert.*;
+
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import programmingtheiot.gda.app.PartitionTable;
+
+/**
+ * This test case class contains very basic unit tests for
+ * PartitionTable. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ * 
+ */
+public class PartitionTableTest
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(PartitionTableTest.class.getName());
+	
+	public static final int  PARTITION_COUNT = 64;
+	public static final long MEMBER_TIMEOUT  = 3000L;
+	
+	// member var's
+	
+	private PartitionTable tableA = null;
+	private PartitionTable tableB = null;
+	private PartitionTable tableC = null;
+	
+	// test setup methods
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		this.tableA = new PartitionTable("gdaA", PARTITION_COUNT, MEMBER_TIMEOUT);
+		this.tableB = new PartitionTable("gdaB", PARTITION_COUNT, MEMBER_TIMEOUT);
+		this.tableC = new PartitionTable("gdaC", PARTITION_COUNT, MEMBER_TIMEOUT);
+	}
+	
+	// test methods
+	
+	@Test
+	public void testSingleMemberOwnsAll()
+	{
+		assertEquals(PARTITION_COUNT, this.tableA.getOwnedPartitions().size());
+		assertTrue(this.tableA.isOwned("constraineddevice001"));
+	}
+	
+	@Test
+	public void testPartitionsAreDisjointAndComplete()
+	{
+		joinAll(0L);
+		
+		int ownedCount = 0;
+		
+		for (int p = 0; p < PARTITION_COUNT; p++) {
+			int owners =
+				(this.tableA.isPartitionOwned(p) ? 1 : 0) +
+				(this.tableB.isPartitionOwned(p) ? 1 : 0) +
+				(this.tableC.isPartitionOwned(p) ? 1 : 0);
+			
+			assertEquals("Partition " + p + " must have exactly one owner", 1, owners);
+			
+			ownedCount += owners;
+		}
+		
+		_Logger.info(
+			"Owned: A = " + this.tableA.getOwnedPartitions().size() +
+			", B = " + this.tableB.getOwnedPartitions().size() +
+			", C = " + this.tableC.getOwnedPartitions().size());
+		
+		assertEquals(PARTITION_COUNT, ownedCount);
+		assertFalse(this.tableA.getOwnedPartitions().isEmpty());
+		assertFalse(this.tableB.getOwnedPartitions().isEmpty());
+		assertFalse(this.tableC.getOwnedPartitions().isEmpty());
+	}
+	
+	@Test
+	public void testMemberLeaveOnlyMovesItsPartitions()
+	{
+		joinAll(0L);
+		
+		boolean[] ownedByA = new boolean[PARTITION_COUNT];
+		
+		for (int p = 0; p < PARTITION_COUNT; p++) {
+			ownedByA[p] = this.tableA.isPartitionOwned(p);
+		}
+		
+		this.tableA.removeMember("gdaC");
+		this.tableB.removeMember("gdaC");
+		
+		for (int p = 0; p < PARTITION_COUNT; p++) {
+			if (ownedByA[p]) {
+				assertTrue(this.tableA.isPartitionOwned(p));
+			}
+			
+			assertTrue(this.tableA.isPartitionOwned(p) ^ this.tableB.isPartitionOwned(p));
+		}
+	}
+	
+	@Test
+	public void testExpireMembers()
+	{
+		this.tableA.updateMember("gdaB", 1000L);
+		
+		assertEquals(2, this.tableA.getMembers().size());
+		assertFalse(this.tableA.expireMembers(1000L + MEMBER_TIMEOUT));
+		assertTrue(this.tableA.expireMembers(1001L + MEMBER_TIMEOUT));
+		assertEquals(1, this.tableA.getMembers().size());
+		assertEquals(PARTITION_COUNT, this.tableA.getOwnedPartitions().size());
+	}
+	
+	// private methods
+	
+	private void joinAll(long nowMillis)
+	{
+		PartitionTable[] tables = { this.tableA, this.tableB, this.tableC };
+		
+		for (PartitionTable table : tables) {
+			for (PartitionTable peer : tables) {
+				table.updateMember(peer.getInstanceID(), nowMillis);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.unit.app;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.DataUtil;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SystemPerformanceData;
+import programmingtheiot.data.SystemStateData;
+import programmingtheiot.gda.app.SystemStateSnapshotBuilder;
+
+/**
+ * This test case class contains very basic unit tests for
+ * SystemStateSnapshotBuilder. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ * 
+ */
+public class SystemStateSnapshotBuilderTest
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(SystemStateSnapshotBuilderTest.class.getName());
+	
+	public static final int    CAPACITY    = 4;
+	public static final String LOCATION_ID = "gdaTest";
+	
+	// member var's
+	
+	private SystemStateSnapshotBuilder builder = null;
+	
+	// test setup methods
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		this.builder = new SystemStateSnapshotBuilder(CAPACITY, LOCATION_ID);
+	}
+	
+	// test methods
+	
+	@Test
+	public void testRingBufferKeepsMostRecent()
+	{
+		for (int i = 0; i < 10; i++) {
+			SensorData data = new SensorData(ConfigConst.TEMP_SENSOR_TYPE);
+			data.setValue(i);
+			
+			assertTrue(this.builder.addSensorData(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, data));
+		}
+		
+		SystemPerformanceData sysPerfData = new SystemPerformanceData();
+		sysPerfData.setCpuUtilization(5.0f);
+		
+		this.builder.addSystemPerformanceData(ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE, sysPerfData);
+		
+		SystemStateData stateData = this.builder.buildSnapshot(ConfigConst.ON_COMMAND);
+		List<SensorData> sensorDataList = stateData.getSensorDataList();
+		
+		assertEquals(LOCATION_ID, stateData.getLocationID());
+		assertEquals(ConfigConst.ON_COMMAND, stateData.getCommand());
+		assertEquals(CAPACITY, sensorDataList.size());
+		assertEquals(1, stateData.getSystemPerformanceDataList().size());
+		
+		// oldest retained first
+		for (int i = 0; i < CAPACITY; i++) {
+			assertEquals(10 - CAPACITY + i, sensorDataList.get(i).getValue(), 0.001f);
+		}
+		
+		assertEquals(10, this.builder.getReadingCount(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE));
+		assertTrue(this.builder.getLastUpdateMillis(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE) > 0L);
+		assertEquals(0, this.builder.getReadingCount(ResourceNameEnum.CDA_ACTUATOR_RESPONSE_RESOURCE));
+	}
+	
+	@Test
+	public void testSnapshotIsUnaffectedByLaterData()
+	{
+		this.builder.addSensorData(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, new SensorData());
+		
+		SystemStateData stateData = this.builder.buildSnapshot(ConfigConst.DEFAULT_COMMAND);
+		
+		this.builder.addSensorData(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, new SensorData());
+		
+		assertEquals(1, stateData.getSensorDataList().size());
+		assertEquals(2, this.builder.buildSnapshot(ConfigConst.DEFAULT_COMMAND).getSensorDataList().size());
+	}
+	
+	@Test
+	public void testSnapshotJsonReusedUntilDataChanges()
+	{
+		this.builder.addSensorData(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, new SensorData());
+		
+		String jsonData = this.builder.buildSnapshotJson();
+		
+		_Logger.info("System state snapshot: " + jsonData);
+		
+		assertSame(jsonData, this.builder.buildSnapshotJson());
+		assertEquals(1, DataUtil.getInstance().jsonToSystemStateData(jsonData).getSensorDataList().size());
+		
+		this.builder.addSensorData(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, new SensorData());
+		
+		assertNotSame(jsonData, this.builder.buildSnapshotJson());
+	}
+
+}
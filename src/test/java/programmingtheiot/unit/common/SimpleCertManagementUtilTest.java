@@ -9,9 +9,20 @@
 package programmingtheiot.unit.common;
 
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
 import java.util.logging.Logger;
 
 import javax.net.ssl.SSLSocketFactory;
@@ -50,6 +61,8 @@ public class SimpleCertManagementUtilTest
 	public static final String TEST_INVALID_CERT_FILEC = DIR_PREFIX + "test_cert_emptyC.pem";
 	
 	
+	public static final String JDK_TRUST_STORE = System.getProperty("java.home") + "/lib/security/cacerts";
+	
 	// member var's
 	
 	
@@ -101,7 +114,7 @@ public class SimpleCertManagementUtilTest
 	 * Tests {@link SimpleCertManagementUtil} with a null certificate file.
 	 * 
 	 */
-	//@Test
+	@Test
 	public void testImportOfCertFromNullFile()
 	{
 		SimpleCertManagementUtil certMgr = SimpleCertManagementUtil.getInstance();
@@ -115,7 +128,7 @@ public class SimpleCertManagementUtilTest
 	 * containing only the BEGIN / END entries.
 	 * 
 	 */
-	//@Test
+	@Test
 	public void testImportOfCertFromEmptyFileA()
 	{
 		SimpleCertManagementUtil certMgr = SimpleCertManagementUtil.getInstance();
@@ -129,7 +142,7 @@ public class SimpleCertManagementUtilTest
 	 * containing invalid text.
 	 * 
 	 */
-	//@Test
+	@Test
 	public void testImportOfCertFromEmptyFileB()
 	{
 		SimpleCertManagementUtil certMgr = SimpleCertManagementUtil.getInstance();
@@ -142,7 +155,7 @@ public class SimpleCertManagementUtilTest
 	 * Tests {@link SimpleCertManagementUtil} with an empty certificate file.
 	 * 
 	 */
-	//@Test
+	@Test
 	public void testImportOfCertFromEmptyFileC()
 	{
 		SimpleCertManagementUtil certMgr = SimpleCertManagementUtil.getInstance();
@@ -151,4 +164,106 @@ public class SimpleCertManagementUtilTest
 		org.junit.Assert.assertNull(factory);
 	}
 	
+	/**
+	 * Tests that repeated loads of an unchanged certificate are served
+	 * from the cache, and that a rotated certificate is swapped into the
+	 * same socket factory.
+	 * 
+	 */
+	@Test
+	public void testCachedContextAndRotation() throws Exception
+	{
+		List<Certificate> certs = loadJdkCertificates(2);
+		File certFile = File.createTempFile("piot_test_cert", ".pem");
+		certFile.deleteOnExit();
+		
+		writeCertificate(certFile, certs.get(0));
+		
+		SimpleCertManagementUtil certMgr = SimpleCertManagementUtil.getInstance();
+		
+		SSLSocketFactory factory = certMgr.loadCertificate(certFile.getAbsolutePath());
+		assertNotNull(factory);
+		
+		long hitCount    = certMgr.getCacheHitCount();
+		long reloadCount = certMgr.getReloadCount();
+		
+		assertSame(factory, certMgr.loadCertificate(certFile.getAbsolutePath()));
+		assertTrue(certMgr.getCacheHitCount() > hitCount);
+		assertFalse(certMgr.refreshCertificate(certFile.getAbsolutePath()));
+		
+		writeCertificate(certFile, certs.get(1));
+		
+		// the file watcher (if enabled) may already have reloaded the new cert
+		certMgr.refreshCertificate(certFile.getAbsolutePath());
+		
+		assertTrue(certMgr.getReloadCount() > reloadCount);
+		assertSame(factory, certMgr.loadCertificate(certFile.getAbsolutePath()));
+		assertNotNull(factory.getDefaultCipherSuites());
+	}
+	
+	/**
+	 * Tests that the file watcher reloads a certificate rotated on disk.
+	 * 
+	 */
+	@Test
+	public void testCertWatcher() throws Exception
+	{
+		List<Certificate> certs = loadJdkCertificates(2);
+		File certFile = File.createTempFile("piot_test_watch", ".pem");
+		certFile.deleteOnExit();
+		
+		writeCertificate(certFile, certs.get(0));
+		
+		SimpleCertManagementUtil certMgr = SimpleCertManagementUtil.getInstance();
+		
+		assertNotNull(certMgr.loadCertificate(certFile.getAbsolutePath()));
+		assertTrue(certMgr.startCertWatcher());
+		
+		long reloadCount = certMgr.getReloadCount();
+		
+		writeCertificate(certFile, certs.get(1));
+		
+		for (int i = 0; i < 50 && certMgr.getReloadCount() == reloadCount; i++) {
+			Thread.sleep(100L);
+		}
+		
+		_Logger.info("Reload count after rotation: " + certMgr.getReloadCount());
+		
+		assertTrue(certMgr.getReloadCount() > reloadCount);
+		assertTrue(certMgr.stopCertWatcher());
+	}
+	
+	
+	// private methods
+	
+	private List<Certificate> loadJdkCertificates(int count) throws Exception
+	{
+		KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+		
+		try (FileInputStream fis = new FileInputStream(JDK_TRUST_STORE)) {
+			keyStore.load(fis, null);
+		}
+		
+		List<String>      aliases = Collections.list(keyStore.aliases());
+		List<Certificate> certs   = new ArrayList<>();
+		
+		Collections.sort(aliases);
+		
+		for (int i = 0; i < count; i++) {
+			certs.add(keyStore.getCertificate(aliases.get(i)));
+		}
+		
+		return certs;
+	}
+	
+	private void writeCertificate(File file, Certificate cert) throws Exception
+	{
+		String pem =
+			"-----BEGIN CERTIFICATE-----\n" +
+			Base64.getMimeEncoder(64, "\n".getBytes(StandardCharsets.US_ASCII)).encodeToString(cert.getEncoded()) +
+			"\n-----END CERTIFICATE-----\n";
+		
+		Files.write(file.toPath(), pem.getBytes(StandardCharsets.US_ASCII));
+	}
+	
 }
@@ -0,0 +1,121 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.unit.connection;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.gda.connection.AlertDigestEngine;
+
+/**
+ * This test case class contains very basic unit tests for
+ * AlertDigestEngine. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ * 
+ */
+public class AlertDigestEngineTest
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(AlertDigestEngineTest.class.getName());
+	
+	// member var's
+	
+	private List<String> digests = null;
+	private boolean      isSendEnabled = true;
+	
+	// test setup methods
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		this.digests = new ArrayList<>();
+		this.isSendEnabled = true;
+	}
+	
+	// test methods
+	
+	@Test
+	public void testGroupsByResourceAndDevice()
+	{
+		AlertDigestEngine engine = createEngine(2);
+		
+		for (int i = 0; i < 10; i++) {
+			engine.addAlert(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, "deviceA", "Alert A" + i);
+			engine.addAlert(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, "deviceB", "Alert B" + i);
+		}
+		
+		engine.addAlert(ResourceNameEnum.CDA_ACTUATOR_RESPONSE_RESOURCE, "deviceA", "Actuator alert");
+		
+		assertEquals(3, engine.getPendingGroupCount());
+		assertEquals(2, engine.flushDigests());
+		assertEquals(0, engine.getPendingGroupCount());
+		assertEquals(0, engine.flushDigests());
+		
+		String digest = this.digests.get(0).contains("Alert A") ? this.digests.get(0) : this.digests.get(1);
+		
+		_Logger.info("Digest:\n" + digest);
+		
+		assertTrue(digest.contains("20 alert(s) from 2 device(s)"));
+		assertTrue(digest.contains("Alert A9"));
+		assertFalse(digest.contains("Alert A7"));
+	}
+	
+	@Test
+	public void testFailedDigestCarriesOver()
+	{
+		AlertDigestEngine engine = createEngine(5);
+		
+		engine.addAlert(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, "deviceA", "First");
+		
+		this.isSendEnabled = false;
+		
+		assertEquals(0, engine.flushDigests());
+		assertEquals(1, engine.getPendingGroupCount());
+		
+		engine.addAlert(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, "deviceA", "Second");
+		
+		this.isSendEnabled = true;
+		
+		assertEquals(1, engine.flushDigests());
+		assertTrue(this.digests.get(0).contains("Device deviceA: 2 alert(s)"));
+		assertTrue(this.digests.get(0).contains("First"));
+		assertTrue(this.digests.get(0).contains("Second"));
+	}
+	
+	
+	// private methods
+	
+	private AlertDigestEngine createEngine(int maxSamples)
+	{
+		return new AlertDigestEngine(
+			60000L, maxSamples,
+			(resource, msg) -> {
+				if (this.isSendEnabled) {
+					this.digests.add(msg);
+				}
+				
+				return this.isSendEnabled;
+			});
+	}
+
+}
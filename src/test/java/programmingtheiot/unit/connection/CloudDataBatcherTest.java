@@ -0,0 +1,249 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.unit.connection;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+import com.google.gson.Gson;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.DataUtil;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.gda.connection.CloudDataBatcher;
+
+/**
+ * This test case class contains very basic unit tests for
+ * CloudDataBatcher. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ * 
+ */
+public class CloudDataBatcherTest
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(CloudDataBatcherTest.class.getName());
+	
+	public static final int  MAX_ITEMS = 10;
+	public static final long MAX_DELAY = 1000L;
+	
+	// member var's
+	
+	private List<ResourceNameEnum> publishedResources = null;
+	private List<byte[]>           publishedPayloads  = null;
+	
+	// test setup methods
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		this.publishedResources = new CopyOnWriteArrayList<>();
+		this.publishedPayloads  = new CopyOnWriteArrayList<>();
+	}
+	
+	// test methods
+	
+	@Test
+	public void testFlushOnMaxItems() throws Exception
+	{
+		CloudDataBatcher batcher = createBatcher(ConfigConst.DEFAULT_MAX_MESSAGE_SIZE, ConfigConst.COMPRESSION_GZIP);
+		
+		for (int i = 0; i < MAX_ITEMS * 2 + 3; i++) {
+			assertTrue(batcher.addData(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, createSensorJson(i)));
+		}
+		
+		assertEquals(2, this.publishedPayloads.size());
+		assertEquals(2, batcher.getBatchCount());
+		assertEquals(MAX_ITEMS * 2, batcher.getItemCount());
+		assertEquals(1.0d, batcher.getAverageBatchFill(), 0.0001d);
+		
+		String json = gunzip(this.publishedPayloads.get(0));
+		SensorData[] items = new Gson().fromJson(json, SensorData[].class);
+		
+		assertEquals(MAX_ITEMS, items.length);
+		assertEquals(0.0f, items[0].getValue(), 0.0001f);
+		
+		// remaining 3 are flushed on demand
+		assertEquals(1, batcher.flushAll());
+		assertEquals(MAX_ITEMS * 2 + 3, batcher.getItemCount());
+		
+		_Logger.info("Compression ratio: " + batcher.getCompressionRatio());
+		
+		assertTrue(batcher.getCompressionRatio() > 1.0d);
+	}
+	
+	@Test
+	public void testFlushOnMaxMessageSize()
+	{
+		String json = createSensorJson(1);
+		int maxSize = (json.length() + 1) * 3 + 1;
+		
+		CloudDataBatcher batcher = createBatcher(maxSize, ConfigConst.COMPRESSION_NONE);
+		
+		for (int i = 0; i < 4; i++) {
+			batcher.addData(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, json);
+		}
+		
+		assertEquals(1, this.publishedPayloads.size());
+		
+		for (byte[] payload : this.publishedPayloads) {
+			assertTrue(payload.length <= maxSize);
+		}
+		
+		// an item that can never fit is dropped
+		StringBuilder sb = new StringBuilder();
+		
+		while (sb.length() < maxSize) {
+			sb.append(json);
+		}
+		
+		assertFalse(batcher.addData(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, sb.toString()));
+		assertEquals(1, batcher.getDroppedCount());
+	}
+	
+	@Test
+	public void testMaxMessageSizeAppliesToCompressedPayload() throws Exception
+	{
+		String json = createSensorJson(1);
+		int maxSize = (json.length() + 1) * 3 + 1;
+		int count = 30;
+		
+		CloudDataBatcher batcher = createBatcher(maxSize, ConfigConst.COMPRESSION_GZIP);
+		
+		assertEquals(ConfigConst.COMPRESSION_GZIP, batcher.getContentEncoding());
+		
+		for (int i = 0; i < count; i++) {
+			assertTrue(batcher.addData(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, json));
+		}
+		
+		batcher.flushAll();
+		
+		// uncompressed, only 3 items fit; repeated readings compress well
+		assertTrue(this.publishedPayloads.size() < count / 3);
+		
+		int items = 0;
+		
+		for (byte[] payload : this.publishedPayloads) {
+			assertTrue(payload.length <= maxSize);
+			
+			items += new Gson().fromJson(gunzip(payload), SensorData[].class).length;
+		}
+		
+		assertEquals(count, items);
+		assertEquals(0, batcher.getDroppedCount());
+	}
+	
+	@Test
+	public void testScheduledFlushFromFirstItem() throws Exception
+	{
+		long maxDelay = 200L;
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+		
+		CloudDataBatcher batcher =
+			new CloudDataBatcher(
+				MAX_ITEMS, maxDelay, ConfigConst.DEFAULT_MAX_MESSAGE_SIZE, ConfigConst.COMPRESSION_NONE,
+				(resource, payload) -> this.publishedPayloads.add(payload));
+		
+		assertNull(batcher.getContentEncoding());
+		
+		try {
+			batcher.setFlushScheduler(scheduler);
+			
+			long startMillis = System.currentTimeMillis();
+			
+			batcher.addData(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, createSensorJson(1));
+			
+			while (this.publishedPayloads.isEmpty() && System.currentTimeMillis() - startMillis < maxDelay * 10) {
+				Thread.sleep(5L);
+			}
+			
+			long waitMillis = System.currentTimeMillis() - startMillis;
+			
+			_Logger.info("Batch flushed after " + waitMillis + " ms. Max delay: " + maxDelay + " ms");
+			
+			assertEquals(1, this.publishedPayloads.size());
+			assertTrue(waitMillis >= maxDelay);
+		} finally {
+			scheduler.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void testFlushExpiredPerResource()
+	{
+		CloudDataBatcher batcher = createBatcher(ConfigConst.DEFAULT_MAX_MESSAGE_SIZE, ConfigConst.COMPRESSION_DEFLATE);
+		
+		batcher.addData(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, createSensorJson(1));
+		batcher.addData(ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE, createSensorJson(2));
+		
+		long now = System.currentTimeMillis();
+		
+		assertEquals(0, batcher.flushExpired(now));
+		assertEquals(2, batcher.flushExpired(now + MAX_DELAY + 1));
+		
+		assertTrue(this.publishedResources.contains(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE));
+		assertTrue(this.publishedResources.contains(ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE));
+		assertEquals(0, batcher.flushAll());
+	}
+	
+	
+	// private methods
+	
+	private CloudDataBatcher createBatcher(int maxMessageSize, String compression)
+	{
+		return new CloudDataBatcher(
+			MAX_ITEMS, MAX_DELAY, maxMessageSize, compression,
+			(resource, payload) -> {
+				this.publishedResources.add(resource);
+				this.publishedPayloads.add(payload);
+				
+				return true;
+			});
+	}
+	
+	private String createSensorJson(int val)
+	{
+		SensorData data = new SensorData(ConfigConst.TEMP_SENSOR_TYPE);
+		data.setName(ConfigConst.TEMP_SENSOR_NAME);
+		data.setValue(val);
+		
+		return DataUtil.getInstance().sensorDataToJson(data);
+	}
+	
+	private String gunzip(byte[] payload) throws Exception
+	{
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			in.transferTo(out);
+			
+			return out.toString(StandardCharsets.UTF_8.name());
+		}
+	}
+
+}
@@ -0,0 +1,267 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.unit.connection;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import programmingtheiot.common.IActuatorDataListener;
+import programmingtheiot.common.IDataMessageListener;
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.ActuatorData;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SystemPerformanceData;
+import programmingtheiot.gda.connection.DataMessageDispatcher;
+import programmingtheiot.gda.connection.OverflowPolicy;
+
+/**
+ * This test case class contains very basic unit tests for
+ * DataMessageDispatcher. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ * 
+ */
+public class DataMessageDispatcherTest
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(DataMessageDispatcherTest.class.getName());
+	
+	public static final ResourceNameEnum SENSOR_RESOURCE  = ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE;
+	public static final ResourceNameEnum SYSPERF_RESOURCE = ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE;
+	
+	public static final long WAIT_MILLIS = 5000L;
+	
+	// member var's
+	
+	private DataMessageDispatcher dispatcher = null;
+	
+	// test setup methods
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		this.dispatcher = new DataMessageDispatcher(8, OverflowPolicy.DROP_OLDEST, 50L);
+	}
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		if (this.dispatcher.isStarted()) {
+			this.dispatcher.stopDispatcher();
+		}
+	}
+	
+	// test methods
+	
+	@Test
+	public void testFanOutByResource() throws Exception
+	{
+		RecordingListener all = new RecordingListener(null, 3);
+		RecordingListener sensorOnly = new RecordingListener(null, 2);
+		
+		assertTrue(this.dispatcher.subscribe("all", all));
+		assertTrue(this.dispatcher.subscribe("sensor", sensorOnly, SENSOR_RESOURCE));
+		assertFalse(this.dispatcher.subscribe("sensor", all));
+		assertTrue(this.dispatcher.startDispatcher());
+		
+		assertTrue(this.dispatcher.handleSensorMessage(SENSOR_RESOURCE, new SensorData()));
+		assertTrue(this.dispatcher.handleSystemPerformanceMessage(SYSPERF_RESOURCE, new SystemPerformanceData()));
+		assertTrue(this.dispatcher.handleIncomingMessage(SENSOR_RESOURCE, ByteBuffer.wrap("test".getBytes(StandardCharsets.UTF_8))));
+		
+		assertTrue(all.done.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+		assertTrue(sensorOnly.done.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+		
+		assertEquals(3, all.received.size());
+		assertEquals(2, sensorOnly.received.size());
+		assertFalse(sensorOnly.received.contains(SYSPERF_RESOURCE.name()));
+		
+		// each subscriber read the full payload from its own view of the buffer
+		assertEquals("test", all.lastMessage);
+		assertEquals("test", sensorOnly.lastMessage);
+		
+		// nobody subscribes to actuator responses but "all"
+		assertTrue(this.dispatcher.unsubscribe("all"));
+		assertFalse(this.dispatcher.handleActuatorCommandResponse(ResourceNameEnum.CDA_ACTUATOR_RESPONSE_RESOURCE, new ActuatorData()));
+	}
+	
+	@Test
+	public void testSlowSubscriberIsIsolated() throws Exception
+	{
+		CountDownLatch release = new CountDownLatch(1);
+		
+		RecordingListener slow = new RecordingListener(release, 0);
+		RecordingListener fast = new RecordingListener(null, 20);
+		
+		assertTrue(this.dispatcher.subscribe("slow", slow, OverflowPolicy.DROP_NEWEST, 4));
+		assertTrue(this.dispatcher.subscribe("fast", fast, OverflowPolicy.DROP_OLDEST, 32));
+		assertTrue(this.dispatcher.startDispatcher());
+		
+		long startMillis = System.currentTimeMillis();
+		
+		for (int i = 0; i < 20; i++) {
+			assertTrue(this.dispatcher.handleSensorMessage(SENSOR_RESOURCE, new SensorData()));
+		}
+		
+		// the caller never waited on the blocked subscriber
+		assertTrue(System.currentTimeMillis() - startMillis < WAIT_MILLIS);
+		assertTrue(fast.done.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+		
+		_Logger.info("Slow subscriber dropped: " + this.dispatcher.getDroppedCount("slow"));
+		
+		// one message in progress plus a full mailbox; the rest were dropped
+		assertTrue(this.dispatcher.getDroppedCount("slow") >= 20 - 5);
+		assertEquals(0L, this.dispatcher.getDroppedCount("fast"));
+		
+		release.countDown();
+		
+		assertTrue(this.dispatcher.stopDispatcher());
+		assertEquals(20L, this.dispatcher.getDeliveredCount("slow") + this.dispatcher.getDroppedCount("slow"));
+	}
+	
+	@Test
+	public void testDropOldestAndFailures() throws Exception
+	{
+		RecordingListener failing = new RecordingListener(null, 0);
+		failing.fail = true;
+		
+		// queued before the dispatcher starts, so the mailbox overflows
+		assertTrue(this.dispatcher.subscribe("failing", failing, OverflowPolicy.DROP_OLDEST, 4));
+		
+		for (int i = 0; i < 10; i++) {
+			this.dispatcher.handleSensorMessage(SENSOR_RESOURCE, new SensorData());
+		}
+		
+		assertEquals(4, this.dispatcher.getMailboxDepth("failing"));
+		assertEquals(6L, this.dispatcher.getDroppedCount("failing"));
+		
+		assertTrue(this.dispatcher.startDispatcher());
+		assertTrue(this.dispatcher.stopDispatcher());
+		
+		assertEquals(4L, this.dispatcher.getFailedCount("failing"));
+		assertEquals(0, this.dispatcher.getMailboxDepth("failing"));
+	}
+	
+	@Test
+	public void testGrowNeverDrops() throws Exception
+	{
+		RecordingListener control = new RecordingListener(null, 10);
+		
+		assertTrue(this.dispatcher.subscribe("control", control, OverflowPolicy.GROW, 4, ResourceNameEnum.CDA_ACTUATOR_RESPONSE_RESOURCE));
+		
+		// queued before the dispatcher starts, well past the mailbox size
+		for (int i = 0; i < 10; i++) {
+			assertTrue(this.dispatcher.handleActuatorCommandResponse(ResourceNameEnum.CDA_ACTUATOR_RESPONSE_RESOURCE, new ActuatorData()));
+		}
+		
+		assertEquals(10, this.dispatcher.getMailboxDepth("control"));
+		assertEquals(0L, this.dispatcher.getDroppedCount("control"));
+		
+		assertTrue(this.dispatcher.startDispatcher());
+		assertTrue(control.done.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+		assertEquals(10L, this.dispatcher.getDeliveredCount("control"));
+	}
+	
+	
+	// inner classes
+	
+	private static class RecordingListener implements IDataMessageListener
+	{
+		private final CountDownLatch release;
+		private final CountDownLatch done;
+		
+		private final List<String> received = new CopyOnWriteArrayList<>();
+		
+		private volatile String  lastMessage = null;
+		private volatile boolean fail = false;
+		
+		RecordingListener(CountDownLatch release, int expected)
+		{
+			this.release = release;
+			this.done = new CountDownLatch(expected);
+		}
+		
+		@Override
+		public boolean handleActuatorCommandResponse(ResourceNameEnum resourceName, ActuatorData data)
+		{
+			return record(resourceName);
+		}
+		
+		@Override
+		public boolean handleActuatorCommandRequest(ResourceNameEnum resourceName, ActuatorData data)
+		{
+			return record(resourceName);
+		}
+		
+		@Override
+		public boolean handleIncomingMessage(ResourceNameEnum resourceName, String msg)
+		{
+			this.lastMessage = msg;
+			
+			return record(resourceName);
+		}
+		
+		@Override
+		public boolean handleSensorMessage(ResourceNameEnum resourceName, SensorData data)
+		{
+			return record(resourceName);
+		}
+		
+		@Override
+		public boolean handleSystemPerformanceMessage(ResourceNameEnum resourceName, SystemPerformanceData data)
+		{
+			return record(resourceName);
+		}
+		
+		@Override
+		public void setActuatorDataListener(String name, IActuatorDataListener listener)
+		{
+		}
+		
+		private boolean record(ResourceNameEnum resourceName)
+		{
+			if (this.fail) {
+				throw new IllegalStateException("Test failure");
+			}
+			
+			if (this.release != null) {
+				try {
+					this.release.await(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			
+			this.received.add(resourceName.name());
+			this.done.countDown();
+			
+			return true;
+		}
+	}
+
+}
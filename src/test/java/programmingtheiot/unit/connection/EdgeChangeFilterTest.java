@@ -0,0 +1,184 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.unit.connection;
+
+import static org.junit.Assert.*;
+
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ConfigUtil;
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.gda.connection.CloudClientConnector;
+import programmingtheiot.gda.connection.EdgeChangeFilter;
+
+/**
+ * This test case class contains very basic unit tests for
+ * EdgeChangeFilter. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ * 
+ */
+public class EdgeChangeFilterTest
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(EdgeChangeFilterTest.class.getName());
+	
+	public static final String DEVICE_ID   = "constraineddevice001";
+	public static final long   MAX_SILENCE = 60000L;
+	
+	// test methods
+	
+	@Test
+	public void testAbsoluteDeadband()
+	{
+		EdgeChangeFilter filter = new EdgeChangeFilter(0.5f, 0.0f, 0L);
+		
+		assertEquals(20.0f, filter.filter(DEVICE_ID, ConfigConst.TEMP_SENSOR_TYPE, 20.0f, 0L), 0.0001f);
+		assertTrue(Float.isNaN(filter.filter(DEVICE_ID, ConfigConst.TEMP_SENSOR_TYPE, 20.4f, 1L)));
+		assertTrue(Float.isNaN(filter.filter(DEVICE_ID, ConfigConst.TEMP_SENSOR_TYPE, 19.6f, 2L)));
+		
+		// delta is relative to the last forwarded value, not the last sample
+		assertEquals(0.6f, filter.filter(DEVICE_ID, ConfigConst.TEMP_SENSOR_TYPE, 20.6f, 3L), 0.0001f);
+		
+		assertEquals(2, filter.getForwardedCount());
+		assertEquals(2, filter.getSuppressedCount());
+	}
+	
+	@Test
+	public void testRelativeDeadband()
+	{
+		EdgeChangeFilter filter = new EdgeChangeFilter(0.0f, 0.1f, 0L);
+		
+		filter.filter(DEVICE_ID, ConfigConst.PRESSURE_SENSOR_TYPE, 1000.0f, 0L);
+		
+		assertTrue(Float.isNaN(filter.filter(DEVICE_ID, ConfigConst.PRESSURE_SENSOR_TYPE, 1090.0f, 1L)));
+		assertEquals(110.0f, filter.filter(DEVICE_ID, ConfigConst.PRESSURE_SENSOR_TYPE, 1110.0f, 2L), 0.0001f);
+	}
+	
+	@Test
+	public void testEitherDeadbandForwards()
+	{
+		EdgeChangeFilter filter = new EdgeChangeFilter(5.0f, 0.01f, 0L);
+		
+		filter.filter(DEVICE_ID, ConfigConst.PRESSURE_SENSOR_TYPE, 1000.0f, 0L);
+		
+		// inside both deadbands
+		assertTrue(Float.isNaN(filter.filter(DEVICE_ID, ConfigConst.PRESSURE_SENSOR_TYPE, 1004.0f, 1L)));
+		
+		// outside the absolute deadband only (0.6%)
+		assertEquals(6.0f, filter.filter(DEVICE_ID, ConfigConst.PRESSURE_SENSOR_TYPE, 1006.0f, 2L), 0.0001f);
+		
+		filter.filter(DEVICE_ID, ConfigConst.TEMP_SENSOR_TYPE, 2.0f, 0L);
+		
+		// outside the relative deadband only (0.5 > 1% of 2.0)
+		assertEquals(0.5f, filter.filter(DEVICE_ID, ConfigConst.TEMP_SENSOR_TYPE, 2.5f, 1L), 0.0001f);
+	}
+	
+	@Test
+	public void testCloudClientSuppressesUnchangedValue()
+	{
+		// uses the change filter and batching settings from the default config file's cloud section
+		System.clearProperty(ConfigConst.CONFIG_FILE_KEY);
+		ConfigUtil.getInstance().reloadConfig();
+		
+		CloudClientConnector cloudClient = new CloudClientConnector();
+		
+		assertNotNull(cloudClient.getChangeFilter());
+		assertNotNull(cloudClient.getDataBatcher());
+		
+		SensorData data = new SensorData(ConfigConst.TEMP_SENSOR_TYPE);
+		data.setLocationID(DEVICE_ID);
+		data.setValue(20.0f);
+		
+		assertTrue(cloudClient.sendEdgeDataToCloud(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, data));
+		assertTrue(cloudClient.sendEdgeDataToCloud(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, data));
+		
+		assertEquals(1, cloudClient.getChangeFilter().getForwardedCount());
+		assertEquals(1, cloudClient.getChangeFilter().getSuppressedCount());
+		
+		// only the first value reached the batcher (and can't be published while disconnected)
+		assertEquals(1, cloudClient.getDataBatcher().flushAll());
+		assertEquals(1, cloudClient.getDataBatcher().getDroppedCount());
+	}
+	
+	@Test
+	public void testMaxSilenceHeartbeat()
+	{
+		EdgeChangeFilter filter = new EdgeChangeFilter(1.0f, 0.0f, MAX_SILENCE);
+		
+		filter.filter(DEVICE_ID, ConfigConst.HUMIDITY_SENSOR_TYPE, 40.0f, 0L);
+		
+		assertTrue(Float.isNaN(filter.filter(DEVICE_ID, ConfigConst.HUMIDITY_SENSOR_TYPE, 40.1f, MAX_SILENCE - 1)));
+		assertEquals(0.2f, filter.filter(DEVICE_ID, ConfigConst.HUMIDITY_SENSOR_TYPE, 40.2f, MAX_SILENCE), 0.0001f);
+		assertEquals(1, filter.getHeartbeatCount());
+	}
+	
+	@Test
+	public void testStreamsAreIndependent()
+	{
+		EdgeChangeFilter filter = new EdgeChangeFilter(0.5f, 0.0f, 0L);
+		
+		int deviceCount = 5000;
+		float deltaSum = 0.0f;
+		
+		for (int i = 0; i < deviceCount; i++) {
+			String deviceID = "device" + i;
+			
+			filter.filter(deviceID, ConfigConst.TEMP_SENSOR_TYPE, 20.0f, 0L);
+			filter.filter(deviceID, ConfigConst.HUMIDITY_SENSOR_TYPE, 40.0f, 0L);
+		}
+		
+		assertEquals(deviceCount, filter.getDeviceCount());
+		assertEquals(deviceCount * 2, filter.getStreamCount());
+		
+		// summing forwarded deltas reconstructs the last forwarded value
+		float[] samples = {21.0f, 21.2f, 22.0f, 21.9f, 20.0f};
+		
+		for (int i = 0; i < samples.length; i++) {
+			float delta = filter.filter("device42", ConfigConst.TEMP_SENSOR_TYPE, samples[i], i + 1);
+			
+			if (! Float.isNaN(delta)) {
+				deltaSum += delta;
+			}
+		}
+		
+		_Logger.info("Reconstructed value: " + (20.0f + deltaSum));
+		
+		assertEquals(20.0f, 20.0f + deltaSum, 0.0001f);
+		assertTrue(Float.isNaN(filter.filter("device43", ConfigConst.TEMP_SENSOR_TYPE, 20.1f, 1L)));
+	}
+	
+	@Test
+	public void testUncommittedValueIsNotBaseline()
+	{
+		EdgeChangeFilter filter = new EdgeChangeFilter(0.5f, 0.0f, 0L);
+		
+		filter.filter(DEVICE_ID, ConfigConst.TEMP_SENSOR_TYPE, 20.0f, 0L);
+		
+		// checked but never committed, e.g. because the send failed
+		assertEquals(1.0f, filter.check(DEVICE_ID, ConfigConst.TEMP_SENSOR_TYPE, 21.0f, 1L), 0.0001f);
+		
+		// so a later value within the deadband of it is still forwarded
+		assertEquals(1.2f, filter.check(DEVICE_ID, ConfigConst.TEMP_SENSOR_TYPE, 21.2f, 2L), 0.0001f);
+		
+		filter.commit(DEVICE_ID, ConfigConst.TEMP_SENSOR_TYPE, 21.2f, 2L);
+		
+		assertTrue(Float.isNaN(filter.check(DEVICE_ID, ConfigConst.TEMP_SENSOR_TYPE, 21.0f, 3L)));
+		assertEquals(2, filter.getForwardedCount());
+		assertEquals(1, filter.getSuppressedCount());
+	}
+
+}
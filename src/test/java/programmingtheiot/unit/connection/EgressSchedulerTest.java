@@ -0,0 +1,206 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.unit.connection;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.gda.connection.EgressPriority;
+import programmingtheiot.gda.connection.EgressScheduler;
+
+/**
+ * This test case class contains very basic unit tests for
+ * EgressScheduler. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ * 
+ */
+public class EgressSchedulerTest
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(EgressSchedulerTest.class.getName());
+	
+	public static final String CHANNEL = "test";
+	
+	// member var's
+	
+	private EgressScheduler scheduler = null;
+	
+	// test setup methods
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		if (this.scheduler != null && this.scheduler.isStarted()) {
+			this.scheduler.stopScheduler();
+		}
+	}
+	
+	// test methods
+	
+	@Test
+	public void testActuationBypassesQueuedBulkData() throws Exception
+	{
+		this.scheduler = new EgressScheduler(new int[] {8, 4, 2, 1}, 1000);
+		this.scheduler.addChannel(CHANNEL, 0.0d, 1);
+		
+		List<EgressPriority> sendOrder = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch gate = new CountDownLatch(1);
+		
+		// block the worker so everything below queues up behind it
+		this.scheduler.submit(CHANNEL, EgressPriority.SENSOR, () -> await(gate));
+		this.scheduler.startScheduler();
+		
+		for (int i = 0; i < 100; i++) {
+			this.scheduler.submit(CHANNEL, EgressPriority.SENSOR, () -> sendOrder.add(EgressPriority.SENSOR));
+		}
+		
+		this.scheduler.submit(CHANNEL, EgressPriority.ACTUATION, () -> sendOrder.add(EgressPriority.ACTUATION));
+		
+		gate.countDown();
+		this.scheduler.stopScheduler();
+		
+		assertEquals(101, sendOrder.size());
+		assertEquals(EgressPriority.ACTUATION, sendOrder.get(0));
+		assertEquals(102, this.scheduler.getSentCount(EgressPriority.SENSOR) + this.scheduler.getSentCount(EgressPriority.ACTUATION));
+	}
+	
+	@Test
+	public void testWeightedFairQueuing() throws Exception
+	{
+		this.scheduler = new EgressScheduler(new int[] {8, 4, 2, 1}, 1000);
+		this.scheduler.addChannel(CHANNEL, 0.0d, 1);
+		
+		List<EgressPriority> sendOrder = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch gate = new CountDownLatch(1);
+		
+		this.scheduler.submit(CHANNEL, EgressPriority.SENSOR, () -> await(gate));
+		this.scheduler.startScheduler();
+		
+		for (int i = 0; i < 60; i++) {
+			this.scheduler.submit(CHANNEL, EgressPriority.SENSOR, () -> sendOrder.add(EgressPriority.SENSOR));
+			this.scheduler.submit(CHANNEL, EgressPriority.ALERT, () -> sendOrder.add(EgressPriority.ALERT));
+		}
+		
+		gate.countDown();
+		this.scheduler.stopScheduler();
+		
+		// alerts have 4x the weight, so the first 50 sends are ~40 alerts and ~10 sensor
+		int alerts = 0;
+		
+		for (int i = 0; i < 50; i++) {
+			if (sendOrder.get(i) == EgressPriority.ALERT) {
+				++alerts;
+			}
+		}
+		
+		_Logger.info("Alerts in first 50 sends: " + alerts);
+		
+		assertTrue(alerts >= 38 && alerts <= 42);
+		
+		// sensor data still progresses
+		assertTrue(sendOrder.subList(0, 50).contains(EgressPriority.SENSOR));
+	}
+	
+	@Test
+	public void testTokenBucketRateLimit() throws Exception
+	{
+		this.scheduler = new EgressScheduler(null, 1000);
+		this.scheduler.addChannel(CHANNEL, 50.0d, 5);
+		this.scheduler.startScheduler();
+		
+		CountDownLatch done = new CountDownLatch(30);
+		long start = System.nanoTime();
+		
+		for (int i = 0; i < 30; i++) {
+			this.scheduler.submit(CHANNEL, EgressPriority.SENSOR, () -> { done.countDown(); return true; });
+		}
+		
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		
+		_Logger.info("30 sends at 50/sec with burst 5 took " + elapsedMillis + " ms");
+		
+		// 5 burst + 25 at 50/sec = ~500ms
+		assertTrue(elapsedMillis >= 400);
+	}
+	
+	@Test
+	public void testQueueFullAndUnknownChannel()
+	{
+		this.scheduler = new EgressScheduler(null, 2);
+		this.scheduler.addChannel(CHANNEL, 0.0d, 1);
+		
+		assertTrue(this.scheduler.submit(CHANNEL, EgressPriority.SENSOR, () -> true));
+		assertTrue(this.scheduler.submit(CHANNEL, EgressPriority.SENSOR, () -> true));
+		assertFalse(this.scheduler.submit(CHANNEL, EgressPriority.SENSOR, () -> true));
+		assertTrue(this.scheduler.submit(CHANNEL, EgressPriority.ACTUATION, () -> true));
+		assertFalse(this.scheduler.submit("unknown", EgressPriority.ACTUATION, () -> true));
+		
+		assertEquals(1, this.scheduler.getDroppedCount(EgressPriority.SENSOR));
+		assertEquals(2, this.scheduler.getQueueDepth(CHANNEL, EgressPriority.SENSOR));
+		assertEquals(EgressPriority.ACTUATION, EgressPriority.fromResource(ResourceNameEnum.CDA_ACTUATOR_CMD_RESOURCE));
+	}
+	
+	@Test
+	public void testScheduleCompletesWithSendResult() throws Exception
+	{
+		this.scheduler = new EgressScheduler(null, 10);
+		this.scheduler.addChannel(CHANNEL, 0.0d, 1);
+		
+		// no worker to run it yet, so the result could never arrive
+		CompletableFuture<Boolean> early = this.scheduler.schedule(CHANNEL, EgressPriority.ACTUATION, () -> true);
+		
+		assertTrue(early.isDone());
+		assertFalse(early.get());
+		
+		this.scheduler.startScheduler();
+		
+		CompletableFuture<Boolean> sent = this.scheduler.schedule(CHANNEL, EgressPriority.ACTUATION, () -> true);
+		CompletableFuture<Boolean> failed = this.scheduler.schedule(CHANNEL, EgressPriority.ALERT, () -> false);
+		CompletableFuture<Boolean> thrown =
+			this.scheduler.schedule(CHANNEL, EgressPriority.ALERT, () -> { throw new IllegalStateException("test"); });
+		
+		assertTrue(sent.get(5, TimeUnit.SECONDS));
+		assertFalse(failed.get(5, TimeUnit.SECONDS));
+		assertFalse(thrown.get(5, TimeUnit.SECONDS));
+		assertEquals(2, this.scheduler.getFailedCount(EgressPriority.ALERT));
+	}
+	
+	
+	// private methods
+	
+	private boolean await(CountDownLatch latch)
+	{
+		try {
+			return latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,254 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.unit.connection;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.logging.Logger;
+
+import org.eclipse.paho.client.mqttv3.MqttPersistable;
+import org.eclipse.paho.client.mqttv3.MqttPersistenceException;
+import org.eclipse.paho.client.mqttv3.internal.MqttPersistentData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import programmingtheiot.gda.connection.MappedLogPersistence;
+
+/**
+ * This test case class contains very basic unit tests for
+ * MappedLogPersistence. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ * 
+ */
+public class MappedLogPersistenceTest
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(MappedLogPersistenceTest.class.getName());
+	
+	public static final String CLIENT_ID  = "testClient";
+	public static final String SERVER_URI = "tcp://localhost:1883";
+	public static final long   COMPACT_BYTES = 256L * 1024L;
+	
+	// member var's
+	
+	private File dataDir = null;
+	private MappedLogPersistence store = null;
+	
+	// test setup methods
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		this.dataDir = Files.createTempDirectory("piot_mlog").toFile();
+		this.store   = new MappedLogPersistence(this.dataDir.getAbsolutePath(), COMPACT_BYTES);
+		
+		this.store.open(CLIENT_ID, SERVER_URI);
+	}
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		this.store.close();
+		
+		for (File file : this.dataDir.listFiles()) {
+			file.delete();
+		}
+		
+		this.dataDir.delete();
+	}
+	
+	// test methods
+	
+	@Test
+	public void testPutGetRemove() throws Exception
+	{
+		this.store.put("s-1", createMessage("s-1", "header", "payload"));
+		this.store.put("s-2", createMessage("s-2", "header2", null));
+		
+		assertTrue(this.store.containsKey("s-1"));
+		assertEquals("headerpayload", toString(this.store.get("s-1")));
+		assertEquals("header2", toString(this.store.get("s-2")));
+		assertEquals(2, Collections.list(this.store.keys()).size());
+		
+		this.store.remove("s-1");
+		
+		assertFalse(this.store.containsKey("s-1"));
+		assertNull(this.store.get("s-1"));
+		assertEquals(1, this.store.size());
+	}
+	
+	@Test
+	public void testStateSurvivesReopen() throws Exception
+	{
+		this.store.put("s-1", createMessage("s-1", "a", "1"));
+		this.store.put("s-2", createMessage("s-2", "b", "2"));
+		this.store.put("s-1", createMessage("s-1", "c", "3"));
+		this.store.remove("s-2");
+		this.store.close();
+		
+		this.store.open(CLIENT_ID, SERVER_URI);
+		
+		assertEquals(1, this.store.size());
+		assertEquals("c3", toString(this.store.get("s-1")));
+		
+		this.store.clear();
+		this.store.put("s-3", createMessage("s-3", "d", "4"));
+		this.store.close();
+		
+		this.store.open(CLIENT_ID, SERVER_URI);
+		
+		// records written before the clear must not be replayed
+		assertEquals(1, this.store.size());
+		assertEquals("d4", toString(this.store.get("s-3")));
+	}
+	
+	@Test
+	public void testTornRecordIsIgnored() throws Exception
+	{
+		this.store.put("s-1", createMessage("s-1", "a", "1"));
+		
+		long goodSize = this.store.getLogSize();
+		
+		this.store.put("s-2", createMessage("s-2", "b", "2"));
+		this.store.close();
+		
+		// corrupt the last byte of the second record
+		try (RandomAccessFile file = new RandomAccessFile(this.dataDir.listFiles()[0], "rw")) {
+			file.seek(this.store.getLogSize() - 1);
+			file.write('X');
+		}
+		
+		this.store.open(CLIENT_ID, SERVER_URI);
+		
+		assertEquals(1, this.store.size());
+		assertEquals(goodSize, this.store.getLogSize());
+		assertTrue(this.store.containsKey("s-1"));
+	}
+	
+	@Test
+	public void testSecondOpenIsRejected() throws Exception
+	{
+		MappedLogPersistence other = new MappedLogPersistence(this.dataDir.getAbsolutePath(), COMPACT_BYTES);
+		
+		try {
+			other.open(CLIENT_ID, SERVER_URI);
+			fail("Expected the log to be locked.");
+		} catch (MqttPersistenceException e) {
+			assertEquals(MqttPersistenceException.REASON_CODE_PERSISTENCE_IN_USE, e.getReasonCode());
+		}
+	}
+	
+	@Test
+	public void testFailedCompactionKeepsStoreOpen() throws Exception
+	{
+		byte[] payload = new byte[64];
+		
+		for (int i = 0; i < 20; i++) {
+			String key = "s-" + i;
+			
+			this.store.put(key, new MqttPersistentData(key, new byte[4], 0, 4, payload, 0, payload.length));
+		}
+		
+		for (int i = 0; i < 15; i++) {
+			this.store.remove("s-" + i);
+		}
+		
+		// a directory in place of the temporary file makes the rewrite fail
+		File logFile = this.dataDir.listFiles()[0];
+		
+		assertTrue(new File(this.dataDir, logFile.getName() + ".tmp").mkdir());
+		
+		long logSize = this.store.getLogSize();
+		
+		assertFalse(this.store.compact());
+		assertEquals(0, this.store.getCompactCount());
+		assertEquals(logSize, this.store.getLogSize());
+		
+		this.store.put("s-20", new MqttPersistentData("s-20", new byte[4], 0, 4, payload, 0, payload.length));
+		
+		assertEquals(6, this.store.size());
+		
+		this.store.close();
+		this.store.open(CLIENT_ID, SERVER_URI);
+		
+		assertEquals(6, this.store.size());
+		assertTrue(this.store.containsKey("s-20"));
+	}
+	
+	@Test
+	public void testThroughputAndCompaction() throws Exception
+	{
+		int    count   = 50000;
+		byte[] payload = new byte[64];
+		
+		long startNanos = System.nanoTime();
+		
+		// simulates the QoS 1 publish / ack cycle with a small in-flight window
+		for (int i = 0; i < count; i++) {
+			String key = "s-" + (i % 1000);
+			
+			this.store.put(key, new MqttPersistentData(key, new byte[4], 0, 4, payload, 0, payload.length));
+			
+			if (i >= 10) {
+				this.store.remove("s-" + ((i - 10) % 1000));
+			}
+		}
+		
+		long   elapsedNanos = System.nanoTime() - startNanos;
+		double msgsPerSec   = count / (elapsedNanos / 1000000000.0);
+		
+		_Logger.info(
+			"Stored and removed " + count + " messages at " + (long) msgsPerSec + " msgs/sec. Compactions: " +
+			this.store.getCompactCount() + ", log size: " + this.store.getLogSize());
+		
+		assertEquals(10, this.store.size());
+		assertTrue(this.store.getCompactCount() > 0);
+		assertTrue(this.store.getLogSize() < COMPACT_BYTES * 2);
+		
+		this.store.close();
+		this.store.open(CLIENT_ID, SERVER_URI);
+		
+		assertEquals(10, this.store.size());
+	}
+	
+	
+	// private methods
+	
+	private MqttPersistable createMessage(String key, String header, String payload)
+	{
+		byte[] headerBytes  = header.getBytes();
+		byte[] payloadBytes = (payload != null ? payload.getBytes() : null);
+		
+		return new MqttPersistentData(
+			key, headerBytes, 0, headerBytes.length,
+			payloadBytes, 0, (payloadBytes != null ? payloadBytes.length : 0));
+	}
+	
+	private String toString(MqttPersistable persistable) throws MqttPersistenceException
+	{
+		return new String(
+			persistable.getHeaderBytes(), persistable.getHeaderOffset(), persistable.getHeaderLength());
+	}
+
+}
@@ -0,0 +1,262 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.unit.connection;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.ActuatorData;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.data.SystemPerformanceData;
+import programmingtheiot.gda.connection.IPersistenceListener;
+import programmingtheiot.gda.connection.PersistenceChangeFeed;
+
+/**
+ * This test case class contains very basic unit tests for
+ * PersistenceChangeFeed. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ * 
+ */
+public class PersistenceChangeFeedTest
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(PersistenceChangeFeedTest.class.getName());
+	
+	public static final String SENSOR_TOPIC  = ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE.getResourceName();
+	public static final String SYSPERF_TOPIC = ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE.getResourceName();
+	
+	public static final long WAIT_MILLIS = 5000L;
+	
+	// member var's
+	
+	private PersistenceChangeFeed feed = null;
+	
+	// test setup methods
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		this.feed = new PersistenceChangeFeed(16, 4);
+	}
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		this.feed.close();
+	}
+	
+	// test methods
+	
+	@Test
+	public void testBatchedDelivery()
+	{
+		RecordingListener listener = new RecordingListener(null);
+		
+		assertTrue(this.feed.addListener(SensorData.class, listener));
+		assertFalse(this.feed.addListener(SensorData.class, listener));
+		
+		for (int i = 0; i < 10; i++) {
+			this.feed.append(SENSOR_TOPIC, 0, new SensorData());
+		}
+		
+		// filtered out by type
+		this.feed.append(SYSPERF_TOPIC, 0, new SystemPerformanceData());
+		
+		assertTrue(waitFor(() -> listener.sensorCount.size() >= 10));
+		
+		_Logger.info("Sensor batch sizes: " + listener.sensorCount);
+		
+		// at most one batch per delivery
+		for (int size : listener.sensorCount) {
+			assertTrue(size <= 4);
+		}
+		
+		assertTrue(waitFor(() -> this.feed.getLag(listener) == 0L));
+		assertEquals(10L, this.feed.getDeliveredCount(listener));
+		assertEquals(0, listener.sysPerfCount.size());
+	}
+	
+	@Test
+	public void testTopicFilter()
+	{
+		RecordingListener listener = new RecordingListener(null);
+		
+		assertTrue(this.feed.addListener(null, listener, SYSPERF_TOPIC));
+		
+		this.feed.append(SENSOR_TOPIC, 0, new SensorData());
+		this.feed.append(SYSPERF_TOPIC, 0, new SystemPerformanceData(), new SystemPerformanceData());
+		
+		assertTrue(waitFor(() -> this.feed.getLag(listener) == 0L));
+		assertTrue(waitFor(() -> this.feed.getDeliveredCount(listener) == 2L));
+		assertEquals(0, listener.sensorCount.size());
+	}
+	
+	@Test
+	public void testSlowListenerDoesNotBlockOthers() throws Exception
+	{
+		CountDownLatch release = new CountDownLatch(1);
+		
+		RecordingListener slow = new RecordingListener(release);
+		RecordingListener fast = new RecordingListener(null);
+		
+		assertTrue(this.feed.addListener(ActuatorData.class, slow));
+		assertTrue(this.feed.addListener(ActuatorData.class, fast));
+		
+		// the slow listener blocks on its first batch while 40 records are appended
+		for (int i = 0; i < 40; i++) {
+			this.feed.append(SENSOR_TOPIC, 1, new ActuatorData());
+		}
+		
+		assertTrue(waitFor(() -> this.feed.getDeliveredCount(fast) + this.feed.getDroppedCount(fast) == 40L));
+		
+		release.countDown();
+		
+		assertTrue(waitFor(() -> this.feed.getLag(slow) == 0L));
+		
+		// the ring holds 16 records, so the slow listener skipped most of them
+		_Logger.info(
+			"Slow listener delivered: " + this.feed.getDeliveredCount(slow) + ", dropped: " + this.feed.getDroppedCount(slow));
+		
+		assertTrue(this.feed.getDroppedCount(slow) > 0L);
+		assertEquals(40L, this.feed.getDeliveredCount(slow) + this.feed.getDroppedCount(slow));
+	}
+	
+	@Test
+	public void testFailingListenerKeepsCursor()
+	{
+		RecordingListener listener = new RecordingListener(null);
+		listener.failNext = true;
+		
+		assertTrue(this.feed.addListener(SensorData.class, listener));
+		
+		this.feed.append(SENSOR_TOPIC, 0, new SensorData());
+		
+		assertTrue(waitFor(() -> this.feed.getLag(listener) == 0L));
+		
+		this.feed.append(SENSOR_TOPIC, 0, new SensorData());
+		
+		assertTrue(waitFor(() -> this.feed.getDeliveredCount(listener) == 1L));
+		
+		assertTrue(this.feed.removeListener(listener));
+		assertFalse(this.feed.removeListener(listener));
+	}
+	
+	
+	// private methods
+	
+	private boolean waitFor(BooleanSupplier condition)
+	{
+		long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+		
+		while (! condition.getAsBoolean()) {
+			if (System.currentTimeMillis() > deadline) {
+				return false;
+			}
+			
+			try {
+				Thread.sleep(10L);
+			} catch (InterruptedException e) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	
+	// inner classes
+	
+	private static class RecordingListener implements IPersistenceListener
+	{
+		private final CountDownLatch release;
+		
+		private final List<Integer> sensorCount   = new CopyOnWriteArrayList<>();
+		private final List<Integer> sysPerfCount  = new CopyOnWriteArrayList<>();
+		private final List<Integer> actuatorCount = new CopyOnWriteArrayList<>();
+		
+		private volatile boolean failNext = false;
+		
+		RecordingListener(CountDownLatch release)
+		{
+			this.release = release;
+		}
+		
+		@Override
+		public void onDataPersisted(String topic, int qos, ActuatorData... data)
+		{
+		}
+		
+		@Override
+		public void onDataPersisted(String topic, int qos, SensorData... data)
+		{
+		}
+		
+		@Override
+		public void onDataPersisted(String topic, int qos, SystemPerformanceData... data)
+		{
+		}
+		
+		@Override
+		public void onDataReadyToPublish(String topic, int qos, ActuatorData... data)
+		{
+			if (this.release != null) {
+				try {
+					this.release.await(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			
+			this.actuatorCount.add(data.length);
+		}
+		
+		@Override
+		public void onDataReadyToPublish(String topic, int qos, SensorData... data)
+		{
+			if (this.failNext) {
+				this.failNext = false;
+				
+				throw new IllegalStateException("Test failure");
+			}
+			
+			// one entry per record, so callers can wait on the total
+			for (int i = 0; i < data.length; i++) {
+				this.sensorCount.add(data.length);
+			}
+		}
+		
+		@Override
+		public void onDataReadyToPublish(String topic, int qos, SystemPerformanceData... data)
+		{
+			this.sysPerfCount.add(data.length);
+		}
+	}
+
+}
@@ -0,0 +1,111 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.unit.connection;
+
+import static org.junit.Assert.*;
+
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.gda.connection.QosPolicy;
+
+/**
+ * This test case class contains very basic unit tests for
+ * QosPolicy. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ * 
+ */
+public class QosPolicyTest
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(QosPolicyTest.class.getName());
+	
+	public static final long SLO_MILLIS      = 100L;
+	public static final long COOLDOWN_MILLIS = 200L;
+	
+	// member var's
+	
+	private QosPolicy policy = null;
+	
+	// test setup methods
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		this.policy =
+			new QosPolicy("CDA_SYSTEM_PERF_MSG_RESOURCE:1, BOGUS_RESOURCE:1, CDA_SENSOR_MSG_RESOURCE:5", SLO_MILLIS, 80, COOLDOWN_MILLIS);
+	}
+	
+	// test methods
+	
+	@Test
+	public void testPolicyTable()
+	{
+		assertEquals(2, this.policy.getQos(ResourceNameEnum.CDA_ACTUATOR_CMD_RESOURCE, 0));
+		assertEquals(1, this.policy.getQos(ResourceNameEnum.GDA_MGMT_STATUS_MSG_RESOURCE, 0));
+		assertEquals(0, this.policy.getQos(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, 2));
+		assertEquals(1, this.policy.getQos(ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE, 0));
+		assertEquals(2, this.policy.getQos(null, 2));
+		assertFalse(this.policy.isDowngraded());
+	}
+	
+	@Test
+	public void testDowngradeOnSaturationAndRestore() throws Exception
+	{
+		this.policy.recordInFlight(10, 64);
+		
+		assertFalse(this.policy.isDowngraded());
+		
+		this.policy.recordInFlight(60, 64);
+		
+		assertTrue(this.policy.isDowngraded());
+		assertEquals(0, this.policy.getQos(ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE, 1));
+		
+		// commands are never downgraded
+		assertEquals(2, this.policy.getQos(ResourceNameEnum.CDA_ACTUATOR_CMD_RESOURCE, 0));
+		
+		Thread.sleep(COOLDOWN_MILLIS + 50L);
+		
+		assertEquals(1, this.policy.getQos(ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE, 1));
+		assertFalse(this.policy.isDowngraded());
+		assertEquals(1, this.policy.getDowngradeCount());
+		assertEquals(1, this.policy.getDowngradedMessageCount());
+	}
+	
+	@Test
+	public void testDowngradeOnLatencyPercentile()
+	{
+		for (int i = 0; i < 100; i++) {
+			this.policy.recordLatency(10L);
+		}
+		
+		assertFalse(this.policy.isDowngraded());
+		
+		for (int i = 0; i < 28; i++) {
+			this.policy.recordLatency(500L);
+		}
+		
+		_Logger.info("p95 publish latency: " + this.policy.getLatencyPercentile() + " ms");
+		
+		assertTrue(this.policy.getLatencyPercentile() > SLO_MILLIS);
+		assertTrue(this.policy.isDowngraded());
+		assertEquals(0, this.policy.getQos(ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE, 1));
+	}
+
+}
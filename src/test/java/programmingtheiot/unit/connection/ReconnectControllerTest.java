@@ -0,0 +1,156 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.unit.connection;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import programmingtheiot.gda.connection.ReconnectController;
+
+/**
+ * This test case class contains very basic unit tests for
+ * ReconnectController. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ * 
+ */
+public class ReconnectControllerTest
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(ReconnectControllerTest.class.getName());
+	
+	public static final long BASE_DELAY = 10L;
+	public static final long MAX_DELAY  = 80L;
+	public static final String HOST     = "localhost";
+	
+	// member var's
+	
+	private ReconnectController controller = null;
+	
+	// test setup methods
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		this.controller = new ReconnectController(BASE_DELAY, MAX_DELAY, 2);
+	}
+	
+	// test methods
+	
+	@Test
+	public void testDecorrelatedJitterBounds()
+	{
+		long delay = 0L;
+		
+		for (int i = 0; i < 1000; i++) {
+			long next = this.controller.nextDelayMillis(delay);
+			
+			assertTrue(next >= BASE_DELAY);
+			assertTrue(next <= MAX_DELAY);
+			assertTrue(next <= Math.max(delay, BASE_DELAY) * 3);
+			
+			delay = next;
+		}
+	}
+	
+	@Test
+	public void testReconnectAfterFailures() throws Exception
+	{
+		AtomicInteger  attempts = new AtomicInteger(0);
+		AtomicLong     latency  = new AtomicLong(-1L);
+		CountDownLatch done     = new CountDownLatch(1);
+		
+		assertTrue(
+			this.controller.scheduleReconnect(
+				"client1", HOST,
+				() -> attempts.incrementAndGet() >= 3,
+				latencyMillis -> { latency.set(latencyMillis); done.countDown(); }));
+		
+		// a second request for the same client is ignored while one is pending
+		assertFalse(this.controller.scheduleReconnect("client1", HOST, () -> true, null));
+		
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		
+		_Logger.info("Reconnected after " + attempts.get() + " attempts in " + latency.get() + " ms");
+		
+		assertEquals(3, attempts.get());
+		assertTrue(latency.get() >= BASE_DELAY * 3);
+		assertEquals(1, this.controller.getReconnectCount());
+		assertEquals(0, this.controller.getPendingCount());
+	}
+	
+	@Test
+	public void testPerHostConnectLimit() throws Exception
+	{
+		int clientCount = 8;
+		
+		AtomicInteger  active    = new AtomicInteger(0);
+		AtomicInteger  maxActive = new AtomicInteger(0);
+		CountDownLatch done      = new CountDownLatch(clientCount);
+		
+		for (int i = 0; i < clientCount; i++) {
+			this.controller.scheduleReconnect("client" + i, HOST, () -> {
+				maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+				
+				try {
+					Thread.sleep(20L);
+				} catch (InterruptedException e) {
+					// ignore
+				}
+				
+				active.decrementAndGet();
+				
+				return true;
+			}, latencyMillis -> done.countDown());
+		}
+		
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		
+		_Logger.info(
+			"Max concurrent connects: " + maxActive.get() + ", deferred: " + this.controller.getDeferredCount());
+		
+		assertTrue(maxActive.get() <= 2);
+		assertEquals(clientCount, this.controller.getReconnectCount());
+	}
+	
+	@Test
+	public void testCancelReconnect() throws Exception
+	{
+		AtomicInteger attempts = new AtomicInteger(0);
+		
+		this.controller.scheduleReconnect("client1", HOST, () -> attempts.incrementAndGet() < 0, null);
+		
+		Thread.sleep(MAX_DELAY * 3);
+		
+		assertTrue(this.controller.cancelReconnect("client1"));
+		assertFalse(this.controller.cancelReconnect("client1"));
+		
+		int count = attempts.get();
+		
+		Thread.sleep(MAX_DELAY * 3);
+		
+		assertTrue(count > 0);
+		assertTrue(attempts.get() <= count + 1);
+	}
+
+}
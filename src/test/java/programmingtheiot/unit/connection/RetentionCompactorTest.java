@@ -0,0 +1,180 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.unit.connection;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.gda.connection.RetentionCompactor;
+import programmingtheiot.gda.connection.RetentionPolicy;
+import programmingtheiot.gda.connection.RetentionPolicy.Tier;
+import programmingtheiot.gda.connection.RollupStore;
+import programmingtheiot.gda.connection.RollupStore.Resolution;
+import programmingtheiot.gda.connection.RollupStore.Rollup;
+
+/**
+ * This test case class contains very basic unit tests for
+ * RetentionCompactor and RetentionPolicy. It should not be considered
+ * complete, but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ * 
+ */
+public class RetentionCompactorTest
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(RetentionCompactorTest.class.getName());
+	
+	public static final String TOPIC   = ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE.getResourceName();
+	public static final int    TYPE_ID = ConfigConst.TEMP_SENSOR_TYPE;
+	
+	public static final long MINUTE = Resolution.MINUTE.getMillis();
+	public static final long HOUR   = Resolution.HOUR.getMillis();
+	public static final long DAY    = Resolution.DAY.getMillis();
+	
+	// member var's
+	
+	private RollupStore store = null;
+	private long        nowMillis = 0L;
+	
+	// test setup methods
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		this.store = new RollupStore();
+		this.store.setRetentionPolicy(new RetentionPolicy("1h/1d/0/0", null), 1000);
+		
+		this.nowMillis = System.currentTimeMillis();
+	}
+	
+	// test methods
+	
+	@Test
+	public void testParsePolicy()
+	{
+		long[] retention = RetentionPolicy.parsePolicy("24h/30d/0/0");
+		
+		assertNotNull(retention);
+		assertEquals(24 * HOUR, retention[Tier.RAW.ordinal()]);
+		assertEquals(30 * DAY, retention[Tier.MINUTE.ordinal()]);
+		assertEquals(RetentionPolicy.KEEP_FOREVER, retention[Tier.HOUR.ordinal()]);
+		
+		assertNull(RetentionPolicy.parsePolicy("24h/30d"));
+		assertNull(RetentionPolicy.parsePolicy("24h/abc/0/0"));
+		
+		RetentionPolicy policy = new RetentionPolicy("24h/30d/0/0", "CDA_SYSTEM_PERF_MSG_RESOURCE:6h/7d/365d/0, BOGUS:1h/1h/1h/1h");
+		
+		assertEquals(6 * HOUR, policy.getRetentionMillis(ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE, Tier.RAW));
+		assertEquals(365 * DAY, policy.getRetentionMillis(ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE, Tier.HOUR));
+		assertEquals(24 * HOUR, policy.getRetentionMillis(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, Tier.RAW));
+		assertEquals(24 * HOUR, policy.getRetentionMillis(null, Tier.RAW));
+	}
+	
+	@Test
+	public void testCompactionExpiresByTier()
+	{
+		// 10 values two days ago, 10 values now
+		for (int i = 0; i < 10; i++) {
+			this.store.update(TOPIC, TYPE_ID, i, this.nowMillis - 2 * DAY + i * MINUTE);
+			this.store.update(TOPIC, TYPE_ID, i, this.nowMillis - i * 1000L);
+		}
+		
+		RetentionCompactor compactor = new RetentionCompactor(this.store, 60000L, 4);
+		
+		long deleted = compactor.compact(this.nowMillis);
+		
+		_Logger.info("Deleted " + deleted + " value(s) in " + compactor.getBatchCount() + " batch(es)");
+		
+		assertEquals(10, compactor.getDeletedCount(Tier.RAW));
+		assertEquals(10, compactor.getDeletedCount(Tier.MINUTE));
+		assertEquals(0, compactor.getDeletedCount(Tier.HOUR));
+		assertEquals(0, compactor.getDeletedCount(Tier.DAY));
+		assertEquals(1, compactor.getPassCount());
+		assertEquals(1.0f, compactor.getProgress(), 0.0f);
+		assertFalse(compactor.isRunning());
+		
+		// batches of 4: 3 for each of the raw and minute tiers
+		assertEquals(6, compactor.getBatchCount());
+		
+		// the old data is still available from the hour rollups
+		List<Rollup> hours = this.store.query(TOPIC, TYPE_ID, this.nowMillis - 3 * DAY, this.nowMillis - DAY, HOUR);
+		long count = 0L;
+		
+		for (Rollup rollup : hours) {
+			count += rollup.getCount();
+		}
+		
+		assertEquals(10, count);
+		
+		// a second pass has nothing left to remove
+		assertEquals(0, compactor.compact(this.nowMillis));
+	}
+	
+	@Test
+	public void testRawQuery()
+	{
+		for (int i = 0; i < 10; i++) {
+			this.store.update(TOPIC, TYPE_ID, i, this.nowMillis - 10000L + i * 1000L);
+		}
+		
+		List<Rollup> rollups = this.store.query(TOPIC, TYPE_ID, this.nowMillis - 10000L, this.nowMillis, 2000L);
+		
+		assertNotNull(rollups);
+		
+		long count = 0L;
+		
+		for (Rollup rollup : rollups) {
+			assertEquals(2000L, rollup.getDurationMillis());
+			count += rollup.getCount();
+		}
+		
+		assertEquals(10, count);
+		
+		// without raw samples the planner still falls back to the caller
+		RollupStore rollupsOnly = new RollupStore();
+		rollupsOnly.update(TOPIC, TYPE_ID, 1.0f, this.nowMillis);
+		
+		assertNull(rollupsOnly.query(TOPIC, TYPE_ID, this.nowMillis - 10000L, this.nowMillis, 2000L));
+	}
+	
+	@Test
+	public void testExpiredSeriesIsRemoved()
+	{
+		this.store.update(TOPIC, TYPE_ID, 1.0f, this.nowMillis - 2 * DAY);
+		
+		assertEquals(1, this.store.size());
+		
+		// hour and day rollups are kept forever, so the series remains
+		new RetentionCompactor(this.store, 60000L, 16).compact(this.nowMillis);
+		
+		assertEquals(1, this.store.size());
+		
+		RollupStore shortLived = new RollupStore();
+		shortLived.setRetentionPolicy(new RetentionPolicy("1h/1h/1h/1h", null), 100);
+		shortLived.update(TOPIC, TYPE_ID, 1.0f, this.nowMillis - 2 * DAY);
+		
+		new RetentionCompactor(shortLived, 60000L, 16).compact(this.nowMillis);
+		
+		assertEquals(0, shortLived.size());
+	}
+
+}
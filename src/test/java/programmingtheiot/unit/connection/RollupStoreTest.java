@@ -0,0 +1,178 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.unit.connection;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.gda.connection.RetentionPolicy;
+import programmingtheiot.gda.connection.RollupStore;
+import programmingtheiot.gda.connection.RollupStore.Resolution;
+import programmingtheiot.gda.connection.RollupStore.Rollup;
+
+/**
+ * This test case class contains very basic unit tests for
+ * RollupStore. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ * 
+ */
+public class RollupStoreTest
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(RollupStoreTest.class.getName());
+	
+	public static final String TOPIC   = ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE.getResourceName();
+	public static final int    TYPE_ID = ConfigConst.TEMP_SENSOR_TYPE;
+	
+	public static final long MINUTE = Resolution.MINUTE.getMillis();
+	public static final long HOUR   = Resolution.HOUR.getMillis();
+	public static final long DAY    = Resolution.DAY.getMillis();
+	
+	// member var's
+	
+	private RollupStore store = null;
+	private long        baseMillis = 0L;
+	
+	// test setup methods
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		this.store = new RollupStore();
+		
+		// start of the current day, so the test data stays within retention
+		this.baseMillis = (System.currentTimeMillis() / DAY) * DAY - DAY;
+	}
+	
+	// test methods
+	
+	@Test
+	public void testQueryPlanner()
+	{
+		long now = this.baseMillis + DAY;
+		
+		assertNull(this.store.planQuery(now - HOUR, now, 1000L, now));
+		assertEquals(Resolution.MINUTE, this.store.planQuery(now - HOUR, now, MINUTE * 5, now));
+		assertEquals(Resolution.HOUR, this.store.planQuery(now - DAY, now, HOUR * 2, now));
+		assertEquals(Resolution.DAY, this.store.planQuery(now - 30 * DAY, now, DAY, now));
+		
+		// minute rollups only go back 2 days, so a week at minute resolution uses hours
+		assertEquals(Resolution.HOUR, this.store.planQuery(now - 7 * DAY, now, MINUTE, now));
+		
+		// hour rollups only go back 90 days
+		assertEquals(Resolution.DAY, this.store.planQuery(now - 365 * DAY, now, HOUR, now));
+	}
+	
+	@Test
+	public void testRollupAggregates()
+	{
+		// one value every 10 seconds for 2 hours: 1, 2, 3, ...
+		int count = 720;
+		
+		for (int i = 0; i < count; i++) {
+			this.store.update(TOPIC, TYPE_ID, i + 1, this.baseMillis + i * 10000L);
+		}
+		
+		this.store.update(TOPIC, ConfigConst.HUMIDITY_SENSOR_TYPE, 50.0f, this.baseMillis);
+		
+		assertEquals(2, this.store.size());
+		
+		List<Rollup> hourly = this.store.query(TOPIC, TYPE_ID, this.baseMillis, this.baseMillis + 2 * HOUR, HOUR);
+		
+		_Logger.info("Hourly rollups: " + hourly);
+		
+		assertEquals(2, hourly.size());
+		assertEquals(360, hourly.get(0).getCount());
+		assertEquals(1.0f, hourly.get(0).getMin(), 0.0f);
+		assertEquals(360.0f, hourly.get(0).getMax(), 0.0f);
+		assertEquals(360.0f, hourly.get(0).getLast(), 0.0f);
+		assertEquals(180.5f, hourly.get(0).getAverage(), 0.001f);
+		assertEquals(720.0f, hourly.get(1).getLast(), 0.0f);
+		
+		// 15 minute resolution is merged from the minute rollups
+		List<Rollup> quarterly = this.store.query(TOPIC, TYPE_ID, this.baseMillis, this.baseMillis + 2 * HOUR, 15 * MINUTE);
+		
+		assertEquals(8, quarterly.size());
+		assertEquals(90, quarterly.get(0).getCount());
+		assertEquals(15 * MINUTE, quarterly.get(0).getDurationMillis());
+		
+		List<Rollup> daily = this.store.query(TOPIC, TYPE_ID, this.baseMillis, this.baseMillis + DAY, DAY);
+		
+		assertEquals(1, daily.size());
+		assertEquals(count, daily.get(0).getCount());
+	}
+	
+	@Test
+	public void testRetentionAndMissingSeries()
+	{
+		RollupStore smallStore = new RollupStore(10, 10, 10);
+		
+		long startMillis = (System.currentTimeMillis() / MINUTE) * MINUTE - 29 * MINUTE;
+		
+		for (int i = 0; i < 30; i++) {
+			smallStore.update(TOPIC, TYPE_ID, i, startMillis + i * MINUTE);
+		}
+		
+		// only the last 10 minute rollups are kept
+		List<Rollup> rollups =
+			smallStore.query(TOPIC, TYPE_ID, startMillis + 20 * MINUTE, startMillis + HOUR, MINUTE);
+		
+		assertEquals(10, rollups.size());
+		assertEquals(20.0f, rollups.get(0).getMin(), 0.0f);
+		
+		// a range older than the minute rollups is answered from the hour rollups
+		rollups = smallStore.query(TOPIC, TYPE_ID, startMillis, startMillis + HOUR, MINUTE);
+		
+		assertEquals(HOUR, rollups.get(0).getDurationMillis());
+		assertEquals(0.0f, rollups.get(0).getMin(), 0.0f);
+		
+		assertTrue(smallStore.query("unknown", TYPE_ID, startMillis, startMillis + HOUR, HOUR).isEmpty());
+		assertNull(smallStore.query(TOPIC, TYPE_ID, startMillis, startMillis + HOUR, 1000L));
+	}
+	
+	@Test
+	public void testBucketCountCapsRetentionPolicy()
+	{
+		RollupStore smallStore = new RollupStore(10, 10, 10);
+		
+		// keep every tier forever; the bucket counts still apply
+		smallStore.setRetentionPolicy(new RetentionPolicy("0/0/0/0", null), 0);
+		
+		long startMillis = (System.currentTimeMillis() / MINUTE) * MINUTE - 29 * MINUTE;
+		
+		for (int i = 0; i < 30; i++) {
+			smallStore.update(TOPIC, TYPE_ID, i, startMillis + i * MINUTE);
+		}
+		
+		List<Rollup> rollups =
+			smallStore.query(TOPIC, TYPE_ID, startMillis + 20 * MINUTE, startMillis + HOUR, MINUTE);
+		
+		assertEquals(10, rollups.size());
+		
+		// the capped minute rollups no longer hold the start of the range
+		rollups = smallStore.query(TOPIC, TYPE_ID, startMillis, startMillis + HOUR, MINUTE);
+		
+		assertEquals(HOUR, rollups.get(0).getDurationMillis());
+	}
+
+}
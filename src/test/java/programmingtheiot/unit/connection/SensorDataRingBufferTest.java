@@ -0,0 +1,212 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.unit.connection;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.SensorData;
+import programmingtheiot.gda.connection.ISensorEventHandler;
+import programmingtheiot.gda.connection.SensorDataRingBuffer;
+import programmingtheiot.gda.connection.SensorDataRingBuffer.WaitStrategy;
+
+/**
+ * This test case class contains very basic unit tests for
+ * SensorDataRingBuffer. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ * 
+ */
+public class SensorDataRingBufferTest
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(SensorDataRingBufferTest.class.getName());
+	
+	public static final ResourceNameEnum RESOURCE = ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE;
+	
+	public static final int  EVENT_COUNT = 10000;
+	public static final long WAIT_MILLIS = 10000L;
+	
+	// test methods
+	
+	@Test
+	public void testSizeIsPowerOfTwo()
+	{
+		assertEquals(8, new SensorDataRingBuffer(8, WaitStrategy.BLOCK).getSize());
+		assertEquals(1024, new SensorDataRingBuffer(1000, WaitStrategy.BLOCK).getSize());
+		assertEquals(2, new SensorDataRingBuffer(0, null).getSize());
+		assertEquals(WaitStrategy.BLOCK, new SensorDataRingBuffer(0, null).getWaitStrategy());
+	}
+	
+	@Test
+	public void testBusySpinDelivery() throws Exception
+	{
+		runDelivery(WaitStrategy.BUSY_SPIN);
+	}
+	
+	@Test
+	public void testYieldDelivery() throws Exception
+	{
+		runDelivery(WaitStrategy.YIELD);
+	}
+	
+	@Test
+	public void testBlockDelivery() throws Exception
+	{
+		runDelivery(WaitStrategy.BLOCK);
+	}
+	
+	@Test
+	public void testBlockWakesWaitingHandler() throws Exception
+	{
+		SensorDataRingBuffer ring = new SensorDataRingBuffer(8, WaitStrategy.BLOCK);
+		Semaphore delivered = new Semaphore(0);
+		
+		assertTrue(ring.addHandler("waiter", (resource, data, sequence, endOfBatch) -> delivered.release()));
+		assertTrue(ring.startRing());
+		
+		SensorData data = new SensorData(ConfigConst.TEMP_SENSOR_TYPE);
+		
+		// the handler is parked before each publish, so each one must signal it
+		// (a missed signal would only be noticed after the ring's 5s wait timeout)
+		for (int i = 0; i < 5; i++) {
+			Thread.sleep(20L);
+			
+			assertTrue(ring.tryPublishEvent(RESOURCE, data));
+			assertTrue(delivered.tryAcquire(1000L, TimeUnit.MILLISECONDS));
+		}
+		
+		assertTrue(ring.stopRing());
+		assertEquals(5L, ring.getEventCount("waiter"));
+	}
+	
+	@Test
+	public void testTryPublishWhenFull() throws Exception
+	{
+		SensorDataRingBuffer ring = new SensorDataRingBuffer(4, WaitStrategy.BLOCK);
+		CountDownLatch release = new CountDownLatch(1);
+		
+		assertTrue(ring.addHandler("stuck", (resource, data, sequence, endOfBatch) -> {
+			try {
+				release.await(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}));
+		
+		assertTrue(ring.startRing());
+		assertFalse(ring.addHandler("late", (resource, data, sequence, endOfBatch) -> {}));
+		
+		SensorData data = new SensorData(ConfigConst.TEMP_SENSOR_TYPE);
+		int published = 0;
+		
+		// the handler holds the first slot, so at most 4 can be published
+		for (int i = 0; i < 10; i++) {
+			if (ring.tryPublishEvent(RESOURCE, data)) {
+				++published;
+			}
+		}
+		
+		assertEquals(4, published);
+		assertEquals(6L, ring.getDroppedCount());
+		assertEquals(0L, ring.getRemainingCapacity());
+		
+		release.countDown();
+		
+		assertTrue(ring.stopRing());
+		assertEquals(4L, ring.getEventCount("stuck"));
+		assertEquals(ring.getSize(), ring.getRemainingCapacity());
+	}
+	
+	
+	// private methods
+	
+	private void runDelivery(WaitStrategy waitStrategy) throws Exception
+	{
+		SensorDataRingBuffer ring = new SensorDataRingBuffer(64, waitStrategy);
+		
+		SummingHandler first  = new SummingHandler();
+		SummingHandler second = new SummingHandler();
+		
+		assertTrue(ring.addHandler("first", first));
+		assertTrue(ring.addHandler("second", second));
+		assertFalse(ring.addHandler("first", second));
+		assertTrue(ring.startRing());
+		
+		SensorData data = new SensorData(ConfigConst.TEMP_SENSOR_TYPE);
+		long expectedSum = 0L;
+		
+		for (int i = 0; i < EVENT_COUNT; i++) {
+			data.setStatusCode(i);
+			expectedSum += i;
+			
+			assertEquals(i, ring.publishEvent(RESOURCE, data));
+		}
+		
+		assertTrue(first.done.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+		assertTrue(second.done.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+		assertTrue(ring.stopRing());
+		
+		_Logger.info(
+			waitStrategy + ": " + EVENT_COUNT + " events in " + ring.getBatchCount("first") + " and " +
+			ring.getBatchCount("second") + " batch(es)");
+		
+		// every handler sees every event, in order
+		for (SummingHandler handler : new SummingHandler[] {first, second}) {
+			assertEquals(expectedSum, handler.sum);
+			assertFalse(handler.outOfOrder);
+			assertFalse(handler.wrongResource);
+		}
+		
+		assertEquals(EVENT_COUNT, ring.getEventCount("first"));
+		assertTrue(ring.getBatchCount("first") <= EVENT_COUNT);
+		assertEquals(EVENT_COUNT - 1, ring.getCursor());
+	}
+	
+	
+	// inner classes
+	
+	private static class SummingHandler implements ISensorEventHandler
+	{
+		private final CountDownLatch done = new CountDownLatch(EVENT_COUNT);
+		
+		private long    sum = 0L;
+		private long    lastSequence = -1L;
+		private boolean outOfOrder = false;
+		private boolean wrongResource = false;
+		
+		@Override
+		public void onEvent(ResourceNameEnum resource, SensorData data, long sequence, boolean endOfBatch)
+		{
+			if (sequence != this.lastSequence + 1L || data.getStatusCode() != sequence) {
+				this.outOfOrder = true;
+			}
+			
+			if (resource != RESOURCE) {
+				this.wrongResource = true;
+			}
+			
+			this.sum += data.getStatusCode();
+			this.lastSequence = sequence;
+			this.done.countDown();
+		}
+	}
+
+}
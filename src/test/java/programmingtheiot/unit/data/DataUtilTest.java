@@ -10,6 +10,8 @@ package programmingtheiot.unit.data;
 
 import static org.junit.Assert.*;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.logging.Logger;
 
 import org.junit.Test;
@@ -114,14 +116,56 @@ public class DataUtilTest
 		assertTrue(data.getMemoryUtilization() == data2.getMemoryUtilization());
 	}
 	
-	/**
-	 * NOTE: SystemStateData is not required for the exercises in Programming the IoT.
-	 * The test case below is disabled by default, but can easily be re-enabled by
-	 * uncommenting the @Test attribute if SystemStateData is optionally implemented.
-	 * 
-	 */
+	@Test
+	public void testSensorDataFromByteBuffer()
+	{
+		DataUtil dataUtil = DataUtil.getInstance();
+		
+		SensorData data = new SensorData();
+		data.setName(DEFAULT_NAME);
+		data.setStatusCode(DEFAULT_STATUS);
+		data.setValue(DEFAULT_VAL);
+		
+		byte[] jsonBytes = dataUtil.sensorDataToJson(data).getBytes(StandardCharsets.UTF_8);
+		
+		// heap buffer over a slice of a larger array
+		byte[] framed = new byte[jsonBytes.length + 4];
+		System.arraycopy(jsonBytes, 0, framed, 2, jsonBytes.length);
+		
+		ByteBuffer heapBuf = ByteBuffer.wrap(framed, 2, jsonBytes.length);
+		SensorData data2 = dataUtil.jsonToSensorData(heapBuf);
+		
+		assertEquals(data.getName(), data2.getName());
+		assertTrue(data.getValue() == data2.getValue());
+		assertEquals(2, heapBuf.position());
+		
+		// direct buffer (no backing array)
+		ByteBuffer directBuf = ByteBuffer.allocateDirect(jsonBytes.length);
+		directBuf.put(jsonBytes).flip();
+		
+		SensorData data3 = dataUtil.jsonToSensorData(directBuf);
+		
+		assertEquals(data.getName(), data3.getName());
+		assertTrue(data.getValue() == data3.getValue());
+		assertEquals(0, directBuf.position());
+	}
 	
-//	@Test
+	@Test
+	public void testInvalidByteBufferPayloads()
+	{
+		DataUtil dataUtil = DataUtil.getInstance();
+		
+		assertNull(dataUtil.jsonToActuatorData((ByteBuffer) null));
+		assertNull(dataUtil.jsonToActuatorData(ByteBuffer.wrap(" \n\t ".getBytes(StandardCharsets.UTF_8))));
+		assertNull(dataUtil.jsonToSystemPerformanceData(ByteBuffer.wrap(new byte[] {0x01, 0x02, 0x03})));
+		
+		ByteBuffer textBuf = ByteBuffer.wrap("TEST: payload".getBytes(StandardCharsets.UTF_8));
+		
+		assertEquals("TEST: payload", DataUtil.decodeToString(textBuf));
+		assertEquals(0, textBuf.position());
+	}
+	
+	@Test
 	public void testSystemStateDatatoJsonAndBack()
 	{
 		DataUtil dataUtil = DataUtil.getInstance();
@@ -0,0 +1,133 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.unit.data;
+
+import static org.junit.Assert.*;
+
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import programmingtheiot.common.ConfigConst;
+import programmingtheiot.common.ResourceNameEnum;
+import programmingtheiot.data.*;
+
+/**
+ * This test case class contains very basic unit tests for
+ * LastValueCache. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ * 
+ */
+public class LastValueCacheTest
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(LastValueCacheTest.class.getName());
+	
+	public static final long TTL_MILLIS = 60000L;
+	
+	// member var's
+	
+	private LastValueCache cache = null;
+	
+	// test setup methods
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		this.cache = new LastValueCache(TTL_MILLIS);
+	}
+	
+	// test methods
+	
+	@Test
+	public void testLatestValueReplacesPrevious()
+	{
+		ResourceNameEnum resource = ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE;
+		
+		assertTrue(this.cache.update(resource, createSensorData("cda1", ConfigConst.TEMP_SENSOR_TYPE, 20.0f)));
+		assertTrue(this.cache.update(resource, createSensorData("cda1", ConfigConst.TEMP_SENSOR_TYPE, 21.0f)));
+		assertTrue(this.cache.update(resource, createSensorData("cda1", ConfigConst.HUMIDITY_SENSOR_TYPE, 40.0f)));
+		assertTrue(this.cache.update(resource, createSensorData("cda2", ConfigConst.TEMP_SENSOR_TYPE, 18.0f)));
+		
+		assertEquals(3, this.cache.size());
+		
+		SensorData data = (SensorData) this.cache.getLatest(resource, "cda1", ConfigConst.TEMP_SENSOR_TYPE);
+		
+		assertEquals(21.0f, data.getValue(), 0.001f);
+		assertNull(this.cache.getLatest(resource, "cda3", ConfigConst.TEMP_SENSOR_TYPE));
+		assertNull(this.cache.getLatest(ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE, "cda1", ConfigConst.TEMP_SENSOR_TYPE));
+		
+		assertEquals(2, this.cache.getLatest(resource, "cda1").size());
+		assertEquals(3, this.cache.getLatest(resource, null).size());
+		assertEquals(3, this.cache.getHitCount());
+		assertEquals(2, this.cache.getMissCount());
+	}
+	
+	@Test
+	public void testLatestJson()
+	{
+		ResourceNameEnum resource = ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE;
+		
+		this.cache.update(resource, createSensorData("cda1", ConfigConst.TEMP_SENSOR_TYPE, 20.0f));
+		this.cache.update(resource, createSensorData("cda2", ConfigConst.TEMP_SENSOR_TYPE, 18.0f));
+		
+		String jsonData = this.cache.getLatestJson(resource, "cda2", ConfigConst.TEMP_SENSOR_TYPE);
+		
+		assertEquals(18.0f, DataUtil.getInstance().jsonToSensorData(jsonData).getValue(), 0.001f);
+		
+		// the serialized form is reused until the value changes
+		assertSame(jsonData, this.cache.getLatestJson(resource, "cda2", ConfigConst.TEMP_SENSOR_TYPE));
+		
+		String jsonArray = this.cache.getLatestJson(resource, null);
+		
+		_Logger.info("Latest sensor data: " + jsonArray);
+		
+		assertTrue(jsonArray.startsWith("[") && jsonArray.endsWith("]"));
+		assertNull(this.cache.getLatestJson(ResourceNameEnum.CDA_ACTUATOR_RESPONSE_RESOURCE, null));
+	}
+	
+	@Test
+	public void testStaleEntriesExpire()
+	{
+		ResourceNameEnum resource = ResourceNameEnum.CDA_SYSTEM_PERF_MSG_RESOURCE;
+		long now = System.currentTimeMillis();
+		
+		this.cache.update(resource, new SystemPerformanceData(), now - TTL_MILLIS - 1000L);
+		
+		// stale entries are never returned, even before they're evicted
+		assertEquals(1, this.cache.size());
+		assertTrue(this.cache.getLatest(resource, null).isEmpty());
+		
+		this.cache.update(ResourceNameEnum.CDA_SENSOR_MSG_RESOURCE, createSensorData("cda1", 0, 1.0f), now);
+		
+		assertEquals(1, this.cache.size());
+		assertEquals(1, this.cache.getEvictedCount());
+	}
+	
+	
+	// private methods
+	
+	private SensorData createSensorData(String locationID, int typeID, float value)
+	{
+		SensorData data = new SensorData(typeID);
+		data.setLocationID(locationID);
+		data.setValue(value);
+		
+		return data;
+	}
+
+}
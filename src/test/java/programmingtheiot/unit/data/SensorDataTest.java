@@ -93,6 +93,25 @@ public class SensorDataTest
 		assertTrue(ssd.getValue() == ConfigConst.DEFAULT_VAL);
 	}
 	
+	@Test
+	public void testCopyFrom()
+	{
+		SensorData ssd = new SensorData();
+		SensorData ssd2 = createTestData();
+		ssd2.setValue(12.5f);
+		ssd2.setStatusCode(3);
+		
+		ssd.copyFrom(ssd2);
+		
+		assertEquals(ssd.getName(), DEFAULT_NAME);
+		assertEquals(ssd.getStatusCode(), 3);
+		assertEquals(ssd.getValue(), 12.5f, 0.0f);
+		
+		// unlike updateData(), the timestamp is kept
+		assertEquals(ssd.getTimeStamp(), ssd2.getTimeStamp());
+		assertEquals(ssd.getTimeStampMillis(), ssd2.getTimeStampMillis());
+	}
+	
 	@Test
 	public void testDifferentDataInstanceUpdate()
 	{
@@ -0,0 +1,103 @@
+/**
+ * This class is part of the Programming the Internet of Things
+ * project, and is available via the MIT License, which can be
+ * found in the LICENSE file at the top level of this repository.
+ * 
+ * Copyright (c) 2020 - 2025 by Andrew D. King
+ */
+
+package programmingtheiot.unit.system;
+
+import static org.junit.Assert.*;
+
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import programmingtheiot.gda.system.AdaptivePollingPolicy;
+
+/**
+ * This test case class contains very basic unit tests for
+ * AdaptivePollingPolicy. It should not be considered complete,
+ * but serve as a starting point for the student implementing
+ * additional functionality within their Programming the IoT
+ * environment.
+ * 
+ */
+public class AdaptivePollingPolicyTest
+{
+	// static
+	
+	private static final Logger _Logger =
+		Logger.getLogger(AdaptivePollingPolicyTest.class.getName());
+	
+	public static final long MIN_DELAY = 1000L;
+	public static final long MAX_DELAY = 16000L;
+	
+	// member var's
+	
+	private AdaptivePollingPolicy policy = null;
+	
+	// test setup methods
+	
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		this.policy = new AdaptivePollingPolicy(MIN_DELAY, MAX_DELAY, 2.0f, 5.0f, 5.0f);
+	}
+	
+	// test methods
+	
+	@Test
+	public void testInitialDelayIsMax()
+	{
+		assertEquals(MAX_DELAY, this.policy.getCurrentDelayMillis());
+		assertEquals(MAX_DELAY, this.policy.nextDelayMillis(10.0f, 10.0f));
+	}
+	
+	@Test
+	public void testSpikeDropsToMinDelay()
+	{
+		this.policy.nextDelayMillis(10.0f, 10.0f);
+		
+		assertEquals(MIN_DELAY, this.policy.nextDelayMillis(50.0f, 10.0f));
+		assertEquals(MIN_DELAY, this.policy.nextDelayMillis(50.0f, 30.0f));
+	}
+	
+	@Test
+	public void testStableValuesBackOffExponentially()
+	{
+		this.policy.nextDelayMillis(10.0f, 10.0f);
+		this.policy.nextDelayMillis(50.0f, 10.0f);
+		
+		long expected = MIN_DELAY;
+		
+		for (int i = 0; i < 6; i++) {
+			expected = Math.min(expected * 2, MAX_DELAY);
+			
+			long delay = this.policy.nextDelayMillis(51.0f, 11.0f);
+			
+			_Logger.info("Stable sample " + i + ": delay = " + delay);
+			
+			assertEquals(expected, delay);
+		}
+		
+		assertEquals(MAX_DELAY, this.policy.getCurrentDelayMillis());
+	}
+	
+	@Test
+	public void testReset()
+	{
+		this.policy.nextDelayMillis(10.0f, 10.0f);
+		this.policy.nextDelayMillis(50.0f, 10.0f);
+		this.policy.reset();
+		
+		assertEquals(MAX_DELAY, this.policy.getCurrentDelayMillis());
+		assertEquals(MAX_DELAY, this.policy.nextDelayMillis(90.0f, 90.0f));
+	}
+
+}